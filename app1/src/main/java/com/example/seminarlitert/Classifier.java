@@ -12,10 +12,21 @@ import org.tensorflow.lite.support.image.TensorImage;
 import org.tensorflow.lite.support.image.ops.ResizeOp;
 import org.tensorflow.lite.support.tensorbuffer.TensorBuffer;
 
+import com.example.common.BitmapPool;
+import com.example.common.CancellationStats;
+import com.example.common.Dequantizer;
+import com.example.common.InferenceException;
+import com.example.common.InputWriter;
+import com.example.common.MemoryFootprint;
+import com.example.common.MemoryManager;
+import com.example.common.RequestCancelledException;
+import com.example.common.RequestToken;
+import com.example.common.TensorSpec;
+import com.example.common.Tracer;
+
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.MappedByteBuffer;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -33,7 +44,13 @@ import java.util.function.Consumer;
  * <ul>
  *   <li>Verwendung der System-Runtime (Google Play Services)</li>
  *   <li>Keine GPU-/Delegate-Steuerung im Code möglich</li>
- *   <li>Manuelle ByteBuffer-Erstellung für Uint8-Modelle</li>
+ *   <li>Manuelle ByteBuffer-Erstellung, Eingabetyp über {@link InputWriter} gewählt</li>
+ *   <li>Trace-Abschnitte für Skalierung, Tensorbefüllung, Inferenz und Auswertung ({@link Tracer})</li>
+ *   <li>Freigabe von Buffern und Modell bei Speicherdruck ({@link MemoryManager}),
+ *       beides wird beim nächsten Aufruf transparent neu angelegt</li>
+ *   <li>Anfragen mit Frist bzw. Abbruch ({@link RequestToken}): abgelaufene
+ *       Anfragen werden vor Vorverarbeitung und Inferenz verworfen; eine
+ *       laufende Inferenz läuft zu Ende ({@link CancellationStats})</li>
  * </ul>
  * </p>
  *
@@ -41,14 +58,14 @@ import java.util.function.Consumer;
  * Unterstütztes Modellformat:
  * <ul>
  *   <li>Input: Uint8, Shape [1, H, W, 3]</li>
- *   <li>Output: Uint8, Shape [1, numLabels]</li>
+ *   <li>Output: Uint8, Shape [1, numLabels] (dequantisiert über {@link Dequantizer})</li>
  * </ul>
  * </p>
  */
 public class Classifier {
 
-    /** TensorFlow Lite Interpreter (System Runtime) */
-    private InterpreterApi interpreter;
+    /** Inferenz-Engine (Interpreter API, System Runtime) */
+    private InferenceEngine engine;
 
     /** Liste der Klassenlabels */
     private List<String> labels;
@@ -59,8 +76,43 @@ public class Classifier {
     /** (Optional) aktuell ausgewähltes Bitmap */
     private Bitmap selectedBitmap;
 
-    /** Memory-mapped TFLite-Modell */
-    private MappedByteBuffer modelBuffer;
+    /** Wiederverwendete Ein-/Ausgabepuffer der Engine */
+    private ByteBuffer inputBuffer;
+    private ByteBuffer outputBuffer;
+    private int[] pixels;
+
+    /** Zum Eingabetensor passender Writer, siehe {@link InputWriter#forSpec} */
+    private InputWriter inputWriter;
+
+    /** Pool für die modellgroßen Zwischenbitmaps */
+    private BitmapPool bitmapPool = BitmapPool.getShared();
+
+    /** Normalisierung der Kanalwerte ({@code null}: Rohpixel für quantisierte Modelle) */
+    private InputWriter.Normalization normalization;
+
+    /** Dequantisierung der Uint8-Ausgabe anhand ihrer Quantisierungsparameter */
+    private Dequantizer dequantizer;
+
+    /** Application Context und Modell-Datei, um ein freigegebenes Modell neu zu laden */
+    private Context appContext;
+    private String modelFile;
+
+    /** Modell wurde per {@link #releaseModel()} freigegeben und wird bei Bedarf neu geladen */
+    private boolean modelReleased;
+
+    /** Beim {@link MemoryManager} angemeldete Komponenten, siehe {@link #registerMemoryComponents} */
+    private MemoryManager memoryManager;
+    private final MemoryManager.Component bufferComponent = new BufferComponent();
+    private MemoryManager.Component modelComponent;
+
+    /** Trace-Abschnitte der einzelnen Schritte, siehe {@link Tracer} */
+    private final Tracer tracer = Tracer.getShared();
+
+    /** Verworfene Anfragen und eingesparte Rechenzeit */
+    private final CancellationStats cancellationStats = new CancellationStats();
+
+    /** Index des Top-1 Ergebnisses */
+    private final int[] topIndices = new int[1];
 
     /**
      * Konstruktor für Klassifikation mit externen Label-Dateien.
@@ -85,26 +137,35 @@ public class Classifier {
         }
     }
 
+    /**
+     * Konstruktor mit beliebiger {@link InferenceEngine}.
+     *
+     * @param engine Engine, die das Modell ausführt
+     * @param labels Klassenlabels passend zur Modellausgabe
+     */
+    public Classifier(InferenceEngine engine, List<String> labels) {
+        this.engine = engine;
+        this.labels = labels;
+        this.imageSize = engine.getInputSpec().getWidth();
+    }
+
     /**
      * Initialisiert den TensorFlow Lite Interpreter mit der System-Runtime.
      *
      * <p>
      * Es wird explizit {@link TfLiteRuntime#FROM_SYSTEM_ONLY} verwendet,
-     * wodurch das Modell über Google Play Services ausgeführt wird.
+     * wodurch das Modell über Google Play Services ausgeführt wird
+     * (siehe {@link InterpreterEngine}).
      * </p>
      *
      * @param context   Android Context
      * @param modelFile Modell-Dateiname im Assets-Ordner
      */
     private void initInterpreter(Context context, String modelFile) {
+        this.appContext = context.getApplicationContext();
+        this.modelFile = modelFile;
         try {
-            this.modelBuffer = FileUtil.loadMappedFile(context, modelFile);
-
-            this.interpreter = InterpreterApi.create(
-                    modelBuffer,
-                    new InterpreterApi.Options()
-                            .setRuntime(TfLiteRuntime.FROM_SYSTEM_ONLY)
-            );
+            this.engine = new InterpreterEngine(context, modelFile);
         } catch (IOException e) {
             throw new RuntimeException("TFLite Model Fehler!", e);
         }
@@ -122,71 +183,77 @@ public class Classifier {
      * @param callback Callback zur Ausgabe des Klassifikationsergebnisses
      */
     public void classify(Bitmap bitmap, Consumer<String> callback) {
+        classify(bitmap, null, callback);
+    }
+
+    /**
+     * Wie {@link #classify(Bitmap, Consumer)}, verwirft die Anfrage aber, sobald
+     * das Token abgebrochen oder seine Frist abgelaufen ist: vor der
+     * Vorverarbeitung, vor der Inferenz und während der Inferenz.
+     *
+     * @param bitmap   Eingabebild
+     * @param token    Frist und Abbruchsignal oder {@code null}
+     * @param callback Callback zur Ausgabe des Ergebnisses bzw. des Verwerfens
+     */
+    public synchronized void classify(Bitmap bitmap, RequestToken token, Consumer<String> callback) {
 
-        if (interpreter == null) {
+        if (engine == null && !modelReleased) {
             callback.accept("Interpreter nicht initialisiert");
             return;
         }
-
-        // Eingabe-Tensor-Shape ermitteln
-        int[] shape = interpreter.getInputTensor(0).shape();
-        int INPUT_HEIGHT = shape[1];
-        int INPUT_WIDTH = shape[2];
-
-        // Bitmap auf Modellgröße skalieren
-        Bitmap scaled = Bitmap.createScaledBitmap(
-                bitmap, INPUT_WIDTH, INPUT_HEIGHT, true
-        );
-
-        // ByteBuffer für Uint8-RGB-Daten
-        ByteBuffer inputBuffer =
-                ByteBuffer.allocateDirect(INPUT_HEIGHT * INPUT_WIDTH * 3);
-        inputBuffer.order(ByteOrder.nativeOrder());
-
-        int[] pixels = new int[INPUT_WIDTH * INPUT_HEIGHT];
-        scaled.getPixels(
-                pixels, 0, INPUT_WIDTH, 0, 0, INPUT_WIDTH, INPUT_HEIGHT
-        );
-
-        // Pixel von ARGB → RGB (Uint8)
-        int pixelIndex = 0;
-        for (int y = 0; y < INPUT_HEIGHT; y++) {
-            for (int x = 0; x < INPUT_WIDTH; x++) {
-                int pixel = pixels[pixelIndex++];
-                inputBuffer.put((byte) ((pixel >> 16) & 0xFF)); // R
-                inputBuffer.put((byte) ((pixel >> 8) & 0xFF));  // G
-                inputBuffer.put((byte) (pixel & 0xFF));         // B
+        long start = System.nanoTime();
+        try {
+            // Veraltete Anfragen (z. B. während des Wartens auf die Sperre) verwerfen
+            if (token != null) {
+                token.check("preprocess");
             }
+        } catch (RequestCancelledException e) {
+            dropped(e, start, callback);
+            return;
+        }
+        try {
+            ensureBuffers();
+        } catch (IllegalStateException e) {
+            callback.accept(e.getMessage());
+            return;
         }
 
-        inputBuffer.rewind();
+        // Eingabe-Tensor-Shape ermitteln
+        TensorSpec inputSpec = engine.getInputSpec();
+        int INPUT_HEIGHT = inputSpec.getHeight();
+        int INPUT_WIDTH = inputSpec.getWidth();
 
-        // Output-Buffer (Uint8)
-        ByteBuffer outputBuffer =
-                ByteBuffer.allocateDirect(labels.size());
-        outputBuffer.order(ByteOrder.nativeOrder());
+        // Bitmap auf Modellgröße skalieren (Zwischenbitmap aus dem Pool)
+        try (Tracer.Section section = tracer.section("preprocess.scale")) {
+            Bitmap scaled = bitmapPool.getScaled(bitmap, INPUT_WIDTH, INPUT_HEIGHT);
 
-        try {
-            interpreter.run(inputBuffer, outputBuffer);
-            outputBuffer.rewind();
+            scaled.getPixels(
+                    pixels, 0, INPUT_WIDTH, 0, 0, INPUT_WIDTH, INPUT_HEIGHT
+            );
+            bitmapPool.put(scaled);
+        }
 
-            byte[] rawOutput = new byte[labels.size()];
-            outputBuffer.get(rawOutput);
+        // Pixel von ARGB → Eingabetyp des Modells (Uint8: RGB-Rohpixel)
+        try (Tracer.Section section = tracer.section("preprocess.fill")) {
+            inputWriter.write(pixels, 0, INPUT_WIDTH * INPUT_HEIGHT, inputBuffer, 0);
+        }
 
-            // Output in Wahrscheinlichkeiten umwandeln
-            float[] probs = new float[labels.size()];
-            for (int i = 0; i < rawOutput.length; i++) {
-                probs[i] = (rawOutput[i] & 0xFF) / 255.0f;
+        try {
+            try (Tracer.Section section = tracer.section("inference")) {
+                engine.run(inputBuffer, outputBuffer, token);
             }
-
-            // Top-1 Ergebnis bestimmen
-            int maxIndex = 0;
-            float maxProb = 0;
-            for (int i = 0; i < probs.length; i++) {
-                if (probs[i] > maxProb) {
-                    maxProb = probs[i];
-                    maxIndex = i;
+            cancellationStats.recordCompleted(System.nanoTime() - start);
+
+            // Top-1 direkt auf den quantisierten Bytes bestimmen,
+            // nur dieser Wert wird dequantisiert
+            int maxIndex;
+            float maxProb;
+            try (Tracer.Section section = tracer.section("postprocess.topk")) {
+                if (dequantizer.topK(outputBuffer, labels.size(), topIndices) == 0) {
+                    throw new InferenceException("Modell liefert keine Klassen");
                 }
+                maxIndex = topIndices[0];
+                maxProb = dequantizer.dequantize(outputBuffer.get(maxIndex));
             }
 
             callback.accept(
@@ -194,6 +261,8 @@ public class Classifier {
                             String.format(" (%.2f%%)", maxProb * 100)
             );
 
+        } catch (RequestCancelledException e) {
+            dropped(e, start, callback);
         } catch (Exception e) {
             callback.accept("Fehler bei Inference: " + e.getMessage());
         }
@@ -212,45 +281,70 @@ public class Classifier {
      */
     public void classifyWithTensorImage(Bitmap bitmap,
                                         Consumer<String> callback) {
+        classifyWithTensorImage(bitmap, null, callback);
+    }
+
+    /**
+     * Wie {@link #classifyWithTensorImage(Bitmap, Consumer)} mit Frist und
+     * Abbruch über ein {@link RequestToken}.
+     *
+     * @param bitmap   Eingabebild
+     * @param token    Frist und Abbruchsignal oder {@code null}
+     * @param callback Callback für das Ergebnis bzw. das Verwerfen
+     */
+    public synchronized void classifyWithTensorImage(Bitmap bitmap, RequestToken token,
+                                                     Consumer<String> callback) {
 
-        if (interpreter == null) {
+        if (engine == null && !modelReleased) {
             callback.accept("Interpreter nicht initialisiert");
             return;
         }
+        long start = System.nanoTime();
+        try {
+            if (token != null) {
+                token.check("preprocess");
+            }
+        } catch (RequestCancelledException e) {
+            dropped(e, start, callback);
+            return;
+        }
+        try {
+            ensureBuffers();
+        } catch (IllegalStateException e) {
+            callback.accept(e.getMessage());
+            return;
+        }
 
-        ImageProcessor imageProcessor =
-                new ImageProcessor.Builder()
-                        .add(new ResizeOp(
-                                imageSize,
-                                imageSize,
-                                ResizeOp.ResizeMethod.BILINEAR))
-                        .build();
-
-        TensorImage tensorImage =
-                imageProcessor.process(TensorImage.fromBitmap(bitmap));
+        ByteBuffer imageBuffer;
+        try (Tracer.Section section = tracer.section("preprocess.tensorImage")) {
+            ImageProcessor imageProcessor =
+                    new ImageProcessor.Builder()
+                            .add(new ResizeOp(
+                                    imageSize,
+                                    imageSize,
+                                    ResizeOp.ResizeMethod.BILINEAR))
+                            .build();
 
-        ByteBuffer inputBuffer = tensorImage.getBuffer();
+            TensorImage tensorImage =
+                    imageProcessor.process(TensorImage.fromBitmap(bitmap));
 
-        ByteBuffer outputBuffer =
-                ByteBuffer.allocateDirect(labels.size());
-        outputBuffer.order(ByteOrder.nativeOrder());
+            imageBuffer = tensorImage.getBuffer();
+        }
 
         try {
-            interpreter.run(inputBuffer, outputBuffer);
-            outputBuffer.rewind();
-
-            float[] probs = new float[labels.size()];
-            for (int i = 0; i < probs.length; i++) {
-                probs[i] = (outputBuffer.get() & 0xFF) / 255f;
+            try (Tracer.Section section = tracer.section("inference")) {
+                engine.run(imageBuffer, outputBuffer, token);
             }
+            cancellationStats.recordCompleted(System.nanoTime() - start);
 
-            int maxIndex = 0;
-            float maxProb = 0;
-            for (int i = 0; i < probs.length; i++) {
-                if (probs[i] > maxProb) {
-                    maxProb = probs[i];
-                    maxIndex = i;
+            int maxIndex;
+            float maxProb;
+            try (Tracer.Section section = tracer.section("postprocess.topk")) {
+                if (dequantizer.topK(outputBuffer, labels.size(), topIndices) == 0) {
+                    throw new InferenceException("Modell liefert keine Klassen");
                 }
+                maxIndex = topIndices[0];
+                maxProb = dequantizer.dequantize(outputBuffer.get(maxIndex));
             }
 
             callback.accept(
@@ -258,8 +352,265 @@ public class Classifier {
                             String.format(" (%.2f%%)", maxProb * 100)
             );
 
+        } catch (RequestCancelledException e) {
+            dropped(e, start, callback);
         } catch (Exception e) {
             callback.accept("Fehler bei Inference: " + e.getMessage());
         }
     }
+
+    /** Zählt eine verworfene Anfrage und meldet sie an den Aufrufer */
+    private void dropped(RequestCancelledException e, long start, Consumer<String> callback) {
+        cancellationStats.recordDropped(e, System.nanoTime() - start);
+        callback.accept("Verworfen: " + e.getMessage());
+    }
+
+    /** @return Statistik verworfener Anfragen */
+    public CancellationStats getCancellationStats() {
+        return cancellationStats;
+    }
+
+    /**
+     * Legt die Ein-/Ausgabepuffer passend zur Engine einmalig an
+     * (bzw. nach {@link #releaseBuffers()} erneut).
+     */
+    private void ensureBuffers() {
+        engine();
+        if (inputWriter == null) {
+            inputWriter = InputWriter.forSpec(engine.getInputSpec(), normalization);
+        }
+        if (inputBuffer != null) {
+            return;
+        }
+        inputBuffer = ByteBuffer.allocateDirect(engine.getInputSpec().getByteSize());
+        inputBuffer.order(ByteOrder.nativeOrder());
+        outputBuffer = ByteBuffer.allocateDirect(engine.getOutputSpec().getByteSize());
+        outputBuffer.order(ByteOrder.nativeOrder());
+        pixels = new int[engine.getInputSpec().getWidth() * engine.getInputSpec().getHeight()];
+        dequantizer = new Dequantizer(engine.getOutputSpec());
+    }
+
+    /**
+     * Setzt die Normalisierung der Kanalwerte. Ohne Normalisierung ({@code null})
+     * erhalten quantisierte Modelle die Rohpixel (Standard).
+     * Der passende {@link InputWriter} wird beim nächsten Aufruf neu gewählt.
+     *
+     * @param normalization Mittelwert und Standardabweichung der Eingabe oder {@code null}
+     */
+    public synchronized void setNormalization(InputWriter.Normalization normalization) {
+        this.normalization = normalization;
+        this.inputWriter = null;
+    }
+
+    /**
+     * Setzt den Pool für Zwischenbitmaps (Standard: {@link BitmapPool#getShared()}).
+     *
+     * @param bitmapPool zu verwendender Pool
+     */
+    public void setBitmapPool(BitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+    }
+
+    /**
+     * Gibt die verwendete Engine zurück und lädt ein freigegebenes Modell
+     * dabei neu.
+     *
+     * @return aktuelle {@link InferenceEngine}
+     */
+    public InferenceEngine getEngine() {
+        return engine();
+    }
+
+    /**
+     * Meldet Buffer und Modell dieses Klassifikators beim {@link MemoryManager} an.
+     *
+     * @param manager   Manager, z. B. {@link MemoryManager#getShared()}
+     * @param secondary true = zusätzliche Modellinstanz, die vor dem
+     *                  Hauptmodell freigegeben wird ({@link MemoryManager#PRIORITY_SECONDARY})
+     */
+    public synchronized void registerMemoryComponents(MemoryManager manager, boolean secondary) {
+        if (memoryManager != null) {
+            memoryManager.unregister(bufferComponent);
+            memoryManager.unregister(modelComponent);
+        }
+        memoryManager = manager;
+        modelComponent = new ModelComponent(
+                secondary ? MemoryManager.PRIORITY_SECONDARY : MemoryManager.PRIORITY_MODEL);
+        manager.register(bufferComponent);
+        manager.register(modelComponent);
+    }
+
+    /**
+     * Gibt Ein-/Ausgabebuffer und Zwischenspeicher frei. Wartet auf eine
+     * laufende Inferenz; der nächste Aufruf legt die Buffer neu an.
+     */
+    public synchronized void releaseBuffers() {
+        inputBuffer = null;
+        outputBuffer = null;
+        pixels = null;
+    }
+
+    /**
+     * Schließt das Modell, bis es wieder benötigt wird. Wartet auf eine
+     * laufende Inferenz; der nächste Aufruf lädt das Modell neu.
+     * Klassifikatoren mit fremder Engine ({@link #Classifier(InferenceEngine, List)})
+     * können ihr Modell nicht neu laden und behalten es.
+     *
+     * @return true wenn das Modell freigegeben wurde
+     */
+    public synchronized boolean releaseModel() {
+        if (engine == null || appContext == null) {
+            return false;
+        }
+        engine.close();
+        engine = null;
+        modelReleased = true;
+        return true;
+    }
+
+    /**
+     * Liefert die Engine und lädt ein per {@link #releaseModel()} freigegebenes
+     * Modell dabei neu.
+     *
+     * @return Engine oder {@code null}, wenn das Modell nie geladen werden konnte
+     * @throws IllegalStateException wenn das erneute Laden fehlschlägt
+     */
+    private synchronized InferenceEngine engine() {
+        if (engine == null && modelReleased) {
+            try {
+                engine = new InterpreterEngine(appContext, modelFile);
+                modelReleased = false;
+            } catch (Exception e) {
+                throw new IllegalStateException("Modell konnte nicht neu geladen werden: " + e.getMessage(), e);
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Gibt die Ressourcen des Interpreters frei und meldet den Klassifikator
+     * beim {@link MemoryManager} ab.
+     */
+    public synchronized void close() {
+        if (memoryManager != null) {
+            memoryManager.unregister(bufferComponent);
+            memoryManager.unregister(modelComponent);
+            memoryManager = null;
+        }
+        modelReleased = false;
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    /**
+     * Schlüsselt den geschätzten Speicherbedarf des Klassifikators auf:
+     * Modell (gemappte Datei, Runtime-Kopie und TensorBuffer), Direct-Buffer,
+     * Zwischenspeicher im Heap und Labels. Liest ohne Sperre und blockiert
+     * daher nicht während einer laufenden Inferenz.
+     *
+     * @return Aufschlüsselung; ein per {@link #releaseModel()} freigegebenes
+     * Modell zählt nicht mit
+     */
+    public MemoryFootprint getFootprint() {
+        String name = modelFile != null ? modelFile : "Engine";
+        MemoryFootprint footprint = new MemoryFootprint();
+        InferenceEngine current = engine;
+        if (current != null) {
+            long mapped = current.getMappedBytes();
+            footprint.add("Modell[" + name + "]", 0, current.getNativeBytes() - mapped, mapped);
+        }
+        footprint.add("Buffer[" + name + "]", bufferComponent.getHeapBytes(), bufferComponent.getNativeBytes(), 0);
+        footprint.add("Labels[" + name + "]", labelBytes(labels), 0, 0);
+        return footprint;
+    }
+
+    /**
+     * Schätzung für die Labels: je String etwa 16 Bytes Objektkopf plus ein
+     * Byte pro Zeichen (ART speichert ASCII komprimiert im String-Objekt),
+     * auf 8 Bytes ausgerichtet, dazu die Referenz in der Liste.
+     */
+    private static long labelBytes(List<String> labels) {
+        if (labels == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (String label : labels) {
+            bytes += ((16 + label.length() + 7) & ~7) + 4;
+        }
+        return bytes;
+    }
+
+    private static long capacity(ByteBuffer buffer) {
+        return buffer != null ? buffer.capacity() : 0;
+    }
+
+    /**
+     * Ein-/Ausgabebuffer und Pixelarray als {@link MemoryManager.Component}.
+     * Die Größen werden ohne Sperre gelesen und sind daher nur Schätzwerte.
+     */
+    private class BufferComponent implements MemoryManager.Component {
+
+        @Override
+        public String getName() {
+            return "Buffer[" + (modelFile != null ? modelFile : "Engine") + "]";
+        }
+
+        @Override
+        public int getPriority() {
+            return MemoryManager.PRIORITY_BUFFERS;
+        }
+
+        @Override
+        public long getNativeBytes() {
+            return capacity(inputBuffer) + capacity(outputBuffer);
+        }
+
+        @Override
+        public long getHeapBytes() {
+            int[] currentPixels = pixels;
+            return currentPixels != null ? 4L * currentPixels.length : 0;
+        }
+
+        @Override
+        public void release() {
+            releaseBuffers();
+        }
+    }
+
+    /** Geladenes Modell als {@link MemoryManager.Component} */
+    private class ModelComponent implements MemoryManager.Component {
+
+        private final int priority;
+
+        ModelComponent(int priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public String getName() {
+            return "Modell[" + (modelFile != null ? modelFile : "Engine") + "]";
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public long getNativeBytes() {
+            InferenceEngine current = engine;
+            return current != null ? current.getNativeBytes() : 0;
+        }
+
+        @Override
+        public long getHeapBytes() {
+            return 0;
+        }
+
+        @Override
+        public void release() {
+            releaseModel();
+        }
+    }
 }
@@ -0,0 +1,79 @@
+package com.example.seminarlitert;
+
+import com.example.common.InferenceException;
+import com.example.common.RequestCancelledException;
+import com.example.common.RequestToken;
+import com.example.common.TensorSpec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @interface InferenceEngine
+ * @brief Runtime-unabhängige Schnittstelle für die Ausführung eines Modells.
+ * <p>
+ * Entkoppelt den {@link Classifier} von der konkreten Runtime
+ * (hier: {@link InterpreterEngine} mit der Interpreter API).
+ * <p>
+ * Ein- und Ausgabe werden als Direct-{@link ByteBuffer} in nativer Byte-Reihenfolge
+ * übergeben. Gelesen bzw. geschrieben wird immer ab Index 0 im Layout der
+ * jeweiligen {@link TensorSpec}; die Positionen der Buffer bleiben unverändert.
+ */
+public interface InferenceEngine extends AutoCloseable {
+
+    /** @return Beschreibung des Eingabetensors */
+    TensorSpec getInputSpec();
+
+    /** @return Beschreibung des Ausgabetensors */
+    TensorSpec getOutputSpec();
+
+    /**
+     * Führt eine Inferenz aus.
+     *
+     * @param input  Eingabedaten gemäß {@link #getInputSpec()}
+     * @param output Zielbuffer gemäß {@link #getOutputSpec()}
+     * @throws InferenceException wenn die Inferenz fehlschlägt
+     */
+    void run(ByteBuffer input, ByteBuffer output) throws InferenceException;
+
+    /**
+     * Führt eine Inferenz für eine Anfrage mit Frist aus. Ohne Unterstützung
+     * der Runtime wird nur vor der Inferenz geprüft; Engines, die eine
+     * laufende Inferenz abbrechen können, überschreiben diese Methode.
+     *
+     * @param input  Eingabedaten gemäß {@link #getInputSpec()}
+     * @param output Zielbuffer gemäß {@link #getOutputSpec()}
+     * @param token  Frist und Abbruchsignal oder {@code null}
+     * @throws RequestCancelledException wenn die Anfrage vorher oder währenddessen verworfen wurde
+     * @throws InferenceException        wenn die Inferenz fehlschlägt
+     */
+    default void run(ByteBuffer input, ByteBuffer output, RequestToken token) throws InferenceException {
+        if (token != null) {
+            token.check("inference");
+        }
+        run(input, output);
+    }
+
+    /** @return lesbarer Name der Engine (z. B. für Logs) */
+    String getName();
+
+    /**
+     * @return geschätzter nativer Speicherbedarf in Bytes (Modell und
+     * Tensorbuffer der Runtime), 0 wenn unbekannt
+     */
+    long getNativeBytes();
+
+    /**
+     * @return Anteil von {@link #getNativeBytes()}, der dateibasiert gemappt
+     * ist (z. B. die per mmap geladene Modelldatei) und vom System ohne
+     * Datenverlust verworfen werden kann, 0 wenn unbekannt
+     */
+    default long getMappedBytes() {
+        return 0;
+    }
+
+    /**
+     * Gibt alle Ressourcen der Engine frei.
+     */
+    @Override
+    void close();
+}
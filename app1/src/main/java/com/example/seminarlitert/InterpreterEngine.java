@@ -0,0 +1,141 @@
+package com.example.seminarlitert;
+
+import android.content.Context;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.InterpreterApi;
+import org.tensorflow.lite.InterpreterApi.Options.TfLiteRuntime;
+import org.tensorflow.lite.Tensor;
+import org.tensorflow.lite.support.common.FileUtil;
+
+import com.example.common.ElementType;
+import com.example.common.InferenceException;
+import com.example.common.RequestToken;
+import com.example.common.TensorSpec;
+import com.example.common.Tracer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+
+/**
+ * @class InterpreterEngine
+ * @brief {@link InferenceEngine} auf Basis der TensorFlow Lite {@link InterpreterApi}.
+ *
+ * <p>
+ * Verwendet die System-Runtime aus Google Play Services
+ * ({@link TfLiteRuntime#FROM_SYSTEM_ONLY}). Shape, Datentyp und
+ * Quantisierung werden direkt von den Tensoren des Interpreters gelesen.
+ * </p>
+ *
+ * <p>
+ * Anfragen mit {@link RequestToken} werden wie in den anderen Apps nur vor der
+ * Inferenz geprüft: {@link InterpreterApi} bietet zwar
+ * {@code Options#setCancellable}, aber keine öffentliche Methode, eine laufende
+ * Inferenz abzubrechen.
+ * </p>
+ */
+public class InterpreterEngine implements InferenceEngine {
+
+    /** TensorFlow Lite Interpreter (System Runtime) */
+    private final InterpreterApi interpreter;
+
+    /** Memory-mapped TFLite-Modell */
+    private final MappedByteBuffer modelBuffer;
+
+    private final String modelFile;
+    private final TensorSpec inputSpec;
+    private final TensorSpec outputSpec;
+
+    /** Trace-Abschnitt für {@code interpreter.run} */
+    private final Tracer tracer = Tracer.getShared();
+
+    /**
+     * Lädt das Modell aus den Assets und erstellt den Interpreter.
+     *
+     * @param context   Android Context
+     * @param modelFile Modell-Dateiname im Assets-Ordner
+     * @throws IOException wenn das Modell nicht geladen werden kann
+     */
+    public InterpreterEngine(Context context, String modelFile) throws IOException {
+        this.modelFile = modelFile;
+        this.modelBuffer = FileUtil.loadMappedFile(context, modelFile);
+        this.interpreter = InterpreterApi.create(
+                modelBuffer,
+                new InterpreterApi.Options()
+                        .setRuntime(TfLiteRuntime.FROM_SYSTEM_ONLY)
+        );
+        this.inputSpec = toSpec(interpreter.getInputTensor(0));
+        this.outputSpec = toSpec(interpreter.getOutputTensor(0));
+    }
+
+    /**
+     * Übersetzt einen Interpreter-Tensor in eine {@link TensorSpec}.
+     *
+     * @param tensor Tensor des Interpreters
+     * @return runtime-unabhängige Beschreibung
+     */
+    static TensorSpec toSpec(Tensor tensor) {
+        Tensor.QuantizationParams quant = tensor.quantizationParams();
+        return new TensorSpec(tensor.shape(), toElementType(tensor.dataType()),
+                quant.getScale(), quant.getZeroPoint());
+    }
+
+    private static ElementType toElementType(DataType dataType) {
+        switch (dataType) {
+            case UINT8:
+                return ElementType.UINT8;
+            case INT8:
+                return ElementType.INT8;
+            case FLOAT32:
+                return ElementType.FLOAT32;
+            default:
+                throw new IllegalArgumentException("Nicht unterstützter Tensortyp: " + dataType);
+        }
+    }
+
+    @Override
+    public TensorSpec getInputSpec() {
+        return inputSpec;
+    }
+
+    @Override
+    public TensorSpec getOutputSpec() {
+        return outputSpec;
+    }
+
+    @Override
+    public void run(ByteBuffer input, ByteBuffer output) throws InferenceException {
+        ByteBuffer in = input.duplicate().order(ByteOrder.nativeOrder());
+        in.rewind();
+        ByteBuffer out = output.duplicate().order(ByteOrder.nativeOrder());
+        out.rewind();
+        try (Tracer.Section section = tracer.section("interpreter.run")) {
+            interpreter.run(in, out);
+        } catch (Exception e) {
+            throw new InferenceException("Fehler bei Inference: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Interpreter[" + modelFile + "]";
+    }
+
+    @Override
+    public long getNativeBytes() {
+        return modelBuffer.capacity() + inputSpec.getByteSize() + outputSpec.getByteSize();
+    }
+
+    /** Der Interpreter arbeitet direkt auf der per mmap geladenen Modelldatei. */
+    @Override
+    public long getMappedBytes() {
+        return modelBuffer.capacity();
+    }
+
+    @Override
+    public void close() {
+        interpreter.close();
+    }
+}
@@ -3,12 +3,12 @@ package com.example.seminarlitert;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
-import android.provider.MediaStore;
 import android.util.Log;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.Switch;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
@@ -19,7 +19,24 @@ import com.google.android.gms.tflite.java.TfLite;
 
 import org.tensorflow.lite.InterpreterApi;
 
+import com.example.common.BitmapPool;
+import com.example.common.MemoryFootprint;
+import com.example.common.MemoryManager;
+import com.example.common.MemorySampler;
+import com.example.common.RequestToken;
+import com.example.common.Tracer;
+
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * @class MainActivity
@@ -36,6 +53,8 @@ import java.io.IOException;
  *   - TENSOR_IMAGE: TensorImage + ImageProcessor Pipeline
  * - Nutzt die TensorFlow Lite Interpreter API (InterpreterApi)
  * - Labels werden aus "labels.txt" geladen
+ * - Klassifikation im Hintergrund mit Frist; ein neues Bild oder ein neuer
+ *   Klick bricht die vorherige Anfrage ab ({@link RequestToken})
  */
 public class MainActivity extends AppCompatActivity {
 
@@ -57,6 +76,43 @@ public class MainActivity extends AppCompatActivity {
     /** Bildklassifikator */
     private Classifier classifier;
 
+    /** Pool für dekodierte Bitmaps */
+    private final BitmapPool bitmapPool = BitmapPool.getShared();
+
+    /** Gibt Pool, Buffer und Modell bei Speicherdruck frei */
+    private final MemoryManager memoryManager = MemoryManager.getShared();
+
+    /** Trace-Abschnitte der Klassifikation, Export per langem Klick auf das Ergebnis */
+    private final Tracer tracer = Tracer.getShared();
+
+    /** Anzahl Anfragen im Trace-Export */
+    private static final int TRACE_EXPORT_REQUESTS = 20;
+
+    /** Abstand der Speichermessungen, solange die App sichtbar ist */
+    private static final long MEMORY_SAMPLE_INTERVAL_MS = 5000;
+
+    /** Anzahl Speichermessungen im Ringpuffer (eine Stunde) */
+    private static final int MEMORY_SAMPLES = 720;
+
+    /** Speichermessungen, Export zusammen mit dem Trace */
+    private final MemorySampler memorySampler = new MemorySampler(this::currentFootprint, tracer, MEMORY_SAMPLES);
+
+    /** Frist einer Klassifikation ab dem Klick */
+    private static final long CLASSIFY_DEADLINE_MS = 2000;
+
+    /** Hintergrundthread für die Klassifikation */
+    private final ExecutorService classifyExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "Classify"));
+
+    /** Token der zuletzt gestarteten Anfrage (nur im UI-Thread verwendet) */
+    private RequestToken currentToken;
+
+    /**
+     * Bilder, auf die noch eine Klassifikation zugreift, mit Anzahl Anfragen;
+     * sie gehen erst danach an den Pool zurück (nur im UI-Thread verwendet)
+     */
+    private final Map<Bitmap, Integer> bitmapsInUse = new IdentityHashMap<>();
+
     /** Aktuell ausgewählter Klassifikationsmodus */
     ClassifyMode mode = ClassifyMode.NORMAL;
 
@@ -98,10 +154,14 @@ public class MainActivity extends AppCompatActivity {
         buttonClassify = findViewById(R.id.buttonClassify);
         textViewResult = findViewById(R.id.textViewResult);
 
+        memoryManager.register(bitmapPool);
+
         // TensorFlow Lite Interpreter initialisieren
         Task<Void> initializeTask = TfLite.initialize(this);
         initializeTask.addOnSuccessListener(a -> {
                     classifier = new Classifier(this, "mobilenetv1.tflite", "labels.txt", IMAGE_SIZE);
+                    classifier.registerMemoryComponents(memoryManager, false);
+                    memorySampler.markState("CPU");
                 })
                 .addOnFailureListener(e -> {
                     Log.e("Interpreter", String.format(
@@ -121,21 +181,114 @@ public class MainActivity extends AppCompatActivity {
             // Klassifikationsmodus auswählen
             mode = switchMethod.isChecked() ? ClassifyMode.TENSOR_IMAGE : ClassifyMode.NORMAL;
 
-            switch (mode) {
-                case NORMAL:
-                    classifier.classify(selectedBitmap, result -> runOnUiThread(() ->
-                            textViewResult.setText("Ergebnis: " + result)
-                    ));
-                    break;
-                case TENSOR_IMAGE:
-                    classifier.classifyWithTensorImage(selectedBitmap, result -> runOnUiThread(() ->
-                            textViewResult.setText("Ergebnis: " + result)
-                    ));
-                    break;
+            try (Tracer.Section request = tracer.request("classify." + mode)) {
+                long requestId = request.getRequest();
+                // Vorherige Anfrage wird nicht mehr angezeigt
+                cancelCurrentRequest();
+                RequestToken token = RequestToken.withTimeout(CLASSIFY_DEADLINE_MS);
+                currentToken = token;
+                Classifier current = classifier;
+                Bitmap bitmap = selectedBitmap;
+                ClassifyMode requestMode = mode;
+                acquireBitmap(bitmap);
+                classifyExecutor.execute(() -> {
+                    try (Tracer.Section section = tracer.section("classify.background", requestId)) {
+                        switch (requestMode) {
+                            case NORMAL:
+                                current.classify(bitmap, token, result -> showResult(result, requestId, token));
+                                break;
+                            case TENSOR_IMAGE:
+                                current.classifyWithTensorImage(bitmap, token,
+                                        result -> showResult(result, requestId, token));
+                                break;
+                        }
+                    } finally {
+                        runOnUiThread(() -> releaseBitmap(bitmap));
+                    }
+                });
+            }
+        });
+
+        // Langer Klick auf das Ergebnis: Trace der letzten Anfragen exportieren
+        textViewResult.setOnLongClickListener(v -> {
+            exportTrace();
+            return true;
+        });
+    }
+
+    /**
+     * Zeigt ein Ergebnis im UI-Thread an, sofern die Anfrage noch aktuell ist.
+     *
+     * @param result    Ergebnistext
+     * @param requestId Anfrage im {@link Tracer}
+     * @param token     Token der Anfrage
+     */
+    private void showResult(String result, long requestId, RequestToken token) {
+        runOnUiThread(() -> {
+            if (token != currentToken) {
+                // Abgelöste Anfrage: Ergebnis gehört zu einem anderen Bild
+                return;
+            }
+            try (Tracer.Section section = tracer.section("ui.callback", requestId)) {
+                textViewResult.setText("Ergebnis: " + result);
             }
+            Log.d("Classifier", classifier.getCancellationStats().toString());
         });
     }
 
+    /** Markiert ein Bild als von einer Klassifikation verwendet (UI-Thread). */
+    private void acquireBitmap(Bitmap bitmap) {
+        Integer count = bitmapsInUse.get(bitmap);
+        bitmapsInUse.put(bitmap, count != null ? count + 1 : 1);
+    }
+
+    /**
+     * Gibt ein Bild nach der Klassifikation frei; wird es nicht mehr angezeigt,
+     * geht es an den Pool zurück (UI-Thread).
+     */
+    private void releaseBitmap(Bitmap bitmap) {
+        Integer count = bitmapsInUse.get(bitmap);
+        if (count != null && count > 1) {
+            bitmapsInUse.put(bitmap, count - 1);
+            return;
+        }
+        bitmapsInUse.remove(bitmap);
+        if (bitmap != selectedBitmap) {
+            bitmapPool.put(bitmap);
+        }
+    }
+
+    /**
+     * Bricht die laufende bzw. wartende Klassifikation ab.
+     */
+    private void cancelCurrentRequest() {
+        if (currentToken != null) {
+            currentToken.cancel();
+            currentToken = null;
+        }
+    }
+
+    /**
+     * Schreibt die Trace-Abschnitte der letzten Anfragen als Chrome-Trace-JSON
+     * nach {@code files/trace.json} (per {@code adb pull} z. B. in
+     * ui.perfetto.dev öffnen). Die Speichermessungen stehen dort als
+     * Zählerspuren und vollständig in {@code files/memory.csv}.
+     */
+    private void exportTrace() {
+        File file = new File(getFilesDir(), "trace.json");
+        File memoryFile = new File(getFilesDir(), "memory.csv");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+             Writer memoryOut = new OutputStreamWriter(new FileOutputStream(memoryFile), StandardCharsets.UTF_8)) {
+            tracer.exportChromeTrace(out, TRACE_EXPORT_REQUESTS);
+            memorySampler.exportCsv(memoryOut);
+            Log.i("MemoryFootprint", currentFootprint().toString());
+            Toast.makeText(this, "Trace gespeichert: " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            e.printStackTrace();
+            Toast.makeText(this, "Trace konnte nicht gespeichert werden", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     /**
      * Startet den Galerie-Picker.
      */
@@ -143,16 +296,87 @@ public class MainActivity extends AppCompatActivity {
         galleryLauncher.launch("image/*");
     }
 
+    /**
+     * Geschätzter Speicherbedarf von Klassifikator, Bitmap-Pool und
+     * angezeigtem Bild für den {@link MemorySampler}. Wird im Messthread
+     * aufgerufen und liest die Felder daher nur einmal.
+     */
+    private MemoryFootprint currentFootprint() {
+        MemoryFootprint footprint = new MemoryFootprint();
+        Classifier current = classifier;
+        if (current != null) {
+            footprint.addAll(current.getFootprint());
+        }
+        footprint.add("BitmapPool", bitmapPool.getHeapBytes(), bitmapPool.getNativeBytes(), 0);
+        Bitmap bitmap = selectedBitmap;
+        if (bitmap != null && !bitmap.isRecycled()) {
+            // Pixel liegen ab Android 8 im nativen Speicher
+            footprint.add("Angezeigtes Bild", 0, bitmap.getAllocationByteCount(), 0);
+        }
+        return footprint;
+    }
+
+    /** Misst den Speicher periodisch, solange die App sichtbar ist. */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        memorySampler.start(MEMORY_SAMPLE_INTERVAL_MS);
+    }
+
+    @Override
+    protected void onStop() {
+        memorySampler.stop();
+        super.onStop();
+    }
+
+    /** Beendet den Messthread des {@link MemorySampler}. */
+    @Override
+    protected void onDestroy() {
+        memorySampler.close();
+        super.onDestroy();
+    }
+
+    /**
+     * Gibt bei Speicherdruck Pool, Buffer und Modell gestaffelt frei
+     * (siehe {@link MemoryManager#onTrimMemory(int)}). Alles wird beim
+     * nächsten Klassifizieren automatisch neu angelegt.
+     *
+     * @param level Stufe des Speicherdrucks
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Freigabe wartet ggf. auf eine laufende Inferenz, daher nicht im UI-Thread
+        memoryManager.onTrimMemoryAsync(level, freed -> {
+            Log.i("MemoryManager", String.format(Locale.US, "onTrimMemory(%d): %.1f MB freigegeben",
+                    level, freed / 1e6));
+            Log.d("MemoryManager", memoryManager.getStats());
+            Log.d("MemoryFootprint", currentFootprint().toString());
+        });
+    }
+
     /**
      * Lädt ein Bild aus der Galerie und zeigt es im ImageView an.
      *
      * @param uri URI des ausgewählten Bildes
      */
     private void loadImage(Uri uri) {
-        try {
-            selectedBitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), uri);
+        // Ergebnis für das alte Bild wird nicht mehr gebraucht
+        cancelCurrentRequest();
+        try (Tracer.Section request = tracer.request("loadImage")) {
+            Bitmap previous = selectedBitmap;
+            try (Tracer.Section section = tracer.section("decode")) {
+                selectedBitmap = bitmapPool.decode(getContentResolver(), uri, 0);
+            }
             imageView.setImageBitmap(selectedBitmap);
 
+            // Vorheriges Bild wird nicht mehr angezeigt und kann wiederverwendet werden,
+            // sobald keine (abgebrochene) Klassifikation mehr darauf zugreift
+            if (previous != null && !bitmapsInUse.containsKey(previous)) {
+                bitmapPool.put(previous);
+            }
+            Log.d("BitmapPool", bitmapPool.getStats());
+
         } catch (IOException e) {
             e.printStackTrace();
             textViewResult.setText("Fehler beim Laden des Bildes!");
@@ -34,11 +34,13 @@ android {
 }
 
 dependencies {
+    implementation(project(":common"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     implementation(libs.litert)
+    implementation(libs.litert.metadata)
 
 
 
@@ -5,14 +5,23 @@ import android.graphics.Bitmap;
 import android.widget.Toast;
 
 import com.google.ai.edge.litert.Accelerator;
-import com.google.ai.edge.litert.CompiledModel;
 import com.google.ai.edge.litert.LiteRtException;
 import com.google.ai.edge.litert.*;
 
+import com.example.common.BitmapPool;
+import com.example.common.Dequantizer;
+import com.example.common.InputWriter;
+import com.example.common.LiteRtEnvironment;
+import com.example.common.MemoryFootprint;
+import com.example.common.MemoryManager;
+import com.example.common.Tracer;
+
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
@@ -22,11 +31,15 @@ import java.util.function.Consumer;
      * @brief Bildklassifikator auf Basis von LiteRT (TensorFlow Lite Runtime) mit Compiled Model API.
      * <p>
      * Diese Klasse kapselt:
-     * - Laden eines LiteRT-Modells aus den Assets
+     * - Laden eines LiteRT-Modells aus den Assets (über {@link CompiledModelEngine})
      * - Wahl des Accelerators (CPU oder GPU) - irrelevant, da modell nicht geeignet
-     * - Vorverarbeitung eines Bitmaps (Normalisierung auf [0, 255])
+     * - Vorverarbeitung eines Bitmaps (Rohpixel [0, 255], siehe {@link InputWriter})
      * - Durchführung der Inferenz
      * - Auswertung der Top-3 Ergebnisse
+     * - Trace-Abschnitte für Skalierung, Tensorbefüllung, Inferenz und
+     *   Auswertung ({@link Tracer})
+     * - Freigabe von Buffern und Modell bei Speicherdruck ({@link MemoryManager});
+     *   beides wird beim nächsten Aufruf transparent neu angelegt
      * <p>
      * Unterstützt Uint8-Modelle mit Eingabeform:
      * [1, imageSize, imageSize, 3]
@@ -37,7 +50,42 @@ public class Classifier {
     private List<String> labels;
     //vom Modell abhängig
     private int imageSize;
-    private CompiledModel compiledModel;
+    private InferenceEngine engine;
+
+    /** Wiederverwendete Ein-/Ausgabepuffer der Engine */
+    private ByteBuffer inputBuffer;
+    private ByteBuffer outputBuffer;
+    private int[] pixels;
+
+    /** Zum Eingabetensor passender Writer, siehe {@link InputWriter#forSpec} */
+    private InputWriter inputWriter;
+
+    /** Pool für die modellgroßen Zwischenbitmaps */
+    private BitmapPool bitmapPool = BitmapPool.getShared();
+
+    /** Normalisierung der Kanalwerte ({@code null}: Rohpixel für quantisierte Modelle) */
+    private InputWriter.Normalization normalization;
+
+    /** Dequantisierung der Uint8-Ausgabe anhand ihrer Quantisierungsparameter */
+    private Dequantizer dequantizer;
+
+    /** Trace-Abschnitte der einzelnen Schritte, siehe {@link Tracer} */
+    private final Tracer tracer = Tracer.getShared();
+
+    /** Application Context und Modell-Datei, um ein freigegebenes Modell neu zu laden */
+    private Context appContext;
+    private String modelFile;
+
+    /** Modell wurde per {@link #releaseModel()} freigegeben und wird bei Bedarf neu geladen */
+    private boolean modelReleased;
+
+    /** Beim {@link MemoryManager} angemeldete Komponenten, siehe {@link #registerMemoryComponents} */
+    private MemoryManager memoryManager;
+    private final MemoryManager.Component bufferComponent = new BufferComponent();
+    private MemoryManager.Component modelComponent;
+
+    /** Indizes der Top-3 Ergebnisse */
+    private final int[] topIndices = new int[3];
     private Accelerator accelerator;
 
 
@@ -52,25 +100,7 @@ public class Classifier {
      * @throws LiteRtException wenn das Modell nicht geladen werden kann
      */
     public Classifier(Context context, String modelFile, String labelsFile, int imageSize) throws LiteRtException {
-        try {
-            this.accelerator = Accelerator.CPU;
-
-            compiledModel =
-                    CompiledModel.create(
-                            context.getAssets(),
-                            modelFile,
-                            new CompiledModel.Options(accelerator),
-                            null
-                    );
-
-            this.imageSize = imageSize;
-            this.labels = loadLabels(context, labelsFile);
-        } catch (LiteRtException e) {
-            Toast.makeText(context, "Fehler beim Laden des Modells: " + e.getMessage(), Toast.LENGTH_LONG).show();
-            e.printStackTrace();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        this(context, modelFile, labelsFile, imageSize, Accelerator.CPU);
     }
 
     /**
@@ -87,13 +117,9 @@ public class Classifier {
 
         try {
             this.accelerator = newAccelerator;
-            compiledModel =
-                    CompiledModel.create(
-                            context.getAssets(),
-                            modelFile,
-                            new CompiledModel.Options(accelerator),
-                            null
-                    );
+            this.appContext = context.getApplicationContext();
+            this.modelFile = modelFile;
+            this.engine = new CompiledModelEngine(context, modelFile, accelerator);
 
             this.imageSize = imageSize;
             this.labels = loadLabels(context, labelsFile);
@@ -106,12 +132,36 @@ public class Classifier {
     }
 
     /**
-     * Gibt die Ressourcen des Modells frei.
+     * Konstruktor mit beliebiger {@link InferenceEngine}.
+     *
+     * @param engine Engine, die das Modell ausführt
+     * @param labels Klassenlabels passend zur Modellausgabe
+     */
+    public Classifier(InferenceEngine engine, List<String> labels) {
+        this.engine = engine;
+        this.labels = labels;
+        this.imageSize = engine.getInputSpec().getWidth();
+        this.accelerator = engine instanceof CompiledModelEngine
+                ? ((CompiledModelEngine) engine).getAccelerator()
+                : Accelerator.CPU;
+    }
+
+    /**
+     * Gibt die Ressourcen des Modells frei und meldet den Klassifikator
+     * beim {@link MemoryManager} ab.
      *
      * @throws LiteRtException bei Fehlern während des Schließens
      */
-    public void close() throws LiteRtException {
-        compiledModel.close();
+    public synchronized void close() throws LiteRtException {
+        if (memoryManager != null) {
+            memoryManager.unregister(bufferComponent);
+            memoryManager.unregister(modelComponent);
+            memoryManager = null;
+        }
+        modelReleased = false;
+        if (engine != null) {
+            engine.close();
+        }
     }
 
 
@@ -120,76 +170,180 @@ public class Classifier {
      *
      * @param bitmap   Eingabebild als {@link Bitmap}
      * @param callback Callback zur Rückgabe des Ergebnis-Strings
-     * @throws LiteRtException falls die Inferenz fehlschlägt
      */
-    public void classify(Bitmap bitmap, Consumer<String> callback) throws LiteRtException {
-
-
-        List<TensorBuffer> inputBuffers = compiledModel.createInputBuffers();
-        List<TensorBuffer> outputBuffers = compiledModel.createOutputBuffers();
-
-        // Bild auf Modellgröße skalieren
-        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, imageSize, imageSize, true);
-        byte[] input = new byte[imageSize * imageSize * 3]; // 3 Kanäle: R,G,B
-        int[] pixels = new int[imageSize * imageSize];
-        scaled.getPixels(
-                pixels, 0, imageSize, 0, 0, imageSize, imageSize);
+    public synchronized void classify(Bitmap bitmap, Consumer<String> callback) {
 
-        for (int i = 0; i < pixels.length; i++) {
-            int pixel = pixels[i];
-            input[i * 3] = (byte) ((pixel >> 16) & 0xFF); // R
-            input[i * 3 + 1] = (byte) ((pixel >> 8) & 0xFF);  // G
-            input[i * 3 + 2] = (byte) (pixel & 0xFF);         // B
+        if (engine == null && !modelReleased) {
+            callback.accept("Modell nicht initialisiert");
+            return;
+        }
+        try {
+            ensureBuffers();
+        } catch (IllegalStateException e) {
+            callback.accept(e.getMessage());
+            return;
         }
-        inputBuffers.get(0).writeInt8(input);
 
+        try (Tracer.Section classifySection = tracer.section("classifier.classify")) {
+            // Bild auf Modellgröße skalieren (Zwischenbitmap aus dem Pool)
+            try (Tracer.Section section = tracer.section("preprocess.scale")) {
+                Bitmap scaled = bitmapPool.getScaled(bitmap, imageSize, imageSize);
+                scaled.getPixels(
+                        pixels, 0, imageSize, 0, 0, imageSize, imageSize);
+                bitmapPool.put(scaled);
+            }
 
-        try {
-            long startTime = System.nanoTime();
-            compiledModel.run(inputBuffers, outputBuffers); // Inferenz ausführen
-            long endTime = System.nanoTime();
-            long durationMs = (endTime - startTime) / 1_000_000;
-            TensorBuffer outputTensor = outputBuffers.get(0);
-            byte[] outputBuffer = outputTensor.readInt8();
-
-            float[] probabilities = new float[outputBuffer.length];
-            for (int i = 0; i < outputBuffer.length; i++) {
-                probabilities[i] = (outputBuffer[i] & 0xFF) / 255.0f; // Byte → unsigned → float
+            // Pixel passend zum Eingabetyp des Modells schreiben (Uint8: Rohpixel R, G, B)
+            try (Tracer.Section section = tracer.section("preprocess.fill")) {
+                inputWriter.write(pixels, 0, pixels.length, inputBuffer, 0);
             }
 
-            int[] topIndices = new int[3];
-            float[] topProbs = new float[3];
-
-            for (int i = 0; i < probabilities.length; i++) {
-                float p = probabilities[i];
-                for (int j = 0; j < 3; j++) {
-                    if (p > topProbs[j]) {
-                        // Alles nach unten verschieben
-                        for (int k = 2; k > j; k--) {
-                            topProbs[k] = topProbs[k - 1];
-                            topIndices[k] = topIndices[k - 1];
-                        }
-                        topProbs[j] = p;
-                        topIndices[j] = i;
-                        break;
+            try {
+                long startTime = System.nanoTime();
+                try (Tracer.Section section = tracer.section("inference")) {
+                    engine.run(inputBuffer, outputBuffer); // Inferenz ausführen
+                }
+                long endTime = System.nanoTime();
+                long durationMs = (endTime - startTime) / 1_000_000;
+
+                StringBuilder result = new StringBuilder("Top 3:\n");
+                try (Tracer.Section section = tracer.section("postprocess.topk")) {
+                    // Rangfolge auf den rohen Bytes, dequantisiert werden nur die Top 3
+                    int found = dequantizer.topK(
+                            outputBuffer, engine.getOutputSpec().getElementsPerBatch(), topIndices);
+
+                    for (int i = 0; i < found; i++) {
+                        float probability = dequantizer.dequantize(outputBuffer.get(topIndices[i]));
+                        result.append(labels.get(topIndices[i]))
+                                .append(String.format(" (%.2f%%)", probability * 100))
+                                .append("\n");
                     }
+                    result.append("Inferenzzeit: ").append(durationMs).append("ms");
                 }
-            }
 
+                callback.accept(result.toString());
 
-            StringBuilder result = new StringBuilder("Top 3:\n");
-            for (int i = 0; i < 3; i++) {
-                result.append(labels.get(topIndices[i]))
-                        .append(String.format(" (%.2f%%)", topProbs[i] * 100))
-                        .append("\n");
+            } catch (Exception e) {
+                callback.accept("Fehler bei Inference: " + e.getMessage());
             }
-            result.append("Inferenzzeit: ").append(durationMs).append("ms");
+        }
+    }
 
-            callback.accept(result.toString());
+    /**
+     * Legt die Ein-/Ausgabepuffer passend zur Engine einmalig an
+     * (bzw. nach {@link #releaseBuffers()} erneut).
+     */
+    private void ensureBuffers() {
+        engine();
+        if (inputWriter == null) {
+            inputWriter = InputWriter.forSpec(engine.getInputSpec(), normalization);
+        }
+        if (inputBuffer != null) {
+            return;
+        }
+        inputBuffer = ByteBuffer.allocateDirect(engine.getInputSpec().getByteSize())
+                .order(ByteOrder.nativeOrder());
+        outputBuffer = ByteBuffer.allocateDirect(engine.getOutputSpec().getByteSize())
+                .order(ByteOrder.nativeOrder());
+        pixels = new int[imageSize * imageSize];
+        dequantizer = new Dequantizer(engine.getOutputSpec());
+    }
 
-        } catch (Exception e) {
-            callback.accept("Fehler bei Inference: " + e.getMessage());
+    /**
+     * Setzt die Normalisierung der Kanalwerte. Ohne Normalisierung ({@code null})
+     * erhalten quantisierte Modelle die Rohpixel (Standard).
+     * Der passende {@link InputWriter} wird beim nächsten Aufruf neu gewählt.
+     *
+     * @param normalization Mittelwert und Standardabweichung der Eingabe oder {@code null}
+     */
+    public synchronized void setNormalization(InputWriter.Normalization normalization) {
+        this.normalization = normalization;
+        this.inputWriter = null;
+    }
+
+    /**
+     * Setzt den Pool für Zwischenbitmaps (Standard: {@link BitmapPool#getShared()}).
+     *
+     * @param bitmapPool zu verwendender Pool
+     */
+    public void setBitmapPool(BitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+    }
+
+    /**
+     * Gibt die verwendete Engine zurück und lädt ein freigegebenes Modell
+     * dabei neu.
+     *
+     * @return aktuelle {@link InferenceEngine}
+     */
+    public InferenceEngine getEngine() {
+        return engine();
+    }
+
+    /**
+     * Meldet Buffer und Modell dieses Klassifikators beim {@link MemoryManager} an.
+     *
+     * @param manager   Manager, z. B. {@link MemoryManager#getShared()}
+     * @param secondary true = zusätzliche Modellinstanz, die vor dem
+     *                  Hauptmodell freigegeben wird ({@link MemoryManager#PRIORITY_SECONDARY})
+     */
+    public synchronized void registerMemoryComponents(MemoryManager manager, boolean secondary) {
+        if (memoryManager != null) {
+            memoryManager.unregister(bufferComponent);
+            memoryManager.unregister(modelComponent);
+        }
+        memoryManager = manager;
+        modelComponent = new ModelComponent(
+                secondary ? MemoryManager.PRIORITY_SECONDARY : MemoryManager.PRIORITY_MODEL);
+        manager.register(bufferComponent);
+        manager.register(modelComponent);
+    }
+
+    /**
+     * Gibt Ein-/Ausgabebuffer und Zwischenspeicher frei. Wartet auf eine
+     * laufende Inferenz; der nächste Aufruf legt die Buffer neu an.
+     */
+    public synchronized void releaseBuffers() {
+        inputBuffer = null;
+        outputBuffer = null;
+        pixels = null;
+    }
+
+    /**
+     * Schließt das Modell, bis es wieder benötigt wird. Wartet auf eine
+     * laufende Inferenz; der nächste Aufruf lädt das Modell neu.
+     * Klassifikatoren mit fremder Engine ({@link #Classifier(InferenceEngine, List)})
+     * können ihr Modell nicht neu laden und behalten es.
+     *
+     * @return true wenn das Modell freigegeben wurde
+     */
+    public synchronized boolean releaseModel() {
+        if (engine == null || appContext == null) {
+            return false;
         }
+        engine.close();
+        engine = null;
+        modelReleased = true;
+        return true;
+    }
+
+    /**
+     * Liefert die Engine und lädt ein per {@link #releaseModel()} freigegebenes
+     * Modell dabei neu.
+     *
+     * @return Engine oder {@code null}, wenn das Modell nie geladen werden konnte
+     * @throws IllegalStateException wenn das erneute Laden fehlschlägt
+     */
+    private synchronized InferenceEngine engine() {
+        if (engine == null && modelReleased) {
+            try {
+                engine = new CompiledModelEngine(appContext, modelFile, accelerator);
+                modelReleased = false;
+            } catch (Exception e) {
+                throw new IllegalStateException("Modell konnte nicht neu geladen werden: " + e.getMessage(), e);
+            }
+        }
+        return engine;
     }
 
     /**
@@ -214,20 +368,16 @@ public class Classifier {
     }
 
     /**
-     * Prüft, ob das Modell mit GPU-Beschleunigung geladen werden kann.
+     * Prüft, ob das Modell mit GPU-Beschleunigung geladen werden kann. Die
+     * Prüfung läuft im geteilten Environment und nur einmal je Modell, siehe
+     * {@link LiteRtEnvironment#isSupported}.
      *
      * @param context   Android Context
      * @param modelFile Modell-Dateiname
      * @return {@code true}, wenn GPU unterstützt wird, sonst {@code false}
      */
     public boolean isGpuSupported(Context context, String modelFile) {
-        try {
-            CompiledModel gpuTest = CompiledModel.create(context.getAssets(), modelFile, new CompiledModel.Options(Accelerator.GPU));
-            gpuTest.close(); // danach wieder schließen
-            return true; // GPU möglich
-        } catch (Exception e) {
-            return false; // GPU nicht möglich
-        }
+        return LiteRtEnvironment.getShared().isSupported(context.getAssets(), modelFile, Accelerator.GPU);
     }
 
 
@@ -240,5 +390,114 @@ public class Classifier {
         return accelerator;
     }
 
+    /**
+     * Schlüsselt den geschätzten Speicherbedarf des Klassifikators auf:
+     * Modell (gemappte Datei, Runtime-Kopie und TensorBuffer), Direct-Buffer,
+     * Zwischenspeicher im Heap und Labels. Liest ohne Sperre und blockiert
+     * daher nicht während einer laufenden Inferenz.
+     *
+     * @return Aufschlüsselung; ein per {@link #releaseModel()} freigegebenes
+     * Modell zählt nicht mit
+     */
+    public MemoryFootprint getFootprint() {
+        String name = modelFile != null ? modelFile : "Engine";
+        MemoryFootprint footprint = new MemoryFootprint();
+        InferenceEngine current = engine;
+        if (current != null) {
+            long mapped = current.getMappedBytes();
+            footprint.add("Modell[" + name + "]", 0, current.getNativeBytes() - mapped, mapped);
+        }
+        footprint.add("Buffer[" + name + "]", bufferComponent.getHeapBytes(), bufferComponent.getNativeBytes(), 0);
+        footprint.add("Labels[" + name + "]", labelBytes(labels), 0, 0);
+        return footprint;
+    }
+
+    /**
+     * Schätzung für die Labels: je String etwa 16 Bytes Objektkopf plus ein
+     * Byte pro Zeichen (ART speichert ASCII komprimiert im String-Objekt),
+     * auf 8 Bytes ausgerichtet, dazu die Referenz in der Liste.
+     */
+    private static long labelBytes(List<String> labels) {
+        if (labels == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (String label : labels) {
+            bytes += ((16 + label.length() + 7) & ~7) + 4;
+        }
+        return bytes;
+    }
+
+    private static long capacity(ByteBuffer buffer) {
+        return buffer != null ? buffer.capacity() : 0;
+    }
+
+    /**
+     * Ein-/Ausgabebuffer und Pixelarray als {@link MemoryManager.Component}.
+     * Die Größen werden ohne Sperre gelesen und sind daher nur Schätzwerte.
+     */
+    private class BufferComponent implements MemoryManager.Component {
+
+        @Override
+        public String getName() {
+            return "Buffer[" + (modelFile != null ? modelFile : "Engine") + "]";
+        }
+
+        @Override
+        public int getPriority() {
+            return MemoryManager.PRIORITY_BUFFERS;
+        }
+
+        @Override
+        public long getNativeBytes() {
+            return capacity(inputBuffer) + capacity(outputBuffer);
+        }
+
+        @Override
+        public long getHeapBytes() {
+            int[] currentPixels = pixels;
+            return currentPixels != null ? 4L * currentPixels.length : 0;
+        }
 
-}
\ No newline at end of file
+        @Override
+        public void release() {
+            releaseBuffers();
+        }
+    }
+
+    /** Geladenes Modell als {@link MemoryManager.Component} */
+    private class ModelComponent implements MemoryManager.Component {
+
+        private final int priority;
+
+        ModelComponent(int priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public String getName() {
+            return "Modell[" + (modelFile != null ? modelFile : "Engine") + "]";
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public long getNativeBytes() {
+            InferenceEngine current = engine;
+            return current != null ? current.getNativeBytes() : 0;
+        }
+
+        @Override
+        public long getHeapBytes() {
+            return 0;
+        }
+
+        @Override
+        public void release() {
+            releaseModel();
+        }
+    }
+}
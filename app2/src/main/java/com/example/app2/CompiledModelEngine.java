@@ -0,0 +1,222 @@
+package com.example.app2;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+
+import com.google.ai.edge.litert.Accelerator;
+import com.google.ai.edge.litert.CompiledModel;
+import com.google.ai.edge.litert.LiteRtException;
+import com.google.ai.edge.litert.TensorBuffer;
+
+import org.tensorflow.lite.support.metadata.MetadataExtractor;
+
+import com.example.common.ElementType;
+import com.example.common.InferenceException;
+import com.example.common.LiteRtEnvironment;
+import com.example.common.TensorSpec;
+import com.example.common.Tracer;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * @class CompiledModelEngine
+ * @brief {@link InferenceEngine} auf Basis der LiteRT Compiled Model API.
+ * <p>
+ * Die Ein- und Ausgabe-{@link TensorBuffer} werden einmalig erzeugt und für
+ * alle Inferenzen wiederverwendet. Shape, Datentyp und Quantisierung der
+ * Tensoren werden beim Laden aus dem Modell-Flatbuffer gelesen.
+ * Kompiliert wird im geteilten Environment ({@link LiteRtEnvironment}).
+ */
+public class CompiledModelEngine implements InferenceEngine {
+
+    private final CompiledModel compiledModel;
+    private final Accelerator accelerator;
+    private final String modelFile;
+
+    private final TensorSpec inputSpec;
+    private final TensorSpec outputSpec;
+
+    private final List<TensorBuffer> inputBuffers;
+    private final List<TensorBuffer> outputBuffers;
+
+    /** Trace-Abschnitte für Tensor-Kopien und {@code compiledModel.run} */
+    private final Tracer tracer = Tracer.getShared();
+
+    /** Größe der Modelldatei in Bytes */
+    private final long modelBytes;
+
+    /** Wiederverwendete Zwischenspeicher für die Array-basierte TensorBuffer-API */
+    private byte[] inputBytes;
+    private float[] inputFloats;
+
+    /**
+     * Lädt ein Modell aus den Assets und kompiliert es für den gewünschten Accelerator.
+     *
+     * @param context     Android Context
+     * @param modelFile   Modell-Datei im Assets-Ordner
+     * @param accelerator Gewünschter Accelerator
+     * @throws LiteRtException wenn das Modell nicht kompiliert werden kann
+     * @throws IOException     wenn das Modell nicht gelesen werden kann
+     */
+    public CompiledModelEngine(Context context, String modelFile, Accelerator accelerator)
+            throws LiteRtException, IOException {
+        this.modelFile = modelFile;
+        this.accelerator = accelerator;
+
+        MappedByteBuffer model = loadMappedModel(context, modelFile);
+        this.modelBytes = model.capacity();
+        TensorSpec[] specs = readTensorSpecs(model);
+        this.inputSpec = specs[0];
+        this.outputSpec = specs[1];
+
+        this.compiledModel = LiteRtEnvironment.getShared().compile(context.getAssets(), modelFile, accelerator);
+        this.inputBuffers = compiledModel.createInputBuffers();
+        this.outputBuffers = compiledModel.createOutputBuffers();
+    }
+
+    /**
+     * Bildet eine Modell-Datei aus den Assets in den Speicher ab.
+     *
+     * @param context   Android Context
+     * @param modelFile Modell-Datei im Assets-Ordner (unkomprimiert)
+     * @return read-only gemapptes Modell
+     * @throws IOException wenn die Datei nicht geöffnet werden kann
+     */
+    public static MappedByteBuffer loadMappedModel(Context context, String modelFile) throws IOException {
+        try (AssetFileDescriptor fd = context.getAssets().openFd(modelFile);
+             FileInputStream in = new FileInputStream(fd.getFileDescriptor())) {
+            return in.getChannel().map(
+                    FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getDeclaredLength());
+        }
+    }
+
+    /**
+     * Liest Ein- und Ausgabebeschreibung (Tensor 0) aus dem Modell-Flatbuffer.
+     *
+     * @param model gemapptes Modell
+     * @return Array {@code [input, output]}
+     */
+    public static TensorSpec[] readTensorSpecs(ByteBuffer model) {
+        MetadataExtractor extractor = new MetadataExtractor(model);
+        MetadataExtractor.QuantizationParams inQuant = extractor.getInputTensorQuantizationParams(0);
+        MetadataExtractor.QuantizationParams outQuant = extractor.getOutputTensorQuantizationParams(0);
+        return new TensorSpec[]{
+                new TensorSpec(
+                        extractor.getInputTensorShape(0),
+                        ElementType.fromTfliteType(extractor.getInputTensorType(0)),
+                        inQuant.getScale(),
+                        inQuant.getZeroPoint()),
+                new TensorSpec(
+                        extractor.getOutputTensorShape(0),
+                        ElementType.fromTfliteType(extractor.getOutputTensorType(0)),
+                        outQuant.getScale(),
+                        outQuant.getZeroPoint())
+        };
+    }
+
+    @Override
+    public TensorSpec getInputSpec() {
+        return inputSpec;
+    }
+
+    @Override
+    public TensorSpec getOutputSpec() {
+        return outputSpec;
+    }
+
+    @Override
+    public void run(ByteBuffer input, ByteBuffer output) throws InferenceException {
+        ElementType inType = inputSpec.getType();
+        ElementType outType = outputSpec.getType();
+        if (inType == ElementType.FLOAT16 || outType == ElementType.FLOAT16) {
+            throw new InferenceException("FLOAT16-Tensoren werden von der TensorBuffer-API nicht unterstützt");
+        }
+
+        try {
+            try (Tracer.Section section = tracer.section("tensor.write")) {
+                ByteBuffer in = input.duplicate().order(ByteOrder.nativeOrder());
+                in.rewind();
+                if (inType == ElementType.FLOAT32) {
+                    if (inputFloats == null) {
+                        inputFloats = new float[inputSpec.getElementCount()];
+                    }
+                    in.asFloatBuffer().get(inputFloats);
+                    inputBuffers.get(0).writeFloat(inputFloats);
+                } else {
+                    if (inputBytes == null) {
+                        inputBytes = new byte[inputSpec.getElementCount()];
+                    }
+                    in.get(inputBytes);
+                    inputBuffers.get(0).writeInt8(inputBytes);
+                }
+            }
+
+            try (Tracer.Section section = tracer.section("compiledModel.run")) {
+                compiledModel.run(inputBuffers, outputBuffers);
+            }
+
+            try (Tracer.Section section = tracer.section("tensor.read")) {
+                ByteBuffer out = output.duplicate().order(ByteOrder.nativeOrder());
+                out.rewind();
+                if (outType == ElementType.FLOAT32) {
+                    out.asFloatBuffer().put(outputBuffers.get(0).readFloat());
+                } else {
+                    out.put(outputBuffers.get(0).readInt8());
+                }
+            }
+        } catch (Exception e) {
+            throw new InferenceException("Fehler bei Inference: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "CompiledModel[" + modelFile + ", " + accelerator + "]";
+    }
+
+    /**
+     * Gibt den verwendeten Accelerator zurück.
+     *
+     * @return verwendeter {@link Accelerator}
+     */
+    public Accelerator getAccelerator() {
+        return accelerator;
+    }
+
+    /**
+     * Schätzung: Modell, eine kompilierte Kopie im Runtime-Speicher und die
+     * TensorBuffer der Ein- und Ausgabe. Davon ist die Modelldatei gemappt,
+     * siehe {@link #getMappedBytes()}.
+     */
+    @Override
+    public long getNativeBytes() {
+        return 2 * modelBytes + inputSpec.getByteSize() + outputSpec.getByteSize();
+    }
+
+    /** Die Runtime liest die Modelldatei per mmap, die Kopie und die Buffer sind dirty. */
+    @Override
+    public long getMappedBytes() {
+        return modelBytes;
+    }
+
+    @Override
+    public void close() {
+        try {
+            for (TensorBuffer buffer : inputBuffers) {
+                buffer.close();
+            }
+            for (TensorBuffer buffer : outputBuffers) {
+                buffer.close();
+            }
+            compiledModel.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.example.app2;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Bundle;
-import android.provider.MediaStore;
+import android.util.Log;
 import android.widget.Button;
 import android.widget.CompoundButton;
 import android.widget.ImageView;
@@ -18,7 +18,20 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.google.ai.edge.litert.Accelerator;
 import com.google.ai.edge.litert.LiteRtException;
 
+import com.example.common.BitmapPool;
+import com.example.common.LiteRtEnvironment;
+import com.example.common.MemoryFootprint;
+import com.example.common.MemoryManager;
+import com.example.common.MemorySampler;
+import com.example.common.Tracer;
+
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
 
 /**
  * @class MainActivity
@@ -62,6 +75,27 @@ public class MainActivity extends AppCompatActivity {
     /** Bildklassifikator (LiteRT) */
     private Classifier classifier;
 
+    /** Pool für dekodierte Bitmaps */
+    private final BitmapPool bitmapPool = BitmapPool.getShared();
+
+    /** Gibt Pool, Buffer und Modell bei Speicherdruck frei */
+    private final MemoryManager memoryManager = MemoryManager.getShared();
+
+    /** Trace-Abschnitte der Klassifikation, Export per langem Klick auf das Ergebnis */
+    private final Tracer tracer = Tracer.getShared();
+
+    /** Anzahl Anfragen im Trace-Export */
+    private static final int TRACE_EXPORT_REQUESTS = 20;
+
+    /** Abstand der Speichermessungen, solange die App sichtbar ist */
+    private static final long MEMORY_SAMPLE_INTERVAL_MS = 5000;
+
+    /** Anzahl Speichermessungen im Ringpuffer (eine Stunde) */
+    private static final int MEMORY_SAMPLES = 720;
+
+    /** Speichermessungen, Export zusammen mit dem Trace */
+    private final MemorySampler memorySampler = new MemorySampler(this::currentFootprint, tracer, MEMORY_SAMPLES);
+
     /**
      * Launcher zum Öffnen der System-Galerie.
      * Nach Auswahl eines Bildes wird {@link #loadImage(Uri)} aufgerufen.
@@ -94,6 +128,11 @@ public class MainActivity extends AppCompatActivity {
 
         // Listener für Accelerator-Umschaltung
         switchAccelaratorMethod.setOnCheckedChangeListener(this::onSwitchChanged);
+        // Langer Klick: Kompilierzeit mit eigenem und geteiltem Environment vergleichen
+        switchAccelaratorMethod.setOnLongClickListener(v -> {
+            measureStartup();
+            return true;
+        });
 
         // Classifier initialisieren (Standard: CPU)
         try {
@@ -106,6 +145,9 @@ public class MainActivity extends AppCompatActivity {
         } catch (LiteRtException e) {
             throw new RuntimeException(e);
         }
+        memoryManager.register(bitmapPool);
+        classifier.registerMemoryComponents(memoryManager, false);
+        memorySampler.markState(classifier.getAccelerator().name());
 
         // Button: Bild auswählen
         buttonUpload.setOnClickListener(v -> galleryLauncher.launch("image/*"));
@@ -117,16 +159,23 @@ public class MainActivity extends AppCompatActivity {
                 return;
             }
 
-            try {
+            try (Tracer.Section request = tracer.request("classify")) {
+                long requestId = request.getRequest();
                 classifier.classify(selectedBitmap, result ->
-                        runOnUiThread(() ->
-                                textViewResult.setText("Ergebnis: " + result)
-                        )
+                        runOnUiThread(() -> {
+                            try (Tracer.Section section = tracer.section("ui.callback", requestId)) {
+                                textViewResult.setText("Ergebnis: " + result);
+                            }
+                        })
                 );
-            } catch (LiteRtException e) {
-                textViewResult.setText("Fehler bei Inferenz: " + e.getMessage());
             }
         });
+
+        // Langer Klick auf das Ergebnis: Trace der letzten Anfragen exportieren
+        textViewResult.setOnLongClickListener(v -> {
+            exportTrace();
+            return true;
+        });
     }
 
     /**
@@ -166,6 +215,9 @@ public class MainActivity extends AppCompatActivity {
                         IMAGE_SIZE,
                         newAccelerator
                 );
+                classifier.registerMemoryComponents(memoryManager, false);
+                // Wechsel zurück zum selben Accelerator: Speicher muss wieder gleich groß sein
+                memorySampler.markState(newAccelerator.name());
             } catch (LiteRtException e) {
                 Toast.makeText(
                         this,
@@ -176,15 +228,125 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * Geschätzter Speicherbedarf von Klassifikator, Bitmap-Pool und
+     * angezeigtem Bild für den {@link MemorySampler}. Wird im Messthread
+     * aufgerufen und liest die Felder daher nur einmal.
+     */
+    private MemoryFootprint currentFootprint() {
+        MemoryFootprint footprint = new MemoryFootprint();
+        Classifier current = classifier;
+        if (current != null) {
+            footprint.addAll(current.getFootprint());
+        }
+        footprint.add("BitmapPool", bitmapPool.getHeapBytes(), bitmapPool.getNativeBytes(), 0);
+        Bitmap bitmap = selectedBitmap;
+        if (bitmap != null && !bitmap.isRecycled()) {
+            // Pixel liegen ab Android 8 im nativen Speicher
+            footprint.add("Angezeigtes Bild", 0, bitmap.getAllocationByteCount(), 0);
+        }
+        return footprint;
+    }
+
+    /** Misst den Speicher periodisch, solange die App sichtbar ist. */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        memorySampler.start(MEMORY_SAMPLE_INTERVAL_MS);
+    }
+
+    @Override
+    protected void onStop() {
+        memorySampler.stop();
+        super.onStop();
+    }
+
+    /** Beendet den Messthread des {@link MemorySampler}. */
+    @Override
+    protected void onDestroy() {
+        memorySampler.close();
+        super.onDestroy();
+    }
+
+    /**
+     * Vergleicht im Hintergrund die Kompilierzeit des Modells mit eigenem und
+     * mit geteiltem LiteRT-Environment und zeigt sie zusammen mit den
+     * bisherigen Kompilierzeiten der App an.
+     */
+    private void measureStartup() {
+        textViewResult.setText("Kompilierzeit wird gemessen...");
+        Accelerator accelerator = classifier.getAccelerator();
+        new Thread(() -> {
+            LiteRtEnvironment environment = LiteRtEnvironment.getShared();
+            String report;
+            try {
+                report = environment.measureStartup(getAssets(), "mobilenetv1.tflite", accelerator, 5)
+                        + "\n" + environment.getStats();
+            } catch (LiteRtException e) {
+                report = "Messung fehlgeschlagen: " + e.getMessage();
+            }
+            Log.i("LiteRtEnvironment", report);
+            String text = report;
+            runOnUiThread(() -> textViewResult.setText(text));
+        }, "StartupMeasurement").start();
+    }
+
+    /**
+     * Gibt bei Speicherdruck Pool, Buffer und Modell gestaffelt frei
+     * (siehe {@link MemoryManager#onTrimMemory(int)}). Alles wird beim
+     * nächsten Klassifizieren automatisch neu angelegt.
+     *
+     * @param level Stufe des Speicherdrucks
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Freigabe wartet ggf. auf eine laufende Inferenz, daher nicht im UI-Thread
+        memoryManager.onTrimMemoryAsync(level, freed -> {
+            Log.i("MemoryManager", String.format(Locale.US, "onTrimMemory(%d): %.1f MB freigegeben",
+                    level, freed / 1e6));
+            Log.d("MemoryManager", memoryManager.getStats());
+            Log.d("MemoryFootprint", currentFootprint().toString());
+        });
+    }
+
+    /**
+     * Schreibt die Trace-Abschnitte der letzten Anfragen als Chrome-Trace-JSON
+     * nach {@code files/trace.json} (per {@code adb pull} z. B. in
+     * ui.perfetto.dev öffnen). Die Speichermessungen stehen dort als
+     * Zählerspuren und vollständig in {@code files/memory.csv}.
+     */
+    private void exportTrace() {
+        File file = new File(getFilesDir(), "trace.json");
+        File memoryFile = new File(getFilesDir(), "memory.csv");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+             Writer memoryOut = new OutputStreamWriter(new FileOutputStream(memoryFile), StandardCharsets.UTF_8)) {
+            tracer.exportChromeTrace(out, TRACE_EXPORT_REQUESTS);
+            memorySampler.exportCsv(memoryOut);
+            Log.i("MemoryFootprint", currentFootprint().toString());
+            Toast.makeText(this, "Trace gespeichert: " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            e.printStackTrace();
+            Toast.makeText(this, "Trace konnte nicht gespeichert werden", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     /**
      * Lädt ein Bild aus der Galerie und zeigt es im ImageView an.
      *
      * @param uri URI des ausgewählten Bildes
      */
     private void loadImage(Uri uri) {
-        try {
-            selectedBitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), uri);
+        try (Tracer.Section request = tracer.request("loadImage")) {
+            Bitmap previous = selectedBitmap;
+            try (Tracer.Section section = tracer.section("decode")) {
+                selectedBitmap = bitmapPool.decode(getContentResolver(), uri, 0);
+            }
             imageView.setImageBitmap(selectedBitmap);
+
+            // Vorheriges Bild wird nicht mehr angezeigt und kann wiederverwendet werden
+            bitmapPool.put(previous);
+            Log.d("BitmapPool", bitmapPool.getStats());
         } catch (IOException e) {
             e.printStackTrace();
             textViewResult.setText("Fehler beim Laden des Bildes!");
@@ -34,12 +34,13 @@ android {
 }
 
 dependencies {
+    implementation(project(":common"))
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     implementation(libs.litert)
+    implementation(libs.litert.metadata)
     implementation(libs.exifinterface)
-
-
+    testImplementation(libs.junit)
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+package com.example.app3;
+
+/**
+ * @class AdaptivePolicy
+ * @brief Wählt Bildrate, Threadanzahl und Accelerator passend zum Gerätezustand.
+ * <p>
+ * Die Threadanzahl betrifft nur die Vorverarbeitung, nicht die Inferenz:
+ * {@code CompiledModel} bietet keine Einstellung für Inferenz-Threads, die
+ * Runtime wählt sie selbst. Wirksame Hebel für die Inferenz sind nur
+ * Bildrate und Accelerator.
+ * <p>
+ * Die Stufen reichen von {@link #FULL} bis {@link #MINIMAL}. Die gewünschte
+ * Stufe ergibt sich aus Temperaturstatus, Akkustand und Energiesparmodus:
+ * - Temperatur MODERATE, Akku unter {@code lowBatteryPercent} oder Energiesparmodus: {@link #REDUCED}
+ * - Temperatur SEVERE: {@link #THROTTLED} (GPU aus)
+ * - Temperatur CRITICAL und höher oder Akku unter {@code criticalBatteryPercent}: {@link #MINIMAL}
+ * <p>
+ * Verschlechterungen werden sofort übernommen. Verbesserungen erst, wenn der
+ * bessere Zustand {@code upgradeHoldMillis} lang anhält, und dann nur um eine
+ * Stufe – so pendelt die Einstellung nicht an der Grenze zweier Zustände.
+ * <p>
+ * Reine Java-Klasse; die Zeit wird übergeben, damit sich die Policy auf der
+ * JVM mit simulierten Zuständen testen lässt.
+ */
+public class AdaptivePolicy {
+
+    /**
+     * @class Decision
+     * @brief Einstellung einer Stufe.
+     */
+    public static final class Decision {
+
+        private final String name;
+        private final int targetFps;
+        private final int threads;
+        private final boolean gpuAllowed;
+
+        /**
+         * @param name       Bezeichnung für Logs
+         * @param targetFps  höchstens so viele Inferenzen pro Sekunde
+         * @param threads    Anzahl Threads für die Vorverarbeitung (kein Inferenz-Parameter)
+         * @param gpuAllowed true, wenn die GPU verwendet werden darf
+         */
+        public Decision(String name, int targetFps, int threads, boolean gpuAllowed) {
+            this.name = name;
+            this.targetFps = targetFps;
+            this.threads = threads;
+            this.gpuAllowed = gpuAllowed;
+        }
+
+        /** @return Bezeichnung der Stufe */
+        public String getName() {
+            return name;
+        }
+
+        /** @return höchstens so viele Inferenzen pro Sekunde */
+        public int getTargetFps() {
+            return targetFps;
+        }
+
+        /** @return Anzahl Threads für die Vorverarbeitung (kein Inferenz-Parameter) */
+        public int getThreads() {
+            return threads;
+        }
+
+        /** @return true, wenn die GPU verwendet werden darf */
+        public boolean isGpuAllowed() {
+            return gpuAllowed;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + targetFps + " fps, " + threads + " Threads, "
+                    + (gpuAllowed ? "GPU erlaubt" : "nur CPU") + ")";
+        }
+    }
+
+    public static final Decision FULL = new Decision("voll", 30, 4, true);
+    public static final Decision REDUCED = new Decision("reduziert", 15, 2, true);
+    public static final Decision THROTTLED = new Decision("gedrosselt", 5, 2, false);
+    public static final Decision MINIMAL = new Decision("minimal", 1, 1, false);
+
+    private final Decision[] levels;
+    private int lowBatteryPercent = 20;
+    private int criticalBatteryPercent = 5;
+    private long upgradeHoldNanos = 30_000_000_000L;
+
+    private int currentLevel;
+    /** Seit wann eine bessere Stufe gewünscht wird (-1 = nicht) */
+    private long betterSinceNanos = -1;
+
+    /** Policy mit den Standardstufen {@link #FULL} bis {@link #MINIMAL}. */
+    public AdaptivePolicy() {
+        this(FULL, REDUCED, THROTTLED, MINIMAL);
+    }
+
+    /**
+     * @param full      Stufe ohne Einschränkung
+     * @param reduced   Stufe bei leichter Belastung
+     * @param throttled Stufe bei starker Erwärmung
+     * @param minimal   Stufe bei kritischer Temperatur oder fast leerem Akku
+     */
+    public AdaptivePolicy(Decision full, Decision reduced, Decision throttled, Decision minimal) {
+        this.levels = new Decision[]{full, reduced, throttled, minimal};
+    }
+
+    /**
+     * Bestimmt die Einstellung für den aktuellen Zustand.
+     *
+     * @param state    aktueller Gerätezustand
+     * @param nowNanos aktuelle Zeit (monoton, z. B. {@link System#nanoTime()})
+     * @return gültige Einstellung
+     */
+    public synchronized Decision evaluate(DeviceState state, long nowNanos) {
+        int desired = desiredLevel(state);
+        if (desired > currentLevel) {
+            // Verschlechterung: sofort
+            currentLevel = desired;
+            betterSinceNanos = -1;
+        } else if (desired < currentLevel) {
+            // Verbesserung: erst nach stabiler Phase, jeweils eine Stufe
+            if (betterSinceNanos < 0) {
+                betterSinceNanos = nowNanos;
+            } else if (nowNanos - betterSinceNanos >= upgradeHoldNanos) {
+                currentLevel--;
+                betterSinceNanos = currentLevel > desired ? nowNanos : -1;
+            }
+        } else {
+            betterSinceNanos = -1;
+        }
+        return levels[currentLevel];
+    }
+
+    /** Stufe, die der Zustand ohne Hysterese verlangt (0 = voll) */
+    int desiredLevel(DeviceState state) {
+        int level = 0;
+        int thermal = state.getThermalStatus();
+        if (thermal >= DeviceState.THERMAL_CRITICAL) {
+            level = 3;
+        } else if (thermal == DeviceState.THERMAL_SEVERE) {
+            level = 2;
+        } else if (thermal == DeviceState.THERMAL_MODERATE) {
+            level = 1;
+        }
+        if (!state.isCharging()) {
+            if (state.getBatteryPercent() <= criticalBatteryPercent) {
+                level = 3;
+            } else if (state.getBatteryPercent() <= lowBatteryPercent) {
+                level = Math.max(level, 1);
+            }
+        }
+        if (state.isPowerSaveMode()) {
+            level = Math.max(level, 1);
+        }
+        return level;
+    }
+
+    /** @return größte Threadanzahl aller Stufen, z. B. zur Dimensionierung eines Pools */
+    public int getMaxThreads() {
+        int max = 1;
+        for (Decision level : levels) {
+            max = Math.max(max, level.getThreads());
+        }
+        return max;
+    }
+
+    /** @return aktuell gültige Einstellung */
+    public synchronized Decision getCurrent() {
+        return levels[currentLevel];
+    }
+
+    /**
+     * @param lowBatteryPercent      ab diesem Akkustand (ohne Laden) wird reduziert
+     * @param criticalBatteryPercent ab diesem Akkustand (ohne Laden) nur noch minimal
+     */
+    public synchronized void setBatteryThresholds(int lowBatteryPercent, int criticalBatteryPercent) {
+        this.lowBatteryPercent = lowBatteryPercent;
+        this.criticalBatteryPercent = criticalBatteryPercent;
+    }
+
+    /** @param upgradeHoldMillis so lange muss ein besserer Zustand anhalten */
+    public synchronized void setUpgradeHoldMillis(long upgradeHoldMillis) {
+        this.upgradeHoldNanos = upgradeHoldMillis * 1_000_000L;
+    }
+}
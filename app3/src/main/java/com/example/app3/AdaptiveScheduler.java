@@ -0,0 +1,302 @@
+package com.example.app3;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.graphics.Bitmap;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+
+import com.google.ai.edge.litert.Accelerator;
+
+import com.example.common.InferenceException;
+
+import java.io.Closeable;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * @class AdaptiveScheduler
+ * @brief Führt fortlaufende Klassifikationen abhängig von Temperatur und Akku aus.
+ * <p>
+ * Beobachtet den Temperaturstatus ({@link PowerManager}, ab Android 10),
+ * Akkustand und Energiesparmodus und lässt eine {@link AdaptivePolicy} daraus
+ * die Einstellung bestimmen:
+ * - Bildrate: überzählige Bilder werden verworfen ({@link #submit} liefert false)
+ * - Accelerator: bei gesperrter GPU wird der Classifier auf der CPU neu angelegt
+ *   und bei erlaubter GPU wieder zurückgewechselt
+ * - Threadanzahl: die Vorverarbeitung des Classifiers läuft in höchstens so vielen
+ *   Streifen eines einzigen {@link ParallelPreprocessor}; die Inferenz-Threads der
+ *   Runtime bleiben unverändert (siehe {@link AdaptivePolicy})
+ * <p>
+ * Jede Anpassung wird mit der mittleren Latenz vor und nach der Änderung geloggt.
+ * Die Inferenz läuft in einem eigenen Thread, der den Classifier allein besitzt.
+ */
+public class AdaptiveScheduler implements Closeable {
+
+    private static final String TAG = "AdaptiveScheduler";
+
+    /** Nach so vielen Inferenzen wird die Latenz nach einer Anpassung geloggt */
+    private static final int LATENCY_SAMPLES_AFTER = 10;
+
+    /**
+     * Erzeugt einen Classifier für einen Accelerator.
+     */
+    public interface ClassifierFactory {
+        Classifier create(Accelerator accelerator) throws Exception;
+    }
+
+    /**
+     * Wird bei jeder Änderung der Einstellung benachrichtigt.
+     */
+    public interface Listener {
+        void onDecisionChanged(AdaptivePolicy.Decision decision, DeviceState state);
+    }
+
+    private final Context context;
+    private final AdaptivePolicy policy;
+    private final ClassifierFactory factory;
+    private final Accelerator preferred;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, TAG));
+    private final AtomicBoolean busy = new AtomicBoolean();
+    private final PowerManager powerManager;
+    private Listener listener;
+
+    /** Nur im Worker-Thread verwendet */
+    private Classifier classifier;
+    private int[] pixels;
+    /** Einmal für die höchste Threadanzahl der Policy angelegt, null bei nur einem Thread */
+    private final ParallelPreprocessor preprocessor;
+
+    private volatile DeviceState state = new DeviceState(DeviceState.THERMAL_NONE, 100, true, false);
+    private AdaptivePolicy.Decision decision;
+    private long lastAcceptedNanos;
+
+    /** Gleitender Mittelwert der Latenz in Millisekunden */
+    private volatile double averageLatencyMs;
+    private int samplesSinceChange = -1;
+    private double latencyBeforeChangeMs;
+    private String pendingChange;
+
+    private long submitted;
+    private long dropped;
+
+    /** Erst ab Android 10 angelegt, die Schnittstelle fehlt auf älteren Geräten */
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+
+    private final BroadcastReceiver powerReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (Intent.ACTION_BATTERY_CHANGED.equals(intent.getAction())) {
+                state = readBattery(intent, state);
+            } else {
+                state = state.withPowerSaveMode(powerManager.isPowerSaveMode());
+            }
+            reevaluate();
+        }
+    };
+
+    /**
+     * @param context   Context
+     * @param policy    Policy für die Anpassungen
+     * @param factory   erzeugt Classifier für CPU bzw. GPU
+     * @param preferred bevorzugter Accelerator, solange die Policy ihn erlaubt
+     * @throws Exception wenn der erste Classifier nicht angelegt werden kann
+     */
+    public AdaptiveScheduler(Context context, AdaptivePolicy policy, ClassifierFactory factory,
+                             Accelerator preferred) throws Exception {
+        this.context = context.getApplicationContext();
+        this.policy = policy;
+        this.factory = factory;
+        this.preferred = preferred;
+        this.powerManager = (PowerManager) this.context.getSystemService(Context.POWER_SERVICE);
+
+        // Startzustand abfragen und Änderungen abonnieren
+        DeviceState initial = state.withPowerSaveMode(powerManager.isPowerSaveMode());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            initial = initial.withThermalStatus(powerManager.getCurrentThermalStatus());
+            thermalListener = status -> {
+                state = state.withThermalStatus(status);
+                reevaluate();
+            };
+            powerManager.addThermalStatusListener(thermalListener);
+        }
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_BATTERY_CHANGED);
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        Intent battery = this.context.registerReceiver(powerReceiver, filter);
+        state = battery != null ? readBattery(battery, initial) : initial;
+
+        // Schwellwert 0: der Dauerbetrieb schreibt nur Eingaben in Modellgröße,
+        // ohne ihn würde die Threadanzahl nie wirksam
+        int maxThreads = policy.getMaxThreads();
+        preprocessor = maxThreads > 1 ? new ParallelPreprocessor(maxThreads - 1, 0) : null;
+
+        decision = policy.evaluate(state, System.nanoTime());
+        classifier = factory.create(chooseAccelerator(decision));
+        classifier.setParallelPreprocessor(preprocessor);
+        applyThreads(decision.getThreads());
+        Log.i(TAG, "Start: " + decision + " bei " + state);
+    }
+
+    /**
+     * Reicht ein Bild zur Klassifikation ein. Bilder über der erlaubten
+     * Bildrate oder während einer laufenden Inferenz werden verworfen.
+     *
+     * @param frame    Bild (darf bis zum Callback nicht verändert werden)
+     * @param callback Ergebnis oder {@code null}, wenn die Inferenz fehlgeschlagen ist
+     *                 (aus dem Worker-Thread)
+     * @return true, wenn das Bild angenommen wurde
+     */
+    public boolean submit(Bitmap frame, Consumer<ClassificationResult> callback) {
+        reevaluate();
+        long now = System.nanoTime();
+        synchronized (this) {
+            submitted++;
+            long interval = 1_000_000_000L / Math.max(1, decision.getTargetFps());
+            if (now - lastAcceptedNanos < interval || !busy.compareAndSet(false, true)) {
+                dropped++;
+                return false;
+            }
+            lastAcceptedNanos = now;
+        }
+        worker.execute(() -> {
+            try {
+                if (pixels == null) {
+                    pixels = new int[classifier.getImageSize() * classifier.getImageSize()];
+                }
+                long start = System.nanoTime();
+                classifier.loadPixels(frame, pixels);
+                ClassificationResult result = classifier.classifyPixels(pixels);
+                recordLatency((System.nanoTime() - start) / 1e6);
+                callback.accept(result);
+            } catch (InferenceException e) {
+                Log.e(TAG, "Inferenz fehlgeschlagen", e);
+                callback.accept(null);
+            } finally {
+                busy.set(false);
+            }
+        });
+        return true;
+    }
+
+    /** Wendet die Policy auf den aktuellen Zustand an (auch für Hysterese-Aufstiege). */
+    private void reevaluate() {
+        AdaptivePolicy.Decision next = policy.evaluate(state, System.nanoTime());
+        AdaptivePolicy.Decision previous;
+        synchronized (this) {
+            if (next == decision) {
+                return;
+            }
+            previous = decision;
+            decision = next;
+        }
+        DeviceState current = state;
+        String change = previous.getName() + " → " + next + " bei " + current;
+        Log.i(TAG, String.format(Locale.US, "Anpassung %s, Latenz vorher %.1fms", change, averageLatencyMs));
+
+        // Accelerator im Worker-Thread wechseln, damit keine Inferenz parallel läuft
+        worker.execute(() -> {
+            Accelerator accelerator = chooseAccelerator(next);
+            if (classifier.getAccelerator() != accelerator) {
+                try {
+                    Classifier replacement = factory.create(accelerator);
+                    classifier.close();
+                    classifier = replacement;
+                    classifier.setParallelPreprocessor(preprocessor);
+                    pixels = null;
+                } catch (Exception e) {
+                    Log.e(TAG, "Wechsel auf " + accelerator + " fehlgeschlagen", e);
+                }
+            }
+            applyThreads(next.getThreads());
+            latencyBeforeChangeMs = averageLatencyMs;
+            pendingChange = change;
+            samplesSinceChange = 0;
+        });
+        if (listener != null) {
+            listener.onDecisionChanged(next, current);
+        }
+    }
+
+    /**
+     * Verteilt die Vorverarbeitung auf höchstens {@code count} Threads (der
+     * Worker rechnet mit). Der Pool bleibt bestehen, nur die Streifen werden begrenzt.
+     */
+    private void applyThreads(int count) {
+        if (preprocessor != null) {
+            preprocessor.setStripeLimit(count);
+        }
+    }
+
+    /** Läuft im Worker-Thread */
+    private void recordLatency(double latencyMs) {
+        averageLatencyMs = averageLatencyMs == 0 ? latencyMs : averageLatencyMs * 0.8 + latencyMs * 0.2;
+        if (samplesSinceChange >= 0 && ++samplesSinceChange == LATENCY_SAMPLES_AFTER) {
+            Log.i(TAG, String.format(Locale.US, "Nach Anpassung %s: Latenz %.1fms (vorher %.1fms)",
+                    pendingChange, averageLatencyMs, latencyBeforeChangeMs));
+            samplesSinceChange = -1;
+        }
+    }
+
+    private Accelerator chooseAccelerator(AdaptivePolicy.Decision decision) {
+        return preferred == Accelerator.GPU && decision.isGpuAllowed() ? Accelerator.GPU : Accelerator.CPU;
+    }
+
+    private static DeviceState readBattery(Intent intent, DeviceState state) {
+        int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, 100);
+        int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        boolean charging = status == BatteryManager.BATTERY_STATUS_CHARGING
+                || status == BatteryManager.BATTERY_STATUS_FULL;
+        int percent = level < 0 || scale <= 0 ? state.getBatteryPercent() : level * 100 / scale;
+        return state.withBattery(percent, charging);
+    }
+
+    /** @param listener Empfänger von Änderungen der Einstellung */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** @return aktuelle Einstellung */
+    public synchronized AdaptivePolicy.Decision getDecision() {
+        return decision;
+    }
+
+    /** @return zuletzt beobachteter Gerätezustand */
+    public DeviceState getDeviceState() {
+        return state;
+    }
+
+    /** @return Kurzstatistik für Logs */
+    public synchronized String getStats() {
+        return String.format(Locale.US, "AdaptiveScheduler: %s, %d Bilder, %d verworfen, Latenz %.1fms",
+                decision.getName(), submitted, dropped, averageLatencyMs);
+    }
+
+    @Override
+    public void close() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && thermalListener != null) {
+            powerManager.removeThermalStatusListener(thermalListener);
+        }
+        context.unregisterReceiver(powerReceiver);
+        worker.execute(() -> {
+            try {
+                classifier.close();
+            } catch (Exception e) {
+                Log.e(TAG, "Classifier konnte nicht geschlossen werden", e);
+            }
+            if (preprocessor != null) {
+                preprocessor.shutdown();
+            }
+        });
+        worker.shutdown();
+    }
+}
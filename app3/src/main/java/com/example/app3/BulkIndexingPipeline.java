@@ -0,0 +1,572 @@
+package com.example.app3;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Process;
+import android.util.Log;
+
+import com.example.common.BitmapPool;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @class BulkIndexingPipeline
+ * @brief Mehrstufige Pipeline zur Klassifikation einer ganzen Bildersammlung.
+ * <p>
+ * Stufen (jeweils über begrenzte Queues verbunden, volle Queues bremsen
+ * die vorherige Stufe aus):
+ * - Aufzählung: ein Thread liest die URIs aus der {@link ImageSource}
+ * - Dekodierung: mehrere Threads dekodieren verkleinert über den {@link BitmapPool}
+ *   und korrigieren die Drehung
+ * - Vorverarbeitung: {@link Classifier#preprocess} in wiederverwendete Eingabebuffer
+ * - Inferenz: genau ein Thread besitzt das Modell ({@link Classifier#classifyPrepared});
+ *   mit {@link PriorityScheduler} wird jedes Bild als Massenaufgabe eingereiht,
+ *   interaktive Anfragen auf demselben Modell kommen dazwischen an die Reihe
+ * - Ausgabe: ein Thread übergibt die Ergebnisse an den {@link ResultSink}
+ * <p>
+ * Dadurch überlappt das Dekodieren auf mehreren Kernen mit der Inferenz.
+ * Die Anzahl gleichzeitig vorhandener Eingabebuffer und dekodierter Bitmaps
+ * ist fest begrenzt, der Speicherbedarf hängt also nicht von der Anzahl Bilder ab.
+ */
+public class BulkIndexingPipeline {
+
+    private static final String TAG = "BulkIndexing";
+
+    /**
+     * Empfänger der Ergebnisse. Alle Methoden werden aus demselben
+     * Hintergrundthread aufgerufen.
+     */
+    public interface ResultSink {
+
+        /**
+         * @param id     ID des Bildes laut {@link ImageSource}
+         * @param uri      URI des Bildes
+         * @param modified Änderungsmarke laut {@link ImageSource}
+         * @param result   Klassifikationsergebnis
+         */
+        void onResult(long id, Uri uri, long modified, ClassificationResult result);
+
+        /**
+         * @param id       ID des Bildes
+         * @param uri      URI des Bildes
+         * @param modified Änderungsmarke laut {@link ImageSource}
+         * @param error    Fehler beim Dekodieren oder bei der Inferenz
+         */
+        void onFailure(long id, Uri uri, long modified, Exception error);
+
+        /**
+         * Wird genau einmal aufgerufen, auch nach {@link #cancel()}.
+         *
+         * @param stats Statistik des Durchlaufs
+         */
+        void onComplete(Stats stats);
+    }
+
+    /** Ein Bild auf dem Weg durch die Pipeline */
+    private static final class Item {
+        final long id;
+        final Uri uri;
+        final int orientation;
+        final long modified;
+        Bitmap bitmap;
+        ByteBuffer input;
+        ClassificationResult result;
+        Exception error;
+
+        Item(long id, Uri uri, int orientation, long modified) {
+            this.id = id;
+            this.uri = uri;
+            this.orientation = orientation;
+            this.modified = modified;
+        }
+    }
+
+    /** Ende-Markierung, wird durch alle Stufen weitergereicht */
+    private static final Item END = new Item(-1, null, 0, 0);
+
+    private final Classifier classifier;
+    private final ContentResolver resolver;
+    private final ImageSource source;
+    private final ResultSink sink;
+    private final BitmapPool bitmapPool;
+    private final PriorityScheduler scheduler;
+    private final int decodeThreads;
+    private final int preprocessThreads;
+    private final int decodeMaxSize;
+    private final boolean embeddings;
+
+    private final BlockingQueue<Item> uriQueue;
+    private final BlockingQueue<Item> bitmapQueue;
+    private final BlockingQueue<Item> tensorQueue;
+    private final BlockingQueue<Item> resultQueue;
+    /** Freie Eingabebuffer; deren Anzahl begrenzt die vorverarbeiteten Bilder */
+    private final BlockingQueue<ByteBuffer> freeInputs;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicInteger activeDecoders = new AtomicInteger();
+    private final AtomicInteger activePreprocessors = new AtomicInteger();
+
+    private final AtomicLong enumerated = new AtomicLong();
+    private final AtomicLong decoded = new AtomicLong();
+    private final AtomicLong classified = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong decodeNanos = new AtomicLong();
+    private final AtomicLong preprocessNanos = new AtomicLong();
+    private final AtomicLong inferenceNanos = new AtomicLong();
+
+    private volatile boolean started;
+    private volatile boolean cancelled;
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    private BulkIndexingPipeline(Builder builder) {
+        this.classifier = builder.classifier;
+        this.resolver = builder.resolver;
+        this.source = builder.source;
+        this.sink = builder.sink;
+        this.bitmapPool = builder.bitmapPool;
+        this.scheduler = builder.scheduler;
+        this.decodeThreads = builder.decodeThreads;
+        this.preprocessThreads = builder.preprocessThreads;
+        this.decodeMaxSize = builder.decodeMaxSize > 0 ? builder.decodeMaxSize : classifier.getImageSize();
+        this.embeddings = builder.embeddings;
+
+        this.uriQueue = new ArrayBlockingQueue<>(builder.queueCapacity);
+        // Dekodierte Bitmaps sind groß, daher nur wenige puffern
+        this.bitmapQueue = new ArrayBlockingQueue<>(decodeThreads);
+        this.tensorQueue = new ArrayBlockingQueue<>(builder.inputBuffers);
+        this.resultQueue = new ArrayBlockingQueue<>(builder.queueCapacity);
+        this.freeInputs = new ArrayBlockingQueue<>(builder.inputBuffers);
+        for (int i = 0; i < builder.inputBuffers; i++) {
+            freeInputs.add(classifier.createInputBuffer());
+        }
+    }
+
+    /**
+     * Startet alle Stufen. Kann nur einmal aufgerufen werden.
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("Pipeline wurde bereits gestartet");
+        }
+        started = true;
+        startNanos = System.nanoTime();
+        activeDecoders.set(decodeThreads);
+        activePreprocessors.set(preprocessThreads);
+
+        addThread("enumerate", Process.THREAD_PRIORITY_BACKGROUND, this::runEnumerate);
+        for (int i = 0; i < decodeThreads; i++) {
+            addThread("decode-" + i, Process.THREAD_PRIORITY_BACKGROUND, this::runDecode);
+        }
+        for (int i = 0; i < preprocessThreads; i++) {
+            addThread("preprocess-" + i, Process.THREAD_PRIORITY_BACKGROUND, this::runPreprocess);
+        }
+        addThread("inference", Process.THREAD_PRIORITY_DEFAULT, this::runInference);
+        addThread("sink", Process.THREAD_PRIORITY_BACKGROUND, this::runSink);
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    /**
+     * Bricht die Verarbeitung ab. {@link ResultSink#onComplete} wird trotzdem aufgerufen.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Wartet, bis alle Stufen beendet sind.
+     *
+     * @return Statistik des Durchlaufs
+     * @throws InterruptedException wenn der wartende Thread unterbrochen wird
+     */
+    public Stats awaitCompletion() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return getStats();
+    }
+
+    /** @return aktueller Stand (auch während der Verarbeitung) */
+    public Stats getStats() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return new Stats(enumerated.get(), decoded.get(), classified.get(), failed.get(),
+                started ? end - startNanos : 0,
+                decodeNanos.get(), preprocessNanos.get(), inferenceNanos.get(),
+                decodeThreads, preprocessThreads, cancelled);
+    }
+
+    private void addThread(String name, int priority, StageBody body) {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(priority);
+            try {
+                body.run();
+            } catch (InterruptedException e) {
+                // Abbruch über cancel()
+            }
+        }, TAG + "-" + name);
+        threads.add(thread);
+    }
+
+    private interface StageBody {
+        void run() throws InterruptedException;
+    }
+
+    /** Stufe 1: URIs aufzählen */
+    private void runEnumerate() throws InterruptedException {
+        try {
+            source.enumerate((id, uri, orientation, modified) -> {
+                if (cancelled) {
+                    throw new InterruptedException();
+                }
+                uriQueue.put(new Item(id, uri, orientation, modified));
+                enumerated.incrementAndGet();
+            });
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Aufzählung der Bilder fehlgeschlagen", e);
+        }
+        for (int i = 0; i < decodeThreads; i++) {
+            uriQueue.put(END);
+        }
+    }
+
+    /** Stufe 2: verkleinert dekodieren und Drehung korrigieren */
+    private void runDecode() throws InterruptedException {
+        while (true) {
+            Item item = uriQueue.take();
+            if (item == END) {
+                finishWorker(activeDecoders, bitmapQueue, preprocessThreads);
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                Bitmap bitmap = bitmapPool.decode(resolver, item.uri, decodeMaxSize);
+                if (item.orientation != 0) {
+                    Bitmap rotated = bitmapPool.getRotated(bitmap, item.orientation);
+                    bitmapPool.put(bitmap);
+                    bitmap = rotated;
+                }
+                item.bitmap = bitmap;
+                decoded.incrementAndGet();
+            } catch (Exception e) {
+                item.error = e;
+            }
+            decodeNanos.addAndGet(System.nanoTime() - start);
+
+            // Fehlerhafte Bilder gehen direkt an die Ausgabe
+            if (item.error != null) {
+                resultQueue.put(item);
+            } else {
+                bitmapQueue.put(item);
+            }
+        }
+    }
+
+    /** Stufe 3: in einen freien Eingabebuffer vorverarbeiten */
+    private void runPreprocess() throws InterruptedException {
+        int[] pixels = new int[classifier.getImageSize() * classifier.getImageSize()];
+        while (true) {
+            Item item = bitmapQueue.take();
+            if (item == END) {
+                finishWorker(activePreprocessors, tensorQueue, 1);
+                return;
+            }
+            ByteBuffer input = freeInputs.take();
+            long start = System.nanoTime();
+            try {
+                classifier.preprocess(item.bitmap, input, pixels);
+                item.input = input;
+            } catch (RuntimeException e) {
+                item.error = e;
+                freeInputs.put(input);
+            }
+            bitmapPool.put(item.bitmap);
+            item.bitmap = null;
+            preprocessNanos.addAndGet(System.nanoTime() - start);
+
+            if (item.error != null) {
+                resultQueue.put(item);
+            } else {
+                tensorQueue.put(item);
+            }
+        }
+    }
+
+    /** Stufe 4: Inferenz (einziger Thread mit Zugriff auf das Modell) */
+    private void runInference() throws InterruptedException {
+        while (true) {
+            Item item = tensorQueue.take();
+            if (item == END) {
+                resultQueue.put(END);
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                item.result = classify(item.input);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                item.error = e;
+            }
+            inferenceNanos.addAndGet(System.nanoTime() - start);
+            freeInputs.put(item.input);
+            item.input = null;
+            resultQueue.put(item);
+        }
+    }
+
+    /**
+     * Inferenz für ein Bild, mit Scheduler als Massenaufgabe (wartet auch
+     * auf vorgezogene interaktive Anfragen).
+     */
+    private ClassificationResult classify(ByteBuffer input) throws Exception {
+        if (scheduler == null) {
+            return classifier.classifyPrepared(input, null, embeddings);
+        }
+        Future<ClassificationResult> future = scheduler.submit(PriorityScheduler.Priority.BULK,
+                () -> classifier.classifyPrepared(input, null, embeddings));
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // Abbruch: noch wartende Aufgabe nicht mehr ausführen
+            future.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /** Stufe 5: Ergebnisse ausgeben */
+    private void runSink() throws InterruptedException {
+        try {
+            while (true) {
+                Item item = resultQueue.take();
+                if (item == END) {
+                    return;
+                }
+                try {
+                    if (item.error != null) {
+                        failed.incrementAndGet();
+                        sink.onFailure(item.id, item.uri, item.modified, item.error);
+                    } else {
+                        classified.incrementAndGet();
+                        sink.onResult(item.id, item.uri, item.modified, item.result);
+                    }
+                } catch (RuntimeException e) {
+                    // Ein Fehler im Sink darf die Pipeline nicht blockieren
+                    Log.e(TAG, "ResultSink fehlgeschlagen", e);
+                }
+            }
+        } finally {
+            endNanos = System.nanoTime();
+            Stats stats = getStats();
+            Log.i(TAG, stats.toString());
+            sink.onComplete(stats);
+        }
+    }
+
+    /**
+     * Beendet einen Worker einer mehrfach besetzten Stufe; der letzte
+     * reicht die Ende-Markierung an alle Worker der nächsten Stufe weiter.
+     */
+    private static void finishWorker(AtomicInteger active, BlockingQueue<Item> next, int nextWorkers)
+            throws InterruptedException {
+        if (active.decrementAndGet() == 0) {
+            for (int i = 0; i < nextWorkers; i++) {
+                next.put(END);
+            }
+        }
+    }
+
+    /**
+     * @class Stats
+     * @brief Statistik eines Pipeline-Durchlaufs.
+     */
+    public static final class Stats {
+
+        private final long enumerated;
+        private final long decoded;
+        private final long classified;
+        private final long failed;
+        private final long elapsedNanos;
+        private final long decodeNanos;
+        private final long preprocessNanos;
+        private final long inferenceNanos;
+        private final int decodeThreads;
+        private final int preprocessThreads;
+        private final boolean cancelled;
+
+        Stats(long enumerated, long decoded, long classified, long failed, long elapsedNanos,
+              long decodeNanos, long preprocessNanos, long inferenceNanos,
+              int decodeThreads, int preprocessThreads, boolean cancelled) {
+            this.enumerated = enumerated;
+            this.decoded = decoded;
+            this.classified = classified;
+            this.failed = failed;
+            this.elapsedNanos = elapsedNanos;
+            this.decodeNanos = decodeNanos;
+            this.preprocessNanos = preprocessNanos;
+            this.inferenceNanos = inferenceNanos;
+            this.decodeThreads = decodeThreads;
+            this.preprocessThreads = preprocessThreads;
+            this.cancelled = cancelled;
+        }
+
+        /** @return Anzahl aufgezählter Bilder */
+        public long getEnumerated() {
+            return enumerated;
+        }
+
+        /** @return Anzahl erfolgreich dekodierter Bilder */
+        public long getDecoded() {
+            return decoded;
+        }
+
+        /** @return Anzahl klassifizierter Bilder */
+        public long getClassified() {
+            return classified;
+        }
+
+        /** @return Anzahl fehlgeschlagener Bilder */
+        public long getFailed() {
+            return failed;
+        }
+
+        /** @return Laufzeit in Nanosekunden */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /** @return true, wenn die Pipeline abgebrochen wurde */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** @return klassifizierte Bilder pro Sekunde (Ende-zu-Ende) */
+        public double getImagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : classified * 1e9 / elapsedNanos;
+        }
+
+        /** Anteil der Laufzeit, in dem die Threads einer Stufe beschäftigt waren */
+        private double utilization(long busyNanos, int workers) {
+            return elapsedNanos == 0 ? 0 : (double) busyNanos / ((double) elapsedNanos * workers);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d/%d Bilder klassifiziert (%d fehlgeschlagen) in %.1fs: %.1f Bilder/s%s; "
+                            + "Auslastung Dekodieren %.0f%% (%d Threads), Vorverarbeitung %.0f%% (%d), Inferenz %.0f%%",
+                    classified, enumerated, failed, elapsedNanos / 1e9, getImagesPerSecond(),
+                    cancelled ? " (abgebrochen)" : "",
+                    utilization(decodeNanos, decodeThreads) * 100, decodeThreads,
+                    utilization(preprocessNanos, preprocessThreads) * 100, preprocessThreads,
+                    utilization(inferenceNanos, 1) * 100);
+        }
+    }
+
+    /**
+     * @class Builder
+     * @brief Konfiguration einer {@link BulkIndexingPipeline}.
+     */
+    public static class Builder {
+
+        private final Classifier classifier;
+        private final ContentResolver resolver;
+        private final ImageSource source;
+        private final ResultSink sink;
+        private BitmapPool bitmapPool = BitmapPool.getShared();
+        private PriorityScheduler scheduler;
+        // Ein Kern bleibt für die Inferenz, einer für Vorverarbeitung und Ausgabe
+        private int decodeThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+        private int preprocessThreads = 1;
+        private int queueCapacity = 32;
+        private int inputBuffers = 4;
+        private int decodeMaxSize;
+        private boolean embeddings;
+
+        /**
+         * @param classifier Classifier für Vorverarbeitung und Inferenz
+         * @param resolver   ContentResolver zum Lesen der Bilder
+         * @param source     Quelle der Bilder
+         * @param sink       Empfänger der Ergebnisse
+         */
+        public Builder(Classifier classifier, ContentResolver resolver, ImageSource source, ResultSink sink) {
+            this.classifier = classifier;
+            this.resolver = resolver;
+            this.source = source;
+            this.sink = sink;
+        }
+
+        /** @param decodeThreads Anzahl Dekodier-Threads */
+        public Builder setDecodeThreads(int decodeThreads) {
+            this.decodeThreads = Math.max(1, decodeThreads);
+            return this;
+        }
+
+        /** @param preprocessThreads Anzahl Vorverarbeitungs-Threads */
+        public Builder setPreprocessThreads(int preprocessThreads) {
+            this.preprocessThreads = Math.max(1, preprocessThreads);
+            return this;
+        }
+
+        /** @param queueCapacity Kapazität der URI- und Ergebnis-Queue */
+        public Builder setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = Math.max(1, queueCapacity);
+            return this;
+        }
+
+        /** @param inputBuffers Anzahl Eingabebuffer zwischen Vorverarbeitung und Inferenz */
+        public Builder setInputBuffers(int inputBuffers) {
+            this.inputBuffers = Math.max(1, inputBuffers);
+            return this;
+        }
+
+        /** @param decodeMaxSize Kantenlänge beim Dekodieren (0 = Eingabegröße des Modells) */
+        public Builder setDecodeMaxSize(int decodeMaxSize) {
+            this.decodeMaxSize = decodeMaxSize;
+            return this;
+        }
+
+        /** @param embeddings true = Ergebnisse enthalten das Embedding des Bildes */
+        public Builder setEmbeddings(boolean embeddings) {
+            this.embeddings = embeddings;
+            return this;
+        }
+
+        /** @param bitmapPool Pool für dekodierte Bitmaps */
+        public Builder setBitmapPool(BitmapPool bitmapPool) {
+            this.bitmapPool = bitmapPool;
+            return this;
+        }
+
+        /**
+         * @param scheduler gemeinsamer Scheduler mit interaktiven Anfragen
+         *                  oder {@code null} für direkte Inferenz
+         */
+        public Builder setScheduler(PriorityScheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public BulkIndexingPipeline build() {
+            return new BulkIndexingPipeline(this);
+        }
+    }
+}
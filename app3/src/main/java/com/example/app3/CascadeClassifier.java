@@ -0,0 +1,163 @@
+package com.example.app3;
+
+import android.graphics.Bitmap;
+
+import com.example.common.InferenceException;
+import com.example.common.InputWriter;
+
+import java.util.Locale;
+
+/**
+ * @class CascadeClassifier
+ * @brief Zweistufige Klassifikation: schnelles Modell zuerst, genaues Modell nur bei Unsicherheit.
+ * <p>
+ * Typische Kombination: quantisiertes {@code mobilenetv1.tflite} (UINT8) als
+ * schnelle Stufe und {@code mobilenetv2.tflite} (Float32) als genaue Stufe.
+ * Beide Modelle bleiben geladen. Das genaue Modell wird nur verwendet, wenn
+ * die Konfidenz des Top-1-Ergebnisses oder der Abstand zum Top-2-Ergebnis
+ * unter einem Schwellwert liegt.
+ * <p>
+ * Haben beide Modelle dieselbe Eingabegröße, wird das Bild nur einmal skaliert;
+ * jedes Modell schreibt die gemeinsamen Pixel dann mit seinem eigenen
+ * {@link InputWriter} (UINT8 roh bzw. Float32 normalisiert).
+ */
+public class CascadeClassifier {
+
+    private final Classifier fast;
+    private final Classifier accurate;
+    private final boolean sharedPreprocessing;
+    private final int[] pixels;
+
+    /** Mindestkonfidenz des Top-1-Ergebnisses der schnellen Stufe */
+    private float minConfidence = 0.6f;
+    /** Mindestabstand zwischen Top-1 und Top-2 der schnellen Stufe */
+    private float minMargin = 0.2f;
+
+    private long total;
+    private long escalated;
+    private long fastNanos;
+    private long accurateNanos;
+    private long totalNanos;
+    private boolean lastEscalated;
+
+    /**
+     * @param fast     schnelles Modell (erste Stufe)
+     * @param accurate genaues Modell (zweite Stufe)
+     */
+    public CascadeClassifier(Classifier fast, Classifier accurate) {
+        this.fast = fast;
+        this.accurate = accurate;
+        this.sharedPreprocessing = fast.getImageSize() == accurate.getImageSize();
+        this.pixels = new int[fast.getImageSize() * fast.getImageSize()];
+    }
+
+    /**
+     * Klassifiziert ein Bild über die Kaskade.
+     *
+     * @param bitmap Eingabebild
+     * @return Ergebnis der schnellen oder (bei Unsicherheit) der genauen Stufe;
+     *         die Inferenzzeit umfasst beide Stufen
+     * @throws InferenceException wenn die Inferenz fehlschlägt
+     */
+    public synchronized ClassificationResult classify(Bitmap bitmap) throws InferenceException {
+        long start = System.nanoTime();
+        fast.loadPixels(bitmap, pixels);
+        ClassificationResult result = fast.classifyPixels(pixels);
+        long afterFast = System.nanoTime();
+        fastNanos += afterFast - start;
+
+        lastEscalated = shouldEscalate(result);
+        if (lastEscalated) {
+            if (!sharedPreprocessing) {
+                accurate.loadPixels(bitmap, pixels);
+            }
+            result = accurate.classifyPixels(pixels);
+            accurateNanos += System.nanoTime() - afterFast;
+            escalated++;
+        }
+
+        long duration = System.nanoTime() - start;
+        totalNanos += duration;
+        total++;
+        return rebase(result, duration);
+    }
+
+    /**
+     * @param result Ergebnis der schnellen Stufe
+     * @return true, wenn das genaue Modell gefragt werden soll
+     */
+    boolean shouldEscalate(ClassificationResult result) {
+        float top1 = result.size() > 0 ? result.getScore(0) : 0f;
+        float top2 = result.size() > 1 ? result.getScore(1) : 0f;
+        return top1 < minConfidence || top1 - top2 < minMargin;
+    }
+
+    private static ClassificationResult rebase(ClassificationResult result, long nanos) {
+        int[] labels = new int[result.size()];
+        float[] scores = new float[result.size()];
+        for (int i = 0; i < result.size(); i++) {
+            labels[i] = result.getLabelIndex(i);
+            scores[i] = result.getScore(i);
+        }
+        return new ClassificationResult(labels, scores, nanos);
+    }
+
+    /**
+     * @param minConfidence Mindestkonfidenz für Top-1 (darunter wird eskaliert)
+     * @param minMargin     Mindestabstand Top-1 zu Top-2 (darunter wird eskaliert)
+     */
+    public synchronized void setThresholds(float minConfidence, float minMargin) {
+        this.minConfidence = minConfidence;
+        this.minMargin = minMargin;
+    }
+
+    /** @return true, wenn beim letzten Aufruf das genaue Modell verwendet wurde */
+    public synchronized boolean wasLastEscalated() {
+        return lastEscalated;
+    }
+
+    /** @return Anteil der Bilder, die an das genaue Modell gingen */
+    public synchronized double getEscalationRate() {
+        return total == 0 ? 0 : (double) escalated / total;
+    }
+
+    /** @return mittlere Latenz der Kaskade in Nanosekunden */
+    public synchronized long getAverageNanos() {
+        return total == 0 ? 0 : totalNanos / total;
+    }
+
+    /**
+     * Geschätzte Ersparnis gegenüber der ausschließlichen Verwendung des
+     * genauen Modells (gemessen an dessen mittlerer Latenz bei Eskalationen).
+     *
+     * @return mittlere eingesparte Latenz pro Bild in Nanosekunden
+     *         (0, solange das genaue Modell noch nie gelaufen ist)
+     */
+    public synchronized long getAverageSavedNanos() {
+        if (escalated == 0 || total == 0) {
+            return 0;
+        }
+        return accurateNanos / escalated - totalNanos / total;
+    }
+
+    /** @return Kurzstatistik für Logs */
+    public synchronized String getStats() {
+        return String.format(Locale.US,
+                "Kaskade: %d Bilder, eskaliert %.1f%%, schnell %.1fms, genau %.1fms, "
+                        + "Mittel %.1fms, gespart %.1fms/Bild",
+                total, getEscalationRate() * 100,
+                total == 0 ? 0 : fastNanos / 1e6 / total,
+                escalated == 0 ? 0 : accurateNanos / 1e6 / escalated,
+                getAverageNanos() / 1e6, getAverageSavedNanos() / 1e6);
+    }
+
+    /** @return schnelle Stufe */
+    public Classifier getFast() {
+        return fast;
+    }
+
+    /** @return genaue Stufe */
+    public Classifier getAccurate() {
+        return accurate;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.app3;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.system.OsConstants;
+
+import com.example.common.InferenceException;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @class ClassificationClient
+ * @brief Client für den {@link ClassificationService}, zum Kopieren in andere
+ * Apps gedacht (zusammen mit {@link ClassificationProtocol} und
+ * {@link ClassificationResult}).
+ * <p>
+ * Die Pixel jeder Anfrage werden einmal aus den Bitmaps in einen neuen
+ * {@link SharedMemory}-Bereich kopiert, der vor dem Senden auf Lesezugriff
+ * beschränkt wird; der Dienst liest direkt daraus. Alle Aufrufe und Rückrufe
+ * laufen im UI-Thread.
+ */
+public class ClassificationClient implements ServiceConnection, AutoCloseable {
+
+    /**
+     * Rückruf für eine Anfrage, im UI-Thread.
+     */
+    public interface Callback {
+        /** @param results Ergebnis je Bild in Anfragereihenfolge */
+        void onResult(ClassificationResult[] results);
+
+        /** @param error Grund, aus dem die Anfrage fehlgeschlagen ist */
+        void onError(Exception error);
+    }
+
+    private static final String SERVICE_PACKAGE = "com.example.app3";
+
+    private final Context context;
+    private final Messenger replyMessenger;
+    private final Map<Integer, Callback> pending = new HashMap<>();
+
+    private Messenger service;
+    private int nextRequestId;
+    private boolean bound;
+
+    /**
+     * Nimmt die Antworten des Dienstes im UI-Thread entgegen.
+     */
+    private static final class ReplyHandler extends Handler {
+
+        private final ClassificationClient client;
+
+        ReplyHandler(ClassificationClient client) {
+            super(Looper.getMainLooper());
+            this.client = client;
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            if (msg.what != ClassificationService.MSG_CLASSIFY) {
+                super.handleMessage(msg);
+                return;
+            }
+            Callback callback = client.pending.remove(msg.arg1);
+            if (callback == null) {
+                return;
+            }
+            try {
+                callback.onResult(ClassificationProtocol.decodeResults(
+                        msg.getData().getByteArray(ClassificationService.KEY_RESULT)));
+            } catch (InferenceException | IllegalArgumentException e) {
+                callback.onError(e);
+            }
+        }
+    }
+
+    /**
+     * @param context Context der aufrufenden App
+     */
+    public ClassificationClient(Context context) {
+        this.context = context.getApplicationContext();
+        this.replyMessenger = new Messenger(new ReplyHandler(this));
+    }
+
+    /**
+     * Bindet den Dienst; Anfragen sind möglich, sobald
+     * {@link #isConnected()} true liefert.
+     *
+     * @return false wenn der Dienst nicht gefunden wurde oder die Berechtigung fehlt
+     */
+    public boolean bind() {
+        Intent intent = new Intent();
+        intent.setComponent(new ComponentName(SERVICE_PACKAGE, ClassificationService.class.getName()));
+        bound = context.bindService(intent, this, Context.BIND_AUTO_CREATE);
+        return bound;
+    }
+
+    /** @return true wenn der Dienst verbunden ist */
+    public boolean isConnected() {
+        return service != null;
+    }
+
+    /**
+     * Sendet Bilder zur Klassifikation in einer Batch-Inferenz.
+     *
+     * @param bitmaps  höchstens {@link ClassificationProtocol#MAX_IMAGES} Bilder im Format {@code ARGB_8888}
+     * @param topK     Anzahl Klassen pro Bild, höchstens {@link ClassificationProtocol#MAX_TOP_K}
+     * @param callback Rückruf für Ergebnis oder Fehler
+     */
+    public void classify(Bitmap[] bitmaps, int topK, Callback callback) {
+        if (service == null) {
+            callback.onError(new IllegalStateException("Dienst nicht verbunden"));
+            return;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O_MR1) {
+            callback.onError(new InferenceException("Gemeinsamer Speicher erst ab Android 8.1"));
+            return;
+        }
+        SharedMemory memory = null;
+        try {
+            memory = write(bitmaps, topK);
+            Bundle data = new Bundle();
+            data.putParcelable(ClassificationService.KEY_REQUEST, memory);
+            Message msg = Message.obtain(null, ClassificationService.MSG_CLASSIFY);
+            msg.arg1 = nextRequestId++;
+            msg.replyTo = replyMessenger;
+            msg.setData(data);
+            pending.put(msg.arg1, callback);
+            try {
+                service.send(msg);
+            } catch (RemoteException e) {
+                pending.remove(msg.arg1);
+                throw e;
+            }
+        } catch (ErrnoException | RemoteException | IllegalArgumentException e) {
+            callback.onError(e);
+        } finally {
+            // Beim Senden wurde der Deskriptor dupliziert, der Dienst schließt seinen selbst
+            if (memory != null) {
+                memory.close();
+            }
+        }
+    }
+
+    /**
+     * Legt den Anfragebereich an und kopiert die Pixel hinein. Die
+     * Byte-Reihenfolge von {@code ARGB_8888} im Speicher ist R, G, B, A und
+     * entspricht damit {@link ClassificationProtocol#FORMAT_RGBA_8888}.
+     */
+    private static SharedMemory write(Bitmap[] bitmaps, int topK) throws ErrnoException {
+        int count = bitmaps.length;
+        int[] widths = new int[count];
+        int[] heights = new int[count];
+        int[] strides = new int[count];
+        for (int i = 0; i < count; i++) {
+            if (bitmaps[i].getConfig() != Bitmap.Config.ARGB_8888) {
+                throw new IllegalArgumentException("Bild " + i + " ist nicht ARGB_8888");
+            }
+            widths[i] = bitmaps[i].getWidth();
+            heights[i] = bitmaps[i].getHeight();
+            strides[i] = bitmaps[i].getRowBytes();
+        }
+        ClassificationProtocol.Image[] images = ClassificationProtocol.layout(widths, heights, strides);
+
+        SharedMemory memory = SharedMemory.create("classification", ClassificationProtocol.regionSize(images));
+        ByteBuffer region = memory.mapReadWrite();
+        try {
+            ClassificationProtocol.writeHeader(region, topK, images);
+            for (int i = 0; i < count; i++) {
+                region.position(images[i].getOffset());
+                bitmaps[i].copyPixelsToBuffer(region);
+            }
+        } finally {
+            SharedMemory.unmap(region);
+        }
+        memory.setProtect(OsConstants.PROT_READ);
+        return memory;
+    }
+
+    @Override
+    public void onServiceConnected(ComponentName name, IBinder binder) {
+        service = new Messenger(binder);
+    }
+
+    @Override
+    public void onServiceDisconnected(ComponentName name) {
+        service = null;
+        failPending(new IllegalStateException("Verbindung zum Dienst getrennt"));
+    }
+
+    private void failPending(Exception error) {
+        Callback[] callbacks = pending.values().toArray(new Callback[0]);
+        pending.clear();
+        for (Callback callback : callbacks) {
+            callback.onError(error);
+        }
+    }
+
+    /** Löst die Bindung; offene Anfragen erhalten {@link Callback#onError}. */
+    @Override
+    public void close() {
+        if (bound) {
+            context.unbindService(this);
+            bound = false;
+        }
+        service = null;
+        failPending(new IllegalStateException("Client geschlossen"));
+    }
+}
@@ -0,0 +1,494 @@
+package com.example.app3;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @class ClassificationIndex
+ * @brief Persistenter Index der Klassifikationsergebnisse mit Suche nach Label.
+ * <p>
+ * Besteht aus zwei Dateien in einem Verzeichnis:
+ * <p>
+ * {@code records.bin} – Append-only-Log, ein Eintrag fester Größe pro Ergebnis:
+ * <pre>
+ * Kopf:    int Magic 'CIDX', short Version, short K
+ * Eintrag: long Bild-ID, long Änderungsmarke, int Modell-ID,
+ *          K × short Label, K × byte Konfidenz (0–255)
+ * </pre>
+ * Wird ein Bild erneut klassifiziert, gilt der jeweils letzte Eintrag.
+ * Über Änderungsmarke und Modell-ID erkennt {@link #isCurrent}, ob ein Bild
+ * neu klassifiziert werden muss.
+ * <p>
+ * {@code inverted.bin} – invertierter Index Label → Bild-IDs, wird aus dem Log
+ * erzeugt und per Memory-Mapping gelesen:
+ * <pre>
+ * Kopf:    int Magic 'CINV', int Version, int Einträge im Log, int Anzahl Labels L
+ * int[L + 1] Offsets, long[n] Bild-IDs, byte[n] Konfidenz
+ * </pre>
+ * Die Bild-IDs eines Labels sind absteigend nach Konfidenz sortiert.
+ * Eine Suche kostet damit nur einen Zugriff auf den gemappten Bereich,
+ * es wird keine Inferenz benötigt.
+ * <p>
+ * Einträge, die nach dem letzten Aufbau angehängt wurden, hält der Index
+ * zusätzlich im Speicher; {@link #find} durchsucht sie linear und ersetzt damit
+ * überholte Treffer des gemappten Index. Suchen schreiben nie – den Neuaufbau
+ * übernimmt der Aufrufer im Hintergrund ({@link #rebuildInvertedIndex()}, z. B.
+ * am Ende der Indexierung). Erreicht der Speicheranteil {@link #MAX_TAIL}
+ * Einträge, baut {@link #append} den Index selbst neu auf, damit eine große
+ * Erstindexierung nicht jeden Eintrag bis zum Schluss doppelt im Speicher hält.
+ * <p>
+ * Reine Java-Klasse ohne Android-Abhängigkeiten.
+ */
+public class ClassificationIndex implements Closeable {
+
+    private static final int LOG_MAGIC = 0x43494458;      // "CIDX"
+    private static final int INVERTED_MAGIC = 0x43494E56; // "CINV"
+    private static final short VERSION = 2;
+    private static final int LOG_HEADER_SIZE = 8;
+    private static final int INVERTED_HEADER_SIZE = 16;
+    /** Position der Labels innerhalb eines Eintrags */
+    private static final int LABELS = 20;
+    /** Höchstzahl nicht indexierter Einträge im Speicher vor einem Neuaufbau */
+    static final int MAX_TAIL = 2048;
+
+    static final String LOG_FILE = "records.bin";
+    static final String INVERTED_FILE = "inverted.bin";
+
+    private final File directory;
+    private final int topK;
+    private final int recordSize;
+    private final RandomAccessFile logFile;
+    private final FileChannel log;
+
+    /** Bild-ID → Nummer des letzten Eintrags im Log */
+    private final Map<Long, Integer> latest = new HashMap<>();
+    private int recordCount;
+
+    /** Gemappter invertierter Index, null solange keiner gebaut wurde */
+    private MappedByteBuffer inverted;
+    private int invertedLabels;
+    /** Anzahl der Log-Einträge, aus denen {@link #inverted} gebaut wurde */
+    private int indexedCount;
+    /** Bild-ID → letzter Eintrag seit dem Aufbau (Bytes ab {@link #LABELS}) */
+    private final Map<Long, byte[]> tail = new LinkedHashMap<>();
+
+    private final ByteBuffer recordBuffer;
+
+    /**
+     * Öffnet einen Index bzw. legt ihn neu an.
+     *
+     * @param directory Verzeichnis des Index (z. B. {@code getFilesDir()/index})
+     * @param topK      Anzahl gespeicherter Klassen pro Bild (bei bestehendem Index muss er übereinstimmen)
+     * @throws IOException bei Lesefehlern oder inkompatiblem Format
+     */
+    public ClassificationIndex(File directory, int topK) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Verzeichnis kann nicht angelegt werden: " + directory);
+        }
+        this.directory = directory;
+        this.topK = topK;
+        this.recordSize = LABELS + 3 * topK;
+        this.recordBuffer = ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+
+        this.logFile = new RandomAccessFile(new File(directory, LOG_FILE), "rw");
+        this.log = logFile.getChannel();
+        try {
+            openLog();
+            openInverted();
+        } catch (IOException e) {
+            logFile.close();
+            throw e;
+        }
+    }
+
+    /** Liest bzw. schreibt den Kopf und baut die Zuordnung Bild-ID → Eintrag auf. */
+    private void openLog() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (log.size() < LOG_HEADER_SIZE) {
+            header.putInt(LOG_MAGIC).putShort(VERSION).putShort((short) topK).flip();
+            log.truncate(0);
+            log.write(header, 0);
+            log.force(false);
+            return;
+        }
+        log.read(header, 0);
+        if (header.getInt(0) != LOG_MAGIC || header.getShort(4) != VERSION) {
+            throw new IOException("Unbekanntes Indexformat: " + directory);
+        }
+        if (header.getShort(6) != topK) {
+            throw new IOException("Index wurde mit K=" + header.getShort(6) + " angelegt");
+        }
+
+        // Unvollständigen letzten Eintrag (Absturz beim Schreiben) verwerfen
+        long payload = log.size() - LOG_HEADER_SIZE;
+        recordCount = (int) (payload / recordSize);
+        if (payload % recordSize != 0) {
+            log.truncate(recordOffset(recordCount));
+        }
+
+        if (recordCount > 0) {
+            MappedByteBuffer records = log.map(FileChannel.MapMode.READ_ONLY, LOG_HEADER_SIZE,
+                    (long) recordCount * recordSize);
+            records.order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < recordCount; i++) {
+                latest.put(records.getLong(i * recordSize), i);
+            }
+        }
+    }
+
+    /**
+     * Mappt einen vorhandenen invertierten Index, sofern er zum Log passt, und
+     * lädt die danach angehängten Einträge in den Speicher.
+     */
+    private void openInverted() throws IOException {
+        File file = new File(directory, INVERTED_FILE);
+        if (file.isFile() && file.length() >= INVERTED_HEADER_SIZE) {
+            MappedByteBuffer mapped = map(file);
+            if (mapped.getInt(0) == INVERTED_MAGIC && mapped.getInt(4) == VERSION
+                    && mapped.getInt(8) <= recordCount) {
+                inverted = mapped;
+                invertedLabels = mapped.getInt(12);
+                indexedCount = mapped.getInt(8);
+            }
+        }
+        for (int record = indexedCount; record < recordCount; record++) {
+            ByteBuffer buffer = readRecord(record);
+            addToTail(buffer.getLong(0), buffer);
+        }
+    }
+
+    /** Merkt sich Labels und Konfidenzen eines noch nicht indexierten Eintrags. */
+    private void addToTail(long imageId, ByteBuffer record) {
+        byte[] entry = new byte[recordSize - LABELS];
+        for (int i = 0; i < entry.length; i++) {
+            entry[i] = record.get(LABELS + i);
+        }
+        tail.remove(imageId);
+        tail.put(imageId, entry);
+    }
+
+    /**
+     * Hängt ein Ergebnis an das Log an.
+     *
+     * @param imageId  ID des Bildes (z. B. MediaStore-ID)
+     * @param modified Änderungsmarke des Bildes (z. B. MediaStore-Generation)
+     * @param modelId  ID des verwendeten Modells
+     * @param result   Klassifikationsergebnis (es werden höchstens K Einträge gespeichert)
+     * @throws IOException bei Schreibfehlern
+     * @see #MAX_TAIL
+     */
+    public synchronized void append(long imageId, long modified, int modelId, ClassificationResult result)
+            throws IOException {
+        recordBuffer.clear();
+        recordBuffer.putLong(imageId).putLong(modified).putInt(modelId);
+        for (int i = 0; i < topK; i++) {
+            recordBuffer.putShort(i < result.size() ? (short) result.getLabelIndex(i) : -1);
+        }
+        for (int i = 0; i < topK; i++) {
+            recordBuffer.put(i < result.size() ? quantize(result.getScore(i)) : 0);
+        }
+        recordBuffer.flip();
+        long offset = recordOffset(recordCount);
+        while (recordBuffer.hasRemaining()) {
+            offset += log.write(recordBuffer, offset);
+        }
+        latest.put(imageId, recordCount);
+        recordCount++;
+        addToTail(imageId, recordBuffer);
+        if (tail.size() >= MAX_TAIL) {
+            rebuildInvertedIndex();
+        }
+    }
+
+    /**
+     * Schreibt alle angehängten Einträge auf den Datenträger.
+     *
+     * @throws IOException bei Schreibfehlern
+     */
+    public synchronized void flush() throws IOException {
+        log.force(false);
+    }
+
+    /**
+     * @param imageId ID des Bildes
+     * @return Modell-ID des letzten Eintrags oder {@code null}, wenn das Bild nicht im Index ist
+     * @throws IOException bei Lesefehlern
+     */
+    public synchronized Integer getModelId(long imageId) throws IOException {
+        Integer record = latest.get(imageId);
+        if (record == null) {
+            return null;
+        }
+        return readRecord(record).getInt(16);
+    }
+
+    /**
+     * Prüft, ob ein Bild bereits in dieser Version mit diesem Modell klassifiziert wurde.
+     *
+     * @param imageId  ID des Bildes
+     * @param modified aktuelle Änderungsmarke des Bildes
+     * @param modelId  ID des aktuellen Modells
+     * @return true, wenn keine erneute Klassifikation nötig ist
+     * @throws IOException bei Lesefehlern
+     */
+    public synchronized boolean isCurrent(long imageId, long modified, int modelId) throws IOException {
+        Integer record = latest.get(imageId);
+        if (record == null) {
+            return false;
+        }
+        ByteBuffer buffer = readRecord(record);
+        return buffer.getLong(8) == modified && buffer.getInt(16) == modelId;
+    }
+
+    /**
+     * @param imageId ID des Bildes
+     * @return gespeichertes Ergebnis (ohne Inferenzzeit) oder {@code null}
+     * @throws IOException bei Lesefehlern
+     */
+    public synchronized ClassificationResult get(long imageId) throws IOException {
+        Integer record = latest.get(imageId);
+        if (record == null) {
+            return null;
+        }
+        ByteBuffer buffer = readRecord(record);
+        int count = 0;
+        while (count < topK && buffer.getShort(LABELS + 2 * count) >= 0) {
+            count++;
+        }
+        int[] labels = new int[count];
+        float[] scores = new float[count];
+        for (int i = 0; i < count; i++) {
+            labels[i] = buffer.getShort(LABELS + 2 * i);
+            scores[i] = dequantize(buffer.get(LABELS + 2 * topK + i));
+        }
+        return new ClassificationResult(labels, scores, 0);
+    }
+
+    /**
+     * Sucht alle Bilder, die ein Label unter ihren Top-K haben. Liest den
+     * zuletzt gebauten invertierten Index und die seitdem angehängten Einträge
+     * aus dem Speicher; es wird nichts geschrieben.
+     *
+     * @param label    Index des Labels
+     * @param minScore minimale Konfidenz in [0, 1]
+     * @return Bild-IDs, absteigend nach Konfidenz
+     */
+    public synchronized long[] find(int label, float minScore) {
+        if (label < 0) {
+            return new long[0];
+        }
+        int threshold = quantize(minScore) & 0xFF;
+
+        // Treffer unter den neuen Einträgen: Schlüssel (255 - Konfidenz, Position)
+        long[] tailIds = new long[tail.size()];
+        long[] tailKeys = new long[tail.size()];
+        int tailCount = 0;
+        for (Map.Entry<Long, byte[]> entry : tail.entrySet()) {
+            byte[] record = entry.getValue();
+            for (int k = 0; k < topK; k++) {
+                int entryLabel = (short) ((record[2 * k] & 0xFF) | (record[2 * k + 1] << 8));
+                int score = record[2 * topK + k] & 0xFF;
+                if (entryLabel == label && score >= threshold) {
+                    tailKeys[tailCount] = ((long) (255 - score) << 32) | tailCount;
+                    tailIds[tailCount++] = entry.getKey();
+                    break;
+                }
+            }
+        }
+        Arrays.sort(tailKeys, 0, tailCount);
+
+        int start = 0;
+        int end = 0;
+        int idsOffset = 0;
+        int scoresOffset = 0;
+        if (inverted != null && label < invertedLabels) {
+            start = inverted.getInt(INVERTED_HEADER_SIZE + 4 * label);
+            end = inverted.getInt(INVERTED_HEADER_SIZE + 4 * (label + 1));
+            int total = inverted.getInt(INVERTED_HEADER_SIZE + 4 * invertedLabels);
+            idsOffset = INVERTED_HEADER_SIZE + 4 * (invertedLabels + 1);
+            scoresOffset = idsOffset + 8 * total;
+        }
+
+        // Beide Listen sind absteigend sortiert: zusammenführen, überholte
+        // Einträge des gemappten Index überspringen und beim ersten zu kleinen
+        // Wert abbrechen
+        long[] ids = new long[end - start + tailCount];
+        int count = 0;
+        int t = 0;
+        for (int i = start; i < end; i++) {
+            int score = inverted.get(scoresOffset + i) & 0xFF;
+            if (score < threshold) {
+                break;
+            }
+            long id = inverted.getLong(idsOffset + 8 * i);
+            if (tail.containsKey(id)) {
+                continue;
+            }
+            while (t < tailCount && 255 - (int) (tailKeys[t] >>> 32) > score) {
+                ids[count++] = tailIds[(int) tailKeys[t++]];
+            }
+            ids[count++] = id;
+        }
+        while (t < tailCount) {
+            ids[count++] = tailIds[(int) tailKeys[t++]];
+        }
+        return count == ids.length ? ids : Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Baut den invertierten Index aus dem aktuellen Stand des Logs neu auf.
+     * Die neue Datei wird erst vollständig geschrieben und dann atomar umbenannt.
+     * Schreibt und synchronisiert eine Datei, daher nicht im UI-Thread aufrufen.
+     *
+     * @throws IOException bei Lese- oder Schreibfehlern
+     */
+    public synchronized void rebuildInvertedIndex() throws IOException {
+        if (inverted != null && tail.isEmpty()) {
+            return;
+        }
+        int[] records = new int[latest.size()];
+        int n = 0;
+        for (int record : latest.values()) {
+            records[n++] = record;
+        }
+        Arrays.sort(records);
+
+        MappedByteBuffer log = n == 0 ? null
+                : this.log.map(FileChannel.MapMode.READ_ONLY, LOG_HEADER_SIZE, (long) recordCount * recordSize);
+        if (log != null) {
+            log.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        // Einträge pro Label zählen
+        int labels = 0;
+        for (int r = 0; r < n; r++) {
+            for (int k = 0; k < topK; k++) {
+                labels = Math.max(labels, log.getShort(records[r] * recordSize + LABELS + 2 * k) + 1);
+            }
+        }
+        int[] offsets = new int[labels + 1];
+        for (int r = 0; r < n; r++) {
+            for (int k = 0; k < topK; k++) {
+                int label = log.getShort(records[r] * recordSize + LABELS + 2 * k);
+                if (label >= 0) {
+                    offsets[label + 1]++;
+                }
+            }
+        }
+        for (int l = 0; l < labels; l++) {
+            offsets[l + 1] += offsets[l];
+        }
+        int total = offsets[labels];
+
+        // Pro Label Schlüssel (255 - Konfidenz, Eintrag) sammeln und sortieren
+        long[] keys = new long[total];
+        int[] fill = Arrays.copyOf(offsets, labels);
+        for (int r = 0; r < n; r++) {
+            int base = records[r] * recordSize;
+            for (int k = 0; k < topK; k++) {
+                int label = log.getShort(base + LABELS + 2 * k);
+                if (label >= 0) {
+                    int score = log.get(base + LABELS + 2 * topK + k) & 0xFF;
+                    keys[fill[label]++] = ((long) (255 - score) << 32) | records[r];
+                }
+            }
+        }
+
+        int size = INVERTED_HEADER_SIZE + 4 * (labels + 1) + 9 * total;
+        ByteBuffer out = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(INVERTED_MAGIC).putInt(VERSION).putInt(recordCount).putInt(labels);
+        for (int offset : offsets) {
+            out.putInt(offset);
+        }
+        int idsOffset = out.position();
+        int scoresOffset = idsOffset + 8 * total;
+        for (int l = 0; l < labels; l++) {
+            Arrays.sort(keys, offsets[l], offsets[l + 1]);
+        }
+        for (int i = 0; i < total; i++) {
+            int record = (int) keys[i];
+            out.putLong(idsOffset + 8 * i, log.getLong(record * recordSize));
+            out.put(scoresOffset + i, (byte) (255 - (int) (keys[i] >>> 32)));
+        }
+
+        File tmp = new File(directory, INVERTED_FILE + ".tmp");
+        try (RandomAccessFile file = new RandomAccessFile(tmp, "rw")) {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            out.rewind();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(false);
+        }
+        File target = new File(directory, INVERTED_FILE);
+        if (!tmp.renameTo(target)) {
+            throw new IOException("Index kann nicht ersetzt werden: " + target);
+        }
+        inverted = map(target);
+        invertedLabels = labels;
+        indexedCount = recordCount;
+        tail.clear();
+    }
+
+    /** @return Anzahl verschiedener Bilder im Index */
+    public synchronized int size() {
+        return latest.size();
+    }
+
+    /** @return Anzahl Einträge im Log (inkl. überholter) */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.force(false);
+        logFile.close();
+        inverted = null;
+    }
+
+    private ByteBuffer readRecord(int record) throws IOException {
+        recordBuffer.clear();
+        long offset = recordOffset(record);
+        while (recordBuffer.hasRemaining()) {
+            int read = log.read(recordBuffer, offset + recordBuffer.position());
+            if (read < 0) {
+                throw new IOException("Index ist beschädigt");
+            }
+        }
+        return recordBuffer;
+    }
+
+    private long recordOffset(int record) {
+        return LOG_HEADER_SIZE + (long) record * recordSize;
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            return mapped;
+        }
+    }
+
+    /** Konfidenz in [0, 1] → 0–255 */
+    static byte quantize(float score) {
+        return (byte) Math.round(Math.max(0f, Math.min(1f, score)) * 255f);
+    }
+
+    /** 0–255 → Konfidenz in [0, 1] */
+    static float dequantize(byte score) {
+        return (score & 0xFF) / 255f;
+    }
+}
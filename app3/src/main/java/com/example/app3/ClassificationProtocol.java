@@ -0,0 +1,363 @@
+package com.example.app3;
+
+import com.example.common.InferenceException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * @class ClassificationProtocol
+ * @brief Binärformat zwischen {@link ClassificationService} und Client-Apps.
+ * <p>
+ * Anfrage: ein gemeinsamer Speicherbereich ({@code SharedMemory}), den der
+ * Client beschreibt und der Dienst nur liest. Er enthält
+ * - einen Kopf: Magic {@code "CLRQ"}, Version, Anzahl Bilder, Top-K,
+ * - je Bild einen Eintrag: Breite, Höhe, Bytes pro Zeile, Byte-Offset, Format,
+ * - die Pixel, je Bild ab einer 64-Byte-Grenze, im Format
+ *   {@link #FORMAT_RGBA_8888} (Bytefolge von {@code Bitmap.copyPixelsToBuffer}).
+ * <p>
+ * Der Dienst tastet die Pixel direkt aus dem gemappten Bereich auf
+ * Modellgröße ab ({@link #samplePixels}); es entsteht weder ein geparceltes
+ * noch ein kopiertes Bitmap.
+ * <p>
+ * Antwort: ein kompaktes {@code byte[]} mit Magic {@code "CLRS"}, Version,
+ * Status, Anzahl Bilder, Top-K und Inferenzzeit des Batches in Mikrosekunden,
+ * danach je Bild Top-K Paare aus Klassenindex und Score (8 Bytes je Paar).
+ * <p>
+ * Alle Zahlen sind Little Endian. Reine Java-Klasse, läuft auch auf einer
+ * normalen JVM.
+ */
+public final class ClassificationProtocol {
+
+    /** "CLRQ" */
+    public static final int REQUEST_MAGIC = 0x434C5251;
+    /** "CLRS" */
+    public static final int RESULT_MAGIC = 0x434C5253;
+    public static final int VERSION = 1;
+
+    /** Pixel als Bytefolge R, G, B, A */
+    public static final int FORMAT_RGBA_8888 = 1;
+
+    public static final int STATUS_OK = 0;
+    /** Anfrage verletzt das Format */
+    public static final int STATUS_BAD_REQUEST = 1;
+    /** Modell fehlt oder Inferenz fehlgeschlagen */
+    public static final int STATUS_INFERENCE_FAILED = 2;
+    /** Gerät unterstützt keinen gemeinsamen Speicher (vor Android 8.1) */
+    public static final int STATUS_UNSUPPORTED = 3;
+
+    /** Höchstens so viele Bilder pro Anfrage (begrenzt die Batch-Buffer des Dienstes) */
+    public static final int MAX_IMAGES = 16;
+    /** Höchstens so viele Klassen pro Bild in der Antwort */
+    public static final int MAX_TOP_K = 10;
+    /** Größte zulässige Kantenlänge eines Bildes */
+    public static final int MAX_EDGE = 8192;
+
+    static final int REQUEST_HEADER_BYTES = 16;
+    static final int IMAGE_ENTRY_BYTES = 20;
+    static final int RESULT_HEADER_BYTES = 24;
+    private static final int ALIGNMENT = 64;
+
+    private ClassificationProtocol() {
+    }
+
+    /**
+     * Lage eines Bildes im Anfragebereich.
+     */
+    public static final class Image {
+
+        private final int width;
+        private final int height;
+        private final int stride;
+        private final int offset;
+        private final int format;
+
+        public Image(int width, int height, int stride, int offset, int format) {
+            this.width = width;
+            this.height = height;
+            this.stride = stride;
+            this.offset = offset;
+            this.format = format;
+        }
+
+        /** @return Breite in Pixeln */
+        public int getWidth() {
+            return width;
+        }
+
+        /** @return Höhe in Pixeln */
+        public int getHeight() {
+            return height;
+        }
+
+        /** @return Bytes pro Zeile */
+        public int getStride() {
+            return stride;
+        }
+
+        /** @return Byte-Offset des ersten Pixels im Bereich */
+        public int getOffset() {
+            return offset;
+        }
+
+        /** @return Pixelformat, z. B. {@link #FORMAT_RGBA_8888} */
+        public int getFormat() {
+            return format;
+        }
+    }
+
+    /**
+     * Geprüfte Anfrage.
+     */
+    public static final class Request {
+
+        private final int topK;
+        private final Image[] images;
+
+        Request(int topK, Image[] images) {
+            this.topK = topK;
+            this.images = images;
+        }
+
+        /** @return Anzahl Klassen pro Bild in der Antwort */
+        public int getTopK() {
+            return topK;
+        }
+
+        /** @return Bilder in Anfragereihenfolge */
+        public Image[] getImages() {
+            return images.clone();
+        }
+    }
+
+    /**
+     * Ordnet Bilder hinter dem Kopf an, jedes ab einer 64-Byte-Grenze.
+     *
+     * @param widths  Breiten
+     * @param heights Höhen
+     * @param strides Bytes pro Zeile (z. B. {@code Bitmap.getRowBytes()})
+     * @return Lage der Bilder; Größe des Bereichs siehe {@link #regionSize}
+     */
+    public static Image[] layout(int[] widths, int[] heights, int[] strides) {
+        int count = widths.length;
+        Image[] images = new Image[count];
+        long offset = align(REQUEST_HEADER_BYTES + (long) count * IMAGE_ENTRY_BYTES);
+        for (int i = 0; i < count; i++) {
+            Image image = new Image(widths[i], heights[i], strides[i], (int) offset, FORMAT_RGBA_8888);
+            validate(image, Integer.MAX_VALUE);
+            images[i] = image;
+            offset = align((long) strides[i] * heights[i] + offset);
+            if (offset > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Anfrage größer als 2 GB");
+            }
+        }
+        return images;
+    }
+
+    private static long align(long value) {
+        return (value + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /** @return benötigte Größe des Anfragebereichs in Bytes */
+    public static int regionSize(Image[] images) {
+        int size = REQUEST_HEADER_BYTES + images.length * IMAGE_ENTRY_BYTES;
+        for (Image image : images) {
+            size = Math.max(size, image.offset + image.stride * image.height);
+        }
+        return size;
+    }
+
+    /**
+     * Schreibt Kopf und Bildeinträge; die Pixel schreibt der Client selbst
+     * an {@link Image#getOffset()}.
+     *
+     * @param region Anfragebereich
+     * @param topK   Anzahl Klassen pro Bild in der Antwort
+     * @param images Lage der Bilder aus {@link #layout}
+     */
+    public static void writeHeader(ByteBuffer region, int topK, Image[] images) {
+        ByteBuffer out = region.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(0, REQUEST_MAGIC);
+        out.putInt(4, VERSION);
+        out.putInt(8, images.length);
+        out.putInt(12, topK);
+        for (int i = 0; i < images.length; i++) {
+            int entry = REQUEST_HEADER_BYTES + i * IMAGE_ENTRY_BYTES;
+            out.putInt(entry, images[i].width);
+            out.putInt(entry + 4, images[i].height);
+            out.putInt(entry + 8, images[i].stride);
+            out.putInt(entry + 12, images[i].offset);
+            out.putInt(entry + 16, images[i].format);
+        }
+    }
+
+    /**
+     * Liest und prüft eine Anfrage. Alle Bilder müssen vollständig im
+     * Bereich liegen, damit die Abtastung nicht außerhalb lesen kann.
+     *
+     * @param region gemappter Anfragebereich
+     * @return geprüfte Anfrage
+     * @throws IllegalArgumentException wenn die Anfrage das Format verletzt
+     */
+    public static Request readRequest(ByteBuffer region) {
+        ByteBuffer in = region.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int capacity = in.capacity();
+        if (capacity < REQUEST_HEADER_BYTES) {
+            throw new IllegalArgumentException("Anfrage zu kurz: " + capacity + " Bytes");
+        }
+        if (in.getInt(0) != REQUEST_MAGIC) {
+            throw new IllegalArgumentException("Keine Klassifikationsanfrage");
+        }
+        if (in.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Nicht unterstützte Version " + in.getInt(4));
+        }
+        int count = in.getInt(8);
+        int topK = in.getInt(12);
+        if (count < 1 || count > MAX_IMAGES) {
+            throw new IllegalArgumentException("Anzahl Bilder muss in [1, " + MAX_IMAGES + "] liegen: " + count);
+        }
+        if (topK < 1 || topK > MAX_TOP_K) {
+            throw new IllegalArgumentException("Top-K muss in [1, " + MAX_TOP_K + "] liegen: " + topK);
+        }
+        if (REQUEST_HEADER_BYTES + count * IMAGE_ENTRY_BYTES > capacity) {
+            throw new IllegalArgumentException("Bildeinträge reichen über das Ende der Anfrage");
+        }
+        Image[] images = new Image[count];
+        for (int i = 0; i < count; i++) {
+            int entry = REQUEST_HEADER_BYTES + i * IMAGE_ENTRY_BYTES;
+            images[i] = new Image(in.getInt(entry), in.getInt(entry + 4), in.getInt(entry + 8),
+                    in.getInt(entry + 12), in.getInt(entry + 16));
+            validate(images[i], capacity);
+        }
+        return new Request(topK, images);
+    }
+
+    private static void validate(Image image, int capacity) {
+        if (image.format != FORMAT_RGBA_8888) {
+            throw new IllegalArgumentException("Nicht unterstütztes Pixelformat " + image.format);
+        }
+        if (image.width < 1 || image.height < 1 || image.width > MAX_EDGE || image.height > MAX_EDGE) {
+            throw new IllegalArgumentException("Ungültige Bildgröße " + image.width + "×" + image.height);
+        }
+        if (image.stride < 4 * image.width) {
+            throw new IllegalArgumentException("Zeilenlänge " + image.stride + " kleiner als Bildbreite");
+        }
+        if (image.offset < 0 || (long) image.offset + (long) image.stride * (image.height - 1)
+                + 4L * image.width > capacity) {
+            throw new IllegalArgumentException("Bild liegt außerhalb der Anfrage");
+        }
+    }
+
+    /**
+     * Tastet ein Bild bilinear auf {@code dstSize}×{@code dstSize} ab, direkt
+     * aus dem Anfragebereich (wie {@link TiledClassifier}, ganzes Bild ohne
+     * Rücksicht auf das Seitenverhältnis).
+     *
+     * @param region  Anfragebereich
+     * @param image   geprüftes Bild aus {@link #readRequest}
+     * @param dst     ARGB-Zielpixel ({@code dstSize * dstSize})
+     * @param dstSize Kantenlänge des Ziels
+     */
+    public static void samplePixels(ByteBuffer region, Image image, int[] dst, int dstSize) {
+        float stepX = (float) image.width / dstSize;
+        float stepY = (float) image.height / dstSize;
+        for (int j = 0; j < dstSize; j++) {
+            float sy = (j + 0.5f) * stepY - 0.5f;
+            int yA = TiledClassifier.clamp((int) Math.floor(sy), image.height);
+            int yB = TiledClassifier.clamp(yA + 1, image.height);
+            float fy = Math.max(0f, Math.min(1f, sy - yA));
+            int rowA = image.offset + yA * image.stride;
+            int rowB = image.offset + yB * image.stride;
+            for (int i = 0; i < dstSize; i++) {
+                float sx = (i + 0.5f) * stepX - 0.5f;
+                int xA = TiledClassifier.clamp((int) Math.floor(sx), image.width);
+                int xB = TiledClassifier.clamp(xA + 1, image.width);
+                float fx = Math.max(0f, Math.min(1f, sx - xA));
+                dst[j * dstSize + i] = TiledClassifier.blend(
+                        argb(region, rowA + 4 * xA), argb(region, rowA + 4 * xB),
+                        argb(region, rowB + 4 * xA), argb(region, rowB + 4 * xB), fx, fy);
+            }
+        }
+    }
+
+    /** RGBA-Bytes an {@code index} als ARGB-Pixel */
+    private static int argb(ByteBuffer region, int index) {
+        return 0xFF000000
+                | (region.get(index) & 0xFF) << 16
+                | (region.get(index + 1) & 0xFF) << 8
+                | (region.get(index + 2) & 0xFF);
+    }
+
+    /**
+     * Kodiert die Ergebnisse eines Batches.
+     *
+     * @param results        Ergebnis je Bild, jeweils mit mindestens {@code topK} Einträgen
+     * @param topK           Anzahl Klassen pro Bild
+     * @param inferenceNanos Inferenzzeit des Batches
+     * @return Antwort
+     */
+    public static byte[] encodeResults(ClassificationResult[] results, int topK, long inferenceNanos) {
+        ByteBuffer out = ByteBuffer.allocate(RESULT_HEADER_BYTES + results.length * topK * 8)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(RESULT_MAGIC).putInt(VERSION).putInt(STATUS_OK)
+                .putInt(results.length).putInt(topK)
+                .putInt((int) Math.min(Integer.MAX_VALUE, inferenceNanos / 1000));
+        for (ClassificationResult result : results) {
+            for (int rank = 0; rank < topK; rank++) {
+                out.putInt(result.getLabelIndex(rank)).putFloat(result.getScore(rank));
+            }
+        }
+        return out.array();
+    }
+
+    /**
+     * Kodiert eine Fehlerantwort ohne Ergebnisse.
+     *
+     * @param status z. B. {@link #STATUS_BAD_REQUEST}
+     * @return Antwort
+     */
+    public static byte[] encodeError(int status) {
+        ByteBuffer out = ByteBuffer.allocate(RESULT_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(RESULT_MAGIC).putInt(VERSION).putInt(status).putInt(0).putInt(0).putInt(0);
+        return out.array();
+    }
+
+    /**
+     * Dekodiert eine Antwort.
+     *
+     * @param data Antwort des Dienstes
+     * @return Ergebnis je Bild in Anfragereihenfolge
+     * @throws InferenceException       wenn der Dienst einen Fehlerstatus meldet
+     * @throws IllegalArgumentException wenn die Antwort das Format verletzt
+     */
+    public static ClassificationResult[] decodeResults(byte[] data) throws InferenceException {
+        if (data == null || data.length < RESULT_HEADER_BYTES) {
+            throw new IllegalArgumentException("Antwort zu kurz");
+        }
+        ByteBuffer in = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        if (in.getInt() != RESULT_MAGIC || in.getInt() != VERSION) {
+            throw new IllegalArgumentException("Keine Klassifikationsantwort");
+        }
+        int status = in.getInt();
+        int count = in.getInt();
+        int topK = in.getInt();
+        long inferenceNanos = in.getInt() * 1000L;
+        if (status != STATUS_OK) {
+            throw new InferenceException("Dienst meldet Status " + status);
+        }
+        if (count < 0 || topK < 0 || (long) count * topK * 8 != data.length - RESULT_HEADER_BYTES) {
+            throw new IllegalArgumentException("Antwortlänge passt nicht zu " + count + " Bildern");
+        }
+        ClassificationResult[] results = new ClassificationResult[count];
+        for (int i = 0; i < count; i++) {
+            int[] labels = new int[topK];
+            float[] scores = new float[topK];
+            for (int rank = 0; rank < topK; rank++) {
+                labels[rank] = in.getInt();
+                scores[rank] = in.getFloat();
+            }
+            results[i] = new ClassificationResult(labels, scores, inferenceNanos);
+        }
+        return results;
+    }
+}
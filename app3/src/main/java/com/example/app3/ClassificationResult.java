@@ -0,0 +1,117 @@
+package com.example.app3;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @class ClassificationResult
+ * @brief Strukturiertes Ergebnis einer Klassifikation (Top-K Klassen mit Konfidenz).
+ * <p>
+ * Wird vom {@link Classifier} erzeugt und erst bei Bedarf mit den Labels
+ * in Text umgewandelt, damit Bulk-Verarbeitung und Index ohne Strings auskommen.
+ * Optional enthält es das Embedding des Bildes für die Ähnlichkeitssuche
+ * ({@link EmbeddingStore}).
+ */
+public final class ClassificationResult {
+
+    private final int[] labelIndices;
+    private final float[] scores;
+    private final long inferenceNanos;
+    private final float[] embedding;
+
+    /**
+     * @param labelIndices   Klassenindizes, absteigend nach Konfidenz
+     * @param scores         Konfidenz je Eintrag in [0, 1]
+     * @param inferenceNanos Dauer der Inferenz in Nanosekunden
+     */
+    public ClassificationResult(int[] labelIndices, float[] scores, long inferenceNanos) {
+        this(labelIndices, scores, inferenceNanos, null);
+    }
+
+    /**
+     * @param labelIndices   Klassenindizes, absteigend nach Konfidenz
+     * @param scores         Konfidenz je Eintrag in [0, 1]
+     * @param inferenceNanos Dauer der Inferenz in Nanosekunden
+     * @param embedding      L2-normiertes Embedding oder {@code null}
+     */
+    public ClassificationResult(int[] labelIndices, float[] scores, long inferenceNanos, float[] embedding) {
+        this.labelIndices = labelIndices;
+        this.scores = scores;
+        this.inferenceNanos = inferenceNanos;
+        this.embedding = embedding;
+    }
+
+    /**
+     * Bestimmt die {@code k} wahrscheinlichsten Klassen aus einem Score-Vektor.
+     *
+     * @param scores         Konfidenz pro Klasse
+     * @param k              Anzahl Einträge im Ergebnis
+     * @param inferenceNanos Dauer der Inferenz in Nanosekunden
+     * @return Ergebnis, absteigend nach Konfidenz
+     */
+    public static ClassificationResult fromScores(float[] scores, int k, long inferenceNanos) {
+        int[] topIndices = new int[k];
+        float[] topProbs = new float[k];
+
+        for (int i = 0; i < scores.length; i++) {
+            float p = scores[i];
+            for (int j = 0; j < k; j++) {
+                if (p > topProbs[j]) {
+                    for (int m = k - 1; m > j; m--) {
+                        topProbs[m] = topProbs[m - 1];
+                        topIndices[m] = topIndices[m - 1];
+                    }
+                    topProbs[j] = p;
+                    topIndices[j] = i;
+                    break;
+                }
+            }
+        }
+        return new ClassificationResult(topIndices, topProbs, inferenceNanos);
+    }
+
+    /** @return Anzahl Einträge */
+    public int size() {
+        return labelIndices.length;
+    }
+
+    /** @return Klassenindex an Position {@code rank} */
+    public int getLabelIndex(int rank) {
+        return labelIndices[rank];
+    }
+
+    /** @return Konfidenz an Position {@code rank} */
+    public float getScore(int rank) {
+        return scores[rank];
+    }
+
+    /** @return Dauer der Inferenz in Nanosekunden */
+    public long getInferenceNanos() {
+        return inferenceNanos;
+    }
+
+    /**
+     * @return L2-normiertes Embedding oder {@code null}, wenn keines angefordert wurde
+     * (siehe {@link Classifier#classifyPrepared(java.nio.ByteBuffer, RequestToken, boolean)})
+     */
+    public float[] getEmbedding() {
+        return embedding;
+    }
+
+    /**
+     * Formatiert das Ergebnis wie in der Oberfläche angezeigt.
+     *
+     * @param labels Klassenlabels
+     * @return z. B. {@code "Top 3:\nbanana (93.12%)\n...\nInferenzzeit: 12ms"}
+     */
+    public String format(List<String> labels) {
+        StringBuilder result = new StringBuilder("Top ").append(size()).append(":\n");
+        for (int i = 0; i < size(); i++) {
+            result.append(labels.get(labelIndices[i]))
+                    .append(String.format(Locale.getDefault(), " (%.2f%%)", scores[i] * 100))
+                    .append("\n");
+        }
+        result.append("Inferenzzeit: ").append(inferenceNanos / 1_000_000).append("ms");
+        return result.toString();
+    }
+}
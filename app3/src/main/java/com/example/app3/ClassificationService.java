@@ -0,0 +1,248 @@
+package com.example.app3;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.Parcelable;
+import android.os.RemoteException;
+import android.os.SharedMemory;
+import android.system.ErrnoException;
+import android.util.Log;
+
+import com.google.ai.edge.litert.LiteRtException;
+
+import com.example.common.InferenceException;
+import com.example.common.InputWriter;
+import com.example.common.MemoryManager;
+import com.example.common.TensorSpec;
+import com.example.common.Tracer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @class ClassificationService
+ * @brief Gebundener Dienst, über den andere Apps den {@link Classifier}
+ * dieser App nutzen.
+ * <p>
+ * Der Dienst nutzt den {@link SharedClassifier} der Oberfläche, das Modell
+ * liegt im Prozess also nur einmal im Speicher; andere Apps brauchen kein
+ * eigenes Modell. Ablauf einer Anfrage
+ * ({@link #MSG_CLASSIFY} über {@link Messenger}):
+ * - der Client legt die Bilder in einem {@link SharedMemory}-Bereich ab
+ *   (Format siehe {@link ClassificationProtocol}) und übergibt nur den
+ *   Deskriptor unter {@link #KEY_REQUEST},
+ * - der Dienst mappt den Bereich schreibgeschützt, tastet alle Bilder direkt
+ *   daraus auf Modellgröße ab und rechnet sie in einer Batch-Inferenz,
+ * - die Antwort ist ein kompaktes {@code byte[]} unter {@link #KEY_RESULT}.
+ * <p>
+ * Anfragen werden nacheinander in einem eigenen Thread bearbeitet; jeder
+ * unerwartete Fehler wird als {@link ClassificationProtocol#STATUS_INFERENCE_FAILED}
+ * beantwortet, statt den Prozess zu beenden. Zugriff
+ * nur für Apps mit derselben Signatur (Berechtigung
+ * {@code com.example.app3.permission.CLASSIFY}). Gemeinsamer Speicher setzt
+ * Android 8.1 voraus, ältere Geräte erhalten
+ * {@link ClassificationProtocol#STATUS_UNSUPPORTED}. Ein Client zum Kopieren
+ * in andere Apps ist {@link ClassificationClient}.
+ */
+public class ClassificationService extends Service {
+
+    private static final String TAG = "ClassificationService";
+
+    /** Nachricht: Bilder klassifizieren; {@code arg1} wird in der Antwort zurückgegeben */
+    public static final int MSG_CLASSIFY = 1;
+
+    /** Bundle-Schlüssel der Anfrage ({@link SharedMemory}) */
+    public static final String KEY_REQUEST = "request";
+
+    /** Bundle-Schlüssel der Antwort ({@code byte[]}) */
+    public static final String KEY_RESULT = "result";
+
+    private final Tracer tracer = Tracer.getShared();
+
+    private HandlerThread thread;
+    private Messenger messenger;
+
+    /** Nur im Dienst-Thread verwendet */
+    private Classifier classifier;
+    private ByteBuffer batchInput;
+    private ByteBuffer batchOutput;
+    private int batchCapacity;
+
+    /**
+     * Nimmt Anfragen im Dienst-Thread entgegen und antwortet an
+     * {@link Message#replyTo}.
+     */
+    private static final class RequestHandler extends Handler {
+
+        private final ClassificationService service;
+
+        RequestHandler(Looper looper, ClassificationService service) {
+            super(looper);
+            this.service = service;
+        }
+
+        @Override
+        public void handleMessage(Message msg) {
+            if (msg.what != MSG_CLASSIFY || msg.replyTo == null) {
+                super.handleMessage(msg);
+                return;
+            }
+            byte[] result;
+            try {
+                result = service.handle(msg.getData());
+            } catch (RuntimeException e) {
+                // Fehler einer einzelnen Anfrage dürfen den Prozess der App nicht beenden
+                Log.e(TAG, "Anfrage fehlgeschlagen", e);
+                result = ClassificationProtocol.encodeError(ClassificationProtocol.STATUS_INFERENCE_FAILED);
+            }
+            Bundle data = new Bundle();
+            data.putByteArray(KEY_RESULT, result);
+            Message reply = Message.obtain(null, MSG_CLASSIFY);
+            reply.arg1 = msg.arg1;
+            reply.setData(data);
+            try {
+                msg.replyTo.send(reply);
+            } catch (RemoteException e) {
+                Log.w(TAG, "Client nicht mehr erreichbar");
+            }
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        thread = new HandlerThread("ClassificationService");
+        thread.start();
+        messenger = new Messenger(new RequestHandler(thread.getLooper(), this));
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return messenger.getBinder();
+    }
+
+    /**
+     * Beendet den Dienst-Thread nach der laufenden Anfrage. Der geteilte
+     * Classifier bleibt geladen, er gehört auch der Oberfläche.
+     */
+    @Override
+    public void onDestroy() {
+        thread.quitSafely();
+        super.onDestroy();
+    }
+
+    /**
+     * Bearbeitet eine Anfrage.
+     *
+     * @param data Bundle der Nachricht
+     * @return kodierte Antwort, auch im Fehlerfall
+     */
+    private byte[] handle(Bundle data) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O_MR1) {
+            return ClassificationProtocol.encodeError(ClassificationProtocol.STATUS_UNSUPPORTED);
+        }
+        data.setClassLoader(getClassLoader());
+        SharedMemory memory = readRequest(data);
+        if (memory == null) {
+            return ClassificationProtocol.encodeError(ClassificationProtocol.STATUS_BAD_REQUEST);
+        }
+        ByteBuffer region = null;
+        try (Tracer.Section request = tracer.request("service.classify")) {
+            region = memory.mapReadOnly();
+            return classify(region);
+        } catch (ErrnoException | IllegalArgumentException e) {
+            Log.w(TAG, "Ungültige Anfrage: " + e.getMessage());
+            return ClassificationProtocol.encodeError(ClassificationProtocol.STATUS_BAD_REQUEST);
+        } catch (InferenceException | LiteRtException | IllegalStateException e) {
+            Log.w(TAG, "Inferenz fehlgeschlagen: " + e.getMessage());
+            return ClassificationProtocol.encodeError(ClassificationProtocol.STATUS_INFERENCE_FAILED);
+        } finally {
+            if (region != null) {
+                SharedMemory.unmap(region);
+            }
+            memory.close();
+        }
+    }
+
+    /** Liest den Deskriptor der Anfrage, ab Android 13 typsicher. */
+    @SuppressWarnings("deprecation")
+    private static SharedMemory readRequest(Bundle data) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            return data.getParcelable(KEY_REQUEST, SharedMemory.class);
+        }
+        Parcelable parcelable = data.getParcelable(KEY_REQUEST);
+        return parcelable instanceof SharedMemory ? (SharedMemory) parcelable : null;
+    }
+
+    /**
+     * Tastet alle Bilder der Anfrage direkt aus dem gemappten Bereich ab und
+     * klassifiziert sie in einer Batch-Inferenz.
+     */
+    private byte[] classify(ByteBuffer region) throws InferenceException, LiteRtException {
+        ClassificationProtocol.Request request = ClassificationProtocol.readRequest(region);
+        ClassificationProtocol.Image[] images = request.getImages();
+        Classifier current = classifier();
+        int imageSize = current.getImageSize();
+        ensureCapacity(current, images.length);
+
+        InputWriter writer = current.getInputWriter();
+        int elementsPerImage = imageSize * imageSize * 3;
+        try (Tracer.Section section = tracer.section("preprocess.shared")) {
+            current.forEachStripe(images.length, (i, scratch) -> {
+                ClassificationProtocol.samplePixels(region, images[i], scratch, imageSize);
+                writer.write(scratch, 0, scratch.length, batchInput, i * elementsPerImage);
+            });
+        }
+
+        long start = System.nanoTime();
+        current.runBatch(batchInput, batchOutput, images.length);
+        long inferenceNanos = System.nanoTime() - start;
+
+        ClassificationResult[] results = new ClassificationResult[images.length];
+        try (Tracer.Section section = tracer.section("postprocess.topk")) {
+            TensorSpec outputSpec = current.getEngine().getOutputSpec();
+            int classes = outputSpec.getElementsPerBatch();
+            float[] scores = new float[classes];
+            for (int i = 0; i < images.length; i++) {
+                for (int c = 0; c < classes; c++) {
+                    scores[c] = outputSpec.readFloat(batchOutput, i * classes + c);
+                }
+                results[i] = ClassificationResult.fromScores(scores, request.getTopK(), inferenceNanos);
+            }
+        }
+        return ClassificationProtocol.encodeResults(results, request.getTopK(), inferenceNanos);
+    }
+
+    /**
+     * Holt bei der ersten Anfrage den {@link SharedClassifier}; er ist beim
+     * {@link MemoryManager} angemeldet und lädt ein bei Speicherdruck
+     * freigegebenes Modell selbst neu.
+     */
+    private Classifier classifier() throws LiteRtException {
+        if (classifier == null) {
+            Classifier shared = SharedClassifier.get(this);
+            if (shared.getEngine() == null) {
+                throw new IllegalStateException("Modell konnte nicht geladen werden");
+            }
+            classifier = shared;
+        }
+        return classifier;
+    }
+
+    private void ensureCapacity(Classifier current, int images) {
+        if (images <= batchCapacity) {
+            return;
+        }
+        ByteBuffer[] buffers = current.createBatchBuffers(images);
+        batchInput = buffers[0];
+        batchOutput = buffers[1];
+        batchCapacity = images;
+    }
+}
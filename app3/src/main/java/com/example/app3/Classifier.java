@@ -6,19 +6,32 @@ import android.graphics.Bitmap;
 import android.widget.Toast;
 
 import com.google.ai.edge.litert.Accelerator;
-import com.google.ai.edge.litert.CompiledModel;
-import com.google.ai.edge.litert.Environment;
 import com.google.ai.edge.litert.LiteRtException;
 import com.google.ai.edge.litert.*;
 
 import org.tensorflow.lite.TensorFlowLite;
 
+import com.example.common.BitmapPool;
+import com.example.common.CancellationStats;
+import com.example.common.InferenceException;
+import com.example.common.InputWriter;
+import com.example.common.LiteRtEnvironment;
+import com.example.common.MemoryFootprint;
+import com.example.common.MemoryManager;
+import com.example.common.RequestCancelledException;
+import com.example.common.RequestToken;
+import com.example.common.TensorSpec;
+import com.example.common.Tracer;
+
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
 
@@ -27,11 +40,27 @@ import java.util.function.Consumer;
  * @brief Bildklassifikator auf Basis von LiteRT (TensorFlow Lite Runtime) mit Compiled Model API.
  * <p>
  * Diese Klasse kapselt:
- * - Laden eines LiteRT-Modells aus den Assets
+ * - Laden eines LiteRT-Modells aus den Assets (über {@link CompiledModelEngine})
  * - Wahl des Accelerators (CPU oder GPU)
- * - Vorverarbeitung eines Bitmaps (Normalisierung auf [-1, 1])
+ * - Vorverarbeitung eines Bitmaps (Normalisierung auf [-1, 1], siehe {@link InputWriter})
  * - Durchführung der Inferenz
  * - Auswertung der Top-3 Ergebnisse
+ * - optional Test-Time-Augmentation: zehn Ausschnitte (Mitte, vier Ecken,
+ *   jeweils gespiegelt) in einer gemeinsamen Batch-Inferenz
+ * - optional Überspringen nahezu identischer Bilder ({@link SceneChangeGate})
+ * - optional parallele Vorverarbeitung großer Eingaben ({@link ParallelPreprocessor})
+ * - Trace-Abschnitte für Skalierung, Tensorbefüllung, Inferenz und
+ *   Auswertung ({@link Tracer})
+ * - Freigabe von Buffern und Modell bei Speicherdruck ({@link MemoryManager});
+ *   beides wird beim nächsten Aufruf transparent neu angelegt
+ * - Austausch des Modells zur Laufzeit ({@link #swapEngine}), z. B. durch
+ *   den {@link ModelHotReloader}
+ * - Anfragen mit Frist bzw. Abbruch ({@link RequestToken}): abgelaufene
+ *   Anfragen werden vor der Vorverarbeitung und vor der Inferenz verworfen
+ *   ({@link CancellationStats})
+ * - auf Anfrage pro Aufruf Embeddings für die Ähnlichkeitssuche
+ *   ({@link #classifyPrepared(ByteBuffer, RequestToken, boolean)}, {@link #embed},
+ *   {@link EmbeddingStore})
  * <p>
  * Unterstützt Float32-Modelle mit Eingabeform:
  * [1, imageSize, imageSize, 3]
@@ -42,10 +71,71 @@ public class Classifier {
     private List<String> labels;
     //vom Modell abhängig
     private int imageSize;
-    private CompiledModel compiledModel;
+    private InferenceEngine engine;
+
+    /** Wiederverwendete Ein-/Ausgabepuffer der Engine */
+    private ByteBuffer inputBuffer;
+    private ByteBuffer outputBuffer;
+    private int[] pixels;
+
+    /**
+     * Zum Eingabetensor passender Writer, siehe {@link InputWriter#forSpec}.
+     * Volatile, damit {@link #preprocess} ihn ohne die Sperre der Inferenz liest.
+     */
+    private volatile InputWriter inputWriter;
+
+    /** Pool für die modellgroßen Zwischenbitmaps */
+    private BitmapPool bitmapPool = BitmapPool.getShared();
+
+    /** Normalisierung der Kanalwerte für Float-Eingaben */
+    private InputWriter.Normalization normalization = InputWriter.Normalization.MINUS_ONE_TO_ONE;
 
     private Accelerator accelerator;
 
+    /** Anzahl Ausschnitte der Test-Time-Augmentation */
+    static final int TTA_CROPS = 10;
+
+    /** Anteil der Ausschnitte an der kürzeren Seite des Arbeitsbildes */
+    private static final float TTA_CROP_FRACTION = 0.875f;
+
+    /** Test-Time-Augmentation in {@link #classify} verwenden */
+    private boolean testTimeAugmentation;
+
+    /** Optionaler Filter für nahezu identische Bilder (z. B. Kamerastream) */
+    private SceneChangeGate sceneChangeGate;
+
+    /** Wiederverwendete Buffer der Test-Time-Augmentation */
+    private ByteBuffer ttaInput;
+    private ByteBuffer ttaOutput;
+    private int[] ttaSource = new int[0];
+    private float[] ttaScores;
+
+    /** Trace-Abschnitte der einzelnen Schritte, siehe {@link Tracer} */
+    private final Tracer tracer = Tracer.getShared();
+
+    /** Optionale parallele Vorverarbeitung großer Eingaben und Batches */
+    private ParallelPreprocessor parallelPreprocessor;
+    private int[][] stripePixels = new int[0][];
+
+    private ByteBuffer featureBuffer;
+
+    /** Verworfene Anfragen und eingesparte Rechenzeit */
+    private final CancellationStats cancellationStats = new CancellationStats();
+
+    /** Application Context und Modell-Datei, um ein freigegebenes Modell neu zu laden */
+    private Context appContext;
+    private String modelFile;
+
+    /** Modell aus dem Dateisystem statt aus den Assets, siehe {@link #swapEngine} */
+    private File modelPath;
+
+    /** Modell wurde per {@link #releaseModel()} freigegeben und wird bei Bedarf neu geladen */
+    private boolean modelReleased;
+
+    /** Beim {@link MemoryManager} angemeldete Komponenten, siehe {@link #registerMemoryComponents} */
+    private MemoryManager memoryManager;
+    private final MemoryManager.Component bufferComponent = new BufferComponent();
+    private MemoryManager.Component modelComponent;
 
     /**
      * Konstruktor für CPU-basierte Inferenz.
@@ -57,25 +147,7 @@ public class Classifier {
      * @throws LiteRtException wenn das Modell nicht geladen werden kann
      */
     public Classifier(Context context, String modelFile, String labelsFile, int imageSize) throws LiteRtException {
-        try {
-            this.accelerator = Accelerator.CPU;
-
-            compiledModel =
-                    CompiledModel.create(
-                            context.getAssets(),
-                            modelFile,
-                            new CompiledModel.Options(accelerator),
-                            null
-                    );
-
-            this.imageSize = imageSize;
-            this.labels = loadLabels(context, labelsFile);
-        } catch (LiteRtException e) {
-            Toast.makeText(context, "Fehler beim Laden des Modells: " + e.getMessage(), Toast.LENGTH_LONG).show();
-            e.printStackTrace();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+        this(context, modelFile, labelsFile, imageSize, Accelerator.CPU);
     }
 
     /**
@@ -92,13 +164,9 @@ public class Classifier {
 
         try {
             this.accelerator = newAccelerator;
-            compiledModel =
-                    CompiledModel.create(
-                            context.getAssets(),
-                            modelFile,
-                            new CompiledModel.Options(accelerator),
-                            null
-                    );
+            this.appContext = context.getApplicationContext();
+            this.modelFile = modelFile;
+            this.engine = new CompiledModelEngine(context, modelFile, accelerator);
 
             this.imageSize = imageSize;
             this.labels = loadLabels(context, labelsFile);
@@ -111,64 +179,353 @@ public class Classifier {
     }
 
     /**
-     * Gibt die Ressourcen des Modells frei.
+     * Konstruktor mit beliebiger {@link InferenceEngine}, z. B. einer
+     * {@link SimulatedInferenceEngine} für Lasttests ohne Gerät.
+     *
+     * @param engine Engine, die das Modell ausführt
+     * @param labels Klassenlabels passend zur Modellausgabe
+     */
+    public Classifier(InferenceEngine engine, List<String> labels) {
+        this.engine = engine;
+        this.labels = labels;
+        this.imageSize = engine.getInputSpec().getWidth();
+        this.accelerator = engine instanceof CompiledModelEngine
+                ? ((CompiledModelEngine) engine).getAccelerator()
+                : Accelerator.CPU;
+    }
+
+    /**
+     * Gibt die Ressourcen des Modells frei und meldet den Klassifikator
+     * beim {@link MemoryManager} ab.
      *
      * @throws LiteRtException bei Fehlern während des Schließens
      */
-    public void close() throws LiteRtException {
-        compiledModel.close();
+    public synchronized void close() throws LiteRtException {
+        if (memoryManager != null) {
+            memoryManager.unregister(bufferComponent);
+            memoryManager.unregister(modelComponent);
+            memoryManager = null;
+        }
+        modelReleased = false;
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    /**
+     * Meldet Buffer und Modell dieses Klassifikators beim {@link MemoryManager} an.
+     *
+     * @param manager   Manager, z. B. {@link MemoryManager#getShared()}
+     * @param secondary true = zusätzliche Modellinstanz, die vor dem
+     *                  Hauptmodell freigegeben wird ({@link MemoryManager#PRIORITY_SECONDARY})
+     */
+    public synchronized void registerMemoryComponents(MemoryManager manager, boolean secondary) {
+        if (memoryManager != null) {
+            memoryManager.unregister(bufferComponent);
+            memoryManager.unregister(modelComponent);
+        }
+        memoryManager = manager;
+        modelComponent = new ModelComponent(
+                secondary ? MemoryManager.PRIORITY_SECONDARY : MemoryManager.PRIORITY_MODEL);
+        manager.register(bufferComponent);
+        manager.register(modelComponent);
+    }
+
+    /**
+     * Gibt Ein-/Ausgabebuffer und Zwischenspeicher frei. Wartet auf eine
+     * laufende Inferenz; der nächste Aufruf legt die Buffer neu an.
+     */
+    public synchronized void releaseBuffers() {
+        inputBuffer = null;
+        outputBuffer = null;
+        pixels = null;
+        ttaInput = null;
+        ttaOutput = null;
+        ttaSource = new int[0];
+        ttaScores = null;
+        stripePixels = new int[0][];
+        featureBuffer = null;
+    }
+
+    /**
+     * Schließt das Modell, bis es wieder benötigt wird. Wartet auf eine
+     * laufende Inferenz; der nächste Aufruf lädt und kompiliert das Modell neu.
+     * Klassifikatoren mit fremder Engine ({@link #Classifier(InferenceEngine, List)})
+     * können ihr Modell nicht neu laden und behalten es.
+     *
+     * @return true wenn das Modell freigegeben wurde
+     */
+    public synchronized boolean releaseModel() {
+        if (engine == null || appContext == null) {
+            return false;
+        }
+        engine.close();
+        engine = null;
+        modelReleased = true;
+        return true;
+    }
+
+    /**
+     * Liefert die Engine und lädt ein per {@link #releaseModel()} freigegebenes
+     * Modell dabei neu.
+     *
+     * @return Engine oder {@code null}, wenn das Modell nie geladen werden konnte
+     * @throws IllegalStateException wenn das erneute Laden fehlschlägt
+     */
+    private synchronized InferenceEngine engine() {
+        if (engine == null && modelReleased) {
+            try {
+                engine = modelPath != null
+                        ? new CompiledModelEngine(modelPath, accelerator)
+                        : new CompiledModelEngine(appContext, modelFile, accelerator);
+                modelReleased = false;
+            } catch (Exception e) {
+                throw new IllegalStateException("Modell konnte nicht neu geladen werden: " + e.getMessage(), e);
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Tauscht das Modell gegen eine bereits geladene Engine aus. Da alle
+     * Inferenzmethoden synchronisiert sind, laufen begonnene Anfragen noch
+     * vollständig auf der alten Engine; alle späteren verwenden die neue.
+     * Die alte Engine wird danach geschlossen.
+     * <p>
+     * Die neue Engine muss dieselbe Eingabe erwarten und genau einen Score pro
+     * Label liefern, damit Vorverarbeitung, Labels und Aufrufer unverändert
+     * weiterarbeiten.
+     *
+     * @param replacement neue Engine
+     * @param path        Modell-Datei der neuen Engine (zum Neuladen nach
+     *                    {@link #releaseModel()}) oder {@code null} für das Asset-Modell
+     * @throws IllegalArgumentException wenn die Engine nicht kompatibel ist
+     */
+    public synchronized void swapEngine(InferenceEngine replacement, File path) {
+        TensorSpec input = replacement.getInputSpec();
+        if (engine != null ? !input.isCompatibleWith(engine.getInputSpec())
+                : input.getWidth() != imageSize || input.getHeight() != imageSize) {
+            throw new IllegalArgumentException("Eingabe nicht kompatibel: " + input);
+        }
+        if (replacement.getOutputSpec().getElementsPerBatch() != labels.size()) {
+            throw new IllegalArgumentException("Ausgabe passt nicht zu " + labels.size()
+                    + " Labels: " + replacement.getOutputSpec());
+        }
+
+        InferenceEngine previous = engine;
+        engine = replacement;
+        modelPath = path;
+        modelReleased = false;
+        inputWriter = null;
+        releaseBuffers();
+        if (sceneChangeGate != null) {
+            // Zwischengespeichertes Ergebnis stammt vom alten Modell
+            sceneChangeGate.reset();
+        }
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /** @return Modell-Datei im Dateisystem oder {@code null} für das Asset-Modell */
+    public synchronized File getModelPath() {
+        return modelPath;
     }
 
     /**
      * Führt eine Bildklassifikation durch und gibt die Top-3 Ergebnisse zurück.
      * <p>
      * - Skaliert das Bitmap auf Modellgröße
-     * - Normalisiert RGB-Werte auf [-1, 1]
+     * - Schreibt RGB-Werte passend zum Eingabetyp (Float32: normalisiert auf [-1, 1])
      * - Führt Inferenz aus
      * - Bestimmt die drei wahrscheinlichsten Klassen
      *
      * @param bitmap   Eingabebild
      * @param callback Callback zur Ausgabe des Ergebnisses
-     * @throws LiteRtException wenn die Inferenz fehlschlägt
      */
-    public void classify(Bitmap bitmap, Consumer<String> callback) throws LiteRtException {
+    public void classify(Bitmap bitmap, Consumer<String> callback) {
+        classify(bitmap, null, callback);
+    }
+
+    /**
+     * Wie {@link #classify(Bitmap, Consumer)}, verwirft die Anfrage aber, sobald
+     * das Token abgebrochen oder seine Frist abgelaufen ist: vor der
+     * Vorverarbeitung (z. B. nach dem Warten in einer Warteschlange) und vor
+     * der Inferenz.
+     *
+     * @param bitmap   Eingabebild
+     * @param token    Frist und Abbruchsignal oder {@code null}
+     * @param callback Callback zur Ausgabe des Ergebnisses bzw. des Verwerfens
+     */
+    public synchronized void classify(Bitmap bitmap, RequestToken token, Consumer<String> callback) {
 
-        List<TensorBuffer> inputBuffers = compiledModel.createInputBuffers();
-        List<TensorBuffer> outputBuffers = compiledModel.createOutputBuffers();
+        if (engine == null && !modelReleased) {
+            callback.accept("Modell nicht initialisiert");
+            return;
+        }
+
+        long start = System.nanoTime();
+        try (Tracer.Section section = tracer.section("classifier.classify")) {
+            if (token != null) {
+                token.check("preprocess");
+            }
+            ensureBuffers();
+            ClassificationResult result;
+            if (testTimeAugmentation) {
+                result = classifyTta(bitmap, token);
+            } else {
+                loadPixels(bitmap, pixels);
+                // Nahezu unverändertes Bild: vorheriges Ergebnis wiederverwenden
+                result = sceneChangeGate != null ? sceneChangeGate.lookup(pixels, imageSize, imageSize) : null;
+                if (result == null) {
+                    result = classifyPixels(pixels, token);
+                    if (sceneChangeGate != null) {
+                        sceneChangeGate.update(result);
+                    }
+                }
+            }
+            cancellationStats.recordCompleted(System.nanoTime() - start);
+            String text;
+            try (Tracer.Section format = tracer.section("postprocess.format")) {
+                text = result.format(labels);
+            }
+            callback.accept(text);
+        } catch (RequestCancelledException e) {
+            cancellationStats.recordDropped(e, System.nanoTime() - start);
+            callback.accept("Verworfen: " + e.getMessage());
+        } catch (Exception e) {
+            callback.accept("Fehler bei Inference: " + e.getMessage());
+        }
+    }
 
-        // Bild auf Modellgröße skalieren
-        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, imageSize, imageSize, true);
-        float[] input = new float[imageSize * imageSize * 3];
-        int[] pixels = new int[imageSize * imageSize];
-        scaled.getPixels(
-                pixels, 0, imageSize, 0, 0, imageSize, imageSize);
+    /** @return Statistik verworfener Anfragen */
+    public CancellationStats getCancellationStats() {
+        return cancellationStats;
+    }
 
-        for (int i = 0; i < pixels.length; i++) {
-            int pixel = pixels[i];
-            // Pixel normalisieren: -1 bis 1
-            float r = ((pixel >> 16) & 0xFF) / 127.5f - 1f;
-            float g = ((pixel >> 8) & 0xFF) / 127.5f - 1f;
-            float b = (pixel & 0xFF) / 127.5f - 1f;
+    /**
+     * Skaliert ein Bild auf Modellgröße und schreibt es in einen Eingabebuffer.
+     * <p>
+     * Greift nicht auf das Modell zu und kann daher parallel zu
+     * {@link #classifyPrepared(ByteBuffer)} aus anderen Threads aufgerufen werden.
+     *
+     * @param bitmap Eingabebild
+     * @param input  Eingabebuffer, siehe {@link #createInputBuffer()}
+     * @param pixels Zwischenspeicher mit mindestens {@code imageSize * imageSize} Einträgen
+     */
+    public void preprocess(Bitmap bitmap, ByteBuffer input, int[] pixels) {
+        InputWriter writer = getInputWriter();
+        loadPixels(bitmap, pixels);
 
-            input[i * 3] = r;
-            input[i * 3 + 1] = g;
-            input[i * 3 + 2] = b;
+        // Pixel passend zum Eingabetyp des Modells schreiben (Float32: -1 bis 1)
+        try (Tracer.Section section = tracer.section("preprocess.fill")) {
+            writer.write(pixels, 0, imageSize * imageSize, input, 0);
         }
-        inputBuffers.get(0).writeFloat(input);
+    }
 
-        try {
-            long startTime = System.nanoTime();
-            compiledModel.run(inputBuffers, outputBuffers); // Inferenz ausführen
-            long endTime = System.nanoTime();
-            long durationMs = (endTime - startTime) / 1_000_000;
-            TensorBuffer outputTensor = outputBuffers.get(0);
-            float[] outputArray = outputTensor.readFloat();
-
-            int[] topIndices = new int[3];
-            float[] topProbs = new float[3];
-
-            for (int i = 0; i < outputArray.length; i++) {
-                float p = outputArray[i];
+    /**
+     * Skaliert ein Bild auf Modellgröße und liest dessen ARGB-Pixel.
+     *
+     * @param bitmap Eingabebild
+     * @param pixels Ziel mit mindestens {@code imageSize * imageSize} Einträgen
+     */
+    public void loadPixels(Bitmap bitmap, int[] pixels) {
+        // Bild auf Modellgröße skalieren (Zwischenbitmap aus dem Pool)
+        try (Tracer.Section section = tracer.section("preprocess.scale")) {
+            Bitmap scaled = bitmapPool.getScaled(bitmap, imageSize, imageSize);
+            scaled.getPixels(
+                    pixels, 0, imageSize, 0, 0, imageSize, imageSize);
+            bitmapPool.put(scaled);
+        }
+    }
+
+    /**
+     * Klassifiziert bereits auf Modellgröße skalierte Pixel (z. B. wenn
+     * mehrere Modelle dieselbe Vorverarbeitung teilen).
+     *
+     * @param pixels ARGB-Pixel mit {@code imageSize * imageSize} Einträgen
+     * @return die drei wahrscheinlichsten Klassen
+     * @throws InferenceException wenn die Inferenz fehlschlägt
+     */
+    public synchronized ClassificationResult classifyPixels(int[] pixels) throws InferenceException {
+        return classifyPixels(pixels, null);
+    }
+
+    /**
+     * Wie {@link #classifyPixels(int[])} mit Frist und Abbruch.
+     *
+     * @param pixels ARGB-Pixel mit {@code imageSize * imageSize} Einträgen
+     * @param token  Frist und Abbruchsignal oder {@code null}
+     * @return die drei wahrscheinlichsten Klassen
+     * @throws RequestCancelledException wenn die Anfrage verworfen wurde
+     * @throws InferenceException        wenn die Inferenz fehlschlägt
+     */
+    public synchronized ClassificationResult classifyPixels(int[] pixels, RequestToken token)
+            throws InferenceException {
+        ensureBuffers();
+        try (Tracer.Section section = tracer.section("preprocess.fill")) {
+            getInputWriter().write(pixels, 0, imageSize * imageSize, inputBuffer, 0);
+        }
+        return classifyPrepared(inputBuffer, token);
+    }
+
+    /**
+     * Führt die Inferenz auf einem bereits vorverarbeiteten Eingabebuffer aus.
+     *
+     * @param input Eingabebuffer, gefüllt über {@link #preprocess}
+     * @return die drei wahrscheinlichsten Klassen
+     * @throws InferenceException wenn die Inferenz fehlschlägt
+     */
+    public synchronized ClassificationResult classifyPrepared(ByteBuffer input) throws InferenceException {
+        return classifyPrepared(input, null);
+    }
+
+    /**
+     * Wie {@link #classifyPrepared(ByteBuffer)} mit Frist und Abbruch.
+     *
+     * @param input Eingabebuffer, gefüllt über {@link #preprocess}
+     * @param token Frist und Abbruchsignal oder {@code null}
+     * @return die drei wahrscheinlichsten Klassen
+     * @throws RequestCancelledException wenn die Anfrage verworfen wurde
+     * @throws InferenceException        wenn die Inferenz fehlschlägt
+     */
+    public synchronized ClassificationResult classifyPrepared(ByteBuffer input, RequestToken token)
+            throws InferenceException {
+        return classifyPrepared(input, token, false);
+    }
+
+    /**
+     * Wie {@link #classifyPrepared(ByteBuffer, RequestToken)}, liest auf Wunsch
+     * zusätzlich das Embedding aus ({@link ClassificationResult#getEmbedding()}),
+     * z. B. während der Indexierung der Galerie. Kostet keine zusätzliche
+     * Inferenz; andere Aufrufer des Klassifikators sind nicht betroffen.
+     *
+     * @param input         Eingabebuffer, gefüllt über {@link #preprocess}
+     * @param token         Frist und Abbruchsignal oder {@code null}
+     * @param withEmbedding true = Embedding mitliefern
+     * @return die drei wahrscheinlichsten Klassen
+     * @throws RequestCancelledException wenn die Anfrage verworfen wurde
+     * @throws InferenceException        wenn die Inferenz fehlschlägt
+     */
+    public synchronized ClassificationResult classifyPrepared(ByteBuffer input, RequestToken token,
+                                                              boolean withEmbedding)
+            throws InferenceException {
+        ensureBuffers();
+
+        long startTime = System.nanoTime();
+        try (Tracer.Section section = tracer.section("inference")) {
+            engine.run(input, outputBuffer, token); // Inferenz ausführen
+        }
+        long durationNanos = System.nanoTime() - startTime;
+
+        int[] topIndices = new int[3];
+        float[] topProbs = new float[3];
+        try (Tracer.Section section = tracer.section("postprocess.topk")) {
+            TensorSpec outputSpec = engine.getOutputSpec();
+            int numClasses = outputSpec.getElementsPerBatch();
+
+            for (int i = 0; i < numClasses; i++) {
+                float p = outputSpec.readFloat(outputBuffer, i);
                 for (int j = 0; j < 3; j++) {
                     if (p > topProbs[j]) {
                         for (int k = 2; k > j; k--) {
@@ -181,22 +538,435 @@ public class Classifier {
                     }
                 }
             }
+        }
+        float[] embedding = withEmbedding ? readEmbedding() : null;
+        return new ClassificationResult(topIndices, topProbs, durationNanos, embedding);
+    }
 
-            StringBuilder result = new StringBuilder("Top 3:\n");
-            for (int i = 0; i < 3; i++) {
-                result.append(labels.get(topIndices[i]))
-                        .append(String.format(" (%.2f%%)", topProbs[i] * 100))
-                        .append("\n");
+    /**
+     * Berechnet das Embedding eines Bildes (z. B. als Anfrage an den
+     * {@link EmbeddingStore}).
+     *
+     * @param bitmap Eingabebild
+     * @param token  Frist und Abbruchsignal oder {@code null}
+     * @return L2-normiertes Embedding mit {@link #getEmbeddingDimension()} Einträgen
+     * @throws RequestCancelledException wenn die Anfrage verworfen wurde
+     * @throws InferenceException        wenn die Inferenz fehlschlägt
+     */
+    public synchronized float[] embed(Bitmap bitmap, RequestToken token) throws InferenceException {
+        if (token != null) {
+            token.check("preprocess");
+        }
+        ensureBuffers();
+        preprocess(bitmap, inputBuffer, pixels);
+        try (Tracer.Section section = tracer.section("inference")) {
+            engine.run(inputBuffer, outputBuffer, token);
+        }
+        return readEmbedding();
+    }
+
+    /**
+     * Liest das Embedding der letzten Inferenz: den Merkmalstensor der Engine
+     * ({@link InferenceEngine#getFeatureSpec()}) oder, wenn das Modell keinen
+     * liefert, die Wurzeln der Klassenwahrscheinlichkeiten. Das Skalarprodukt
+     * zweier solcher Vektoren ist der Bhattacharyya-Koeffizient der beiden
+     * Verteilungen: er vergleicht Klassenverteilungen, keine Bildmerkmale
+     * (siehe {@link #hasFeatureEmbedding()}).
+     */
+    private float[] readEmbedding() throws InferenceException {
+        float[] embedding;
+        try (Tracer.Section section = tracer.section("postprocess.embedding")) {
+            TensorSpec featureSpec = engine.getFeatureSpec();
+            if (featureSpec != null) {
+                if (featureBuffer == null) {
+                    featureBuffer = ByteBuffer.allocateDirect(featureSpec.getByteSize())
+                            .order(ByteOrder.nativeOrder());
+                }
+                engine.readFeatures(featureBuffer);
+                embedding = new float[featureSpec.getElementsPerBatch()];
+                for (int i = 0; i < embedding.length; i++) {
+                    embedding[i] = featureSpec.readFloat(featureBuffer, i);
+                }
+            } else {
+                TensorSpec outputSpec = engine.getOutputSpec();
+                embedding = new float[outputSpec.getElementsPerBatch()];
+                float min = Float.MAX_VALUE;
+                float max = -Float.MAX_VALUE;
+                float sum = 0f;
+                for (int i = 0; i < embedding.length; i++) {
+                    embedding[i] = outputSpec.readFloat(outputBuffer, i);
+                    min = Math.min(min, embedding[i]);
+                    max = Math.max(max, embedding[i]);
+                    sum += embedding[i];
+                }
+                // Logits statt Wahrscheinlichkeiten: Softmax nachholen
+                boolean logits = min < 0f || sum > 1.01f;
+                for (int i = 0; i < embedding.length; i++) {
+                    float p = logits ? (float) Math.exp(embedding[i] - max) : Math.max(0f, embedding[i]);
+                    embedding[i] = (float) Math.sqrt(p);
+                }
             }
-            result.append("Inferenzzeit: ").append(durationMs).append("ms");
+            EmbeddingStore.normalize(embedding);
+        }
+        return embedding;
+    }
 
-            callback.accept(result.toString());
+    /**
+     * @return true, wenn das Modell einen Merkmalstensor liefert; sonst sind
+     * die Embeddings nur Klassenverteilungen (siehe {@link #readEmbedding()})
+     */
+    public synchronized boolean hasFeatureEmbedding() {
+        return engine().getFeatureSpec() != null;
+    }
 
-        } catch (Exception e) {
-            callback.accept("Fehler bei Inference: " + e.getMessage());
+    /** @return Länge der Embeddings des aktuellen Modells */
+    public synchronized int getEmbeddingDimension() {
+        InferenceEngine current = engine();
+        TensorSpec featureSpec = current.getFeatureSpec();
+        return (featureSpec != null ? featureSpec : current.getOutputSpec()).getElementsPerBatch();
+    }
+
+    /**
+     * Klassifiziert ein Bild über zehn Ausschnitte (Mitte und vier Ecken,
+     * jeweils auch gespiegelt) und mittelt deren Scores.
+     * <p>
+     * Das Bild wird einmalig so skaliert, dass die kürzere Seite
+     * {@code imageSize / 0.875} beträgt; die Ausschnitte haben damit genau
+     * Modellgröße und werden ohne erneutes Skalieren aus dem Pixelarray in
+     * einen gemeinsamen [10, H, W, 3]-Buffer kopiert. Alle Ausschnitte laufen
+     * in einer Batch-Inferenz ({@link #runBatch}), die Scores werden direkt
+     * aus dem Ausgabebuffer gemittelt.
+     *
+     * @param bitmap Eingabebild
+     * @return gemitteltes Top-3-Ergebnis
+     * @throws InferenceException wenn die Inferenz fehlschlägt
+     */
+    public synchronized ClassificationResult classifyTta(Bitmap bitmap) throws InferenceException {
+        return classifyTta(bitmap, null);
+    }
+
+    /**
+     * Wie {@link #classifyTta(Bitmap)} mit Frist und Abbruch, geprüft vor der
+     * Batch-Inferenz.
+     *
+     * @param bitmap Eingabebild
+     * @param token  Frist und Abbruchsignal oder {@code null}
+     * @return gemitteltes Top-3-Ergebnis
+     * @throws RequestCancelledException wenn die Anfrage verworfen wurde
+     * @throws InferenceException        wenn die Inferenz fehlschlägt
+     */
+    public synchronized ClassificationResult classifyTta(Bitmap bitmap, RequestToken token)
+            throws InferenceException {
+        ensureBuffers();
+        if (ttaInput == null) {
+            ByteBuffer[] buffers = createBatchBuffers(TTA_CROPS);
+            ttaInput = buffers[0];
+            ttaOutput = buffers[1];
+            ttaScores = new float[engine.getOutputSpec().getElementsPerBatch()];
+        }
+
+        // Arbeitsbild: kürzere Seite = imageSize / 0.875, Seitenverhältnis bleibt erhalten
+        int shorter = Math.round(imageSize / TTA_CROP_FRACTION);
+        float factor = (float) shorter / Math.min(bitmap.getWidth(), bitmap.getHeight());
+        int width = Math.max(shorter, Math.round(bitmap.getWidth() * factor));
+        int height = Math.max(shorter, Math.round(bitmap.getHeight() * factor));
+        if (ttaSource.length < width * height) {
+            ttaSource = new int[width * height];
+        }
+        try (Tracer.Section section = tracer.section("preprocess.scale")) {
+            Bitmap scaled = bitmapPool.getScaled(bitmap, width, height);
+            scaled.getPixels(ttaSource, 0, width, 0, 0, width, height);
+            bitmapPool.put(scaled);
+        }
+
+        // Mitte und vier Ecken, jeweils normal und gespiegelt
+        InputWriter writer = getInputWriter();
+        int elementsPerCrop = imageSize * imageSize * 3;
+        int right = width - imageSize;
+        int bottom = height - imageSize;
+        int[] xs = {right / 2, 0, right, 0, right};
+        int[] ys = {bottom / 2, 0, 0, bottom, bottom};
+        int sourceWidth = width;
+        try (Tracer.Section section = tracer.section("preprocess.crops")) {
+            forEachStripe(TTA_CROPS, (crop, scratch) -> {
+                int position = crop % 5;
+                extractCrop(ttaSource, sourceWidth, xs[position], ys[position], imageSize, crop >= 5, scratch);
+                writer.write(scratch, 0, scratch.length, ttaInput, crop * elementsPerCrop);
+            });
+        }
+
+        if (token != null) {
+            token.check("inference");
+        }
+        long startTime = System.nanoTime();
+        runBatch(ttaInput, ttaOutput, TTA_CROPS);
+        long durationNanos = System.nanoTime() - startTime;
+
+        // Mittelwert direkt aus dem Ausgabebuffer
+        TensorSpec outputSpec = engine.getOutputSpec();
+        int classes = ttaScores.length;
+        Arrays.fill(ttaScores, 0f);
+        for (int crop = 0; crop < TTA_CROPS; crop++) {
+            int base = crop * classes;
+            for (int c = 0; c < classes; c++) {
+                ttaScores[c] += outputSpec.readFloat(ttaOutput, base + c);
+            }
+        }
+        for (int c = 0; c < classes; c++) {
+            ttaScores[c] /= TTA_CROPS;
+        }
+        return ClassificationResult.fromScores(ttaScores, 3, durationNanos);
+    }
+
+    /** Arbeit für ein Bild eines Batches mit eigenem Pixel-Zwischenspeicher */
+    interface BatchItemTask {
+        void run(int item, int[] scratch);
+    }
+
+    /**
+     * Führt eine Aufgabe für jedes Bild eines Batches aus, mit
+     * {@link ParallelPreprocessor} parallel über Streifen aus Bildern.
+     * Jeder Streifen erhält einen eigenen Zwischenspeicher mit
+     * {@code imageSize * imageSize} Pixeln.
+     *
+     * @param count Anzahl Bilder
+     * @param task  Arbeit pro Bild
+     */
+    synchronized void forEachStripe(int count, BatchItemTask task) {
+        ParallelPreprocessor parallel = parallelPreprocessor;
+        if (parallel == null) {
+            ensureBuffers();
+            for (int item = 0; item < count; item++) {
+                task.run(item, pixels);
+            }
+            return;
+        }
+        if (stripePixels.length < parallel.getMaxStripes()) {
+            stripePixels = new int[parallel.getMaxStripes()][];
+        }
+        int[][] scratch = stripePixels;
+        parallel.run(count, imageSize * imageSize, (stripe, from, to) -> {
+            if (scratch[stripe] == null) {
+                scratch[stripe] = new int[imageSize * imageSize];
+            }
+            for (int item = from; item < to; item++) {
+                task.run(item, scratch[stripe]);
+            }
+        });
+    }
+
+    /**
+     * Kopiert einen quadratischen Ausschnitt aus einem Pixelarray, optional
+     * horizontal gespiegelt.
+     *
+     * @param src    ARGB-Quellpixel
+     * @param width  Breite der Quelle
+     * @param x0     linke Kante
+     * @param y0     obere Kante
+     * @param size   Kantenlänge
+     * @param mirror true = horizontal spiegeln
+     * @param dst    Ziel mit {@code size * size} Einträgen
+     */
+    static void extractCrop(int[] src, int width, int x0, int y0, int size, boolean mirror, int[] dst) {
+        for (int y = 0; y < size; y++) {
+            int from = (y0 + y) * width + x0;
+            int to = y * size;
+            if (mirror) {
+                for (int x = 0; x < size; x++) {
+                    dst[to + x] = src[from + size - 1 - x];
+                }
+            } else {
+                System.arraycopy(src, from, dst, to, size);
+            }
         }
     }
 
+    /**
+     * Aktiviert die Test-Time-Augmentation für {@link #classify}
+     * (genauer, aber zehn Inferenzen pro Bild).
+     *
+     * @param enabled true = zehn Ausschnitte mitteln
+     */
+    public synchronized void setTestTimeAugmentation(boolean enabled) {
+        this.testTimeAugmentation = enabled;
+    }
+
+    /**
+     * Setzt einen Filter, der die Inferenz bei nahezu identischen
+     * aufeinanderfolgenden Bildern in {@link #classify} überspringt.
+     *
+     * @param gate Filter oder {@code null} zum Deaktivieren
+     */
+    public synchronized void setSceneChangeGate(SceneChangeGate gate) {
+        this.sceneChangeGate = gate;
+    }
+
+    /**
+     * Aktiviert die parallele Vorverarbeitung: große Eingaben werden in
+     * Zeilenstreifen, Batches (Test-Time-Augmentation, Kacheln) bildweise auf
+     * den Pool verteilt. Unterhalb des Schwellwerts bleibt alles im
+     * aufrufenden Thread.
+     *
+     * @param preprocessor Pool, z. B. {@link ParallelPreprocessor#getShared()},
+     *                     oder {@code null} zum Deaktivieren
+     */
+    public synchronized void setParallelPreprocessor(ParallelPreprocessor preprocessor) {
+        this.parallelPreprocessor = preprocessor;
+        this.inputWriter = null;
+    }
+
+    /** @return Pool der parallelen Vorverarbeitung oder {@code null} */
+    public synchronized ParallelPreprocessor getParallelPreprocessor() {
+        return parallelPreprocessor;
+    }
+
+    /** @return aktueller Filter für nahezu identische Bilder oder {@code null} */
+    public synchronized SceneChangeGate getSceneChangeGate() {
+        return sceneChangeGate;
+    }
+
+    /**
+     * Legt einen Eingabebuffer passend zum Modell an (z. B. für Pipelines,
+     * die mehrere Bilder gleichzeitig vorverarbeiten).
+     *
+     * @return Direct-Buffer in nativer Byte-Reihenfolge
+     */
+    public ByteBuffer createInputBuffer() {
+        return ByteBuffer.allocateDirect(engine().getInputSpec().getByteSize())
+                .order(ByteOrder.nativeOrder());
+    }
+
+    /** @return Eingabebildgröße des Modells */
+    public int getImageSize() {
+        return imageSize;
+    }
+
+    /** @return Klassenlabels */
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Führt die Inferenz für mehrere Bilder in einem zusammenhängenden Buffer aus.
+     * Unterstützt die Engine größere Batches, werden jeweils so viele Bilder
+     * gemeinsam gerechnet, sonst nacheinander.
+     *
+     * @param input  Eingaben im Layout [count, H, W, C], siehe {@link #createBatchBuffers}
+     * @param output Ausgaben im Layout [count, numLabels]
+     * @param count  Anzahl Bilder
+     * @throws InferenceException wenn die Inferenz fehlschlägt
+     */
+    public synchronized void runBatch(ByteBuffer input, ByteBuffer output, int count) throws InferenceException {
+        TensorSpec inputSpec = engine().getInputSpec();
+        TensorSpec outputSpec = engine.getOutputSpec();
+        int batch = inputSpec.getBatchSize();
+        int inputBytes = inputSpec.getByteSize();
+        int outputBytes = outputSpec.getByteSize();
+        try (Tracer.Section section = tracer.section("inference.batch")) {
+            for (int start = 0; start < count; start += batch) {
+                int chunk = start / batch;
+                engine.run(slice(input, chunk * inputBytes, inputBytes),
+                        slice(output, chunk * outputBytes, outputBytes));
+            }
+        }
+    }
+
+    /**
+     * Legt Ein- und Ausgabebuffer für {@link #runBatch} an. Die Größe wird auf
+     * ein Vielfaches der Batchgröße der Engine aufgerundet.
+     *
+     * @param count Anzahl Bilder
+     * @return {Eingabebuffer, Ausgabebuffer}
+     */
+    public ByteBuffer[] createBatchBuffers(int count) {
+        InferenceEngine engine = engine();
+        TensorSpec inputSpec = engine.getInputSpec();
+        int chunks = (count + inputSpec.getBatchSize() - 1) / inputSpec.getBatchSize();
+        return new ByteBuffer[]{
+                ByteBuffer.allocateDirect(chunks * inputSpec.getByteSize()).order(ByteOrder.nativeOrder()),
+                ByteBuffer.allocateDirect(chunks * engine.getOutputSpec().getByteSize()).order(ByteOrder.nativeOrder())
+        };
+    }
+
+    /** Teilbereich eines Buffers, beginnend bei Index 0 (Byte-Reihenfolge bleibt erhalten) */
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Liefert den Writer; nur beim ersten Aufruf nach einer Änderung (Engine,
+     * Normalisierung, Parallelisierung) wird er unter der Sperre neu angelegt.
+     */
+    InputWriter getInputWriter() {
+        InputWriter writer = inputWriter;
+        if (writer != null) {
+            return writer;
+        }
+        synchronized (this) {
+            if (inputWriter == null) {
+                writer = InputWriter.forSpec(engine().getInputSpec(), normalization);
+                if (parallelPreprocessor != null) {
+                    writer = parallelPreprocessor.wrap(writer, imageSize);
+                }
+                inputWriter = writer;
+            }
+            return inputWriter;
+        }
+    }
+
+    /**
+     * Legt die Ein-/Ausgabepuffer passend zur Engine einmalig an
+     * (bzw. nach {@link #releaseBuffers()} erneut).
+     */
+    private void ensureBuffers() {
+        engine();
+        if (inputBuffer != null) {
+            return;
+        }
+        inputBuffer = createInputBuffer();
+        outputBuffer = ByteBuffer.allocateDirect(engine.getOutputSpec().getByteSize())
+                .order(ByteOrder.nativeOrder());
+        pixels = new int[imageSize * imageSize];
+    }
+
+    /**
+     * Setzt die Normalisierung der Kanalwerte (Standard: [-1, 1]).
+     * Der passende {@link InputWriter} wird beim nächsten Aufruf neu gewählt.
+     *
+     * @param normalization Mittelwert und Standardabweichung der Eingabe
+     */
+    public synchronized void setNormalization(InputWriter.Normalization normalization) {
+        this.normalization = normalization;
+        this.inputWriter = null;
+    }
+
+    /** @return Normalisierung der Kanalwerte oder {@code null} für Rohpixel */
+    public synchronized InputWriter.Normalization getNormalization() {
+        return normalization;
+    }
+
+    /**
+     * Setzt den Pool für Zwischenbitmaps (Standard: {@link BitmapPool#getShared()}).
+     *
+     * @param bitmapPool zu verwendender Pool
+     */
+    public void setBitmapPool(BitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+    }
+
+    /**
+     * Gibt die verwendete Engine zurück und lädt ein freigegebenes Modell
+     * dabei neu.
+     *
+     * @return aktuelle {@link InferenceEngine}
+     */
+    public InferenceEngine getEngine() {
+        return engine();
+    }
+
     /**
      * Lädt die Label-Datei aus den Assets.
      *
@@ -218,22 +988,17 @@ public class Classifier {
         return labels;
     }
 
-
     /**
-     * Prüft, ob GPU-Beschleunigung für das Modell verfügbar ist.
+     * Prüft, ob GPU-Beschleunigung für das Modell verfügbar ist. Die Prüfung
+     * läuft im geteilten Environment und nur einmal je Modell, siehe
+     * {@link LiteRtEnvironment#isSupported}.
      *
      * @param context   Android Context
      * @param modelFile Modell-Datei
      * @return true wenn GPU unterstützt wird, sonst false
      */
     public boolean isGpuSupported(Context context, String modelFile) {
-        try {
-            CompiledModel gpuTest = CompiledModel.create(context.getAssets(), modelFile, new CompiledModel.Options(Accelerator.GPU));
-            gpuTest.close(); // danach wieder schließen
-            return true; // GPU möglich
-        } catch (Exception e) {
-            return false; // GPU nicht möglich
-        }
+        return LiteRtEnvironment.getShared().isSupported(context.getAssets(), modelFile, Accelerator.GPU);
     }
 
     /**
@@ -245,5 +1010,124 @@ public class Classifier {
         return accelerator;
     }
 
+    /**
+     * Schlüsselt den geschätzten Speicherbedarf des Klassifikators auf:
+     * Modell (gemappte Datei, Runtime-Kopie und TensorBuffer), Direct-Buffer,
+     * Zwischenspeicher im Heap und Labels. Liest ohne Sperre und blockiert
+     * daher nicht während einer laufenden Inferenz.
+     *
+     * @return Aufschlüsselung; ein per {@link #releaseModel()} freigegebenes
+     * Modell zählt nicht mit
+     */
+    public MemoryFootprint getFootprint() {
+        String name = modelFile != null ? modelFile : "Engine";
+        MemoryFootprint footprint = new MemoryFootprint();
+        InferenceEngine current = engine;
+        if (current != null) {
+            long mapped = current.getMappedBytes();
+            footprint.add("Modell[" + name + "]", 0, current.getNativeBytes() - mapped, mapped);
+        }
+        footprint.add("Buffer[" + name + "]", bufferComponent.getHeapBytes(), bufferComponent.getNativeBytes(), 0);
+        footprint.add("Labels[" + name + "]", labelBytes(labels), 0, 0);
+        return footprint;
+    }
+
+    /**
+     * Schätzung für die Labels: je String etwa 16 Bytes Objektkopf plus ein
+     * Byte pro Zeichen (ART speichert ASCII komprimiert im String-Objekt),
+     * auf 8 Bytes ausgerichtet, dazu die Referenz in der Liste.
+     */
+    private static long labelBytes(List<String> labels) {
+        if (labels == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (String label : labels) {
+            bytes += ((16 + label.length() + 7) & ~7) + 4;
+        }
+        return bytes;
+    }
+
+    private static long capacity(ByteBuffer buffer) {
+        return buffer != null ? buffer.capacity() : 0;
+    }
+
+    /**
+     * Ein-/Ausgabebuffer und Zwischenspeicher als {@link MemoryManager.Component}.
+     * Die Größen werden ohne Sperre gelesen und sind daher nur Schätzwerte.
+     */
+    private class BufferComponent implements MemoryManager.Component {
+
+        @Override
+        public String getName() {
+            return "Buffer[" + (modelFile != null ? modelFile : "Engine") + "]";
+        }
+
+        @Override
+        public int getPriority() {
+            return MemoryManager.PRIORITY_BUFFERS;
+        }
+
+        @Override
+        public long getNativeBytes() {
+            return capacity(inputBuffer) + capacity(outputBuffer)
+                    + capacity(ttaInput) + capacity(ttaOutput) + capacity(featureBuffer);
+        }
+
+        @Override
+        public long getHeapBytes() {
+            int[] currentPixels = pixels;
+            float[] currentScores = ttaScores;
+            long stripeElements = 0;
+            for (int[] scratch : stripePixels) {
+                stripeElements += scratch != null ? scratch.length : 0;
+            }
+            return 4L * ((currentPixels != null ? currentPixels.length : 0)
+                    + ttaSource.length
+                    + (currentScores != null ? currentScores.length : 0)
+                    + stripeElements);
+        }
+
+        @Override
+        public void release() {
+            releaseBuffers();
+        }
+    }
+
+    /** Geladenes Modell als {@link MemoryManager.Component} */
+    private class ModelComponent implements MemoryManager.Component {
+
+        private final int priority;
+
+        ModelComponent(int priority) {
+            this.priority = priority;
+        }
+
+        @Override
+        public String getName() {
+            return "Modell[" + (modelFile != null ? modelFile : "Engine") + ", " + accelerator + "]";
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public long getNativeBytes() {
+            InferenceEngine current = engine;
+            return current != null ? current.getNativeBytes() : 0;
+        }
+
+        @Override
+        public long getHeapBytes() {
+            return 0;
+        }
+
+        @Override
+        public void release() {
+            releaseModel();
+        }
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.example.app3;
+
+/**
+ * @class DeviceState
+ * @brief Momentaufnahme von Temperatur- und Akkuzustand des Geräts.
+ * <p>
+ * Die Werte für den Temperaturstatus entsprechen den Konstanten
+ * {@code PowerManager.THERMAL_STATUS_*} (0 = keine Drosselung bis 6 = Abschaltung).
+ * <p>
+ * Reine Java-Klasse ohne Android-Abhängigkeiten, damit sich die
+ * {@link AdaptivePolicy} mit simulierten Zuständen testen lässt.
+ */
+public final class DeviceState {
+
+    public static final int THERMAL_NONE = 0;
+    public static final int THERMAL_LIGHT = 1;
+    public static final int THERMAL_MODERATE = 2;
+    public static final int THERMAL_SEVERE = 3;
+    public static final int THERMAL_CRITICAL = 4;
+    public static final int THERMAL_EMERGENCY = 5;
+    public static final int THERMAL_SHUTDOWN = 6;
+
+    private final int thermalStatus;
+    private final int batteryPercent;
+    private final boolean charging;
+    private final boolean powerSaveMode;
+
+    /**
+     * @param thermalStatus  Temperaturstatus (0–6)
+     * @param batteryPercent Akkustand in Prozent
+     * @param charging       true, wenn das Gerät geladen wird
+     * @param powerSaveMode  true, wenn der Energiesparmodus aktiv ist
+     */
+    public DeviceState(int thermalStatus, int batteryPercent, boolean charging, boolean powerSaveMode) {
+        this.thermalStatus = thermalStatus;
+        this.batteryPercent = batteryPercent;
+        this.charging = charging;
+        this.powerSaveMode = powerSaveMode;
+    }
+
+    /** @return Temperaturstatus (0–6) */
+    public int getThermalStatus() {
+        return thermalStatus;
+    }
+
+    /** @return Akkustand in Prozent */
+    public int getBatteryPercent() {
+        return batteryPercent;
+    }
+
+    /** @return true, wenn das Gerät geladen wird */
+    public boolean isCharging() {
+        return charging;
+    }
+
+    /** @return true, wenn der Energiesparmodus aktiv ist */
+    public boolean isPowerSaveMode() {
+        return powerSaveMode;
+    }
+
+    /** @return Kopie mit anderem Temperaturstatus */
+    public DeviceState withThermalStatus(int status) {
+        return new DeviceState(status, batteryPercent, charging, powerSaveMode);
+    }
+
+    /** @return Kopie mit anderem Akkuzustand */
+    public DeviceState withBattery(int percent, boolean charging) {
+        return new DeviceState(thermalStatus, percent, charging, powerSaveMode);
+    }
+
+    /** @return Kopie mit anderem Energiesparmodus */
+    public DeviceState withPowerSaveMode(boolean enabled) {
+        return new DeviceState(thermalStatus, batteryPercent, charging, enabled);
+    }
+
+    @Override
+    public String toString() {
+        return "Temperatur " + thermalStatus + ", Akku " + batteryPercent + "%"
+                + (charging ? " (lädt)" : "") + (powerSaveMode ? ", Energiesparmodus" : "");
+    }
+}
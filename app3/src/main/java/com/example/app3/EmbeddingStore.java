@@ -0,0 +1,818 @@
+package com.example.app3;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @class EmbeddingStore
+ * @brief Persistente Sammlung int8-quantisierter Embeddings mit Suche nach
+ * den k ähnlichsten Bildern.
+ * <p>
+ * {@code embeddings.bin} – Append-only-Log, ein Eintrag fester Größe pro Bild,
+ * zum Suchen per Memory-Mapping gelesen:
+ * <pre>
+ * Kopf:    int Magic 'CEMB', short Version, short reserviert, int Dimension D, int Modell-ID
+ * Eintrag: long Bild-ID, long Änderungsmarke, float Skalierung, D × byte Komponente
+ * </pre>
+ * Die Vektoren werden L2-normiert und pro Vektor symmetrisch auf int8
+ * quantisiert ({@code x ≈ Skalierung * q}). Die Kosinus-Ähnlichkeit ist damit
+ * ein ganzzahliges Skalarprodukt mal dem Produkt der Skalierungen; ein
+ * Embedding mit 1280 Merkmalen belegt 1300 statt 5120 Byte.
+ * Angehängte Einträge liegen bis zu {@value #TAIL_BYTES} Byte zusätzlich im
+ * Speicher; erst danach wird das Log neu gemappt, nicht nach jedem Anhängen.
+ * Wird ein Bild erneut eingetragen, gilt der letzte Eintrag. Passen Dimension
+ * oder Modell-ID nicht zum vorhandenen Log, wird es verworfen: Embeddings
+ * verschiedener Modelle sind nicht vergleichbar und lassen sich neu berechnen.
+ * <p>
+ * Suche:
+ * - exakt ({@link #searchExact}): linearer Durchlauf in Blöcken zu
+ *   {@value #SCAN_BLOCK} Einträgen; das Skalarprodukt läuft über
+ *   zusammenhängende byte-Arrays mit vier unabhängigen Akkumulatoren und
+ *   lässt sich vom JIT vektorisieren
+ * - approximativ ({@link #searchApproximate}): IVF-Index (Inverted File) mit
+ *   etwa √n Partitionen aus sphärischem k-Means; durchsucht werden nur die
+ *   {@code nprobe} Partitionen mit den ähnlichsten Zentren
+ * <p>
+ * {@link #search} verwendet ab {@value #IVF_MIN_VECTORS} Vektoren den
+ * IVF-Index, sofern einer aufgebaut ist ({@link #updatePartitions()}).
+ * <p>
+ * {@code partitions.bin} – Zentren und Zuordnung des IVF-Index:
+ * <pre>
+ * Kopf: int Magic 'CIVF', int Version, int Einträge im Log, int Bilder, int Partitionen P, int D
+ * float[P × D] Zentren, int[P + 1] Offsets, int[n] Eintragsnummern
+ * </pre>
+ * Danach angehängte Einträge werden der nächsten Partition zugeordnet; neu
+ * aufgebaut wird erst, wenn sich die Anzahl Bilder verdoppelt hat.
+ * <p>
+ * Reine Java-Klasse ohne Android-Abhängigkeiten.
+ */
+public class EmbeddingStore implements Closeable {
+
+    private static final int LOG_MAGIC = 0x43454D42;  // "CEMB"
+    private static final int IVF_MAGIC = 0x43495646;  // "CIVF"
+    private static final short VERSION = 1;
+    private static final int LOG_HEADER_SIZE = 16;
+    private static final int IVF_HEADER_SIZE = 24;
+    /** Position der Komponenten innerhalb eines Eintrags */
+    private static final int COMPONENTS = 20;
+    /** Einträge pro Block beim linearen Durchlauf */
+    private static final int SCAN_BLOCK = 256;
+    /** Höchstgröße der nicht gemappten Einträge im Speicher, danach wird neu gemappt */
+    private static final int TAIL_BYTES = 1 << 18;
+
+    /** Ab dieser Anzahl Bilder wird ein IVF-Index aufgebaut */
+    public static final int IVF_MIN_VECTORS = 2000;
+
+    /** Standardanzahl durchsuchter Partitionen */
+    public static final int DEFAULT_NPROBE = 8;
+
+    /** Iterationen und Trainingsvektoren pro Partition für k-Means */
+    private static final int KMEANS_ITERATIONS = 8;
+    private static final int KMEANS_SAMPLES_PER_PARTITION = 32;
+
+    static final String LOG_FILE = "embeddings.bin";
+    static final String PARTITIONS_FILE = "partitions.bin";
+
+    private final File directory;
+    private final int dimension;
+    private final int modelId;
+    private final int recordSize;
+    private final RandomAccessFile logFile;
+    private final FileChannel log;
+
+    /** Bild-ID → Nummer des letzten Eintrags im Log */
+    private final Map<Long, Integer> latest = new HashMap<>();
+    /** Einträge, deren Bild später erneut eingetragen wurde */
+    private final BitSet superseded = new BitSet();
+    private int recordCount;
+
+    /** Gemappte Einträge {@code [0, mappedCount)} */
+    private MappedByteBuffer records;
+    private int mappedCount;
+    /** Danach angehängte Einträge {@code [mappedCount, recordCount)} im Speicher */
+    private final byte[] tail;
+    private final ByteBuffer tailView;
+
+    /** IVF-Index, {@code null} solange keiner aufgebaut wurde */
+    private float[][] centroids;
+    private int[][] lists;
+    private int[] listSizes;
+    private int partitionedImages;
+
+    /** Anzahl verglichener Vektoren der letzten Suche */
+    private int lastScanned;
+
+    private final ByteBuffer recordBuffer;
+    private final byte[] block;
+    private final ByteBuffer blockView;
+    private final byte[] queryBytes;
+    private final float[] scratch;
+
+    /**
+     * Ein Treffer der Suche.
+     */
+    public static final class Match {
+
+        private final long imageId;
+        private final float similarity;
+
+        Match(long imageId, float similarity) {
+            this.imageId = imageId;
+            this.similarity = similarity;
+        }
+
+        /** @return ID des Bildes */
+        public long getImageId() {
+            return imageId;
+        }
+
+        /** @return Kosinus-Ähnlichkeit in [-1, 1] */
+        public float getSimilarity() {
+            return similarity;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d (%.3f)", imageId, similarity);
+        }
+    }
+
+    /**
+     * Öffnet einen Store bzw. legt ihn neu an.
+     *
+     * @param directory Verzeichnis (z. B. {@code getFilesDir()/embeddings})
+     * @param dimension Länge der Embeddings, siehe {@link Classifier#getEmbeddingDimension()}
+     * @param modelId   ID des Modells, das die Embeddings berechnet
+     * @throws IOException bei Lese- oder Schreibfehlern
+     */
+    public EmbeddingStore(File directory, int dimension, int modelId) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Verzeichnis kann nicht angelegt werden: " + directory);
+        }
+        this.directory = directory;
+        this.dimension = dimension;
+        this.modelId = modelId;
+        this.recordSize = COMPONENTS + dimension;
+        this.recordBuffer = ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+        this.tail = new byte[Math.max(1, TAIL_BYTES / recordSize) * recordSize];
+        this.tailView = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN);
+        this.block = new byte[SCAN_BLOCK * recordSize];
+        this.blockView = ByteBuffer.wrap(block).order(ByteOrder.LITTLE_ENDIAN);
+        this.queryBytes = new byte[dimension];
+        this.scratch = new float[dimension];
+
+        this.logFile = new RandomAccessFile(new File(directory, LOG_FILE), "rw");
+        this.log = logFile.getChannel();
+        try {
+            openLog();
+            openPartitions();
+        } catch (IOException e) {
+            logFile.close();
+            throw e;
+        }
+    }
+
+    /** Prüft den Kopf (bzw. legt das Log neu an) und liest die Bild-IDs. */
+    private void openLog() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (log.size() >= LOG_HEADER_SIZE) {
+            log.read(header, 0);
+            if (header.getInt(0) == LOG_MAGIC && header.getShort(4) == VERSION
+                    && header.getInt(8) == dimension && header.getInt(12) == modelId) {
+                // Unvollständigen letzten Eintrag (Absturz beim Schreiben) verwerfen
+                long payload = log.size() - LOG_HEADER_SIZE;
+                recordCount = (int) (payload / recordSize);
+                if (payload % recordSize != 0) {
+                    log.truncate(recordOffset(recordCount));
+                }
+                remap();
+                for (int i = 0; i < recordCount; i++) {
+                    Integer previous = latest.put(records.getLong(i * recordSize), i);
+                    if (previous != null) {
+                        superseded.set(previous);
+                    }
+                }
+                return;
+            }
+            // Anderes Modell oder Format: Embeddings werden neu berechnet
+            new File(directory, PARTITIONS_FILE).delete();
+        }
+        header.clear();
+        header.putInt(LOG_MAGIC).putShort(VERSION).putShort((short) 0)
+                .putInt(dimension).putInt(modelId).flip();
+        log.truncate(0);
+        log.write(header, 0);
+        log.force(false);
+    }
+
+    /** Lädt einen vorhandenen IVF-Index, sofern er zum Log passt. */
+    private void openPartitions() throws IOException {
+        File file = new File(directory, PARTITIONS_FILE);
+        if (!file.isFile() || file.length() < IVF_HEADER_SIZE) {
+            return;
+        }
+        ByteBuffer in;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            in = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            in.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        int covered = in.getInt(8);
+        int partitions = in.getInt(16);
+        if (in.getInt(0) != IVF_MAGIC || in.getInt(4) != VERSION || in.getInt(20) != dimension
+                || covered > recordCount || partitions <= 0) {
+            return;
+        }
+        in.position(IVF_HEADER_SIZE);
+        float[][] centers = new float[partitions][dimension];
+        for (float[] center : centers) {
+            in.asFloatBuffer().get(center);
+            in.position(in.position() + 4 * dimension);
+        }
+        int[] offsets = new int[partitions + 1];
+        in.asIntBuffer().get(offsets);
+        in.position(in.position() + 4 * offsets.length);
+
+        centroids = centers;
+        lists = new int[partitions][];
+        listSizes = new int[partitions];
+        for (int p = 0; p < partitions; p++) {
+            listSizes[p] = offsets[p + 1] - offsets[p];
+            lists[p] = new int[Math.max(4, listSizes[p])];
+            in.asIntBuffer().get(lists[p], 0, listSizes[p]);
+            in.position(in.position() + 4 * listSizes[p]);
+        }
+        partitionedImages = in.getInt(12);
+
+        // Seit dem Aufbau angehängte Einträge zuordnen
+        for (int record = covered; record < recordCount; record++) {
+            readComponents(record, queryBytes);
+            addToPartition(nearestPartition(queryBytes, 0), record);
+        }
+    }
+
+    /**
+     * Hängt das Embedding eines Bildes an.
+     *
+     * @param imageId   ID des Bildes (z. B. MediaStore-ID)
+     * @param modified  Änderungsmarke des Bildes
+     * @param embedding Embedding mit {@link #getDimension()} Einträgen (wird normiert)
+     * @throws IOException bei Schreibfehlern
+     */
+    public synchronized void append(long imageId, long modified, float[] embedding) throws IOException {
+        checkDimension(embedding);
+        byte[] data = recordBuffer.array();
+        float scale = quantize(embedding, data, COMPONENTS);
+        recordBuffer.clear();
+        recordBuffer.putLong(0, imageId).putLong(8, modified).putFloat(16, scale);
+        long offset = recordOffset(recordCount);
+        while (recordBuffer.hasRemaining()) {
+            offset += log.write(recordBuffer, offset);
+        }
+
+        Integer previous = latest.put(imageId, recordCount);
+        if (previous != null) {
+            superseded.set(previous);
+        }
+        if (centroids != null) {
+            addToPartition(nearestPartition(data, COMPONENTS), recordCount);
+        }
+
+        int tailOffset = (recordCount - mappedCount) * recordSize;
+        if (tailOffset + recordSize > tail.length) {
+            // Speicheranteil voll: alle bisherigen Einträge mappen
+            remap();
+            tailOffset = 0;
+        }
+        System.arraycopy(data, 0, tail, tailOffset, recordSize);
+        recordCount++;
+    }
+
+    /**
+     * Schreibt alle angehängten Einträge auf den Datenträger.
+     *
+     * @throws IOException bei Schreibfehlern
+     */
+    public synchronized void flush() throws IOException {
+        log.force(false);
+    }
+
+    /**
+     * Wird während der Indexierung für jedes Bild aufgerufen, während
+     * angehängt wird; liest aus dem Mapping bzw. dem Speicheranteil.
+     *
+     * @param imageId  ID des Bildes
+     * @param modified aktuelle Änderungsmarke des Bildes
+     * @return true, wenn für diese Version des Bildes ein Embedding gespeichert ist
+     * @throws IOException bei Lesefehlern
+     */
+    public synchronized boolean isCurrent(long imageId, long modified) throws IOException {
+        Integer record = latest.get(imageId);
+        if (record == null) {
+            return false;
+        }
+        return bufferOf(record).getLong(offsetOf(record) + 8) == modified;
+    }
+
+    /**
+     * @param imageId ID des Bildes
+     * @return gespeichertes (dequantisiertes) Embedding oder {@code null}
+     * @throws IOException bei Lesefehlern
+     */
+    public synchronized float[] getVector(long imageId) throws IOException {
+        Integer record = latest.get(imageId);
+        return record != null ? dequantize(record) : null;
+    }
+
+    /**
+     * @return IDs aller Bilder im Store (in Reihenfolge ihres letzten Eintrags)
+     * @throws IOException bei Lesefehlern
+     */
+    public synchronized long[] getImageIds() throws IOException {
+        int[] ordered = liveRecords();
+        long[] ids = new long[ordered.length];
+        for (int i = 0; i < ordered.length; i++) {
+            ids[i] = bufferOf(ordered[i]).getLong(offsetOf(ordered[i]));
+        }
+        return ids;
+    }
+
+    /**
+     * Sucht die ähnlichsten Bilder, ab {@value #IVF_MIN_VECTORS} Bildern mit
+     * aufgebautem IVF-Index approximativ, sonst exakt.
+     *
+     * @param query Anfrage-Embedding (wird normiert verglichen)
+     * @param k     Anzahl Treffer
+     * @return Treffer, absteigend nach Ähnlichkeit
+     * @throws IOException bei Lesefehlern
+     */
+    public synchronized Match[] search(float[] query, int k) throws IOException {
+        if (centroids != null && latest.size() >= IVF_MIN_VECTORS) {
+            return searchApproximate(query, k, DEFAULT_NPROBE);
+        }
+        return searchExact(query, k);
+    }
+
+    /**
+     * Exakte Suche über alle Einträge.
+     *
+     * @param query Anfrage-Embedding (wird normiert verglichen)
+     * @param k     Anzahl Treffer
+     * @return Treffer, absteigend nach Ähnlichkeit
+     * @throws IOException bei Lesefehlern
+     */
+    public synchronized Match[] searchExact(float[] query, int k) throws IOException {
+        checkDimension(query);
+        float queryScale = quantize(query, queryBytes, 0);
+        TopK top = new TopK(k);
+        int scanned = 0;
+        for (int start = 0; start < recordCount; start += SCAN_BLOCK) {
+            int count = Math.min(SCAN_BLOCK, recordCount - start);
+            readRecords(start, count, block);
+            for (int i = 0; i < count; i++) {
+                if (superseded.get(start + i)) {
+                    continue;
+                }
+                int base = i * recordSize;
+                int dot = dot(queryBytes, block, base + COMPONENTS, dimension);
+                top.offer(dot * queryScale * blockView.getFloat(base + 16), start + i);
+                scanned++;
+            }
+        }
+        lastScanned = scanned;
+        return toMatches(top);
+    }
+
+    /**
+     * Approximative Suche über die {@code nprobe} Partitionen mit den
+     * ähnlichsten Zentren. Ohne IVF-Index wird exakt gesucht.
+     *
+     * @param query  Anfrage-Embedding (wird normiert verglichen)
+     * @param k      Anzahl Treffer
+     * @param nprobe Anzahl durchsuchter Partitionen
+     * @return Treffer, absteigend nach Ähnlichkeit
+     * @throws IOException bei Lesefehlern
+     */
+    public synchronized Match[] searchApproximate(float[] query, int k, int nprobe) throws IOException {
+        if (centroids == null) {
+            return searchExact(query, k);
+        }
+        checkDimension(query);
+        float queryScale = quantize(query, queryBytes, 0);
+        TopK nearest = new TopK(Math.min(nprobe, centroids.length));
+        for (int p = 0; p < centroids.length; p++) {
+            nearest.offer(dot(query, centroids[p]), p);
+        }
+
+        TopK top = new TopK(k);
+        int scanned = 0;
+        for (int n = 0; n < nearest.size; n++) {
+            int partition = nearest.records[n];
+            int[] list = lists[partition];
+            for (int j = 0; j < listSizes[partition]; j++) {
+                int record = list[j];
+                if (superseded.get(record)) {
+                    continue;
+                }
+                readRecords(record, 1, block);
+                int dot = dot(queryBytes, block, COMPONENTS, dimension);
+                top.offer(dot * queryScale * blockView.getFloat(16), record);
+                scanned++;
+            }
+        }
+        lastScanned = scanned;
+        return toMatches(top);
+    }
+
+    /**
+     * Baut den IVF-Index neu auf, wenn mindestens {@value #IVF_MIN_VECTORS}
+     * Bilder vorhanden sind und noch keiner existiert oder sich die Anzahl
+     * Bilder seit dem letzten Aufbau verdoppelt hat.
+     *
+     * @return true wenn neu aufgebaut wurde
+     * @throws IOException bei Lese- oder Schreibfehlern
+     */
+    public synchronized boolean updatePartitions() throws IOException {
+        int images = latest.size();
+        if (images < IVF_MIN_VECTORS || (centroids != null && images < 2 * partitionedImages)) {
+            return false;
+        }
+        rebuildPartitions();
+        return true;
+    }
+
+    /**
+     * Baut den IVF-Index aus allen aktuellen Einträgen neu auf: k-Means auf
+     * einer Stichprobe von {@value #KMEANS_SAMPLES_PER_PARTITION} Vektoren je
+     * Partition, danach Zuordnung aller Vektoren zum nächsten Zentrum. Die
+     * Datei wird erst vollständig geschrieben und dann atomar umbenannt.
+     * Rechenaufwand etwa {@code n · √n · D}, daher nur im Hintergrund aufrufen.
+     *
+     * @throws IOException bei Lese- oder Schreibfehlern
+     */
+    public synchronized void rebuildPartitions() throws IOException {
+        int[] live = liveRecords();
+        if (live.length == 0) {
+            return;
+        }
+        int partitions = Math.max(1, (int) Math.round(Math.sqrt(live.length)));
+
+        // Deterministische Stichprobe: teilweises Mischen einer Kopie
+        Random random = new Random(live.length);
+        int[] sample = live.clone();
+        int samples = Math.min(live.length, partitions * KMEANS_SAMPLES_PER_PARTITION);
+        for (int i = 0; i < samples; i++) {
+            int j = i + random.nextInt(sample.length - i);
+            int swap = sample[i];
+            sample[i] = sample[j];
+            sample[j] = swap;
+        }
+        float[][] training = new float[samples][];
+        for (int i = 0; i < samples; i++) {
+            training[i] = dequantize(sample[i]);
+        }
+
+        // Sphärisches k-Means, Start mit den ersten (zufälligen) Vektoren
+        float[][] centers = new float[partitions][];
+        for (int p = 0; p < partitions; p++) {
+            centers[p] = training[p].clone();
+        }
+        int[] assignment = new int[samples];
+        for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+            for (int i = 0; i < samples; i++) {
+                assignment[i] = nearest(centers, training[i]);
+            }
+            float[][] sums = new float[partitions][dimension];
+            int[] counts = new int[partitions];
+            for (int i = 0; i < samples; i++) {
+                float[] sum = sums[assignment[i]];
+                float[] vector = training[i];
+                for (int d = 0; d < dimension; d++) {
+                    sum[d] += vector[d];
+                }
+                counts[assignment[i]]++;
+            }
+            for (int p = 0; p < partitions; p++) {
+                // Leere Partition: mit einem zufälligen Vektor neu starten
+                centers[p] = counts[p] > 0 ? sums[p] : training[random.nextInt(samples)].clone();
+                normalize(centers[p]);
+            }
+        }
+
+        centroids = centers;
+        lists = new int[partitions][4];
+        listSizes = new int[partitions];
+        for (int record : live) {
+            readComponents(record, queryBytes);
+            addToPartition(nearestPartition(queryBytes, 0), record);
+        }
+        partitionedImages = live.length;
+        savePartitions();
+    }
+
+    /** Schreibt den IVF-Index über eine temporäre Datei. */
+    private void savePartitions() throws IOException {
+        int partitions = centroids.length;
+        int total = 0;
+        for (int size : listSizes) {
+            total += size;
+        }
+        ByteBuffer out = ByteBuffer.allocate(IVF_HEADER_SIZE + 4 * partitions * dimension
+                + 4 * (partitions + 1) + 4 * total).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(IVF_MAGIC).putInt(VERSION).putInt(recordCount).putInt(partitionedImages)
+                .putInt(partitions).putInt(dimension);
+        for (float[] center : centroids) {
+            for (float value : center) {
+                out.putFloat(value);
+            }
+        }
+        int offset = 0;
+        for (int p = 0; p < partitions; p++) {
+            out.putInt(offset);
+            offset += listSizes[p];
+        }
+        out.putInt(offset);
+        for (int p = 0; p < partitions; p++) {
+            for (int j = 0; j < listSizes[p]; j++) {
+                out.putInt(lists[p][j]);
+            }
+        }
+
+        File tmp = new File(directory, PARTITIONS_FILE + ".tmp");
+        try (RandomAccessFile file = new RandomAccessFile(tmp, "rw")) {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(false);
+        }
+        File target = new File(directory, PARTITIONS_FILE);
+        if (!tmp.renameTo(target)) {
+            throw new IOException("IVF-Index kann nicht ersetzt werden: " + target);
+        }
+    }
+
+    /** @return Anzahl verschiedener Bilder */
+    public synchronized int size() {
+        return latest.size();
+    }
+
+    /** @return Länge der Embeddings */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /** @return ID des Modells, zu dem die Embeddings gehören */
+    public int getModelId() {
+        return modelId;
+    }
+
+    /** @return Anzahl Partitionen des IVF-Index, 0 ohne Index */
+    public synchronized int getPartitionCount() {
+        return centroids != null ? centroids.length : 0;
+    }
+
+    /** @return Anzahl verglichener Vektoren der letzten Suche */
+    public synchronized int getLastScannedCount() {
+        return lastScanned;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.force(false);
+        logFile.close();
+        records = null;
+    }
+
+    /**
+     * Normiert einen Vektor auf Länge 1 (Nullvektor bleibt unverändert).
+     *
+     * @param vector zu normierender Vektor
+     */
+    public static void normalize(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        if (sum > 0) {
+            float inverse = (float) (1 / Math.sqrt(sum));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= inverse;
+            }
+        }
+    }
+
+    /**
+     * Quantisiert den normierten Vektor symmetrisch auf int8.
+     *
+     * @return Skalierung, mit der {@code q} multipliziert den normierten Wert ergibt
+     */
+    private static float quantize(float[] vector, byte[] out, int offset) {
+        double sum = 0;
+        float maxAbs = 0;
+        for (float value : vector) {
+            sum += value * value;
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        if (sum == 0 || maxAbs == 0) {
+            Arrays.fill(out, offset, offset + vector.length, (byte) 0);
+            return 0f;
+        }
+        float norm = (float) Math.sqrt(sum);
+        float scale = maxAbs / norm / 127f;
+        float inverse = 1f / (scale * norm);
+        for (int i = 0; i < vector.length; i++) {
+            out[offset + i] = (byte) Math.round(vector[i] * inverse);
+        }
+        return scale;
+    }
+
+    /** Ganzzahliges Skalarprodukt, vier Akkumulatoren für Vektorisierung */
+    static int dot(byte[] a, byte[] b, int bOffset, int length) {
+        int s0 = 0;
+        int s1 = 0;
+        int s2 = 0;
+        int s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += a[i] * b[bOffset + i];
+            s1 += a[i + 1] * b[bOffset + i + 1];
+            s2 += a[i + 2] * b[bOffset + i + 2];
+            s3 += a[i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[i] * b[bOffset + i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        for (; i + 3 < a.length; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    private static int nearest(float[][] centers, float[] vector) {
+        int best = 0;
+        float bestScore = -Float.MAX_VALUE;
+        for (int p = 0; p < centers.length; p++) {
+            float score = dot(vector, centers[p]);
+            if (score > bestScore) {
+                bestScore = score;
+                best = p;
+            }
+        }
+        return best;
+    }
+
+    /** Nächste Partition für quantisierte Komponenten (die Skalierung ändert die Reihenfolge nicht) */
+    private int nearestPartition(byte[] data, int offset) {
+        for (int i = 0; i < dimension; i++) {
+            scratch[i] = data[offset + i];
+        }
+        return nearest(centroids, scratch);
+    }
+
+    private void addToPartition(int partition, int record) {
+        if (listSizes[partition] == lists[partition].length) {
+            lists[partition] = Arrays.copyOf(lists[partition], 2 * lists[partition].length);
+        }
+        lists[partition][listSizes[partition]++] = record;
+    }
+
+    private float[] dequantize(int record) {
+        ByteBuffer buffer = bufferOf(record);
+        int base = offsetOf(record);
+        float scale = buffer.getFloat(base + 16);
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = buffer.get(base + COMPONENTS + i) * scale;
+        }
+        return vector;
+    }
+
+    /** @return Nummern der aktuellen Einträge, aufsteigend */
+    private int[] liveRecords() {
+        int[] live = new int[latest.size()];
+        int n = 0;
+        for (int record : latest.values()) {
+            live[n++] = record;
+        }
+        Arrays.sort(live);
+        return live;
+    }
+
+    private Match[] toMatches(TopK top) {
+        Match[] matches = new Match[top.size];
+        for (int i = 0; i < top.size; i++) {
+            int record = top.records[i];
+            matches[i] = new Match(bufferOf(record).getLong(offsetOf(record)), top.scores[i]);
+        }
+        return matches;
+    }
+
+    /** Mappt alle Einträge; der Speicheranteil ist danach leer. */
+    private void remap() throws IOException {
+        records = log.map(FileChannel.MapMode.READ_ONLY, LOG_HEADER_SIZE, (long) recordCount * recordSize);
+        records.order(ByteOrder.LITTLE_ENDIAN);
+        mappedCount = recordCount;
+    }
+
+    /** @return gemapptes Fenster oder Speicheranteil, der den Eintrag enthält */
+    private ByteBuffer bufferOf(int record) {
+        return record < mappedCount ? records : tailView;
+    }
+
+    /** @return Position des Eintrags in {@link #bufferOf(int)} */
+    private int offsetOf(int record) {
+        return (record < mappedCount ? record : record - mappedCount) * recordSize;
+    }
+
+    /** Kopiert {@code count} aufeinanderfolgende Einträge, auch über die Grenze des Mappings. */
+    private void readRecords(int start, int count, byte[] dst) {
+        int mapped = Math.max(0, Math.min(count, mappedCount - start));
+        if (mapped > 0) {
+            records.position(start * recordSize);
+            records.get(dst, 0, mapped * recordSize);
+        }
+        if (mapped < count) {
+            System.arraycopy(tail, offsetOf(start + mapped), dst, mapped * recordSize,
+                    (count - mapped) * recordSize);
+        }
+    }
+
+    /** Kopiert die quantisierten Komponenten eines Eintrags. */
+    private void readComponents(int record, byte[] dst) {
+        ByteBuffer buffer = bufferOf(record);
+        int base = offsetOf(record) + COMPONENTS;
+        if (buffer == tailView) {
+            System.arraycopy(tail, base, dst, 0, dimension);
+        } else {
+            records.position(base);
+            records.get(dst, 0, dimension);
+        }
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Embedding hat " + vector.length
+                    + " statt " + dimension + " Einträge");
+        }
+    }
+
+    private long recordOffset(int record) {
+        return LOG_HEADER_SIZE + (long) record * recordSize;
+    }
+
+    /** Die k besten Einträge, absteigend sortiert (Einfügen, da k klein ist) */
+    private static final class TopK {
+
+        final float[] scores;
+        final int[] records;
+        int size;
+
+        TopK(int k) {
+            scores = new float[Math.max(0, k)];
+            records = new int[Math.max(0, k)];
+        }
+
+        void offer(float score, int record) {
+            if (scores.length == 0 || (size == scores.length && score <= scores[size - 1])) {
+                return;
+            }
+            int i = size < scores.length ? size++ : size - 1;
+            while (i > 0 && scores[i - 1] < score) {
+                scores[i] = scores[i - 1];
+                records[i] = records[i - 1];
+                i--;
+            }
+            scores[i] = score;
+            records[i] = record;
+        }
+    }
+}
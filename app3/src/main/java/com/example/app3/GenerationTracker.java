@@ -0,0 +1,80 @@
+package com.example.app3;
+
+import java.util.TreeMap;
+
+/**
+ * @class GenerationTracker
+ * @brief Bestimmt, bis zu welcher Änderungsmarke alle Bilder vollständig verarbeitet sind.
+ * <p>
+ * Bilder werden aufsteigend nach Änderungsmarke aufgezählt, verlassen die
+ * Pipeline aber in beliebiger Reihenfolge. Als Checkpoint darf daher nur eine
+ * Marke gespeichert werden, unterhalb derer kein Bild mehr in Bearbeitung ist.
+ * Mehrere Bilder können dieselbe Marke haben (z. B. eine MediaStore-Generation),
+ * deshalb wird pro Marke gezählt.
+ * <p>
+ * Reine Java-Klasse ohne Android-Abhängigkeiten.
+ */
+public class GenerationTracker {
+
+    /** Marke → Anzahl Bilder in Bearbeitung */
+    private final TreeMap<Long, Integer> pending = new TreeMap<>();
+    private long start;
+    private long highest;
+
+    /**
+     * @param start Marke, ab der aufgezählt wird (bereits gesicherter Stand)
+     */
+    public GenerationTracker(long start) {
+        this.start = start;
+        this.highest = start;
+    }
+
+    /**
+     * Meldet ein aufgezähltes Bild an.
+     *
+     * @param marker Änderungsmarke des Bildes
+     */
+    public synchronized void begin(long marker) {
+        pending.merge(marker, 1, Integer::sum);
+        highest = Math.max(highest, marker);
+    }
+
+    /**
+     * Meldet ein Bild als fertig (erfolgreich, fehlgeschlagen oder übersprungen).
+     *
+     * @param marker Änderungsmarke des Bildes
+     */
+    public synchronized void complete(long marker) {
+        Integer count = pending.get(marker);
+        if (count == null) {
+            return;
+        }
+        if (count == 1) {
+            pending.remove(marker);
+        } else {
+            pending.put(marker, count - 1);
+        }
+    }
+
+    /**
+     * @return höchste Marke, bis zu der alle aufgezählten Bilder fertig sind;
+     *         ab dieser Marke muss nach einem Abbruch erneut aufgezählt werden
+     */
+    public synchronized long getSafeMarker() {
+        if (pending.isEmpty()) {
+            return highest;
+        }
+        // Bilder mit der kleinsten offenen Marke sind evtl. teilweise fertig,
+        // die Marke darunter ist vollständig
+        return Math.max(start, pending.firstKey() - 1);
+    }
+
+    /** @return Anzahl Bilder in Bearbeitung */
+    public synchronized int getPendingCount() {
+        int count = 0;
+        for (int c : pending.values()) {
+            count += c;
+        }
+        return count;
+    }
+}
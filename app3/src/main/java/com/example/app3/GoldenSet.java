@@ -0,0 +1,229 @@
+package com.example.app3;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.example.common.InferenceException;
+import com.example.common.InputWriter;
+import com.example.common.TensorSpec;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @class GoldenSet
+ * @brief Kleiner Satz Referenzbilder, gegen den ein neues Modell vor dem
+ * Austausch geprüft wird (siehe {@link ModelHotReloader}).
+ * <p>
+ * Die Bilder liegen in einem Verzeichnis (z. B. {@code files/models/golden/}).
+ * Eine optionale Datei {@value #EXPECTED_FILE} mit Zeilen
+ * {@code dateiname<TAB>label} legt das erwartete Top-1-Label fest; ohne
+ * Eintrag gilt die Vorhersage des aktuell aktiven Modells als Referenz.
+ * <p>
+ * Geprüft wird:
+ * - Ausgabe passt zu den Labels und enthält nur endliche Werte
+ * - Anteil der Bilder mit übereinstimmendem Top-1-Label ist mindestens
+ *   {@code minAgreement}
+ * <p>
+ * Ohne Bilder werden nur die strukturellen Prüfungen mit einem synthetischen
+ * Farbverlauf ausgeführt.
+ */
+public class GoldenSet {
+
+    /** Datei mit erwarteten Labels im Verzeichnis des Golden Sets */
+    public static final String EXPECTED_FILE = "expected.txt";
+
+    /** Standard-Mindestanteil übereinstimmender Top-1-Labels */
+    public static final float DEFAULT_MIN_AGREEMENT = 0.8f;
+
+    private final File directory;
+    private final float minAgreement;
+
+    /**
+     * @param directory    Verzeichnis mit Referenzbildern (darf fehlen)
+     * @param minAgreement Mindestanteil übereinstimmender Top-1-Labels in [0, 1]
+     */
+    public GoldenSet(File directory, float minAgreement) {
+        this.directory = directory;
+        this.minAgreement = minAgreement;
+    }
+
+    /** @return Referenzbilder im Verzeichnis (sortiert) */
+    public List<File> getImages() {
+        List<File> images = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return images;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName().toLowerCase(Locale.ROOT);
+            if (file.isFile() && (name.endsWith(".jpg") || name.endsWith(".jpeg")
+                    || name.endsWith(".png") || name.endsWith(".webp"))) {
+                images.add(file);
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Prüft ein neues Modell gegen das Golden Set. Vorverarbeitung und
+     * Referenzvorhersagen stammen vom aktiven Klassifikator; das neue Modell
+     * wird direkt über seine Engine ausgeführt und beeinflusst den
+     * Klassifikator nicht.
+     *
+     * @param active    aktiver Klassifikator (Vorverarbeitung, Labels, Referenz)
+     * @param candidate neu geladene Engine
+     * @return {@code null} wenn das Modell gültig ist, sonst der Ablehnungsgrund
+     */
+    public String validate(Classifier active, InferenceEngine candidate) {
+        TensorSpec inputSpec = candidate.getInputSpec();
+        TensorSpec outputSpec = candidate.getOutputSpec();
+        List<String> labels = active.getLabels();
+        if (outputSpec.getElementsPerBatch() != labels.size()) {
+            return "Ausgabe " + outputSpec + " passt nicht zu " + labels.size() + " Labels";
+        }
+
+        int imageSize = active.getImageSize();
+        InputWriter writer = InputWriter.forSpec(inputSpec, active.getNormalization());
+        ByteBuffer input = ByteBuffer.allocateDirect(inputSpec.getByteSize()).order(ByteOrder.nativeOrder());
+        ByteBuffer output = ByteBuffer.allocateDirect(outputSpec.getByteSize()).order(ByteOrder.nativeOrder());
+        int[] pixels = new int[imageSize * imageSize];
+
+        List<File> images = getImages();
+        if (images.isEmpty()) {
+            syntheticPixels(pixels, imageSize);
+            writer.write(pixels, 0, pixels.length, input, 0);
+            try {
+                candidate.run(input, output);
+            } catch (InferenceException e) {
+                return "Inferenz fehlgeschlagen: " + e.getMessage();
+            }
+            return checkFinite(outputSpec, output, labels.size(), "synthetische Eingabe");
+        }
+
+        Map<String, String> expected = loadExpected();
+        int agreed = 0;
+        int checked = 0;
+        for (File image : images) {
+            Bitmap bitmap = BitmapFactory.decodeFile(image.getAbsolutePath());
+            if (bitmap == null) {
+                continue;
+            }
+            try {
+                active.loadPixels(bitmap, pixels);
+            } finally {
+                bitmap.recycle();
+            }
+
+            int reference;
+            String label = expected.get(image.getName());
+            if (label != null) {
+                reference = labels.indexOf(label);
+                if (reference < 0) {
+                    return "Unbekanntes Label in " + EXPECTED_FILE + ": " + label;
+                }
+            } else {
+                try {
+                    reference = active.classifyPixels(pixels).getLabelIndex(0);
+                } catch (InferenceException e) {
+                    // Ohne Referenz zählt das Bild nicht
+                    continue;
+                }
+            }
+
+            writer.write(pixels, 0, pixels.length, input, 0);
+            try {
+                candidate.run(input, output);
+            } catch (InferenceException e) {
+                return "Inferenz fehlgeschlagen für " + image.getName() + ": " + e.getMessage();
+            }
+            String error = checkFinite(outputSpec, output, labels.size(), image.getName());
+            if (error != null) {
+                return error;
+            }
+            if (top1(outputSpec, output, labels.size()) == reference) {
+                agreed++;
+            }
+            checked++;
+        }
+
+        if (checked == 0) {
+            return "Keine Referenzbilder lesbar";
+        }
+        float agreement = (float) agreed / checked;
+        if (agreement < minAgreement) {
+            return String.format(Locale.US, "Top-1-Übereinstimmung %.0f %% (%d/%d) unter %.0f %%",
+                    agreement * 100, agreed, checked, minAgreement * 100);
+        }
+        return null;
+    }
+
+    private static String checkFinite(TensorSpec spec, ByteBuffer output, int count, String source) {
+        for (int i = 0; i < count; i++) {
+            float value = spec.readFloat(output, i);
+            if (Float.isNaN(value) || Float.isInfinite(value)) {
+                return "Ungültiger Ausgabewert " + value + " bei Index " + i + " (" + source + ")";
+            }
+        }
+        return null;
+    }
+
+    private static int top1(TensorSpec spec, ByteBuffer output, int count) {
+        int best = 0;
+        float bestScore = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            float value = spec.readFloat(output, i);
+            if (value > bestScore) {
+                bestScore = value;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /** Diagonaler Farbverlauf als Eingabe ohne Referenzbilder */
+    private static void syntheticPixels(int[] pixels, int size) {
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int r = x * 255 / Math.max(1, size - 1);
+                int g = y * 255 / Math.max(1, size - 1);
+                int b = (r + g) / 2;
+                pixels[y * size + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+            }
+        }
+    }
+
+    private Map<String, String> loadExpected() {
+        Map<String, String> expected = new HashMap<>();
+        File file = new File(directory, EXPECTED_FILE);
+        if (!file.isFile()) {
+            return expected;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) {
+                    expected.put(line.substring(0, tab).trim(), line.substring(tab + 1).trim());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return expected;
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.app3;
+
+import com.example.common.ElementType;
+import com.example.common.InferenceException;
+import com.example.common.InputWriter;
+import com.example.common.TensorSpec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @class HalfPrecisionBenchmark
+ * @brief Vergleicht Ein- und Ausgabe in Float32 und in Half-Precision
+ * für ein Modell mit FLOAT32-Tensoren.
+ * <p>
+ * Die LiteRT-TensorBuffer-API tauscht nur Float32- und Int8-Arrays aus, die
+ * Half-Precision-Variante wird deshalb hier nachgebildet: die Vorverarbeitung
+ * schreibt FLOAT16 mit dem passenden {@link InputWriter}, vor der Inferenz
+ * wird auf Float32 erweitert und die Ausgabe wieder auf FLOAT16 gekürzt.
+ * Gemessen werden getrennt Vorverarbeitung und Inferenz inklusive dieser
+ * Umrechnung, dazu die Abweichung der Half-Precision-Scores gegenüber Float32
+ * (Top-1-Übereinstimmung, mittlere und größte absolute Differenz).
+ * <p>
+ * Eigenständiger Offline-Benchmark: er braucht eine eigene Engine-Instanz
+ * (z. B. eine separat geladene {@link CompiledModelEngine} oder eine
+ * {@link SimulatedInferenceEngine}), niemals die eines laufenden
+ * {@link Classifier}. Reine Java-Klasse, läuft auch auf einer normalen JVM.
+ */
+public final class HalfPrecisionBenchmark {
+
+    private HalfPrecisionBenchmark() {
+    }
+
+    /**
+     * Ergebnis einer Variante.
+     */
+    public static final class Variant {
+
+        private final ElementType type;
+        private final int inputBytes;
+        private final int outputBytes;
+        private final double preprocessP50Ms;
+        private final double runP50Ms;
+        private final double top1Agreement;
+        private final double meanDrift;
+        private final double maxDrift;
+
+        Variant(ElementType type, int inputBytes, int outputBytes, double preprocessP50Ms, double runP50Ms,
+                double top1Agreement, double meanDrift, double maxDrift) {
+            this.type = type;
+            this.inputBytes = inputBytes;
+            this.outputBytes = outputBytes;
+            this.preprocessP50Ms = preprocessP50Ms;
+            this.runP50Ms = runP50Ms;
+            this.top1Agreement = top1Agreement;
+            this.meanDrift = meanDrift;
+            this.maxDrift = maxDrift;
+        }
+
+        /** @return Datentyp von Ein- und Ausgabe */
+        public ElementType getType() {
+            return type;
+        }
+
+        /** @return Größe der Eingabe je Bild in Bytes */
+        public int getInputBytes() {
+            return inputBytes;
+        }
+
+        /** @return Größe der Ausgabe je Bild in Bytes */
+        public int getOutputBytes() {
+            return outputBytes;
+        }
+
+        /** @return Median der Vorverarbeitung in Millisekunden */
+        public double getPreprocessP50Ms() {
+            return preprocessP50Ms;
+        }
+
+        /** @return Median der Inferenz inklusive Umrechnung an der Engine in Millisekunden */
+        public double getRunP50Ms() {
+            return runP50Ms;
+        }
+
+        /** @return Anteil der Bilder mit demselben Top-1 wie Float32 */
+        public double getTop1Agreement() {
+            return top1Agreement;
+        }
+
+        /** @return mittlere absolute Abweichung der Scores von Float32 */
+        public double getMeanDrift() {
+            return meanDrift;
+        }
+
+        /** @return größte absolute Abweichung eines Scores von Float32 */
+        public double getMaxDrift() {
+            return maxDrift;
+        }
+
+        /** @return geschriebene Eingabedaten in MB/s während der Vorverarbeitung */
+        public double getPreprocessMbPerSecond() {
+            return preprocessP50Ms == 0 ? 0 : inputBytes / 1e3 / preprocessP50Ms;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%-8s Eingabe %d KB, Ausgabe %.1f KB, Vorverarbeitung p50 %.2f ms (%.0f MB/s), "
+                            + "Inferenz p50 %.2f ms, Top-1 %.1f %%, Abweichung Ø %.2e / max %.2e",
+                    type, inputBytes / 1024, outputBytes / 1024f, preprocessP50Ms, getPreprocessMbPerSecond(),
+                    runP50Ms, top1Agreement * 100, meanDrift, maxDrift);
+        }
+    }
+
+    /**
+     * Ergebnis eines Durchlaufs.
+     */
+    public static final class Report {
+
+        private final String engine;
+        private final int images;
+        private final int repetitions;
+        private final Variant[] variants;
+
+        Report(String engine, int images, int repetitions, Variant[] variants) {
+            this.engine = engine;
+            this.images = images;
+            this.repetitions = repetitions;
+            this.variants = variants;
+        }
+
+        /** @return Ergebnisse, zuerst Float32; ohne Unterstützung nur Float32 */
+        public Variant[] getVariants() {
+            return variants.clone();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(String.format(Locale.US,
+                    "Half-Precision-I/O %s: %d Bilder × %d", engine, images, repetitions));
+            for (Variant variant : variants) {
+                builder.append("\n  ").append(variant);
+            }
+            if (variants.length == 1) {
+                builder.append("\n  Half-Precision nur für Modelle mit FLOAT32-Ein- und -Ausgabe");
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Führt den Vergleich aus. Hat das Modell keine FLOAT32-Ein- und -Ausgabe,
+     * enthält der Bericht nur die Float32-Variante.
+     *
+     * @param engine        eigene Engine-Instanz (Batchgröße 1), die währenddessen
+     *                      nicht anderweitig verwendet wird
+     * @param normalization Normalisierung der Kanalwerte
+     * @param images        ARGB-Pixel der Testbilder in Modellgröße
+     * @param repetitions   Messungen je Bild und Variante
+     * @return Bericht
+     * @throws InferenceException wenn eine Inferenz fehlschlägt
+     */
+    public static Report run(InferenceEngine engine, InputWriter.Normalization normalization,
+                             List<int[]> images, int repetitions) throws InferenceException {
+        float[][] reference = new float[images.size()][];
+        Variant full = measure(engine, false, normalization, images, repetitions, reference);
+        if (engine.getInputSpec().getType() != ElementType.FLOAT32
+                || engine.getOutputSpec().getType() != ElementType.FLOAT32) {
+            return new Report(engine.getName(), images.size(), repetitions, new Variant[]{full});
+        }
+        Variant half = measure(engine, true, normalization, images, repetitions, reference);
+        return new Report(engine.getName(), images.size(), repetitions, new Variant[]{full, half});
+    }
+
+    /**
+     * Misst eine Variante.
+     *
+     * @param half      true = Ein- und Ausgabe in FLOAT16, an der Engine umgerechnet
+     * @param reference Scores je Bild; beim ersten Aufruf {@code null}-Einträge,
+     *                  die hier gefüllt werden
+     */
+    private static Variant measure(InferenceEngine engine, boolean half, InputWriter.Normalization normalization,
+                                   List<int[]> images, int repetitions, float[][] reference)
+            throws InferenceException {
+        TensorSpec engineInput = engine.getInputSpec();
+        TensorSpec engineOutput = engine.getOutputSpec();
+        TensorSpec inputSpec = half ? TensorSpec.of(ElementType.FLOAT16, engineInput.getShape()) : engineInput;
+        TensorSpec outputSpec = half ? TensorSpec.of(ElementType.FLOAT16, engineOutput.getShape()) : engineOutput;
+        InputWriter writer = InputWriter.forSpec(inputSpec, normalization);
+        ByteBuffer input = ByteBuffer.allocateDirect(inputSpec.getByteSize()).order(ByteOrder.nativeOrder());
+        ByteBuffer output = ByteBuffer.allocateDirect(outputSpec.getByteSize()).order(ByteOrder.nativeOrder());
+        // Float32-Buffer an der Engine, nur für die Half-Precision-Variante
+        ByteBuffer engineIn = half
+                ? ByteBuffer.allocateDirect(engineInput.getByteSize()).order(ByteOrder.nativeOrder()) : input;
+        ByteBuffer engineOut = half
+                ? ByteBuffer.allocateDirect(engineOutput.getByteSize()).order(ByteOrder.nativeOrder()) : output;
+        int classes = outputSpec.getElementsPerBatch();
+
+        long[] preprocess = new long[images.size() * repetitions];
+        long[] run = new long[preprocess.length];
+        int agreed = 0;
+        double driftSum = 0;
+        double driftMax = 0;
+        for (int i = 0; i < images.size(); i++) {
+            int[] pixels = images.get(i);
+            for (int r = 0; r < repetitions; r++) {
+                long start = System.nanoTime();
+                writer.write(pixels, 0, pixels.length, input, 0);
+                long written = System.nanoTime();
+                if (half) {
+                    widen(input, engineIn, engineInput.getElementCount());
+                }
+                engine.run(engineIn, engineOut);
+                if (half) {
+                    narrow(engineOut, output, engineOutput.getElementCount());
+                }
+                preprocess[i * repetitions + r] = written - start;
+                run[i * repetitions + r] = System.nanoTime() - written;
+            }
+
+            float[] scores = new float[classes];
+            for (int c = 0; c < classes; c++) {
+                scores[c] = outputSpec.readFloat(output, c);
+            }
+            if (reference[i] == null) {
+                reference[i] = scores;
+            }
+            if (argmax(scores) == argmax(reference[i])) {
+                agreed++;
+            }
+            for (int c = 0; c < classes; c++) {
+                double drift = Math.abs(scores[c] - reference[i][c]);
+                driftSum += drift;
+                driftMax = Math.max(driftMax, drift);
+            }
+        }
+        return new Variant(inputSpec.getType(), inputSpec.getByteSize(), outputSpec.getByteSize(),
+                median(preprocess) / 1e6, median(run) / 1e6,
+                images.isEmpty() ? 0 : (double) agreed / images.size(),
+                images.isEmpty() ? 0 : driftSum / ((double) images.size() * classes), driftMax);
+    }
+
+    /** Erweitert {@code count} Half-Precision-Werte aus {@code half} nach Float32 in {@code full} */
+    private static void widen(ByteBuffer half, ByteBuffer full, int count) {
+        for (int i = 0; i < count; i++) {
+            full.putFloat(i * 4, InputWriter.fromHalf(half.getShort(i * 2)));
+        }
+    }
+
+    /** Kürzt {@code count} Float32-Werte aus {@code full} auf Half-Precision in {@code half} */
+    private static void narrow(ByteBuffer full, ByteBuffer half, int count) {
+        for (int i = 0; i < count; i++) {
+            half.putShort(i * 2, InputWriter.toHalf(full.getFloat(i * 4)));
+        }
+    }
+
+    private static int argmax(float[] scores) {
+        int best = 0;
+        for (int i = 1; i < scores.length; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static long median(long[] values) {
+        if (values.length == 0) {
+            return 0;
+        }
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
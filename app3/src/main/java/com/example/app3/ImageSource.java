@@ -0,0 +1,36 @@
+package com.example.app3;
+
+import android.net.Uri;
+
+/**
+ * @interface ImageSource
+ * @brief Liefert die Bilder, die von der {@link BulkIndexingPipeline} verarbeitet werden.
+ */
+public interface ImageSource {
+
+    /**
+     * Empfänger der aufgezählten Bilder.
+     */
+    interface Emitter {
+
+        /**
+         * Übergibt ein Bild an die Pipeline. Blockiert, solange die
+         * nachfolgende Stufe voll ist (Backpressure).
+         *
+         * @param id          eindeutige ID des Bildes (z. B. MediaStore-ID)
+         * @param uri         URI des Bildes
+         * @param orientation Drehung laut Metadaten in Grad (0, 90, 180, 270)
+         * @param modified    Änderungsmarke des Bildes (z. B. MediaStore-Generation)
+         * @throws InterruptedException wenn die Pipeline abgebrochen wurde
+         */
+        void emit(long id, Uri uri, int orientation, long modified) throws InterruptedException;
+    }
+
+    /**
+     * Zählt alle Bilder auf.
+     *
+     * @param emitter Empfänger der Bilder
+     * @throws InterruptedException wenn die Pipeline abgebrochen wurde
+     */
+    void enumerate(Emitter emitter) throws InterruptedException;
+}
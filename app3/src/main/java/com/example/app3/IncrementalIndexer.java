@@ -0,0 +1,295 @@
+package com.example.app3;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @class IncrementalIndexer
+ * @brief Inkrementelle Indexierung der Galerie mit Checkpoints.
+ * <p>
+ * Pro Speichervolume wird die Änderungsmarke gespeichert, bis zu der alle
+ * Bilder verarbeitet sind ({@link IndexCheckpoint}). Ein neuer Durchlauf
+ * zählt nur Bilder ab dieser Marke auf und überspringt Bilder, die mit
+ * derselben Marke und demselben Modell bereits im {@link ClassificationIndex}
+ * stehen. Ändert sich die MediaStore-Version eines Volumes (z. B. nach einem
+ * Zurücksetzen), wird das Volume vollständig neu aufgezählt; unveränderte
+ * Bilder werden dabei trotzdem übersprungen.
+ * <p>
+ * Während der Verarbeitung wird regelmäßig ein Checkpoint geschrieben, ein
+ * beendeter Prozess setzt beim nächsten Start dort fort.
+ * <p>
+ * Mit {@link #setEmbeddingStore} werden zusätzlich die Embeddings der Bilder
+ * gespeichert (ohne zusätzliche Inferenz); Bilder ohne aktuelles Embedding
+ * gelten dann ebenfalls als neu.
+ */
+public class IncrementalIndexer {
+
+    private static final String TAG = "IncrementalIndexer";
+
+    /** Checkpoint spätestens nach so vielen Ergebnissen … */
+    private static final int CHECKPOINT_RESULTS = 200;
+    /** … oder nach dieser Zeit */
+    private static final long CHECKPOINT_NANOS = 5_000_000_000L;
+
+    /**
+     * Empfänger von Fortschritt und Abschluss (Aufruf aus Hintergrundthreads).
+     */
+    public interface Listener {
+
+        /**
+         * @param classified Anzahl neu klassifizierter Bilder
+         * @param skipped    Anzahl übersprungener, bereits aktueller Bilder
+         */
+        void onProgress(long classified, long skipped);
+
+        /**
+         * @param stats     Statistik je verarbeitetem Volume
+         * @param skipped   Anzahl übersprungener Bilder
+         * @param cancelled true, wenn über {@link #cancel()} abgebrochen wurde
+         */
+        void onComplete(List<BulkIndexingPipeline.Stats> stats, long skipped, boolean cancelled);
+    }
+
+    private final Context context;
+    private final Classifier classifier;
+    private final ClassificationIndex index;
+    private final IndexCheckpoint checkpoint;
+    private final int modelId;
+    private final Listener listener;
+
+    private final AtomicLong classified = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    private PriorityScheduler scheduler;
+    private EmbeddingStore embeddings;
+
+    private Thread thread;
+    private BulkIndexingPipeline pipeline;
+    private volatile boolean cancelled;
+
+    /**
+     * @param context    Context (für MediaStore-Abfragen)
+     * @param classifier Classifier für die Inferenz
+     * @param index      Index, in den die Ergebnisse geschrieben werden
+     * @param checkpoint gesicherter Fortschritt
+     * @param modelId    ID des aktuellen Modells; ändert sie sich, wird neu klassifiziert
+     * @param listener   Empfänger von Fortschritt und Abschluss
+     */
+    public IncrementalIndexer(Context context, Classifier classifier, ClassificationIndex index,
+                              IndexCheckpoint checkpoint, int modelId, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.classifier = classifier;
+        this.index = index;
+        this.checkpoint = checkpoint;
+        this.modelId = modelId;
+        this.listener = listener;
+    }
+
+    /**
+     * Führt die Inferenz als Massenaufgabe über einen gemeinsamen Scheduler
+     * aus, damit interaktive Anfragen nicht hinter der Indexierung warten.
+     * Muss vor {@link #start()} gesetzt werden.
+     *
+     * @param scheduler Scheduler oder {@code null} für direkte Inferenz
+     */
+    public synchronized void setScheduler(PriorityScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Speichert während der Indexierung die Embeddings der Bilder und baut
+     * danach bei Bedarf den IVF-Index auf ({@link EmbeddingStore#updatePartitions()}).
+     * Muss vor {@link #start()} gesetzt werden; der Store muss zum Modell
+     * des Klassifikators passen.
+     *
+     * @param embeddings Store oder {@code null} ohne Embeddings
+     */
+    public synchronized void setEmbeddingStore(EmbeddingStore embeddings) {
+        this.embeddings = embeddings;
+    }
+
+    /**
+     * Startet die Indexierung aller Volumes in einem Hintergrundthread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            throw new IllegalStateException("Indexierung wurde bereits gestartet");
+        }
+        thread = new Thread(this::run, TAG);
+        thread.start();
+    }
+
+    /**
+     * Bricht die Indexierung ab; der bis dahin erreichte Stand wird gesichert.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        if (pipeline != null) {
+            pipeline.cancel();
+        }
+    }
+
+    private void run() {
+        List<BulkIndexingPipeline.Stats> stats = new ArrayList<>();
+        EmbeddingStore store = embeddingStore();
+        try {
+            for (String volume : getVolumes()) {
+                if (cancelled) {
+                    break;
+                }
+                stats.add(indexVolume(volume));
+            }
+            index.rebuildInvertedIndex();
+            if (store != null && store.updatePartitions()) {
+                Log.i(TAG, "IVF-Index aufgebaut: " + store.getPartitionCount()
+                        + " Partitionen für " + store.size() + " Bilder");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Index konnte nicht geschrieben werden", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        listener.onComplete(stats, skipped.get(), cancelled);
+    }
+
+    private synchronized EmbeddingStore embeddingStore() {
+        return embeddings;
+    }
+
+    /** Verarbeitet ein Volume ab seinem gesicherten Stand. */
+    private BulkIndexingPipeline.Stats indexVolume(String volume) throws InterruptedException {
+        String version = getMediaStoreVersion(volume);
+        EmbeddingStore store = embeddingStore();
+        long since = version != null && version.equals(checkpoint.getVersion(volume))
+                ? checkpoint.getMarker(volume) : 0;
+        Log.i(TAG, "Volume " + volume + ": Aufzählung ab Marke " + since);
+
+        GenerationTracker tracker = new GenerationTracker(since);
+        ContentResolver resolver = context.getContentResolver();
+        ImageSource changed = new MediaStoreImageSource(resolver, volume, since);
+
+        // Bereits aktuelle Bilder gar nicht erst an die Pipeline geben
+        ImageSource source = emitter -> changed.enumerate((id, uri, orientation, modified) -> {
+            tracker.begin(modified);
+            boolean current;
+            try {
+                current = index.isCurrent(id, modified, modelId)
+                        && (store == null || store.isCurrent(id, modified));
+            } catch (IOException e) {
+                current = false;
+            }
+            if (current) {
+                tracker.complete(modified);
+                skipped.incrementAndGet();
+            } else {
+                emitter.emit(id, uri, orientation, modified);
+            }
+        });
+
+        BulkIndexingPipeline.ResultSink sink = new BulkIndexingPipeline.ResultSink() {
+            private int sinceCheckpoint;
+            private long lastCheckpoint = System.nanoTime();
+
+            @Override
+            public void onResult(long id, Uri uri, long modified, ClassificationResult result) {
+                try {
+                    index.append(id, modified, modelId, result);
+                    if (store != null && result.getEmbedding() != null) {
+                        store.append(id, modified, result.getEmbedding());
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Ergebnis nicht gespeichert: " + uri, e);
+                }
+                done(modified);
+                listener.onProgress(classified.incrementAndGet(), skipped.get());
+            }
+
+            @Override
+            public void onFailure(long id, Uri uri, long modified, Exception error) {
+                // Wird erst nach einer erneuten Änderung des Bildes wieder versucht
+                Log.w(TAG, "Bild " + uri + " übersprungen: " + error.getMessage());
+                done(modified);
+            }
+
+            @Override
+            public void onComplete(BulkIndexingPipeline.Stats stats) {
+                saveCheckpoint(volume, version, tracker);
+            }
+
+            private void done(long modified) {
+                tracker.complete(modified);
+                if (++sinceCheckpoint >= CHECKPOINT_RESULTS
+                        || System.nanoTime() - lastCheckpoint >= CHECKPOINT_NANOS) {
+                    saveCheckpoint(volume, version, tracker);
+                    sinceCheckpoint = 0;
+                    lastCheckpoint = System.nanoTime();
+                }
+            }
+        };
+
+        PriorityScheduler bulkScheduler;
+        synchronized (this) {
+            bulkScheduler = scheduler;
+        }
+        BulkIndexingPipeline current = new BulkIndexingPipeline.Builder(classifier, resolver, source, sink)
+                .setScheduler(bulkScheduler)
+                .setEmbeddings(store != null)
+                .build();
+        synchronized (this) {
+            if (cancelled) {
+                return current.getStats();
+            }
+            pipeline = current;
+        }
+        current.start();
+        return current.awaitCompletion();
+    }
+
+    /**
+     * Sichert erst die Ergebnisse und danach die Marke, damit der Checkpoint
+     * nie über nicht gespeicherte Ergebnisse hinausweist.
+     */
+    private void saveCheckpoint(String volume, String version, GenerationTracker tracker) {
+        try {
+            index.flush();
+            EmbeddingStore store = embeddingStore();
+            if (store != null) {
+                store.flush();
+            }
+            checkpoint.set(volume, version, tracker.getSafeMarker());
+            checkpoint.save();
+        } catch (IOException e) {
+            Log.e(TAG, "Checkpoint nicht gespeichert", e);
+        }
+    }
+
+    private List<String> getVolumes() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            List<String> volumes = new ArrayList<>(MediaStore.getExternalVolumeNames(context));
+            Collections.sort(volumes);
+            return volumes;
+        }
+        return Collections.singletonList(MediaStore.VOLUME_EXTERNAL);
+    }
+
+    /** @return Version des Volumes oder {@code null} (vor Android 10), dann wird vollständig durchsucht */
+    private String getMediaStoreVersion(String volume) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return MediaStore.getVersion(context, volume);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return MediaStore.getVersion(context);
+        }
+        return null;
+    }
+}
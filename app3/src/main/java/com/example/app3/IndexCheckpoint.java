@@ -0,0 +1,90 @@
+package com.example.app3;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * @class IndexCheckpoint
+ * @brief Gesicherter Fortschritt der inkrementellen Indexierung pro Speichervolume.
+ * <p>
+ * Gespeichert werden je Volume:
+ * - die MediaStore-Version (ändert sie sich, sind alte Generationen ungültig)
+ * - die Änderungsmarke, bis zu der alle Bilder verarbeitet sind
+ * <p>
+ * Die Datei wird bei jedem {@link #save()} vollständig neu geschrieben und
+ * atomar ersetzt, ein Abbruch hinterlässt also immer einen gültigen Stand.
+ * <p>
+ * Reine Java-Klasse ohne Android-Abhängigkeiten.
+ */
+public class IndexCheckpoint {
+
+    private final File file;
+    private final Properties values = new Properties();
+
+    /**
+     * Lädt einen vorhandenen Checkpoint (falls vorhanden).
+     *
+     * @param file Datei des Checkpoints
+     * @throws IOException bei Lesefehlern
+     */
+    public IndexCheckpoint(File file) throws IOException {
+        this.file = file;
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                values.load(in);
+            }
+        }
+    }
+
+    /**
+     * @param volume Name des Volumes
+     * @return gespeicherte MediaStore-Version oder {@code null}
+     */
+    public synchronized String getVersion(String volume) {
+        return values.getProperty(volume + ".version");
+    }
+
+    /**
+     * @param volume Name des Volumes
+     * @return gesicherte Änderungsmarke (0 = noch nichts verarbeitet)
+     */
+    public synchronized long getMarker(String volume) {
+        try {
+            return Long.parseLong(values.getProperty(volume + ".marker", "0"));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Setzt den Stand eines Volumes (wirksam nach {@link #save()}).
+     *
+     * @param volume  Name des Volumes
+     * @param version MediaStore-Version
+     * @param marker  Änderungsmarke, bis zu der alle Bilder verarbeitet sind
+     */
+    public synchronized void set(String volume, String version, long marker) {
+        values.setProperty(volume + ".version", version == null ? "" : version);
+        values.setProperty(volume + ".marker", Long.toString(marker));
+    }
+
+    /**
+     * Schreibt den Checkpoint über eine temporäre Datei.
+     *
+     * @throws IOException bei Schreibfehlern
+     */
+    public synchronized void save() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            values.store(out, "Indexierungsfortschritt");
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Checkpoint kann nicht ersetzt werden: " + file);
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package com.example.app3;
 
+import android.Manifest;
+import android.content.ContentUris;
+import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.Matrix;
+import android.graphics.Rect;
 import androidx.exifinterface.media.ExifInterface;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
 import android.provider.MediaStore;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.MotionEvent;
 import android.widget.Button;
 import android.widget.CompoundButton;
+import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.Switch;
 import android.widget.TextView;
@@ -20,8 +28,28 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.google.ai.edge.litert.Accelerator;
 import com.google.ai.edge.litert.LiteRtException;
 
+import com.example.common.BitmapPool;
+import com.example.common.InferenceException;
+import com.example.common.InputWriter;
+import com.example.common.LiteRtEnvironment;
+import com.example.common.MemoryFootprint;
+import com.example.common.MemoryManager;
+import com.example.common.MemorySampler;
+import com.example.common.RequestCancelledException;
+import com.example.common.RequestToken;
+import com.example.common.Tracer;
+
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.io.InputStream;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * @class MainActivity
@@ -31,7 +59,13 @@ import java.io.InputStream;
  * Der Nutzer kann:
  * - ein Bild aus der Galerie auswählen
  * - zwischen CPU- und GPU-Beschleunigung wechseln
- * - eine Bildklassifikation starten
+ * - eine Bildklassifikation starten (optional über Kacheln, {@link TiledClassifier},
+ *   mit Test-Time-Augmentation oder als Kaskade, {@link CascadeClassifier})
+ * - alle Bilder der Galerie im Hintergrund klassifizieren ({@link BulkIndexingPipeline})
+ * - im gespeicherten {@link ClassificationIndex} nach einem Label suchen
+ * - zum aktuellen Bild ähnliche Bilder der Galerie finden ({@link EmbeddingStore})
+ * - eine neue Modellversion unter {@code files/models/} ohne Neustart
+ *   übernehmen ({@link ModelHotReloader})
  *
  * Die Klassifikation erfolgt über die {@link Classifier}-Klasse,
  * welche ein LiteRT-Modell verwendet.
@@ -44,27 +78,128 @@ public class MainActivity extends AppCompatActivity {
     /** Eingabegröße des Modells (Breite = Höhe) */
     private static final int IMAGE_SIZE = 224;
 
+    /** Kennung des Modells im {@link ClassificationIndex} */
+    private static final int MODEL_ID = "mobilenetv2.tflite".hashCode();
+
     /** Button zum Auswählen eines Bildes aus der Galerie */
     private Button buttonUpload;
 
     /** Button zum Starten der Klassifikation */
     private Button buttonClassify;
 
+    /** Button zum Klassifizieren der gesamten Galerie */
+    private Button buttonBulk;
+
+    /** Laufende Indexierung der Galerie (null, wenn keine läuft) */
+    private IncrementalIndexer bulkIndexer;
+
+    /** Eingabefeld und Button für die Suche nach einem Label */
+    private EditText editSearch;
+    private Button buttonSearch;
+
+    /** Gespeicherte Ergebnisse der Bulk-Indexierung (null, falls nicht lesbar) */
+    private ClassificationIndex index;
+
+    /** Fortschritt der Indexierung pro Volume */
+    private IndexCheckpoint checkpoint;
+
     /** ImageView zur Anzeige des ausgewählten Bildes */
     private ImageView imageView;
 
     /** TextView zur Anzeige der Klassifikationsergebnisse */
     private TextView textViewResult;
 
+    /** Zeigt Ergebnistexte aus Hintergrundthreads höchstens einmal pro Frame an */
+    private ResultDispatcher<CharSequence> resultDispatcher;
+
     /** Aktuell ausgewähltes Bild */
     private Bitmap selectedBitmap;
 
+    /**
+     * Bilder, auf die noch eine Hintergrundaufgabe zugreift, mit Anzahl
+     * Aufgaben; sie gehen erst danach an den Pool zurück (nur im UI-Thread verwendet)
+     */
+    private final Map<Bitmap, Integer> bitmapsInUse = new IdentityHashMap<>();
+
     /** Switch zur Auswahl des Accelerators (CPU/GPU) */
     private Switch switchAccelaratorMethod;
 
+    /** Switch für den hochauflösenden Kachelmodus */
+    private Switch switchTiled;
+
+    /** Switch für die Test-Time-Augmentation (zehn Ausschnitte) */
+    private Switch switchTta;
+
+    /** Switch für die Kaskade aus schnellem und genauem Modell */
+    private Switch switchCascade;
+
+    /** Kaskade (wird beim ersten Gebrauch angelegt) */
+    private CascadeClassifier cascade;
+
+    /**
+     * Dauerbetrieb (langer Klick auf "Klassifizieren"): klassifiziert das
+     * angezeigte Bild in jedem Frame, Bildrate, Threads und Accelerator passt
+     * der {@link AdaptiveScheduler} an Temperatur und Akku an; null wenn aus
+     */
+    private AdaptiveScheduler liveScheduler;
+
+    /** Reicht im Dauerbetrieb pro Bildschirm-Frame ein Bild ein */
+    private final Choreographer.FrameCallback liveFrame = this::onLiveFrame;
+
     /** Instanz des Bildklassifikators */
     private Classifier classifier;
 
+    /**
+     * Kachelmodus des aktuellen Classifiers; Batch-Buffer und Statistik bleiben
+     * über Anfragen erhalten (siehe {@link #resetClassifierWrappers()})
+     */
+    private TiledClassifier tiledClassifier;
+
+    /** Ausschnitte um einen Tippunkt, Lebensdauer wie {@link #tiledClassifier} */
+    private RegionClassifier regionClassifier;
+
+    /** Pool für dekodierte und gedrehte Bitmaps */
+    private final BitmapPool bitmapPool = BitmapPool.getShared();
+
+    /** Gibt Pool, Buffer und Modelle bei Speicherdruck frei */
+    private final MemoryManager memoryManager = MemoryManager.getShared();
+
+    /** Trace-Abschnitte der Klassifikation, Export per langem Klick auf das Ergebnis */
+    private final Tracer tracer = Tracer.getShared();
+
+    /** Anzahl Anfragen im Trace-Export */
+    private static final int TRACE_EXPORT_REQUESTS = 20;
+
+    /** Abstand der Speichermessungen, solange die App sichtbar ist */
+    private static final long MEMORY_SAMPLE_INTERVAL_MS = 5000;
+
+    /** Anzahl Speichermessungen im Ringpuffer (eine Stunde) */
+    private static final int MEMORY_SAMPLES = 720;
+
+    /** Speichermessungen, Export zusammen mit dem Trace */
+    private final MemorySampler memorySampler = new MemorySampler(this::currentFootprint, tracer, MEMORY_SAMPLES);
+
+    /** Frist einer Klassifikation ab dem Klick (inklusive Wartezeit im Scheduler) */
+    private static final long CLASSIFY_DEADLINE_MS = 3000;
+
+    /** Token der laufenden Klassifikation (nur im UI-Thread verwendet) */
+    private RequestToken currentToken;
+
+    /** Gemeinsame Warteschlange für Klicks (interaktiv) und Indexierung (Masse) */
+    private final PriorityScheduler scheduler = PriorityScheduler.getShared();
+
+    /** Übernimmt neue Modellversionen aus {@code files/models/} */
+    private ModelHotReloader hotReloader;
+
+    /** Embeddings der Galerie für die Ähnlichkeitssuche, passend zum aktuellen Modell */
+    private EmbeddingStore embeddings;
+
+    /** Anzahl Treffer der Ähnlichkeitssuche */
+    private static final int SIMILAR_RESULTS = 10;
+
+    /** Ab dieser Ähnlichkeit gilt ein Treffer als das Anfragebild selbst */
+    private static final float SAME_IMAGE_SIMILARITY = 0.995f;
+
     /**
      * ActivityResultLauncher zum Öffnen der Bildergalerie.
      * Nach Auswahl wird {@link #loadImage(Uri)} aufgerufen.
@@ -76,6 +211,19 @@ public class MainActivity extends AppCompatActivity {
                 }
             });
 
+    /**
+     * ActivityResultLauncher für die Leseberechtigung der Galerie.
+     * Nach Erteilung wird {@link #startBulkIndexing()} aufgerufen.
+     */
+    private final ActivityResultLauncher<String> permissionLauncher =
+            registerForActivityResult(new ActivityResultContracts.RequestPermission(), granted -> {
+                if (granted) {
+                    startBulkIndexing();
+                } else {
+                    resultDispatcher.show("Kein Zugriff auf die Galerie!");
+                }
+            });
+
     /**
      * Initialisiert die Benutzeroberfläche, den Classifier
      * und registriert alle Listener.
@@ -92,37 +240,825 @@ public class MainActivity extends AppCompatActivity {
         // UI Elemente initialisieren
         buttonUpload = findViewById(R.id.buttonUpload);
         buttonClassify = findViewById(R.id.buttonClassify);
+        buttonBulk = findViewById(R.id.buttonBulk);
+        editSearch = findViewById(R.id.editSearch);
+        buttonSearch = findViewById(R.id.buttonSearch);
         imageView = findViewById(R.id.imageView);
         textViewResult = findViewById(R.id.textViewResult);
+        resultDispatcher = new ResultDispatcher<>("ui.result", textViewResult::setText);
         switchAccelaratorMethod = findViewById(R.id.switchAccelarator);
+        switchTiled = findViewById(R.id.switchTiled);
+        switchTta = findViewById(R.id.switchTta);
+        switchCascade = findViewById(R.id.switchCascade);
 
         // Listener für Accelerator-Switch
         switchAccelaratorMethod.setOnCheckedChangeListener(this::onSwitchChanged);
+        // Langer Klick: Kompilierzeit mit eigenem und geteiltem Environment vergleichen
+        switchAccelaratorMethod.setOnLongClickListener(v -> {
+            measureStartup();
+            return true;
+        });
 
-        // Classifier initialisieren (Standard: CPU)
+        // Classifier initialisieren (Standard: CPU, mit dem ClassificationService geteilt)
         try {
-            classifier = new Classifier(this, "mobilenetv2.tflite", "labels1.txt", IMAGE_SIZE);
+            classifier = SharedClassifier.get(this);
         } catch (LiteRtException e) {
             throw new RuntimeException(e);
         }
+        memoryManager.register(bitmapPool);
+        memorySampler.markState(classifier.getAccelerator().name());
+        calibratePreprocessing();
+
+        // Neue Modellversionen im Hintergrund übernehmen (Prüfung in onResume)
+        hotReloader = new ModelHotReloader(getFilesDir(), "mobilenetv2.tflite", classifier,
+                new ModelHotReloader.Listener() {
+                    @Override
+                    public void onModelSwapped(File model, String checksum) {
+                        Log.i("ModelHotReloader", "Modell übernommen: " + checksum);
+                        runOnUiThread(() -> {
+                            resetClassifierWrappers();
+                            Toast.makeText(MainActivity.this, "Neues Modell geladen", Toast.LENGTH_SHORT).show();
+                        });
+                    }
+
+                    @Override
+                    public void onModelRejected(File model, String checksum, String reason) {
+                        Log.w("ModelHotReloader", "Modell " + checksum + " abgelehnt: " + reason);
+                        runOnUiThread(() -> Toast.makeText(MainActivity.this,
+                                "Neues Modell abgelehnt: " + reason, Toast.LENGTH_LONG).show());
+                    }
+                });
+
+        // Index der Galerie öffnen (Top-3 pro Bild)
+        openIndex();
 
         // Button: Bild auswählen
         buttonUpload.setOnClickListener(v -> galleryLauncher.launch("image/*"));
 
+        // Tippen auf das Bild: nur den Bereich um den Tippunkt klassifizieren
+        imageView.setOnTouchListener((v, event) -> {
+            if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+                v.performClick();
+                if (selectedBitmap != null && buttonClassify.isEnabled()) {
+                    classifyRegionAt(event.getX(), event.getY());
+                }
+            }
+            return true;
+        });
+
         // Button: Klassifikation starten
         buttonClassify.setOnClickListener(v -> {
+            if (liveScheduler != null) {
+                stopLive();
+                return;
+            }
             if (selectedBitmap == null) {
-                textViewResult.setText("Bitte zuerst ein Bild auswählen!");
+                resultDispatcher.show("Bitte zuerst ein Bild auswählen!");
                 return;
             }
 
+            try (Tracer.Section request = tracer.request("classify")) {
+                if (switchTiled.isChecked()) {
+                    classifyTiled(selectedBitmap);
+                    return;
+                }
+
+                if (switchCascade.isChecked()) {
+                    classifyCascade(selectedBitmap);
+                    return;
+                }
+
+                long requestId = request.getRequest();
+                Classifier current = classifier;
+                Bitmap bitmap = selectedBitmap;
+                boolean tta = switchTta.isChecked();
+                // Wartet die Anfrage zu lange (z. B. hinter einer Kachel-Klassifikation),
+                // wird sie vor der Vorverarbeitung verworfen
+                RequestToken token = RequestToken.withTimeout(CLASSIFY_DEADLINE_MS);
+                currentToken = token;
+                // Das Bild darf bis zum Ergebnis nicht ersetzt werden
+                setInputEnabled(false);
+                acquireBitmap(bitmap);
+                // Überholt eine laufende Indexierung, siehe PriorityScheduler
+                scheduler.submit(PriorityScheduler.Priority.INTERACTIVE, () -> {
+                    try {
+                        current.setTestTimeAugmentation(tta);
+                        current.classify(bitmap, token, result ->
+                                runOnUiThread(() -> {
+                                    try (Tracer.Section section = tracer.section("ui.callback", requestId)) {
+                                        if (token == currentToken) {
+                                            resultDispatcher.publish("Ergebnis: " + result);
+                                            currentToken = null;
+                                        }
+                                    }
+                                    Log.d("Classifier", current.getCancellationStats().toString());
+                                })
+                        );
+                    } finally {
+                        finishJob(bitmap);
+                    }
+                });
+            }
+        });
+
+        // Langer Klick: Dauerbetrieb starten, Klick beendet ihn
+        buttonClassify.setOnLongClickListener(v -> {
+            if (liveScheduler == null) {
+                startLive();
+            }
+            return true;
+        });
+
+        // Langer Klick auf das Ergebnis: Trace der letzten Anfragen exportieren
+        textViewResult.setOnLongClickListener(v -> {
+            exportTrace();
+            return true;
+        });
+
+        // Button: gesamte Galerie klassifizieren bzw. laufende Indexierung abbrechen
+        buttonBulk.setOnClickListener(v -> {
+            if (bulkIndexer != null) {
+                bulkIndexer.cancel();
+                return;
+            }
+            String permission = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                    ? Manifest.permission.READ_MEDIA_IMAGES
+                    : Manifest.permission.READ_EXTERNAL_STORAGE;
+            if (checkSelfPermission(permission) == PackageManager.PERMISSION_GRANTED) {
+                startBulkIndexing();
+            } else {
+                permissionLauncher.launch(permission);
+            }
+        });
+
+        // Button: Galerie nach Label durchsuchen
+        buttonSearch.setOnClickListener(v -> searchIndex(editSearch.getText().toString()));
+    }
+
+    /**
+     * Klassifiziert ein Bild im Kachelmodus. Da dabei viele Kacheln gerechnet
+     * werden, läuft die Klassifikation als interaktive Aufgabe im
+     * {@link PriorityScheduler}.
+     *
+     * @param bitmap Eingabebild in voller Auflösung
+     */
+    private void classifyTiled(Bitmap bitmap) {
+        Classifier current = classifier;
+        if (tiledClassifier == null) {
+            tiledClassifier = new TiledClassifier(current);
+        }
+        TiledClassifier tiled = tiledClassifier;
+        resultDispatcher.show("Kacheln werden klassifiziert...");
+        // Das Bild darf währenddessen nicht ersetzt (und an den Pool zurückgegeben) werden
+        setInputEnabled(false);
+        acquireBitmap(bitmap);
+        long requestId = tracer.currentRequest();
+        scheduler.submit(PriorityScheduler.Priority.INTERACTIVE, () -> {
+            String text;
+            try (Tracer.Section section = tracer.section("classify.tiled", requestId)) {
+                text = tiled.classify(bitmap).format(current.getLabels()) + "\n" + tiled.getStats();
+            } catch (InferenceException e) {
+                text = "Fehler bei Inference: " + e.getMessage();
+            } finally {
+                finishJob(bitmap);
+            }
+            resultDispatcher.publish("Ergebnis: " + text);
+        });
+    }
+
+    /**
+     * Klassifiziert die Umgebung eines Tippunkts im Bild: zwei quadratische
+     * Ausschnitte (ein Viertel und die Hälfte der kürzeren Bildseite) in einer
+     * Batch-Inferenz über {@link RegionClassifier}, ohne das ganze Bild zu
+     * skalieren.
+     *
+     * @param viewX Tippunkt in View-Koordinaten
+     * @param viewY Tippunkt in View-Koordinaten
+     */
+    private void classifyRegionAt(float viewX, float viewY) {
+        Bitmap bitmap = selectedBitmap;
+        // Umrechnung in Bildkoordinaten passend zu scaleType="centerCrop"
+        float scale = Math.max((float) imageView.getWidth() / bitmap.getWidth(),
+                (float) imageView.getHeight() / bitmap.getHeight());
+        int x = Math.round((viewX - (imageView.getWidth() - bitmap.getWidth() * scale) / 2) / scale);
+        int y = Math.round((viewY - (imageView.getHeight() - bitmap.getHeight() * scale) / 2) / scale);
+        int shorter = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        Rect[] regions = {
+                squareAround(x, y, Math.max(1, shorter / 4), bitmap),
+                squareAround(x, y, Math.max(1, shorter / 2), bitmap)
+        };
+
+        Classifier current = classifier;
+        if (regionClassifier == null) {
+            regionClassifier = new RegionClassifier(current);
+        }
+        RegionClassifier region = regionClassifier;
+        resultDispatcher.show("Ausschnitt wird klassifiziert...");
+        cancelCurrentRequest();
+        RequestToken token = RequestToken.withTimeout(CLASSIFY_DEADLINE_MS);
+        currentToken = token;
+        // Das Bild darf währenddessen nicht ersetzt (und an den Pool zurückgegeben) werden
+        setInputEnabled(false);
+        acquireBitmap(bitmap);
+        try (Tracer.Section request = tracer.request("classify.region")) {
+            long requestId = request.getRequest();
+            scheduler.submit(PriorityScheduler.Priority.INTERACTIVE, () -> {
+                StringBuilder text = new StringBuilder();
+                try (Tracer.Section section = tracer.section("classify.region", requestId)) {
+                    ClassificationResult[] results = region.classify(bitmap, regions, token);
+                    for (int i = 0; i < results.length; i++) {
+                        text.append(String.format(Locale.US, "Ausschnitt %d×%d bei (%d, %d): ",
+                                        regions[i].width(), regions[i].height(), x, y))
+                                .append(results[i].format(current.getLabels())).append("\n");
+                    }
+                    text.append(region.getStats());
+                } catch (RequestCancelledException e) {
+                    text.append("Verworfen: ").append(e.getMessage());
+                } catch (InferenceException e) {
+                    text.append("Fehler bei Inference: ").append(e.getMessage());
+                } finally {
+                    finishJob(bitmap);
+                }
+                runOnUiThread(() -> {
+                    if (token == currentToken) {
+                        resultDispatcher.publish("Ergebnis: " + text);
+                        currentToken = null;
+                    }
+                });
+            });
+        }
+    }
+
+    /** Quadrat mit Kantenlänge {@code size} um (x, y), soweit möglich ganz im Bild */
+    private static Rect squareAround(int x, int y, int size, Bitmap bitmap) {
+        int left = Math.max(0, Math.min(bitmap.getWidth() - size, x - size / 2));
+        int top = Math.max(0, Math.min(bitmap.getHeight() - size, y - size / 2));
+        return new Rect(left, top, left + size, top + size);
+    }
+
+    /**
+     * Bricht die laufende Klassifikation ab; sie wird vor dem nächsten
+     * Schritt verworfen und ihr Ergebnis nicht mehr angezeigt.
+     */
+    private void cancelCurrentRequest() {
+        if (currentToken != null) {
+            currentToken.cancel();
+            currentToken = null;
+        }
+    }
+
+    /**
+     * Sperrt Bildauswahl und Klassifikation, solange eine Anfrage auf das
+     * aktuelle Bild zugreift.
+     *
+     * @param enabled false = Buttons sperren
+     */
+    private void setInputEnabled(boolean enabled) {
+        buttonUpload.setEnabled(enabled);
+        buttonClassify.setEnabled(enabled);
+        // Suche und Ähnlichkeitssuche ersetzen das angezeigte Bild
+        buttonSearch.setEnabled(enabled);
+        editSearch.setEnabled(enabled);
+    }
+
+    /** Markiert ein Bild als von einer Hintergrundaufgabe verwendet (UI-Thread). */
+    private void acquireBitmap(Bitmap bitmap) {
+        Integer count = bitmapsInUse.get(bitmap);
+        bitmapsInUse.put(bitmap, count != null ? count + 1 : 1);
+    }
+
+    /**
+     * Gibt ein Bild nach der Aufgabe frei; wird es nicht mehr angezeigt,
+     * geht es an den Pool zurück (UI-Thread).
+     */
+    private void releaseBitmap(Bitmap bitmap) {
+        Integer count = bitmapsInUse.get(bitmap);
+        if (count != null && count > 1) {
+            bitmapsInUse.put(bitmap, count - 1);
+            return;
+        }
+        bitmapsInUse.remove(bitmap);
+        if (bitmap != selectedBitmap) {
+            bitmapPool.put(bitmap);
+        }
+    }
+
+    /**
+     * Abschluss einer Hintergrundaufgabe auf dem angezeigten Bild: gibt das
+     * Bild frei und entsperrt die Eingabe (aus jedem Thread aufrufbar).
+     *
+     * @param bitmap per {@link #acquireBitmap} markiertes Bild oder {@code null}
+     */
+    private void finishJob(Bitmap bitmap) {
+        runOnUiThread(() -> {
+            if (bitmap != null) {
+                releaseBitmap(bitmap);
+            }
+            setInputEnabled(true);
+        });
+    }
+
+    /**
+     * Startet den Dauerbetrieb mit einem eigenen Classifier im
+     * {@link AdaptiveScheduler}; der bevorzugte Accelerator ist der des
+     * Switches. Der Classifier ist beim {@link MemoryManager} als zusätzliche
+     * Modellinstanz angemeldet und meldet sich beim Schließen wieder ab.
+     */
+    private void startLive() {
+        if (selectedBitmap == null) {
+            resultDispatcher.show("Bitte zuerst ein Bild auswählen!");
+            return;
+        }
+        try {
+            liveScheduler = new AdaptiveScheduler(this, new AdaptivePolicy(), accelerator -> {
+                Classifier live = new Classifier(this, "mobilenetv2.tflite", "labels1.txt", IMAGE_SIZE, accelerator);
+                live.registerMemoryComponents(memoryManager, true);
+                return live;
+            }, classifier.getAccelerator());
+        } catch (Exception e) {
+            Log.e("AdaptiveScheduler", "Dauerbetrieb nicht möglich", e);
+            Toast.makeText(this, "Dauerbetrieb nicht möglich", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        liveScheduler.setListener((decision, state) -> runOnUiThread(() ->
+                Toast.makeText(this, "Dauerbetrieb: " + decision.getName(), Toast.LENGTH_SHORT).show()));
+        Choreographer.getInstance().postFrameCallback(liveFrame);
+        Toast.makeText(this, "Dauerbetrieb gestartet, Klick beendet", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Reicht das angezeigte Bild ein; überzählige Frames verwirft der
+     * Scheduler. Das Bild bleibt bis zum Ergebnis markiert, damit ein neu
+     * geladenes Bild es nicht in den Pool gibt.
+     */
+    private void onLiveFrame(long frameTimeNanos) {
+        AdaptiveScheduler live = liveScheduler;
+        Bitmap frame = selectedBitmap;
+        if (live == null) {
+            return;
+        }
+        List<String> labels = classifier.getLabels();
+        acquireBitmap(frame);
+        boolean accepted = live.submit(frame, result -> {
+            runOnUiThread(() -> releaseBitmap(frame));
+            if (result != null) {
+                resultDispatcher.publish("Dauerbetrieb: " + result.format(labels) + "\n" + live.getStats());
+            }
+        });
+        if (!accepted) {
+            releaseBitmap(frame);
+        }
+        Choreographer.getInstance().postFrameCallback(liveFrame);
+    }
+
+    /** Beendet den Dauerbetrieb und schließt dessen Classifier. */
+    private void stopLive() {
+        if (liveScheduler == null) {
+            return;
+        }
+        Choreographer.getInstance().removeFrameCallback(liveFrame);
+        Log.i("AdaptiveScheduler", liveScheduler.getStats());
+        liveScheduler.close();
+        liveScheduler = null;
+    }
+
+    /**
+     * Klassifiziert ein Bild über die Kaskade. Das schnelle Modell
+     * ({@code mobilenetv1.tflite}, UINT8) wird beim ersten Aufruf geladen,
+     * das genaue Modell ist der aktuelle {@link Classifier}.
+     *
+     * @param bitmap Eingabebild
+     */
+    private void classifyCascade(Bitmap bitmap) {
+        if (cascade == null || cascade.getAccurate() != classifier) {
             try {
-                classifier.classify(selectedBitmap, result ->
-                        runOnUiThread(() -> textViewResult.setText("Ergebnis: " + result))
-                );
+                Classifier fast = new Classifier(this, "mobilenetv1.tflite", "labels1.txt", IMAGE_SIZE);
+                if (fast.getEngine() == null) {
+                    throw new IllegalStateException("mobilenetv1.tflite konnte nicht geladen werden");
+                }
+                // Quantisiertes Modell erwartet Rohpixel
+                fast.setNormalization(null);
+                // Zusätzliches Modell: wird vor dem Hauptmodell freigegeben
+                fast.registerMemoryComponents(memoryManager, true);
+                closeCascade();
+                cascade = new CascadeClassifier(fast, classifier);
+            } catch (LiteRtException | RuntimeException e) {
+                Toast.makeText(this, "Schnelles Modell nicht verfügbar", Toast.LENGTH_SHORT).show();
+                switchCascade.setChecked(false);
+                return;
+            }
+        }
+
+        CascadeClassifier current = cascade;
+        List<String> labels = classifier.getLabels();
+        setInputEnabled(false);
+        acquireBitmap(bitmap);
+        scheduler.submit(PriorityScheduler.Priority.INTERACTIVE, () -> {
+            String text;
+            try {
+                ClassificationResult result = current.classify(bitmap);
+                text = "Ergebnis: " + result.format(labels)
+                        + (current.wasLastEscalated() ? " (genaues Modell)" : " (schnelles Modell)");
+                Log.d("CascadeClassifier", current.getStats());
+            } catch (InferenceException e) {
+                text = "Fehler bei Inference: " + e.getMessage();
+            } finally {
+                finishJob(bitmap);
+            }
+            resultDispatcher.publish(text);
+        });
+    }
+
+    /** Gibt das schnelle Modell der Kaskade frei. */
+    private void closeCascade() {
+        if (cascade == null) {
+            return;
+        }
+        try {
+            cascade.getFast().close();
+        } catch (LiteRtException e) {
+            e.printStackTrace();
+        }
+        cascade = null;
+    }
+
+    /**
+     * Öffnet Index und Checkpoint. Ist der Index nicht lesbar (z. B. altes
+     * Format), wird er verworfen und neu angelegt.
+     */
+    private void openIndex() {
+        File directory = new File(getFilesDir(), "index");
+        for (int attempt = 0; attempt < 2 && index == null; attempt++) {
+            try {
+                checkpoint = new IndexCheckpoint(new File(directory, "checkpoint.properties"));
+                index = new ClassificationIndex(directory, 3);
+            } catch (IOException e) {
+                Log.e("ClassificationIndex", "Index kann nicht geöffnet werden", e);
+                File[] files = directory.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Öffnet den {@link EmbeddingStore} passend zum aktuellen Modell. Gehört
+     * der vorhandene Store zu einem anderen Modell, wird er verworfen und bei
+     * der nächsten Indexierung neu gefüllt.
+     *
+     * @param modelId ID des aktuellen Modells
+     */
+    private void openEmbeddings(int modelId) {
+        if (classifier.getEngine() == null) {
+            return;
+        }
+        int dimension = classifier.getEmbeddingDimension();
+        if (embeddings != null && embeddings.getModelId() == modelId
+                && embeddings.getDimension() == dimension) {
+            return;
+        }
+        closeEmbeddings();
+        try {
+            embeddings = new EmbeddingStore(new File(getFilesDir(), "embeddings"), dimension, modelId);
+        } catch (IOException e) {
+            Log.e("EmbeddingStore", "Embeddings können nicht geöffnet werden", e);
+        }
+    }
+
+    private void closeEmbeddings() {
+        if (embeddings == null) {
+            return;
+        }
+        try {
+            embeddings.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        embeddings = null;
+    }
+
+    /** @return ID des aktiven Modells; ein per Hot-Reload geladenes Modell gilt als anderes Modell */
+    private int currentModelId() {
+        String checksum = hotReloader.getActiveChecksum();
+        return checksum != null ? checksum.hashCode() : MODEL_ID;
+    }
+
+    /**
+     * Sucht die dem aktuellen Bild ähnlichsten Bilder der Galerie und zeigt
+     * das ähnlichste an. Das Embedding des Bildes wird als interaktive
+     * Aufgabe im {@link PriorityScheduler} berechnet. Ohne Merkmalstensor im
+     * Modell vergleicht die Suche nur Klassenverteilungen und wird so benannt.
+     */
+    private void findSimilar() {
+        if (selectedBitmap == null) {
+            resultDispatcher.show("Bitte zuerst ein Bild auswählen!");
+            return;
+        }
+        openEmbeddings(currentModelId());
+        if (embeddings == null || embeddings.size() == 0) {
+            resultDispatcher.show("Keine Embeddings vorhanden, bitte zuerst die Galerie indexieren");
+            return;
+        }
+
+        Classifier current = classifier;
+        EmbeddingStore store = embeddings;
+        Bitmap bitmap = selectedBitmap;
+        setInputEnabled(false);
+        acquireBitmap(bitmap);
+        scheduler.submit(PriorityScheduler.Priority.INTERACTIVE, () -> {
+            String text;
+            long best = -1;
+            try {
+                float[] query = current.embed(bitmap, null);
+                long start = System.nanoTime();
+                EmbeddingStore.Match[] matches = store.search(query, SIMILAR_RESULTS + 1);
+                long durationMs = (System.nanoTime() - start) / 1_000_000;
+                String title = current.hasFeatureEmbedding()
+                        ? "Ähnliche Bilder"
+                        : "Bilder mit ähnlicher Klassenverteilung (Modell ohne Merkmalsvektor)";
+                StringBuilder builder = new StringBuilder(title).append(" (")
+                        .append(durationMs).append("ms):");
+                for (EmbeddingStore.Match match : matches) {
+                    // Das Anfragebild selbst, falls es aus der Galerie stammt
+                    if (match.getSimilarity() >= SAME_IMAGE_SIMILARITY) {
+                        continue;
+                    }
+                    if (best < 0) {
+                        best = match.getImageId();
+                    }
+                    builder.append("\n").append(match);
+                }
+                text = builder.toString();
+            } catch (InferenceException | IOException e) {
+                text = "Fehler bei der Ähnlichkeitssuche: " + e.getMessage();
+            } finally {
+                finishJob(bitmap);
+            }
+            long imageId = best;
+            // Nach finishJob: das Anfragebild ist dann freigegeben und kann an den Pool gehen
+            runOnUiThread(() -> {
+                if (imageId >= 0) {
+                    loadImage(ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, imageId));
+                }
+            });
+            resultDispatcher.publish(text);
+        });
+    }
+
+    /**
+     * Sucht im Index nach Bildern mit einem Label und zeigt das Bild
+     * mit der höchsten Konfidenz an. Ohne Suchbegriff werden zum aktuellen
+     * Bild ähnliche Bilder gesucht ({@link #findSimilar()}).
+     *
+     * @param query (Teil eines) Labels, ohne Beachtung der Groß-/Kleinschreibung
+     */
+    private void searchIndex(String query) {
+        if (query.trim().isEmpty()) {
+            findSimilar();
+            return;
+        }
+        List<String> labels = classifier.getLabels();
+        int label = -1;
+        for (int i = 0; i < labels.size() && !query.isEmpty(); i++) {
+            if (labels.get(i).toLowerCase(Locale.ROOT).contains(query.trim().toLowerCase(Locale.ROOT))) {
+                label = i;
+                break;
+            }
+        }
+        if (index == null || label < 0) {
+            resultDispatcher.show("Kein passendes Label gefunden");
+            return;
+        }
+
+        long start = System.nanoTime();
+        long[] ids = index.find(label, 0.1f);
+        long durationMs = (System.nanoTime() - start) / 1_000_000;
+        resultDispatcher.show(ids.length + " Bilder für \"" + labels.get(label)
+                + "\" (" + durationMs + "ms)");
+        if (ids.length > 0) {
+            loadImage(ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, ids[0]));
+        }
+    }
+
+    /**
+     * Startet die inkrementelle Klassifikation der Galerie: nur neue oder
+     * geänderte Bilder werden klassifiziert, ein Abbruch wird beim nächsten
+     * Start fortgesetzt. Fortschritt und Durchsatz werden im Ergebnis-TextView angezeigt.
+     */
+    private void startBulkIndexing() {
+        if (index == null || checkpoint == null) {
+            resultDispatcher.show("Index nicht verfügbar!");
+            return;
+        }
+        buttonBulk.setText("Indexierung abbrechen");
+        // Hot-Reload: Ergebnisse des neuen Modells gelten als andere Generation
+        int modelId = currentModelId();
+        openEmbeddings(modelId);
+        EmbeddingStore store = embeddings;
+        bulkIndexer = new IncrementalIndexer(this, classifier, index, checkpoint, modelId,
+                new IncrementalIndexer.Listener() {
+                    @Override
+                    public void onProgress(long classified, long skipped) {
+                        // Zwischenstände zwischen zwei Frames werden verworfen
+                        resultDispatcher.publish("Indexiert: " + classified + " (unverändert: " + skipped + ")");
+                    }
+
+                    @Override
+                    public void onComplete(List<BulkIndexingPipeline.Stats> stats, long skipped, boolean cancelled) {
+                        StringBuilder text = new StringBuilder(cancelled ? "Abgebrochen" : "Fertig")
+                                .append(", unverändert: ").append(skipped);
+                        for (BulkIndexingPipeline.Stats volumeStats : stats) {
+                            text.append("\n").append(volumeStats);
+                        }
+                        Log.i("PriorityScheduler", scheduler.getStats());
+                        Log.i("ResultDispatcher", resultDispatcher.getStats());
+                        // Ersetzt einen noch ausstehenden Zwischenstand
+                        resultDispatcher.publish(text.toString());
+                        runOnUiThread(() -> {
+                            bulkIndexer = null;
+                            buttonBulk.setText("Galerie indexieren");
+                        });
+                        if (store != null && !cancelled) {
+                            benchmarkSimilaritySearch(store);
+                        }
+                    }
+                });
+        bulkIndexer.setScheduler(scheduler);
+        bulkIndexer.setEmbeddingStore(store);
+        bulkIndexer.start();
+    }
+
+    /**
+     * Misst Recall und Latenz der Ähnlichkeitssuche (exakt und IVF mit
+     * verschiedenen {@code nprobe}) auf den gespeicherten Embeddings und
+     * schreibt das Ergebnis ins Log. Läuft im aufrufenden Hintergrundthread.
+     *
+     * @param store gefüllter Store
+     */
+    private void benchmarkSimilaritySearch(EmbeddingStore store) {
+        try {
+            Log.i("EmbeddingStore", SimilarityBenchmark.run(store, 100, SIMILAR_RESULTS,
+                    new int[]{1, 4, EmbeddingStore.DEFAULT_NPROBE, 16}, 0).toString());
+        } catch (IOException e) {
+            Log.w("EmbeddingStore", "Benchmark fehlgeschlagen", e);
+        }
+    }
+
+    /**
+     * Vergleicht im Hintergrund die Kompilierzeit des Modells mit eigenem und
+     * mit geteiltem LiteRT-Environment und zeigt sie zusammen mit den
+     * bisherigen Kompilierzeiten der App an.
+     */
+    private void measureStartup() {
+        resultDispatcher.show("Kompilierzeit wird gemessen...");
+        Accelerator accelerator = classifier.getAccelerator();
+        new Thread(() -> {
+            LiteRtEnvironment environment = LiteRtEnvironment.getShared();
+            String report;
+            try {
+                report = environment.measureStartup(getAssets(), "mobilenetv2.tflite", accelerator, 5)
+                        + "\n" + environment.getStats();
             } catch (LiteRtException e) {
-                textViewResult.setText("Fehler bei Inferenz: " + e.getMessage());
+                report = "Messung fehlgeschlagen: " + e.getMessage();
             }
+            Log.i("LiteRtEnvironment", report);
+            resultDispatcher.publish(report);
+        }, "StartupMeasurement").start();
+    }
+
+    /**
+     * Verwirft die Hilfsklassifikatoren des bisherigen Classifiers, damit der
+     * nächste Aufruf Buffer passend zu Modell und Accelerator anlegt.
+     * Nur im UI-Thread aufrufen; laufende Anfragen behalten ihre Instanz.
+     */
+    private void resetClassifierWrappers() {
+        tiledClassifier = null;
+        regionClassifier = null;
+    }
+
+    /**
+     * Misst einmalig im Hintergrund, ab welcher Eingabegröße die parallele
+     * Vorverarbeitung schneller ist, und setzt den Schwellwert entsprechend.
+     */
+    private void calibratePreprocessing() {
+        if (classifier.getEngine() == null) {
+            return;
+        }
+        InputWriter writer = classifier.getInputWriter();
+        new Thread(() -> {
+            StringBuilder report = new StringBuilder();
+            ParallelPreprocessor.getShared().calibrate(
+                    writer, new int[]{128, 224, 320, 448, 640, 896, 1024}, 20, report);
+            Log.i("ParallelPreprocessor", report.toString());
+        }, "PreprocessCalibration").start();
+    }
+
+    /**
+     * Schreibt die Trace-Abschnitte der letzten Anfragen als Chrome-Trace-JSON
+     * nach {@code files/trace.json} (per {@code adb pull} z. B. in
+     * ui.perfetto.dev öffnen). Die Speichermessungen stehen dort als
+     * Zählerspuren und vollständig in {@code files/memory.csv}.
+     */
+    private void exportTrace() {
+        File file = new File(getFilesDir(), "trace.json");
+        File memoryFile = new File(getFilesDir(), "memory.csv");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+             Writer memoryOut = new OutputStreamWriter(new FileOutputStream(memoryFile), StandardCharsets.UTF_8)) {
+            tracer.exportChromeTrace(out, TRACE_EXPORT_REQUESTS);
+            memorySampler.exportCsv(memoryOut);
+            Log.i("MemoryFootprint", currentFootprint().toString());
+            Toast.makeText(this, "Trace gespeichert: " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
+        } catch (IOException e) {
+            e.printStackTrace();
+            Toast.makeText(this, "Trace konnte nicht gespeichert werden", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * Prüft bei jeder Rückkehr in die App im Hintergrund, ob unter
+     * {@code files/models/} eine neue Modellversion liegt. Während der
+     * Indexierung bleibt das Modell unverändert.
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        if (bulkIndexer == null) {
+            hotReloader.checkAsync();
+        }
+    }
+
+    /**
+     * Beendet die Hintergrundthreads von {@link ModelHotReloader} und
+     * {@link MemorySampler}.
+     */
+    @Override
+    protected void onDestroy() {
+        cancelCurrentRequest();
+        hotReloader.close();
+        memorySampler.close();
+        resultDispatcher.close();
+        Log.i("ResultDispatcher", resultDispatcher.getStats());
+        super.onDestroy();
+    }
+
+    /**
+     * Geschätzter Speicherbedarf von Klassifikator, Bitmap-Pool und
+     * angezeigtem Bild für den {@link MemorySampler}. Wird im Messthread
+     * aufgerufen und liest die Felder daher nur einmal.
+     */
+    private MemoryFootprint currentFootprint() {
+        MemoryFootprint footprint = new MemoryFootprint();
+        Classifier current = classifier;
+        if (current != null) {
+            footprint.addAll(current.getFootprint());
+        }
+        CascadeClassifier currentCascade = cascade;
+        if (currentCascade != null) {
+            footprint.addAll(currentCascade.getFast().getFootprint());
+        }
+        footprint.add("BitmapPool", bitmapPool.getHeapBytes(), bitmapPool.getNativeBytes(), 0);
+        Bitmap bitmap = selectedBitmap;
+        if (bitmap != null && !bitmap.isRecycled()) {
+            // Pixel liegen ab Android 8 im nativen Speicher
+            footprint.add("Angezeigtes Bild", 0, bitmap.getAllocationByteCount(), 0);
+        }
+        return footprint;
+    }
+
+    /** Misst den Speicher periodisch, solange die App sichtbar ist. */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        memorySampler.start(MEMORY_SAMPLE_INTERVAL_MS);
+    }
+
+    @Override
+    protected void onStop() {
+        // Dauerbetrieb nur im Vordergrund
+        stopLive();
+        memorySampler.stop();
+        super.onStop();
+    }
+
+    /**
+     * Gibt bei Speicherdruck Pool, Buffer und Modelle gestaffelt frei
+     * (siehe {@link MemoryManager#onTrimMemory(int)}). Alles wird beim
+     * nächsten Klassifizieren automatisch neu angelegt.
+     *
+     * @param level Stufe des Speicherdrucks
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Freigabe wartet ggf. auf eine laufende Inferenz, daher nicht im UI-Thread
+        memoryManager.onTrimMemoryAsync(level, freed -> {
+            Log.i("MemoryManager", String.format(Locale.US, "onTrimMemory(%d): %.1f MB freigegeben",
+                    level, freed / 1e6));
+            Log.d("MemoryManager", memoryManager.getStats());
+            Log.d("MemoryFootprint", currentFootprint().toString());
         });
     }
 
@@ -140,6 +1076,13 @@ public class MainActivity extends AppCompatActivity {
 
         Accelerator newAccelerator;
 
+        // Während der Bulk-Indexierung wird der Classifier noch verwendet
+        if (bulkIndexer != null) {
+            Toast.makeText(this, "Indexierung läuft noch", Toast.LENGTH_SHORT).show();
+            buttonView.setChecked(classifier.getAccelerator() == Accelerator.GPU);
+            return;
+        }
+
         if (isChecked) {
             // Prüfen, ob GPU unterstützt wird
             if (!classifier.isGpuSupported(this, "mobilenetv2.tflite")) {
@@ -155,14 +1098,33 @@ public class MainActivity extends AppCompatActivity {
         // Nur neu erstellen, wenn sich der Accelerator wirklich ändert
         if (classifier.getAccelerator() != newAccelerator) {
             try {
-                classifier.close();
-                classifier = new Classifier(
-                        this,
-                        "mobilenetv2.tflite",
-                        "labels1.txt",
-                        IMAGE_SIZE,
-                        newAccelerator
-                );
+                // Wartende Anfrage nicht mehr auf dem alten Classifier ausführen
+                cancelCurrentRequest();
+                // Kein Modellaustausch am geschlossenen Classifier
+                hotReloader.setClassifier(null);
+                // Der geteilte CPU-Classifier bleibt für den ClassificationService geladen
+                if (!SharedClassifier.isShared(classifier)) {
+                    classifier.close();
+                }
+                resetClassifierWrappers();
+                if (newAccelerator == Accelerator.CPU) {
+                    classifier = SharedClassifier.get(this);
+                } else {
+                    classifier = new Classifier(
+                            this,
+                            "mobilenetv2.tflite",
+                            "labels1.txt",
+                            IMAGE_SIZE,
+                            newAccelerator
+                    );
+                    classifier.registerMemoryComponents(memoryManager, false);
+                    classifier.setParallelPreprocessor(ParallelPreprocessor.getShared());
+                }
+                // Wechsel zurück zum selben Accelerator: Speicher muss wieder gleich groß sein
+                memorySampler.markState(newAccelerator.name());
+                // Neueres Modell aus files/models/ für den neuen Accelerator übernehmen
+                hotReloader.setClassifier(classifier);
+                hotReloader.checkAsync();
             } catch (LiteRtException e) {
                 Toast.makeText(this,
                         "Classifier konnte nicht erstellt werden",
@@ -178,18 +1140,33 @@ public class MainActivity extends AppCompatActivity {
      * @param uri URI des ausgewählten Bildes
      */
     private void loadImage(Uri uri) {
-        try {
-            selectedBitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), uri);
-            selectedBitmap = rotateBitmapIfRequired(selectedBitmap, uri);
+        try (Tracer.Section request = tracer.request("loadImage")) {
+            Bitmap decoded;
+            try (Tracer.Section section = tracer.section("decode")) {
+                decoded = bitmapPool.decode(getContentResolver(), uri, 0);
+            }
+            Bitmap previous = selectedBitmap;
+            try (Tracer.Section section = tracer.section("rotate")) {
+                selectedBitmap = rotateBitmapIfRequired(decoded, uri);
+            }
             imageView.setImageBitmap(selectedBitmap);
+
+            // Vorheriges Bild wird nicht mehr angezeigt und kann wiederverwendet werden,
+            // sobald keine Hintergrundaufgabe mehr darauf zugreift
+            if (previous != null && !bitmapsInUse.containsKey(previous)) {
+                bitmapPool.put(previous);
+            }
+            Log.d("BitmapPool", bitmapPool.getStats());
         } catch (IOException e) {
             e.printStackTrace();
-            textViewResult.setText("Fehler beim Laden des Bildes!");
+            resultDispatcher.show("Fehler beim Laden des Bildes!");
         }
     }
 
     /**
      * Korrigiert die Bildrotation anhand der EXIF-Orientierungsdaten.
+     * Das gedrehte Bild stammt aus dem {@link BitmapPool}, das Original wird
+     * an den Pool zurückgegeben.
      *
      * @param bitmap Ursprüngliches Bitmap
      * @param imageUri URI des Bildes
@@ -205,29 +1182,23 @@ public class MainActivity extends AppCompatActivity {
         );
         input.close();
 
-        Matrix matrix = new Matrix();
+        int degrees;
         switch (orientation) {
             case ExifInterface.ORIENTATION_ROTATE_90:
-                matrix.postRotate(90);
+                degrees = 90;
                 break;
             case ExifInterface.ORIENTATION_ROTATE_180:
-                matrix.postRotate(180);
+                degrees = 180;
                 break;
             case ExifInterface.ORIENTATION_ROTATE_270:
-                matrix.postRotate(270);
+                degrees = 270;
                 break;
             default:
                 return bitmap; // keine Rotation nötig
         }
 
-        return Bitmap.createBitmap(
-                bitmap,
-                0,
-                0,
-                bitmap.getWidth(),
-                bitmap.getHeight(),
-                matrix,
-                true
-        );
+        Bitmap rotated = bitmapPool.getRotated(bitmap, degrees);
+        bitmapPool.put(bitmap);
+        return rotated;
     }
 }
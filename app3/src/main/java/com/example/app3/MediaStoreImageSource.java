@@ -0,0 +1,89 @@
+package com.example.app3;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+
+/**
+ * @class MediaStoreImageSource
+ * @brief {@link ImageSource} über die Bilder der Galerie (MediaStore).
+ * <p>
+ * Es werden nur ID, Orientierung und Änderungsmarke abgefragt; die Bilder
+ * selbst werden erst in der Dekodierstufe der Pipeline gelesen.
+ * <p>
+ * Änderungsmarke ist ab Android 11 die MediaStore-Generation
+ * ({@code GENERATION_MODIFIED}), davor das Änderungsdatum in Sekunden.
+ * Die Bilder werden aufsteigend nach dieser Marke aufgezählt, damit ein
+ * Abbruch über einen Checkpoint fortgesetzt werden kann
+ * (siehe {@link GenerationTracker}).
+ * <p>
+ * Benötigt die Berechtigung READ_MEDIA_IMAGES (ab Android 13) bzw.
+ * READ_EXTERNAL_STORAGE.
+ */
+public class MediaStoreImageSource implements ImageSource {
+
+    private final ContentResolver resolver;
+    private final String volume;
+    private final long sinceMarker;
+
+    /**
+     * Alle Bilder des primären externen Speichers.
+     *
+     * @param resolver ContentResolver
+     */
+    public MediaStoreImageSource(ContentResolver resolver) {
+        this(resolver, MediaStore.VOLUME_EXTERNAL, 0);
+    }
+
+    /**
+     * Nur Bilder eines Volumes, die seit einer Änderungsmarke hinzugekommen
+     * oder verändert worden sind.
+     *
+     * @param resolver    ContentResolver
+     * @param volume      Name des Volumes (z. B. {@link MediaStore#VOLUME_EXTERNAL})
+     * @param sinceMarker kleinste aufzuzählende Änderungsmarke (inklusive)
+     */
+    public MediaStoreImageSource(ContentResolver resolver, String volume, long sinceMarker) {
+        this.resolver = resolver;
+        this.volume = volume;
+        this.sinceMarker = sinceMarker;
+    }
+
+    /**
+     * @return Spalte mit der Änderungsmarke auf diesem Gerät
+     */
+    public static String getMarkerColumn() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? MediaStore.MediaColumns.GENERATION_MODIFIED
+                : MediaStore.MediaColumns.DATE_MODIFIED;
+    }
+
+    @Override
+    public void enumerate(Emitter emitter) throws InterruptedException {
+        Uri collection = MediaStore.Images.Media.getContentUri(volume);
+        String markerColumn = getMarkerColumn();
+        String[] projection = {
+                MediaStore.Images.Media._ID,
+                MediaStore.Images.Media.ORIENTATION,
+                markerColumn
+        };
+        try (Cursor cursor = resolver.query(collection, projection,
+                markerColumn + " >= ?", new String[]{Long.toString(sinceMarker)},
+                markerColumn + " ASC, " + MediaStore.Images.Media._ID + " ASC")) {
+            if (cursor == null) {
+                return;
+            }
+            int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
+            int orientationColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.ORIENTATION);
+            int markerIndex = cursor.getColumnIndexOrThrow(markerColumn);
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(idColumn);
+                emitter.emit(id, ContentUris.withAppendedId(collection, id),
+                        cursor.getInt(orientationColumn), cursor.getLong(markerIndex));
+            }
+        }
+    }
+}
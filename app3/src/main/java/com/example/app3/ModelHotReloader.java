@@ -0,0 +1,313 @@
+package com.example.app3;
+
+import com.example.common.Tracer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @class ModelHotReloader
+ * @brief Lädt eine neue Modellversion aus dem App-Verzeichnis im Hintergrund
+ * und tauscht sie ohne Neustart im {@link Classifier} aus.
+ * <p>
+ * Ablauf von {@link #checkAsync()} (in einem eigenen Hintergrundthread):
+ * - {@code <models>/<modelName>} wird nach {@code <models>/.active/} kopiert
+ *   und dabei die SHA-256-Prüfsumme berechnet; ändert sich die Quelle
+ *   während des Kopierens (z. B. laufendes {@code adb push}), wird der
+ *   Versuch verworfen
+ * - gleiche Prüfsumme wie das aktive oder ein bereits abgelehntes Modell:
+ *   nichts zu tun
+ * - Kompilieren der Kopie ({@link CompiledModelEngine}) mit dem Accelerator
+ *   des Klassifikators
+ * - Prüfung gegen das {@link GoldenSet} aus {@code <models>/golden/}
+ * - Austausch über {@link Classifier#swapEngine}: laufende Anfragen enden
+ *   noch auf dem alten Modell, keine Anfrage geht verloren
+ * <p>
+ * Die laufende Engine arbeitet immer auf der eigenen Kopie, die Quelldatei
+ * kann also jederzeit überschrieben werden. Beim Start wird weiter das
+ * Asset-Modell geladen; ein neueres Modell wird erst danach im Hintergrund
+ * übernommen und verzögert den Start nicht.
+ */
+public class ModelHotReloader {
+
+    /** Unterverzeichnis von {@code files/} mit Modellen */
+    public static final String MODELS_DIRECTORY = "models";
+
+    /** Unterverzeichnis mit den Kopien der geladenen Modelle */
+    static final String ACTIVE_DIRECTORY = ".active";
+
+    /** Unterverzeichnis mit dem {@link GoldenSet} */
+    public static final String GOLDEN_DIRECTORY = "golden";
+
+    /**
+     * Benachrichtigung über das Ergebnis einer Prüfung. Wird im
+     * Hintergrundthread aufgerufen.
+     */
+    public interface Listener {
+
+        /**
+         * @param model    geladene Modellkopie
+         * @param checksum SHA-256 des Modells (hex)
+         */
+        void onModelSwapped(File model, String checksum);
+
+        /**
+         * @param model    abgelehnte Modelldatei
+         * @param checksum SHA-256 des Modells (hex)
+         * @param reason   Ablehnungsgrund
+         */
+        void onModelRejected(File model, String checksum, String reason);
+    }
+
+    private final File source;
+    private final File activeDirectory;
+    private final GoldenSet goldenSet;
+    private final Listener listener;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "ModelHotReloader"));
+
+    /** Eine Prüfung ist bereits eingeplant; weitere Aufrufe werden zusammengefasst */
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    private final Tracer tracer = Tracer.getShared();
+
+    private Classifier classifier;
+
+    /** Prüfsumme des aktiven Modells, {@code null} = Asset-Modell */
+    private String activeChecksum;
+
+    /** Größe und Änderungszeit der zuletzt geprüften Quelle (spart das Kopieren) */
+    private long checkedLength = -1;
+    private long checkedModified = -1;
+
+    /** Abgelehnte Versionen werden nicht erneut geprüft */
+    private final Set<String> rejected = new HashSet<>();
+
+    /**
+     * @param filesDir   App-Verzeichnis ({@code Context#getFilesDir()})
+     * @param modelName  Dateiname des Modells, z. B. {@code mobilenetv2.tflite}
+     * @param classifier Klassifikator, dessen Modell ausgetauscht wird
+     * @param listener   Benachrichtigung oder {@code null}
+     */
+    public ModelHotReloader(File filesDir, String modelName, Classifier classifier, Listener listener) {
+        File models = new File(filesDir, MODELS_DIRECTORY);
+        this.source = new File(models, modelName);
+        this.activeDirectory = new File(models, ACTIVE_DIRECTORY);
+        this.goldenSet = new GoldenSet(new File(models, GOLDEN_DIRECTORY), GoldenSet.DEFAULT_MIN_AGREEMENT);
+        this.classifier = classifier;
+        this.listener = listener;
+    }
+
+    /**
+     * Plant eine Prüfung auf eine neue Modellversion im Hintergrund ein.
+     * Kehrt sofort zurück.
+     */
+    public void checkAsync() {
+        if (pending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                pending.set(false);
+                check();
+            });
+        }
+    }
+
+    /**
+     * Setzt den Klassifikator nach dessen Neuerstellung (z. B. beim Wechsel
+     * des Accelerators). Der neue Klassifikator verwendet das Asset-Modell;
+     * die nächste Prüfung lädt ein vorhandenes neueres Modell erneut.
+     * {@code null} unterbricht den Austausch, während der alte Klassifikator
+     * geschlossen wird.
+     *
+     * @param classifier neuer Klassifikator oder {@code null}
+     */
+    public synchronized void setClassifier(Classifier classifier) {
+        this.classifier = classifier;
+        this.activeChecksum = null;
+        this.checkedLength = -1;
+        this.checkedModified = -1;
+    }
+
+    /** @return SHA-256 des aktiven Modells oder {@code null} für das Asset-Modell */
+    public synchronized String getActiveChecksum() {
+        return activeChecksum;
+    }
+
+    /** Beendet den Hintergrundthread; eine laufende Prüfung wird noch abgeschlossen. */
+    public void close() {
+        executor.shutdown();
+    }
+
+    /** Eine Prüfung, läuft im Thread des Executors. */
+    void check() {
+        Classifier target;
+        String current;
+        long length = source.length();
+        long modified = source.lastModified();
+        synchronized (this) {
+            if (length == checkedLength && modified == checkedModified) {
+                return;
+            }
+            target = classifier;
+            current = activeChecksum;
+        }
+        if (target == null || !source.isFile()) {
+            return;
+        }
+
+        File copy;
+        String checksum;
+        try {
+            if (!activeDirectory.isDirectory() && !activeDirectory.mkdirs()) {
+                throw new IOException("Verzeichnis nicht anlegbar: " + activeDirectory);
+            }
+            if (current == null) {
+                // Kopien aus früheren Läufen werden nicht mehr verwendet
+                deleteSnapshotsExcept(null);
+            }
+            File temp = new File(activeDirectory, "copy.tmp");
+            checksum = copyWithChecksum(source, temp);
+            if (source.length() != length || source.lastModified() != modified) {
+                // Datei wird noch geschrieben: beim nächsten Aufruf erneut versuchen
+                temp.delete();
+                return;
+            }
+            synchronized (this) {
+                if (target == classifier) {
+                    checkedLength = length;
+                    checkedModified = modified;
+                }
+            }
+            if (checksum.equals(current) || isRejected(checksum)) {
+                temp.delete();
+                return;
+            }
+            copy = new File(activeDirectory, checksum + ".tflite");
+            if (!temp.renameTo(copy)) {
+                temp.delete();
+                throw new IOException("Kopie nicht umbenennbar: " + copy);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        CompiledModelEngine candidate;
+        try (Tracer.Section section = tracer.section("hotReload.compile")) {
+            candidate = new CompiledModelEngine(copy, target.getAccelerator());
+        } catch (Exception e) {
+            reject(copy, checksum, "Modell nicht ladbar: " + e.getMessage());
+            return;
+        }
+
+        String reason;
+        try (Tracer.Section section = tracer.section("hotReload.validate")) {
+            reason = goldenSet.validate(target, candidate);
+        }
+        if (reason != null) {
+            candidate.close();
+            reject(copy, checksum, reason);
+            return;
+        }
+
+        synchronized (this) {
+            if (target != classifier) {
+                // Klassifikator wurde inzwischen ersetzt, die nächste Prüfung lädt erneut
+                candidate.close();
+                return;
+            }
+            try {
+                target.swapEngine(candidate, copy);
+            } catch (IllegalArgumentException e) {
+                candidate.close();
+                reason = e.getMessage();
+            }
+            if (reason == null) {
+                activeChecksum = checksum;
+            }
+        }
+        if (reason != null) {
+            reject(copy, checksum, reason);
+            return;
+        }
+
+        deleteSnapshotsExcept(copy);
+        if (listener != null) {
+            listener.onModelSwapped(copy, checksum);
+        }
+    }
+
+    private synchronized boolean isRejected(String checksum) {
+        return rejected.contains(checksum);
+    }
+
+    private void reject(File copy, String checksum, String reason) {
+        synchronized (this) {
+            rejected.add(checksum);
+        }
+        copy.delete();
+        if (listener != null) {
+            listener.onModelRejected(source, checksum, reason);
+        }
+    }
+
+    /** Entfernt Kopien früherer Versionen (deren Engines sind geschlossen). */
+    private void deleteSnapshotsExcept(File keep) {
+        File[] files = activeDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.equals(keep)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Kopiert eine Datei und berechnet dabei deren SHA-256-Prüfsumme.
+     *
+     * @param from Quelle
+     * @param to   Ziel (wird überschrieben)
+     * @return Prüfsumme (hex, Kleinbuchstaben)
+     * @throws IOException bei Lese- oder Schreibfehlern
+     */
+    static String copyWithChecksum(File from, File to) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(from);
+             OutputStream out = new FileOutputStream(to)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
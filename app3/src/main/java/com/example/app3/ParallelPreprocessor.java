@@ -0,0 +1,340 @@
+package com.example.app3;
+
+import com.example.common.InputWriter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @class ParallelPreprocessor
+ * @brief Verteilt die Vorverarbeitung großer Eingaben zeilenweise auf einen
+ * gemeinsamen Thread-Pool.
+ * <p>
+ * Der Zieltensor wird in zusammenhängende Zeilenstreifen geteilt; jeder
+ * Streifen wird von einem Worker geschrieben, den ersten übernimmt der
+ * aufrufende Thread selbst. Da die {@link InputWriter} nur absolut in
+ * disjunkte Bereiche schreiben, ist keine weitere Synchronisation nötig.
+ * <p>
+ * Unterhalb von {@link #getThresholdPixels()} bleibt alles im aufrufenden
+ * Thread: bei 224x224 kostet die Übergabe an den Pool mehr, als sie spart.
+ * Der Schwellwert kann über {@link #calibrate} auf dem Gerät gemessen werden.
+ * <p>
+ * Der Pool erhält nur die Kerne, die nicht von den Inferenz-Threads der
+ * Runtime belegt sind ({@link #workersFor(int)}).
+ */
+public class ParallelPreprocessor {
+
+    /**
+     * Arbeit für einen Streifen aus Zeilen {@code [fromRow, toRow)}.
+     */
+    public interface StripeTask {
+        /**
+         * @param stripe  Index des Streifens (0 bis {@link #getMaxStripes()} - 1),
+         *                z. B. für Zwischenspeicher pro Streifen
+         * @param fromRow erste Zeile
+         * @param toRow   Ende (exklusiv)
+         */
+        void run(int stripe, int fromRow, int toRow);
+    }
+
+    /**
+     * Ausgangswert des Schwellwerts in Pixeln (320x320), bis {@link #calibrate}
+     * den Break-even auf dem Gerät gemessen hat. Die Modellgröße 224x224 bleibt
+     * damit immer im aufrufenden Thread.
+     */
+    public static final int DEFAULT_THRESHOLD_PIXELS = 320 * 320;
+
+    /** Standardannahme für die CPU-Threads der Inferenz (siehe {@link AdaptivePolicy}) */
+    public static final int DEFAULT_INFERENCE_THREADS = 4;
+
+    private static ParallelPreprocessor shared;
+
+    /** Markiert Worker-Threads, damit verschachtelte Aufrufe nicht auf den eigenen Pool warten */
+    private static final ThreadLocal<Boolean> WORKER = new ThreadLocal<>();
+
+    private final ExecutorService pool;
+    private final int workers;
+    private volatile int thresholdPixels;
+    private volatile int stripeLimit;
+
+    /**
+     * @param workers         Threads im Pool (der Aufrufer rechnet zusätzlich mit)
+     * @param thresholdPixels ab dieser Pixelanzahl wird parallelisiert
+     */
+    public ParallelPreprocessor(int workers, int thresholdPixels) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers muss >= 1 sein");
+        }
+        this.workers = workers;
+        this.thresholdPixels = thresholdPixels;
+        this.stripeLimit = workers + 1;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(() -> {
+                WORKER.set(Boolean.TRUE);
+                runnable.run();
+            }, "Preprocess-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gibt den prozessweit geteilten Pool zurück, dimensioniert für
+     * {@link #DEFAULT_INFERENCE_THREADS} Inferenz-Threads.
+     *
+     * @return geteilter Preprocessor
+     */
+    public static synchronized ParallelPreprocessor getShared() {
+        if (shared == null) {
+            // Ein einzelner Kern gewinnt durch Streifen nichts
+            boolean singleCore = Runtime.getRuntime().availableProcessors() == 1;
+            shared = new ParallelPreprocessor(workersFor(DEFAULT_INFERENCE_THREADS),
+                    singleCore ? Integer.MAX_VALUE : DEFAULT_THRESHOLD_PIXELS);
+        }
+        return shared;
+    }
+
+    /**
+     * @param inferenceThreads von der Runtime belegte CPU-Threads
+     * @return Anzahl Worker für die übrigen Kerne (mindestens 1)
+     */
+    public static int workersFor(int inferenceThreads) {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - inferenceThreads);
+    }
+
+    /** @return höchste Anzahl Streifen pro Aufruf (Worker + aufrufender Thread) */
+    public int getMaxStripes() {
+        return workers + 1;
+    }
+
+    /** @return aktuell höchstens genutzte Streifen, siehe {@link #setStripeLimit(int)} */
+    public int getStripeLimit() {
+        return stripeLimit;
+    }
+
+    /**
+     * Begrenzt die Streifen pro Aufruf, ohne den Pool neu anzulegen; überzählige
+     * Worker bleiben dann untätig. {@link #getMaxStripes()} bleibt unverändert,
+     * Zwischenspeicher pro Streifen behalten also ihre Größe.
+     *
+     * @param stripes Streifen inklusive aufrufendem Thread (1 = nicht parallel),
+     *                wird auf [1, {@link #getMaxStripes()}] begrenzt
+     */
+    public void setStripeLimit(int stripes) {
+        this.stripeLimit = Math.max(1, Math.min(getMaxStripes(), stripes));
+    }
+
+    /** @return Pixelanzahl, ab der parallelisiert wird */
+    public int getThresholdPixels() {
+        return thresholdPixels;
+    }
+
+    /** @param thresholdPixels Pixelanzahl, ab der parallelisiert wird */
+    public void setThresholdPixels(int thresholdPixels) {
+        this.thresholdPixels = thresholdPixels;
+    }
+
+    /**
+     * Führt eine Aufgabe über {@code rows} Zeilen aus, bei ausreichender
+     * Größe parallel in Streifen. Kehrt erst zurück, wenn alle Streifen
+     * fertig sind. Aufrufe aus einem Worker heraus (z. B. ein paralleler
+     * Writer innerhalb einer parallelen Kachelschleife) laufen direkt.
+     *
+     * @param rows         Anzahl Zeilen (bzw. Kacheln)
+     * @param pixelsPerRow Pixel pro Zeile, für den Vergleich mit dem Schwellwert
+     * @param task         Arbeit pro Streifen
+     */
+    public void run(int rows, int pixelsPerRow, StripeTask task) {
+        if ((long) rows * pixelsPerRow < thresholdPixels) {
+            task.run(0, 0, rows);
+            return;
+        }
+        runStriped(rows, Math.min(stripeLimit, rows), task);
+    }
+
+    private void runStriped(int rows, int stripes, StripeTask task) {
+        if (stripes <= 1 || WORKER.get() != null) {
+            task.run(0, 0, rows);
+            return;
+        }
+        int rowsPerStripe = (rows + stripes - 1) / stripes;
+        List<Future<?>> pending = new ArrayList<>(stripes - 1);
+        for (int s = 1; s < stripes; s++) {
+            int stripe = s;
+            int from = s * rowsPerStripe;
+            int to = Math.min(rows, from + rowsPerStripe);
+            if (from >= to) {
+                break;
+            }
+            pending.add(pool.submit(() -> task.run(stripe, from, to)));
+        }
+
+        // Ersten Streifen selbst rechnen statt zu warten
+        task.run(0, 0, Math.min(rows, rowsPerStripe));
+
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Vorverarbeitung unterbrochen", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    /**
+     * Umhüllt einen Writer, sodass große Schreibvorgänge in Zeilenstreifen
+     * parallel laufen.
+     *
+     * @param writer   zugrunde liegender Writer
+     * @param rowWidth Pixel pro Bildzeile (Streifengrenzen liegen auf Zeilenanfängen)
+     * @return paralleler Writer mit gleichem Ausgabetyp
+     */
+    public InputWriter wrap(InputWriter writer, int rowWidth) {
+        return new StripedWriter(writer, rowWidth, this);
+    }
+
+    /**
+     * Misst für mehrere Kantenlängen die Schreibzeit einzeln und parallel und
+     * setzt den Schwellwert auf die kleinste Größe, ab der die parallele
+     * Variante für alle größeren Kantenlängen mindestens 10 % schneller ist.
+     * <p>
+     * Dauert je nach Gerät einige hundert Millisekunden und sollte im
+     * Hintergrund laufen.
+     *
+     * @param writer      zu messender Writer (z. B. {@link Classifier#getInputWriter()})
+     * @param edgeSizes   aufsteigende Kantenlängen, z. B. {@code {128, 224, 320, 448, 640, 1024}}
+     * @param repetitions Wiederholungen pro Messung (Median)
+     * @param report      erhält eine Tabelle der Messwerte, oder {@code null}
+     * @return neuer Schwellwert in Pixeln ({@link Integer#MAX_VALUE}: nie parallel)
+     */
+    public int calibrate(InputWriter writer, int[] edgeSizes, int repetitions, StringBuilder report) {
+        InputWriter base = writer instanceof StripedWriter
+                ? ((StripedWriter) writer).delegate
+                : writer;
+        if (report != null) {
+            report.append(String.format(Locale.US,
+                    "Vorverarbeitung %s, %d Streifen:%n", base, getMaxStripes()));
+        }
+        int bytesPerElement = base.getType().getByteSize();
+        int crossover = Integer.MAX_VALUE;
+        for (int edge : edgeSizes) {
+            int count = edge * edge;
+            int[] pixels = new int[count];
+            for (int i = 0; i < count; i++) {
+                pixels[i] = 0xFF000000 | ((i * 40503) & 0xFFFFFF);
+            }
+            ByteBuffer dst = ByteBuffer.allocateDirect(count * 3 * bytesPerElement)
+                    .order(ByteOrder.nativeOrder());
+            InputWriter striped = wrap(base, edge);
+
+            long single = median(repetitions, () -> base.write(pixels, 0, count, dst, 0));
+            long parallel = median(repetitions, () -> ((StripedWriter) striped)
+                    .writeStriped(pixels, 0, count, dst, 0));
+            boolean faster = parallel < single * 0.9;
+            if (faster && crossover == Integer.MAX_VALUE) {
+                crossover = count;
+            } else if (!faster) {
+                crossover = Integer.MAX_VALUE;
+            }
+            if (report != null) {
+                report.append(String.format(Locale.US,
+                        "  %4dx%-4d einzeln %7.3f ms, parallel %7.3f ms (%.2fx)%n",
+                        edge, edge, single / 1e6, parallel / 1e6, (double) single / parallel));
+            }
+        }
+        thresholdPixels = crossover;
+        if (report != null) {
+            report.append(crossover == Integer.MAX_VALUE
+                    ? "  Schwellwert: nie parallel"
+                    : String.format(Locale.US, "  Schwellwert: %d Pixel (%dx%d)",
+                    crossover, (int) Math.sqrt(crossover), (int) Math.sqrt(crossover)));
+        }
+        return crossover;
+    }
+
+    /** Median der Laufzeit nach einer Aufwärmrunde */
+    private static long median(int repetitions, Runnable action) {
+        for (int i = 0; i < Math.max(3, repetitions / 4); i++) {
+            action.run();
+        }
+        long[] times = new long[repetitions];
+        for (int i = 0; i < repetitions; i++) {
+            long start = System.nanoTime();
+            action.run();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[repetitions / 2];
+    }
+
+    /** Beendet die Worker; der geteilte Pool sollte nicht beendet werden. */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /** {@link InputWriter}, der große Bereiche in Zeilenstreifen parallel schreibt */
+    static final class StripedWriter extends InputWriter {
+
+        private final InputWriter delegate;
+        private final int rowWidth;
+        private final ParallelPreprocessor preprocessor;
+
+        StripedWriter(InputWriter delegate, int rowWidth, ParallelPreprocessor preprocessor) {
+            super(delegate.getType());
+            this.delegate = delegate;
+            this.rowWidth = rowWidth;
+            this.preprocessor = preprocessor;
+        }
+
+        @Override
+        public void write(int[] pixels, int pixelOffset, int pixelCount, ByteBuffer dst, int elementOffset) {
+            if (pixelCount < preprocessor.getThresholdPixels()) {
+                delegate.write(pixels, pixelOffset, pixelCount, dst, elementOffset);
+                return;
+            }
+            int rows = (pixelCount + rowWidth - 1) / rowWidth;
+            preprocessor.run(rows, rowWidth, (stripe, fromRow, toRow) ->
+                    writeRows(pixels, pixelOffset, pixelCount, dst, elementOffset, fromRow, toRow));
+        }
+
+        /** Schreibt unabhängig vom Schwellwert in Streifen (für {@link #calibrate}) */
+        void writeStriped(int[] pixels, int pixelOffset, int pixelCount, ByteBuffer dst, int elementOffset) {
+            int rows = (pixelCount + rowWidth - 1) / rowWidth;
+            preprocessor.runStriped(rows, Math.min(preprocessor.getMaxStripes(), rows),
+                    (stripe, fromRow, toRow) ->
+                            writeRows(pixels, pixelOffset, pixelCount, dst, elementOffset, fromRow, toRow));
+        }
+
+        private void writeRows(int[] pixels, int pixelOffset, int pixelCount, ByteBuffer dst,
+                               int elementOffset, int fromRow, int toRow) {
+            int from = fromRow * rowWidth;
+            int to = Math.min(pixelCount, toRow * rowWidth);
+            delegate.write(pixels, pixelOffset + from, to - from, dst, elementOffset + from * 3);
+        }
+
+        @Override
+        public String toString() {
+            return "Striped(" + delegate + ")";
+        }
+    }
+}
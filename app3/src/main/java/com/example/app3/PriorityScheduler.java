@@ -0,0 +1,303 @@
+package com.example.app3;
+
+import com.example.common.Tracer;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * @class PriorityScheduler
+ * @brief Gemeinsame Warteschlange vor dem {@link Classifier} mit
+ * Prioritätsklassen für interaktive Anfragen und Massenverarbeitung.
+ * <p>
+ * Alle Aufgaben laufen nacheinander in einem einzigen Thread, der damit als
+ * einziger auf das Modell zugreift. Vor jeder Aufgabe wird zuerst die
+ * Warteschlange mit höherer Priorität geleert:
+ * - {@link Priority#INTERACTIVE}: Klick des Nutzers, überholt alle wartenden
+ *   Massenaufgaben
+ * - {@link Priority#BULK}: Massenverarbeitung (z. B. {@link BulkIndexingPipeline}),
+ *   je Aufgabe ein Bild bzw. ein Batch; zwischen zwei Aufgaben kommt jede
+ *   wartende interaktive Anfrage an die Reihe
+ * <p>
+ * Eine interaktive Anfrage wartet damit höchstens auf die gerade laufende
+ * Massenaufgabe, unabhängig davon, wie viele Bilder noch in der Schlange
+ * stehen. Pro Klasse werden Warteschlangentiefe und Wartezeit (p50, p95,
+ * Maximum) erfasst, siehe {@link #getStats(Priority)}.
+ */
+public class PriorityScheduler implements Closeable {
+
+    /** Prioritätsklassen, absteigend nach Vorrang */
+    public enum Priority {
+        INTERACTIVE,
+        BULK
+    }
+
+    /** Anzahl Wartezeiten pro Klasse für die Perzentile */
+    private static final int WAIT_SAMPLES = 512;
+
+    private static PriorityScheduler shared;
+
+    /** Eine Aufgabe mit Zeitpunkt des Einreihens und Anfrage für den Trace */
+    private static final class Task {
+        final FutureTask<?> future;
+        final Priority priority;
+        final long request;
+        final long enqueuedNanos;
+
+        Task(FutureTask<?> future, Priority priority, long request) {
+            this.future = future;
+            this.priority = priority;
+            this.request = request;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
+    private final ArrayDeque<Task>[] queues;
+    private final ClassStats[] stats;
+    private final Thread thread;
+    private final Tracer tracer = Tracer.getShared();
+
+    private boolean closed;
+
+    /**
+     * Statistik einer Prioritätsklasse.
+     */
+    public static final class ClassStats {
+
+        private final long[] waitNanos = new long[WAIT_SAMPLES];
+        private long submitted;
+        private long completed;
+        private int depth;
+        private int maxDepth;
+        private long maxWaitNanos;
+        private long totalRunNanos;
+
+        private ClassStats() {
+        }
+
+        private ClassStats(ClassStats other) {
+            System.arraycopy(other.waitNanos, 0, waitNanos, 0, WAIT_SAMPLES);
+            submitted = other.submitted;
+            completed = other.completed;
+            depth = other.depth;
+            maxDepth = other.maxDepth;
+            maxWaitNanos = other.maxWaitNanos;
+            totalRunNanos = other.totalRunNanos;
+        }
+
+        /** @return Anzahl eingereihter Aufgaben */
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        /** @return Anzahl ausgeführter Aufgaben */
+        public long getCompleted() {
+            return completed;
+        }
+
+        /** @return aktuell wartende Aufgaben */
+        public int getDepth() {
+            return depth;
+        }
+
+        /** @return höchste bisherige Anzahl wartender Aufgaben */
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        /**
+         * @param percentile Perzentil in [0, 100]
+         * @return Wartezeit der letzten bis zu 512 Aufgaben in Millisekunden
+         */
+        public double getWaitMs(double percentile) {
+            int count = (int) Math.min(completed, WAIT_SAMPLES);
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(waitNanos, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+        }
+
+        /** @return längste bisherige Wartezeit in Millisekunden */
+        public double getMaxWaitMs() {
+            return maxWaitNanos / 1e6;
+        }
+
+        /** @return mittlere Ausführungszeit in Millisekunden */
+        public double getAverageRunMs() {
+            return completed > 0 ? totalRunNanos / 1e6 / completed : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d/%d ausgeführt, Tiefe %d (max %d), Wartezeit p50 %.1f ms, p95 %.1f ms, "
+                            + "max %.1f ms, Ausführung %.1f ms",
+                    completed, submitted, depth, maxDepth, getWaitMs(50), getWaitMs(95),
+                    getMaxWaitMs(), getAverageRunMs());
+        }
+    }
+
+    /**
+     * Startet den Ausführungsthread.
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityScheduler() {
+        Priority[] priorities = Priority.values();
+        queues = new ArrayDeque[priorities.length];
+        stats = new ClassStats[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            queues[i] = new ArrayDeque<>();
+            stats[i] = new ClassStats();
+        }
+        thread = new Thread(this::run, "PriorityScheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** @return prozessweit geteilter Scheduler */
+    public static synchronized PriorityScheduler getShared() {
+        if (shared == null) {
+            shared = new PriorityScheduler();
+        }
+        return shared;
+    }
+
+    /**
+     * Reiht eine Aufgabe ein.
+     *
+     * @param priority Prioritätsklasse
+     * @param task     Aufgabe, läuft im Thread des Schedulers
+     * @param <T>      Ergebnistyp
+     * @return Future mit dem Ergebnis der Aufgabe
+     * @throws RejectedExecutionException nach {@link #close()}
+     */
+    public <T> Future<T> submit(Priority priority, Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        Task entry = new Task(future, priority, tracer.currentRequest());
+        synchronized (this) {
+            if (closed) {
+                throw new RejectedExecutionException("Scheduler wurde beendet");
+            }
+            ArrayDeque<Task> queue = queues[priority.ordinal()];
+            queue.addLast(entry);
+            ClassStats classStats = stats[priority.ordinal()];
+            classStats.submitted++;
+            classStats.depth = queue.size();
+            classStats.maxDepth = Math.max(classStats.maxDepth, queue.size());
+            notifyAll();
+        }
+        return future;
+    }
+
+    /**
+     * Reiht eine Aufgabe ohne Ergebnis ein.
+     *
+     * @param priority Prioritätsklasse
+     * @param task     Aufgabe, läuft im Thread des Schedulers
+     * @return Future, das nach der Ausführung erfüllt ist
+     * @throws RejectedExecutionException nach {@link #close()}
+     */
+    public Future<Void> submit(Priority priority, Runnable task) {
+        return submit(priority, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * @param priority Prioritätsklasse
+     * @return Momentaufnahme der Statistik dieser Klasse
+     */
+    public synchronized ClassStats getStats(Priority priority) {
+        return new ClassStats(stats[priority.ordinal()]);
+    }
+
+    /** @return Statistik aller Klassen für Logs */
+    public String getStats() {
+        StringBuilder builder = new StringBuilder("PriorityScheduler:");
+        for (Priority priority : Priority.values()) {
+            builder.append("\n  ").append(priority).append(": ").append(getStats(priority));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Nimmt keine neuen Aufgaben mehr an und bricht alle wartenden ab; eine
+     * laufende Aufgabe wird noch beendet.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for (int i = 0; i < queues.length; i++) {
+                for (Task task : queues[i]) {
+                    task.future.cancel(false);
+                }
+                queues[i].clear();
+                stats[i].depth = 0;
+            }
+            notifyAll();
+        }
+    }
+
+    /** Ausführungsthread: immer die Aufgabe mit höchster Priorität zuerst */
+    private void run() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                task = poll();
+                while (task == null) {
+                    if (closed) {
+                        return;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    task = poll();
+                }
+            }
+
+            long start = System.nanoTime();
+            String name = task.priority == Priority.INTERACTIVE
+                    ? "scheduler.interactive"
+                    : "scheduler.bulk";
+            try (Tracer.Section section = tracer.section(name, task.request)) {
+                // Fehler landen im Future
+                task.future.run();
+            }
+            long end = System.nanoTime();
+
+            synchronized (this) {
+                ClassStats classStats = stats[task.priority.ordinal()];
+                long wait = start - task.enqueuedNanos;
+                classStats.waitNanos[(int) (classStats.completed % WAIT_SAMPLES)] = wait;
+                classStats.maxWaitNanos = Math.max(classStats.maxWaitNanos, wait);
+                classStats.totalRunNanos += end - start;
+                classStats.completed++;
+            }
+        }
+    }
+
+    /** Entnimmt die nächste Aufgabe (unter Sperre) oder {@code null} */
+    private Task poll() {
+        for (int i = 0; i < queues.length; i++) {
+            Task task = queues[i].pollFirst();
+            if (task != null) {
+                stats[i].depth = queues[i].size();
+                return task;
+            }
+        }
+        return null;
+    }
+}
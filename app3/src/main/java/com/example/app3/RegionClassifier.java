@@ -0,0 +1,284 @@
+package com.example.app3;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import com.example.common.InferenceException;
+import com.example.common.InputWriter;
+import com.example.common.RequestCancelledException;
+import com.example.common.RequestToken;
+import com.example.common.TensorSpec;
+import com.example.common.Tracer;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * @class RegionClassifier
+ * @brief Klassifikation einzelner Bildausschnitte (Regions of Interest)
+ * ohne Skalierung des ganzen Bildes.
+ * <p>
+ * {@link Classifier#classify} verkleinert immer das gesamte Foto; ein kleines
+ * Objekt darin ist danach nur noch wenige Pixel groß. Hier wird stattdessen
+ * nur der gewünschte Ausschnitt abgetastet:
+ * - je Zielzeile werden die beiden benötigten Quellzeilen des Ausschnitts per
+ *   {@link Bitmap#getPixels} gelesen (keine Ausschnitts-Bitmap, kein
+ *   Pixelarray des ganzen Bildes),
+ * - daraus wird bilinear auf Modellgröße abgetastet (wie bei
+ *   {@link TiledClassifier}) und direkt in den Eingabebuffer geschrieben,
+ * - mehrere Ausschnitte laufen als ein Batch ({@link Classifier#runBatch}),
+ *   die Abtastung wird mit {@link ParallelPreprocessor} ausschnittsweise
+ *   verteilt.
+ * <p>
+ * Ausschnitte werden wie bei der Klassifikation des ganzen Bildes ohne
+ * Rücksicht auf das Seitenverhältnis auf das quadratische Eingabeformat
+ * gestreckt.
+ */
+public class RegionClassifier {
+
+    /**
+     * Höchstens so viele Pixel an Quellzeilen werden gleichzeitig gehalten;
+     * größere Batches werden gruppenweise gelesen und abgetastet.
+     */
+    private static final int MAX_ROW_PIXELS = 4 << 20;
+
+    private final Classifier classifier;
+    private final int imageSize;
+    private final Tracer tracer = Tracer.getShared();
+
+    /** Wiederverwendete Buffer für die aktuelle Anzahl Ausschnitte */
+    private ByteBuffer batchInput;
+    private ByteBuffer batchOutput;
+    private int batchCapacity;
+    /** Je Zielzeile zwei Quellzeilen aller Ausschnitte einer Gruppe */
+    private int[] rowPixels = new int[0];
+    /** Vertikales Gewicht der zweiten Quellzeile je Ausschnitt und Zielzeile */
+    private float[] rowWeights = new float[0];
+
+    private long totalRegions;
+    private long totalInferenceNanos;
+    private long totalNanos;
+
+    /**
+     * @param classifier Classifier, dessen Modell und Vorverarbeitung verwendet werden
+     */
+    public RegionClassifier(Classifier classifier) {
+        this.classifier = classifier;
+        this.imageSize = classifier.getImageSize();
+    }
+
+    /**
+     * Klassifiziert einen Ausschnitt.
+     *
+     * @param bitmap Eingabebild (beliebige Größe)
+     * @param region Ausschnitt in Bildkoordinaten
+     * @param token  Frist und Abbruchsignal oder {@code null}
+     * @return Top-3-Ergebnis des Ausschnitts
+     * @throws RequestCancelledException wenn die Anfrage verworfen wurde
+     * @throws InferenceException        wenn die Inferenz fehlschlägt
+     */
+    public ClassificationResult classify(Bitmap bitmap, Rect region, RequestToken token)
+            throws InferenceException {
+        return classify(bitmap, new Rect[]{region}, token)[0];
+    }
+
+    /**
+     * Klassifiziert mehrere Ausschnitte eines Bildes in einer Batch-Inferenz.
+     * Ausschnitte, die über den Bildrand ragen, werden auf das Bild begrenzt.
+     *
+     * @param bitmap  Eingabebild (beliebige Größe, nicht {@code HARDWARE})
+     * @param regions Ausschnitte in Bildkoordinaten
+     * @param token   Frist und Abbruchsignal oder {@code null}
+     * @return Top-3-Ergebnis je Ausschnitt in derselben Reihenfolge; die
+     * Inferenzzeit ist die des ganzen Batches
+     * @throws IllegalArgumentException  wenn ein Ausschnitt außerhalb des Bildes liegt
+     * @throws RequestCancelledException wenn die Anfrage verworfen wurde
+     * @throws InferenceException        wenn die Inferenz fehlschlägt
+     */
+    public synchronized ClassificationResult[] classify(Bitmap bitmap, Rect[] regions, RequestToken token)
+            throws InferenceException {
+        long start = System.nanoTime();
+        if (token != null) {
+            token.check("preprocess");
+        }
+        int count = regions.length;
+        int[][] bounds = new int[count][];
+        for (int r = 0; r < count; r++) {
+            bounds[r] = clip(regions[r], bitmap.getWidth(), bitmap.getHeight());
+        }
+        ensureCapacity(count);
+        if (rowWeights.length < count * imageSize) {
+            rowWeights = new float[count * imageSize];
+        }
+
+        InputWriter writer = classifier.getInputWriter();
+        int elementsPerRegion = imageSize * imageSize * 3;
+        try (Tracer.Section section = tracer.section("preprocess.regions")) {
+            // Gruppen so bilden, dass die gelesenen Quellzeilen MAX_ROW_PIXELS nicht überschreiten
+            int first = 0;
+            while (first < count) {
+                int end = first;
+                long pixels = 0;
+                while (end < count && (end == first || pixels + rowPixelsFor(bounds[end]) <= MAX_ROW_PIXELS)) {
+                    pixels += rowPixelsFor(bounds[end]);
+                    end++;
+                }
+                if (rowPixels.length < pixels) {
+                    rowPixels = new int[(int) pixels];
+                }
+                int[] offsets = new int[end - first];
+                int offset = 0;
+                try (Tracer.Section read = tracer.section("preprocess.regions.read")) {
+                    for (int r = first; r < end; r++) {
+                        offsets[r - first] = offset;
+                        readRows(bitmap, bounds[r], rowPixels, offset, rowWeights, r * imageSize, imageSize);
+                        offset += rowPixelsFor(bounds[r]);
+                    }
+                }
+                int groupStart = first;
+                int[] rows = rowPixels;
+                float[] weights = rowWeights;
+                classifier.forEachStripe(end - first, (item, scratch) -> {
+                    int r = groupStart + item;
+                    sampleRows(rows, offsets[item], bounds[r][2], weights, r * imageSize, scratch, imageSize);
+                    writer.write(scratch, 0, scratch.length, batchInput, r * elementsPerRegion);
+                });
+                first = end;
+            }
+        }
+
+        if (token != null) {
+            token.check("inference");
+        }
+        long inferenceStart = System.nanoTime();
+        classifier.runBatch(batchInput, batchOutput, count);
+        long inferenceNanos = System.nanoTime() - inferenceStart;
+
+        ClassificationResult[] results = new ClassificationResult[count];
+        try (Tracer.Section section = tracer.section("postprocess.topk")) {
+            TensorSpec outputSpec = classifier.getEngine().getOutputSpec();
+            int classes = outputSpec.getElementsPerBatch();
+            float[] scores = new float[classes];
+            for (int r = 0; r < count; r++) {
+                for (int c = 0; c < classes; c++) {
+                    scores[c] = outputSpec.readFloat(batchOutput, r * classes + c);
+                }
+                results[r] = ClassificationResult.fromScores(scores, 3, inferenceNanos);
+            }
+        }
+
+        totalRegions += count;
+        totalInferenceNanos += inferenceNanos;
+        totalNanos += System.nanoTime() - start;
+        return results;
+    }
+
+    /**
+     * Begrenzt einen Ausschnitt auf das Bild.
+     *
+     * @return {links, oben, Breite, Höhe}
+     */
+    private static int[] clip(Rect region, int width, int height) {
+        int left = Math.max(0, region.left);
+        int top = Math.max(0, region.top);
+        int right = Math.min(width, region.right);
+        int bottom = Math.min(height, region.bottom);
+        if (right <= left || bottom <= top) {
+            throw new IllegalArgumentException("Ausschnitt liegt außerhalb des Bildes: "
+                    + region.left + "," + region.top + " - " + region.right + "," + region.bottom);
+        }
+        return new int[]{left, top, right - left, bottom - top};
+    }
+
+    /** Anzahl gelesener Quellpixel eines Ausschnitts (zwei Zeilen je Zielzeile) */
+    private long rowPixelsFor(int[] bounds) {
+        return 2L * imageSize * bounds[2];
+    }
+
+    /**
+     * Liest für jede Zielzeile {@code j} die beiden Quellzeilen der bilinearen
+     * Abtastung nach {@code rows[offset + 2 * j * width]} und deren Gewicht
+     * nach {@code weights[weightOffset + j]}. Bei Vergrößerung wiederholte
+     * Zeilenpaare werden kopiert statt erneut gelesen.
+     *
+     * @param bitmap  Quelle
+     * @param bounds  {links, oben, Breite, Höhe} des Ausschnitts
+     * @param dstSize Anzahl Zielzeilen
+     */
+    private static void readRows(Bitmap bitmap, int[] bounds, int[] rows, int offset,
+                                 float[] weights, int weightOffset, int dstSize) {
+        int left = bounds[0];
+        int top = bounds[1];
+        int width = bounds[2];
+        int height = bounds[3];
+        float step = (float) height / dstSize;
+        int previous = -1;
+        for (int j = 0; j < dstSize; j++) {
+            float sy = (j + 0.5f) * step - 0.5f;
+            int yA = TiledClassifier.clamp((int) Math.floor(sy), height);
+            weights[weightOffset + j] = Math.max(0f, Math.min(1f, sy - yA));
+            int to = offset + 2 * j * width;
+            if (yA == previous) {
+                System.arraycopy(rows, to - 2 * width, rows, to, 2 * width);
+            } else if (yA + 1 < height) {
+                // Beide Zeilen liegen im Bild direkt untereinander: ein Aufruf
+                bitmap.getPixels(rows, to, width, left, top + yA, width, 2);
+            } else {
+                bitmap.getPixels(rows, to, width, left, top + yA, width, 1);
+                System.arraycopy(rows, to, rows, to + width, width);
+            }
+            previous = yA;
+        }
+    }
+
+    /**
+     * Tastet einen Ausschnitt bilinear auf {@code dstSize}×{@code dstSize} ab.
+     *
+     * @param rows         Zeilenpaare aus {@link #readRows}
+     * @param offset       Beginn des Ausschnitts in {@code rows}
+     * @param width        Breite des Ausschnitts
+     * @param weights      vertikale Gewichte aus {@link #readRows}
+     * @param weightOffset Beginn der Gewichte des Ausschnitts
+     * @param dst          Zielpixel ({@code dstSize * dstSize})
+     * @param dstSize      Kantenlänge des Ziels
+     */
+    static void sampleRows(int[] rows, int offset, int width, float[] weights, int weightOffset,
+                           int[] dst, int dstSize) {
+        float step = (float) width / dstSize;
+        for (int j = 0; j < dstSize; j++) {
+            int rowA = offset + 2 * j * width;
+            int rowB = rowA + width;
+            float fy = weights[weightOffset + j];
+            for (int i = 0; i < dstSize; i++) {
+                float sx = (i + 0.5f) * step - 0.5f;
+                int xA = TiledClassifier.clamp((int) Math.floor(sx), width);
+                int xB = TiledClassifier.clamp(xA + 1, width);
+                float fx = Math.max(0f, Math.min(1f, sx - xA));
+                dst[j * dstSize + i] = TiledClassifier.blend(
+                        rows[rowA + xA], rows[rowA + xB], rows[rowB + xA], rows[rowB + xB], fx, fy);
+            }
+        }
+    }
+
+    private void ensureCapacity(int regions) {
+        if (regions <= batchCapacity) {
+            return;
+        }
+        ByteBuffer[] buffers = classifier.createBatchBuffers(regions);
+        batchInput = buffers[0];
+        batchOutput = buffers[1];
+        batchCapacity = regions;
+    }
+
+    /** @return Ausschnitte pro Sekunde inkl. Abtastung */
+    public synchronized double getRegionsPerSecond() {
+        return totalNanos == 0 ? 0 : totalRegions * 1e9 / totalNanos;
+    }
+
+    /** @return Kurzstatistik für Logs */
+    public synchronized String getStats() {
+        return String.format(Locale.US, "Ausschnitte: %d, %.1f Ausschnitte/s (Inferenz %.1f ms je Ausschnitt)",
+                totalRegions, getRegionsPerSecond(),
+                totalRegions == 0 ? 0 : totalInferenceNanos / 1e6 / totalRegions);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.app3;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import com.example.common.Tracer;
+
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * @class ResultDispatcher
+ * @brief Liefert Ergebnisse höchstens einmal pro Bildschirm-Frame an die
+ * Oberfläche und verwirft dabei ältere, noch nicht angezeigte Ergebnisse.
+ * <p>
+ * Mit {@code runOnUiThread} landet jedes Ergebnis als eigene Nachricht im
+ * Main-Looper; bei der Indexierung oder schnellen Folgen von Anfragen staut
+ * sich dort mehr Arbeit, als je sichtbar wird. Hier wird nur das neueste
+ * Ergebnis gehalten und im nächsten {@link Choreographer}-Frame angezeigt;
+ * pro Frame entsteht höchstens eine Nachricht, unabhängig davon, wie viele
+ * Ergebnisse die Hintergrundthreads liefern. Die Anzahl verworfener
+ * Ergebnisse steht in {@link #getStats()} und als Zählerspur im
+ * {@link Tracer}.
+ * <p>
+ * Nur für reine Anzeige geeignet: Nebenwirkungen, die nicht entfallen dürfen
+ * (z. B. Buttons wieder aktivieren), weiter mit {@code runOnUiThread}.
+ * Anzeigen aus dem UI-Thread (Statusmeldungen) laufen über {@link #show},
+ * damit ein älteres ausstehendes Ergebnis sie nicht im nächsten Frame
+ * überschreibt.
+ *
+ * @param <T> Ergebnistyp, z. B. der anzuzeigende Text
+ */
+public class ResultDispatcher<T> implements Choreographer.FrameCallback {
+
+    private final String name;
+    private final Consumer<T> sink;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Choreographer choreographer;
+    private final Tracer tracer = Tracer.getShared();
+
+    /** Neuestes noch nicht angezeigtes Ergebnis */
+    private T pending;
+    private boolean scheduled;
+    private boolean closed;
+
+    private long published;
+    private long delivered;
+    private long coalesced;
+
+    /**
+     * Muss im UI-Thread erzeugt werden.
+     *
+     * @param name Name für Trace und Logs, z. B. {@code "ui.result"}
+     * @param sink zeigt ein Ergebnis an (im UI-Thread)
+     */
+    public ResultDispatcher(String name, Consumer<T> sink) {
+        this.name = name;
+        this.sink = sink;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Übergibt ein Ergebnis zur Anzeige; aus jedem Thread aufrufbar. Ein noch
+     * nicht angezeigtes älteres Ergebnis wird ersetzt.
+     *
+     * @param result anzuzeigendes Ergebnis, nicht {@code null}
+     */
+    public void publish(T result) {
+        boolean schedule;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            published++;
+            if (pending != null) {
+                coalesced++;
+            }
+            pending = result;
+            schedule = !scheduled;
+            scheduled = true;
+        }
+        if (!schedule) {
+            return;
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            choreographer.postFrameCallback(this);
+        } else {
+            mainHandler.post(() -> choreographer.postFrameCallback(this));
+        }
+    }
+
+    /**
+     * Zeigt ein Ergebnis sofort an und verwirft ein noch ausstehendes älteres.
+     * Nur im UI-Thread aufrufen.
+     *
+     * @param result anzuzeigendes Ergebnis, nicht {@code null}
+     */
+    public void show(T result) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            published++;
+            if (pending != null) {
+                coalesced++;
+                pending = null;
+            }
+            delivered++;
+        }
+        // Ein bereits angemeldeter Frame findet nichts mehr vor und kehrt sofort zurück
+        sink.accept(result);
+    }
+
+    /** Zeigt das neueste Ergebnis an; vom {@link Choreographer} aufgerufen. */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        T result;
+        long dropped;
+        synchronized (this) {
+            result = pending;
+            pending = null;
+            scheduled = false;
+            if (result == null) {
+                return;
+            }
+            delivered++;
+            dropped = coalesced;
+        }
+        try (Tracer.Section section = tracer.section(name)) {
+            sink.accept(result);
+        }
+        tracer.counter(name + ".coalesced", dropped);
+    }
+
+    /**
+     * Verwirft ein noch ausstehendes Ergebnis und nimmt keine weiteren an.
+     * Im UI-Thread aufrufen, z. B. in {@code onDestroy}.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            pending = null;
+            scheduled = false;
+        }
+        choreographer.removeFrameCallback(this);
+    }
+
+    /** @return Anzahl verworfener (nie angezeigter) Ergebnisse */
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+
+    /** @return Kurzstatistik für Logs */
+    public synchronized String getStats() {
+        return String.format(Locale.US, "%s: %d Ergebnisse, %d angezeigt, %d zusammengefasst (%.0f %%)",
+                name, published, delivered, coalesced, published == 0 ? 0 : 100.0 * coalesced / published);
+    }
+}
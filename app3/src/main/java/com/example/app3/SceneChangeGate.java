@@ -0,0 +1,148 @@
+package com.example.app3;
+
+import java.util.Locale;
+
+/**
+ * @class SceneChangeGate
+ * @brief Überspringt die Inferenz bei nahezu identischen aufeinanderfolgenden Bildern.
+ * <p>
+ * Für jedes Bild wird eine kleine Luma-Signatur (16×16 Blockmittelwerte)
+ * berechnet und mit der Signatur des zuletzt tatsächlich klassifizierten
+ * Bildes verglichen. Liegt die mittlere absolute Abweichung unter dem
+ * Schwellwert, wird das vorherige Ergebnis wiederverwendet.
+ * <p>
+ * Damit sich schleichende Änderungen nicht unbegrenzt aufsummieren, wird
+ * spätestens nach einer maximalen Anzahl übersprungener Bilder bzw. nach
+ * einer maximalen Zeit wieder klassifiziert.
+ * <p>
+ * Reine Java-Klasse ohne Android-Abhängigkeiten.
+ */
+public class SceneChangeGate {
+
+    /** Kantenlänge der Signatur */
+    static final int SIGNATURE_SIZE = 16;
+
+    private final float threshold;
+    private final int maxSkippedFrames;
+    private final long maxAgeNanos;
+
+    private final int[] current = new int[SIGNATURE_SIZE * SIGNATURE_SIZE];
+    private final int[] reference = new int[SIGNATURE_SIZE * SIGNATURE_SIZE];
+    private ClassificationResult lastResult;
+    private long lastInferenceNanos;
+    private int consecutiveSkips;
+
+    private long frames;
+    private long skipped;
+
+    /**
+     * @param threshold        maximale mittlere Luma-Abweichung (0–255) für „gleiche Szene“
+     * @param maxSkippedFrames höchstens so viele Bilder hintereinander überspringen
+     * @param maxAgeMillis     höchstens so alt darf ein wiederverwendetes Ergebnis sein
+     */
+    public SceneChangeGate(float threshold, int maxSkippedFrames, long maxAgeMillis) {
+        this.threshold = threshold;
+        this.maxSkippedFrames = maxSkippedFrames;
+        this.maxAgeNanos = maxAgeMillis * 1_000_000L;
+    }
+
+    /**
+     * Prüft ein Bild gegen das zuletzt klassifizierte.
+     *
+     * @param pixels ARGB-Pixel, zeilenweise ohne Lücken
+     * @param width  Bildbreite
+     * @param height Bildhöhe
+     * @return wiederverwendbares Ergebnis oder {@code null}, wenn klassifiziert
+     *         werden muss (danach {@link #update} aufrufen)
+     */
+    public synchronized ClassificationResult lookup(int[] pixels, int width, int height) {
+        frames++;
+        computeSignature(pixels, width, height, current);
+        if (lastResult == null
+                || consecutiveSkips >= maxSkippedFrames
+                || System.nanoTime() - lastInferenceNanos > maxAgeNanos
+                || difference(current, reference) > threshold) {
+            return null;
+        }
+        consecutiveSkips++;
+        skipped++;
+        return lastResult;
+    }
+
+    /**
+     * Merkt sich das Ergebnis des zuletzt geprüften Bildes als neue Referenz.
+     *
+     * @param result Ergebnis der Inferenz für das zuletzt an {@link #lookup} übergebene Bild
+     */
+    public synchronized void update(ClassificationResult result) {
+        System.arraycopy(current, 0, reference, 0, current.length);
+        lastResult = result;
+        lastInferenceNanos = System.nanoTime();
+        consecutiveSkips = 0;
+    }
+
+    /** Verwirft die Referenz; das nächste Bild wird immer klassifiziert. */
+    public synchronized void reset() {
+        lastResult = null;
+        consecutiveSkips = 0;
+    }
+
+    /**
+     * Berechnet die Luma-Signatur als Blockmittelwerte.
+     *
+     * @param pixels    ARGB-Pixel
+     * @param width     Bildbreite
+     * @param height    Bildhöhe
+     * @param signature Ziel mit {@code SIGNATURE_SIZE²} Einträgen (Werte 0–255)
+     */
+    static void computeSignature(int[] pixels, int width, int height, int[] signature) {
+        for (int by = 0; by < SIGNATURE_SIZE; by++) {
+            int y0 = by * height / SIGNATURE_SIZE;
+            int y1 = Math.max(y0 + 1, (by + 1) * height / SIGNATURE_SIZE);
+            for (int bx = 0; bx < SIGNATURE_SIZE; bx++) {
+                int x0 = bx * width / SIGNATURE_SIZE;
+                int x1 = Math.max(x0 + 1, (bx + 1) * width / SIGNATURE_SIZE);
+                long sum = 0;
+                for (int y = y0; y < y1; y++) {
+                    int row = y * width;
+                    for (int x = x0; x < x1; x++) {
+                        int p = pixels[row + x];
+                        // Luma nach BT.601 in Ganzzahlarithmetik
+                        sum += (77 * ((p >> 16) & 0xFF) + 150 * ((p >> 8) & 0xFF) + 29 * (p & 0xFF)) >> 8;
+                    }
+                }
+                signature[by * SIGNATURE_SIZE + bx] = (int) (sum / ((long) (y1 - y0) * (x1 - x0)));
+            }
+        }
+    }
+
+    /** Mittlere absolute Abweichung zweier Signaturen */
+    static float difference(int[] a, int[] b) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += Math.abs(a[i] - b[i]);
+        }
+        return (float) sum / a.length;
+    }
+
+    /** @return Anzahl geprüfter Bilder */
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    /** @return Anzahl Bilder, deren Inferenz übersprungen wurde */
+    public synchronized long getSkippedCount() {
+        return skipped;
+    }
+
+    /** @return Anteil übersprungener Bilder */
+    public synchronized double getSkipRate() {
+        return frames == 0 ? 0 : (double) skipped / frames;
+    }
+
+    /** @return Kurzstatistik für Logs */
+    public synchronized String getStats() {
+        return String.format(Locale.US, "SceneChangeGate: %d Bilder, %d übersprungen (%.1f%%)",
+                frames, skipped, getSkipRate() * 100);
+    }
+}
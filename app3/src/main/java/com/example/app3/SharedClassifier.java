@@ -0,0 +1,63 @@
+package com.example.app3;
+
+import android.content.Context;
+
+import com.google.ai.edge.litert.LiteRtException;
+
+import com.example.common.MemoryManager;
+
+/**
+ * @class SharedClassifier
+ * @brief Prozessweit geteilter CPU-{@link Classifier} für {@code mobilenetv2.tflite}.
+ * <p>
+ * Oberfläche ({@link MainActivity}) und {@link ClassificationService} laufen im
+ * selben Prozess und nutzen diese eine Instanz, statt das Modell doppelt zu
+ * laden. Sie ist beim {@link MemoryManager} als Hauptmodell angemeldet, wird
+ * bei Speicherdruck freigegeben und beim nächsten Aufruf neu geladen; geschlossen
+ * wird sie nie. Nur ein GPU-Classifier der Oberfläche ist eine eigene Instanz.
+ * <p>
+ * Alle Methoden des {@link Classifier} sind synchronisiert, gleichzeitige
+ * Anfragen von Oberfläche und Dienst laufen daher nacheinander.
+ */
+public final class SharedClassifier {
+
+    static final String MODEL_FILE = "mobilenetv2.tflite";
+    static final String LABELS_FILE = "labels1.txt";
+    static final int IMAGE_SIZE = 224;
+
+    private static Classifier shared;
+
+    private SharedClassifier() {
+    }
+
+    /**
+     * Liefert den geteilten Classifier und lädt das Modell beim ersten Aufruf.
+     * Schlägt das Laden fehl, wird die Instanz ohne Engine zurückgegeben und
+     * nicht gemerkt; der nächste Aufruf versucht es erneut.
+     *
+     * @param context beliebiger Context (es wird nur der Application-Context gehalten)
+     * @return geteilter Classifier
+     * @throws LiteRtException wenn das Modell nicht geladen werden kann
+     */
+    public static synchronized Classifier get(Context context) throws LiteRtException {
+        if (shared != null) {
+            return shared;
+        }
+        Classifier created = new Classifier(context.getApplicationContext(), MODEL_FILE, LABELS_FILE, IMAGE_SIZE);
+        if (created.getEngine() == null) {
+            return created;
+        }
+        created.registerMemoryComponents(MemoryManager.getShared(), false);
+        created.setParallelPreprocessor(ParallelPreprocessor.getShared());
+        shared = created;
+        return shared;
+    }
+
+    /**
+     * @param classifier beliebiger Classifier
+     * @return true, wenn es die geteilte Instanz ist (darf nicht geschlossen werden)
+     */
+    public static synchronized boolean isShared(Classifier classifier) {
+        return classifier != null && classifier == shared;
+    }
+}
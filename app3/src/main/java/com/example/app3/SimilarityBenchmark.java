@@ -0,0 +1,263 @@
+package com.example.app3;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * @class SimilarityBenchmark
+ * @brief Misst Trefferquote (Recall@k) und Latenz der Suche im
+ * {@link EmbeddingStore}.
+ * <p>
+ * Als Anfragen dienen zufällig gewählte gespeicherte Embeddings; das
+ * Anfragebild selbst wird aus allen Ergebnislisten entfernt. Referenz für den
+ * Recall ist jeweils das Ergebnis der exakten Suche, verglichen wird die
+ * approximative Suche mit verschiedenen {@code nprobe}-Werten.
+ * <p>
+ * Für Galerien mit zu wenigen Bildern erzeugt {@link #createSynthetic} einen
+ * Store mit gruppierten Zufallsvektoren. Reine Java-Klasse, läuft auch auf
+ * einer normalen JVM.
+ */
+public final class SimilarityBenchmark {
+
+    private SimilarityBenchmark() {
+    }
+
+    /**
+     * Ergebnis einer Suchvariante.
+     */
+    public static final class Variant {
+
+        private final String name;
+        private final double recall;
+        private final double p50Ms;
+        private final double p95Ms;
+        private final double scannedFraction;
+
+        Variant(String name, double recall, double p50Ms, double p95Ms, double scannedFraction) {
+            this.name = name;
+            this.recall = recall;
+            this.p50Ms = p50Ms;
+            this.p95Ms = p95Ms;
+            this.scannedFraction = scannedFraction;
+        }
+
+        /** @return z. B. {@code "exakt"} oder {@code "IVF nprobe=8"} */
+        public String getName() {
+            return name;
+        }
+
+        /** @return mittlerer Anteil der exakten Top-k unter den gefundenen Top-k */
+        public double getRecall() {
+            return recall;
+        }
+
+        /** @return Median der Latenz in Millisekunden */
+        public double getP50Ms() {
+            return p50Ms;
+        }
+
+        /** @return 95. Perzentil der Latenz in Millisekunden */
+        public double getP95Ms() {
+            return p95Ms;
+        }
+
+        /** @return mittlerer Anteil verglichener Vektoren */
+        public double getScannedFraction() {
+            return scannedFraction;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-14s Recall %.3f, p50 %.2f ms, p95 %.2f ms, durchsucht %.1f %%",
+                    name, recall, p50Ms, p95Ms, scannedFraction * 100);
+        }
+    }
+
+    /**
+     * Ergebnis eines Durchlaufs.
+     */
+    public static final class Report {
+
+        private final int vectors;
+        private final int dimension;
+        private final int partitions;
+        private final int queries;
+        private final int k;
+        private final Variant[] variants;
+
+        Report(int vectors, int dimension, int partitions, int queries, int k, Variant[] variants) {
+            this.vectors = vectors;
+            this.dimension = dimension;
+            this.partitions = partitions;
+            this.queries = queries;
+            this.k = k;
+            this.variants = variants;
+        }
+
+        /** @return Ergebnisse, zuerst die exakte Suche */
+        public Variant[] getVariants() {
+            return variants.clone();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(String.format(Locale.US,
+                    "Ähnlichkeitssuche: %d Vektoren × %d, %d Partitionen, %d Anfragen, k=%d",
+                    vectors, dimension, partitions, queries, k));
+            for (Variant variant : variants) {
+                builder.append("\n  ").append(variant);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Führt den Vergleich aus. Ohne IVF-Index wird nur die exakte Suche gemessen.
+     *
+     * @param store   zu messender Store
+     * @param queries Anzahl Anfragen
+     * @param k       Anzahl Treffer pro Anfrage
+     * @param nprobes zu messende Anzahlen durchsuchter Partitionen
+     * @param seed    Seed für die Auswahl der Anfragen
+     * @return Recall und Latenz je Variante
+     * @throws IOException bei Lesefehlern
+     */
+    public static Report run(EmbeddingStore store, int queries, int k, int[] nprobes, long seed)
+            throws IOException {
+        long[] ids = store.getImageIds();
+        int count = Math.min(queries, ids.length);
+        Random random = new Random(seed);
+        long[] queryIds = new long[count];
+        float[][] vectors = new float[count][];
+        for (int i = 0; i < count; i++) {
+            queryIds[i] = ids[random.nextInt(ids.length)];
+            vectors[i] = store.getVector(queryIds[i]);
+        }
+
+        int partitions = store.getPartitionCount();
+        int variantCount = partitions > 0 ? 1 + nprobes.length : 1;
+        Variant[] variants = new Variant[variantCount];
+        long[][] exact = new long[count][];
+        variants[0] = measure("exakt", store, queryIds, vectors, k, 0, null, exact);
+        for (int v = 1; v < variantCount; v++) {
+            int nprobe = nprobes[v - 1];
+            variants[v] = measure("IVF nprobe=" + nprobe, store, queryIds, vectors, k, nprobe, exact, null);
+        }
+        return new Report(store.size(), store.getDimension(), partitions, count, k, variants);
+    }
+
+    /**
+     * Misst eine Suchvariante.
+     *
+     * @param nprobe    0 = exakte Suche
+     * @param reference exakte Treffer je Anfrage für den Recall oder {@code null}
+     * @param results   nimmt die Treffer je Anfrage auf oder {@code null}
+     */
+    private static Variant measure(String name, EmbeddingStore store, long[] queryIds, float[][] vectors,
+                                   int k, int nprobe, long[][] reference, long[][] results)
+            throws IOException {
+        int count = queryIds.length;
+        long[] nanos = new long[count];
+        double recall = 0;
+        double scanned = 0;
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            EmbeddingStore.Match[] matches = nprobe == 0
+                    ? store.searchExact(vectors[i], k + 1)
+                    : store.searchApproximate(vectors[i], k + 1, nprobe);
+            nanos[i] = System.nanoTime() - start;
+            scanned += (double) store.getLastScannedCount() / Math.max(1, store.size());
+
+            long[] found = withoutQuery(matches, queryIds[i], k);
+            if (results != null) {
+                results[i] = found;
+            }
+            if (reference != null && reference[i].length > 0) {
+                int hits = 0;
+                for (long id : found) {
+                    for (long expected : reference[i]) {
+                        if (id == expected) {
+                            hits++;
+                            break;
+                        }
+                    }
+                }
+                recall += (double) hits / reference[i].length;
+            }
+        }
+        Arrays.sort(nanos);
+        return new Variant(name,
+                reference != null && count > 0 ? recall / count : 1.0,
+                percentile(nanos, 50) / 1e6,
+                percentile(nanos, 95) / 1e6,
+                count > 0 ? scanned / count : 0);
+    }
+
+    /** Entfernt das Anfragebild und kürzt auf {@code k} Treffer */
+    private static long[] withoutQuery(EmbeddingStore.Match[] matches, long queryId, int k) {
+        long[] ids = new long[Math.min(k, matches.length)];
+        int n = 0;
+        for (EmbeddingStore.Match match : matches) {
+            if (match.getImageId() != queryId && n < ids.length) {
+                ids[n++] = match.getImageId();
+            }
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Legt einen Store mit gruppierten Zufallsvektoren an (Gruppenzentren
+     * plus Rauschen, ähnlich Embeddings von Bildern weniger Motive) und baut
+     * den IVF-Index auf.
+     *
+     * @param directory Verzeichnis des Stores (vorhandene Daten werden ersetzt)
+     * @param count     Anzahl Vektoren
+     * @param dimension Länge der Vektoren
+     * @param clusters  Anzahl Gruppen
+     * @param seed      Seed der Zufallszahlen
+     * @return geöffneter Store, vom Aufrufer zu schließen
+     * @throws IOException bei Schreibfehlern
+     */
+    public static EmbeddingStore createSynthetic(File directory, int count, int dimension, int clusters, long seed)
+            throws IOException {
+        new File(directory, EmbeddingStore.LOG_FILE).delete();
+        new File(directory, EmbeddingStore.PARTITIONS_FILE).delete();
+        EmbeddingStore store = new EmbeddingStore(directory, dimension, 0);
+        try {
+            Random random = new Random(seed);
+            float[][] centers = new float[clusters][dimension];
+            for (float[] center : centers) {
+                for (int d = 0; d < dimension; d++) {
+                    center[d] = (float) random.nextGaussian();
+                }
+                EmbeddingStore.normalize(center);
+            }
+            float noise = (float) (1.0 / Math.sqrt(dimension));
+            float[] vector = new float[dimension];
+            for (int i = 0; i < count; i++) {
+                float[] center = centers[random.nextInt(clusters)];
+                for (int d = 0; d < dimension; d++) {
+                    vector[d] = center[d] + noise * (float) random.nextGaussian();
+                }
+                store.append(i, 0, vector);
+            }
+            store.flush();
+            store.rebuildPartitions();
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+}
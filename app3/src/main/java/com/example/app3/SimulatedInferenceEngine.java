@@ -0,0 +1,324 @@
+package com.example.app3;
+
+import com.example.common.ElementType;
+import com.example.common.InferenceException;
+import com.example.common.TensorSpec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @class SimulatedInferenceEngine
+ * @brief Deterministische {@link InferenceEngine} mit simulierter Latenz für Lasttests.
+ * <p>
+ * Benötigt weder Gerät noch Modell und ist damit auf einer normalen JVM lauffähig.
+ * Simuliert werden:
+ * - Latenz nach einer konfigurierbaren {@link LatencyDistribution}
+ * - begrenzte Parallelität (wie ein einzelner Accelerator mit n Slots)
+ * - Modellausgaben über einen {@link OutputGenerator}
+ * <p>
+ * Determinismus: Die n-te Inferenz erhält unabhängig von der Thread-Verteilung
+ * immer dieselbe Latenz; die Ausgabe hängt nur vom Seed und vom Inhalt der Eingabe ab.
+ */
+public class SimulatedInferenceEngine implements InferenceEngine {
+
+    /** Verteilung der simulierten Latenz */
+    public enum LatencyDistribution {
+        /** immer genau {@code mean} */
+        FIXED,
+        /** gleichverteilt in [mean - spread, mean + spread] */
+        UNIFORM,
+        /** normalverteilt mit Standardabweichung {@code spread}, abgeschnitten bei 0 */
+        NORMAL,
+        /** log-normalverteilt mit Median {@code mean} (lange Latenz-Ausreißer) */
+        LOG_NORMAL
+    }
+
+    /**
+     * Erzeugt die simulierte Modellausgabe.
+     */
+    public interface OutputGenerator {
+
+        /**
+         * @param inputHash  Hash über die Eingabedaten
+         * @param seed       Seed der Engine
+         * @param outputSpec Beschreibung der Ausgabe
+         * @param output     Zielbuffer (ab Index 0 zu beschreiben)
+         */
+        void generate(long inputHash, long seed, TensorSpec outputSpec, ByteBuffer output);
+    }
+
+    private final TensorSpec inputSpec;
+    private final TensorSpec outputSpec;
+    private final LatencyDistribution distribution;
+    private final long meanNanos;
+    private final long spreadNanos;
+    private final long seed;
+    private final int maxConcurrency;
+    private final Semaphore slots;
+    private final OutputGenerator outputGenerator;
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicInteger activeRuns = new AtomicInteger();
+    private final AtomicInteger peakConcurrency = new AtomicInteger();
+
+    private SimulatedInferenceEngine(Builder builder) {
+        this.inputSpec = builder.inputSpec;
+        this.outputSpec = builder.outputSpec;
+        this.distribution = builder.distribution;
+        this.meanNanos = builder.meanNanos;
+        this.spreadNanos = builder.spreadNanos;
+        this.seed = builder.seed;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.slots = new Semaphore(builder.maxConcurrency, true);
+        this.outputGenerator = builder.outputGenerator;
+    }
+
+    @Override
+    public TensorSpec getInputSpec() {
+        return inputSpec;
+    }
+
+    @Override
+    public TensorSpec getOutputSpec() {
+        return outputSpec;
+    }
+
+    @Override
+    public void run(ByteBuffer input, ByteBuffer output) throws InferenceException {
+        long waitStart = System.nanoTime();
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InferenceException("Simulierte Inferenz unterbrochen", e);
+        }
+        long start = System.nanoTime();
+        totalWaitNanos.addAndGet(start - waitStart);
+
+        int active = activeRuns.incrementAndGet();
+        peakConcurrency.accumulateAndGet(active, Math::max);
+        try {
+            long latency = sampleLatency(sequence.getAndIncrement());
+            outputGenerator.generate(hashInput(input), seed, outputSpec, output);
+
+            long remaining = latency - (System.nanoTime() - start);
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            }
+            runCount.incrementAndGet();
+            totalLatencyNanos.addAndGet(System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InferenceException("Simulierte Inferenz unterbrochen", e);
+        } finally {
+            activeRuns.decrementAndGet();
+            slots.release();
+        }
+    }
+
+    /**
+     * Bestimmt die Latenz der n-ten Inferenz.
+     *
+     * @param n laufende Nummer der Inferenz
+     * @return Latenz in Nanosekunden
+     */
+    long sampleLatency(long n) {
+        long bits = mix(seed + n * 0x9E3779B97F4A7C15L);
+        switch (distribution) {
+            case UNIFORM:
+                return Math.max(0, meanNanos + (long) ((unit(bits) * 2 - 1) * spreadNanos));
+            case NORMAL:
+                return Math.max(0, meanNanos + (long) (gaussian(bits) * spreadNanos));
+            case LOG_NORMAL:
+                double sigma = meanNanos == 0 ? 0 : (double) spreadNanos / meanNanos;
+                return (long) (meanNanos * Math.exp(gaussian(bits) * sigma));
+            case FIXED:
+            default:
+                return meanNanos;
+        }
+    }
+
+    /**
+     * Hash über die Eingabe. Es wird nur jedes 61. Byte betrachtet, damit der
+     * Hash selbst die simulierte Latenz nicht verfälscht.
+     */
+    private long hashInput(ByteBuffer input) {
+        long h = 0xCBF29CE484222325L;
+        int size = Math.min(input.capacity(), inputSpec.getByteSize());
+        for (int i = 0; i < size; i += 61) {
+            h = (h ^ input.get(i)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /** SplitMix64-Finalisierer */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Gleichverteilte Zahl in [0, 1) aus 53 Zufallsbits */
+    static double unit(long bits) {
+        return (bits >>> 11) * 0x1.0p-53;
+    }
+
+    /** Standardnormalverteilte Zahl (Box-Muller) */
+    private static double gaussian(long bits) {
+        double u1 = Math.max(unit(bits), 1e-12);
+        double u2 = unit(mix(bits));
+        return Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+    }
+
+    /**
+     * Standard-Ausgabe: eine vom Eingabe-Hash abhängige Klasse erhält eine hohe
+     * Konfidenz (60–95 %), der Rest wird gleichmäßig auf die übrigen Klassen verteilt.
+     * Gleiche Eingaben liefern also immer dasselbe Top-1-Ergebnis.
+     */
+    public static final OutputGenerator PEAKED_OUTPUT = (inputHash, seed, spec, output) -> {
+        int classes = spec.getElementsPerBatch();
+        int batch = spec.getBatchSize();
+        for (int b = 0; b < batch; b++) {
+            long bits = mix(inputHash ^ seed ^ b);
+            int topClass = (int) Long.remainderUnsigned(bits, classes);
+            float top = 0.6f + 0.35f * (float) unit(mix(bits));
+            float rest = classes > 1 ? (1f - top) / (classes - 1) : 0f;
+            for (int c = 0; c < classes; c++) {
+                putValue(spec, output, b * classes + c, c == topClass ? top : rest);
+            }
+        }
+    };
+
+    /**
+     * Schreibt einen Wahrscheinlichkeitswert im Datentyp der Ausgabe.
+     *
+     * @param spec   Beschreibung der Ausgabe
+     * @param output Zielbuffer
+     * @param index  Elementindex
+     * @param value  Wert in [0, 1]
+     */
+    public static void putValue(TensorSpec spec, ByteBuffer output, int index, float value) {
+        switch (spec.getType()) {
+            case FLOAT32:
+                output.putFloat(index * 4, value);
+                break;
+            case UINT8:
+            case INT8: {
+                float scale = spec.isQuantized() ? spec.getScale() : 1f / 255f;
+                int q = Math.round(value / scale) + spec.getZeroPoint();
+                int min = spec.getType() == ElementType.UINT8 ? 0 : -128;
+                output.put(index, (byte) Math.max(min, Math.min(min + 255, q)));
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Nicht unterstützter Ausgabetyp: " + spec.getType());
+        }
+    }
+
+    @Override
+    public long getNativeBytes() {
+        return 0;
+    }
+
+    @Override
+    public String getName() {
+        return "Simulated[" + distribution + ", mean=" + TimeUnit.NANOSECONDS.toMillis(meanNanos)
+                + "ms, slots=" + maxConcurrency + "]";
+    }
+
+    /** @return Anzahl abgeschlossener Inferenzen */
+    public long getRunCount() {
+        return runCount.get();
+    }
+
+    /** @return mittlere Latenz (ohne Wartezeit auf einen freien Slot) in Nanosekunden */
+    public long getAverageLatencyNanos() {
+        long runs = runCount.get();
+        return runs == 0 ? 0 : totalLatencyNanos.get() / runs;
+    }
+
+    /** @return mittlere Wartezeit auf einen freien Slot in Nanosekunden */
+    public long getAverageWaitNanos() {
+        long runs = runCount.get();
+        return runs == 0 ? 0 : totalWaitNanos.get() / runs;
+    }
+
+    /** @return höchste beobachtete Anzahl gleichzeitiger Inferenzen */
+    public int getPeakConcurrency() {
+        return peakConcurrency.get();
+    }
+
+    @Override
+    public void close() {
+        // keine nativen Ressourcen
+    }
+
+    /**
+     * @class Builder
+     * @brief Konfiguration einer {@link SimulatedInferenceEngine}.
+     */
+    public static class Builder {
+
+        private final TensorSpec inputSpec;
+        private final TensorSpec outputSpec;
+        private LatencyDistribution distribution = LatencyDistribution.FIXED;
+        private long meanNanos = TimeUnit.MILLISECONDS.toNanos(20);
+        private long spreadNanos;
+        private long seed = 42;
+        private int maxConcurrency = 1;
+        private OutputGenerator outputGenerator = PEAKED_OUTPUT;
+
+        /**
+         * @param inputSpec  simulierte Eingabe (z. B. wie das echte Modell)
+         * @param outputSpec simulierte Ausgabe
+         */
+        public Builder(TensorSpec inputSpec, TensorSpec outputSpec) {
+            this.inputSpec = inputSpec;
+            this.outputSpec = outputSpec;
+        }
+
+        /**
+         * @param distribution Verteilung der Latenz
+         * @param meanMs       Mittelwert bzw. Median in Millisekunden
+         * @param spreadMs     Streuung in Millisekunden (Bedeutung je nach Verteilung)
+         */
+        public Builder setLatency(LatencyDistribution distribution, double meanMs, double spreadMs) {
+            this.distribution = distribution;
+            this.meanNanos = (long) (meanMs * 1_000_000);
+            this.spreadNanos = (long) (spreadMs * 1_000_000);
+            return this;
+        }
+
+        /** @param maxConcurrency maximale Anzahl gleichzeitiger Inferenzen */
+        public Builder setMaxConcurrency(int maxConcurrency) {
+            if (maxConcurrency < 1) {
+                throw new IllegalArgumentException("maxConcurrency muss >= 1 sein");
+            }
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /** @param seed Seed für Latenz und Ausgabe */
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /** @param outputGenerator Erzeugung der Modellausgabe */
+        public Builder setOutputGenerator(OutputGenerator outputGenerator) {
+            this.outputGenerator = outputGenerator;
+            return this;
+        }
+
+        public SimulatedInferenceEngine build() {
+            return new SimulatedInferenceEngine(this);
+        }
+    }
+}
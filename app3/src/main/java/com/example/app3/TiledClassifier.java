@@ -0,0 +1,292 @@
+package com.example.app3;
+
+import android.graphics.Bitmap;
+
+import com.example.common.BitmapPool;
+import com.example.common.InferenceException;
+import com.example.common.InputWriter;
+import com.example.common.TensorSpec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @class TiledClassifier
+ * @brief Hochauflösende Klassifikation über überlappende Kacheln.
+ * <p>
+ * Beim Verkleinern eines großen Fotos auf 224×224 gehen kleine Objekte
+ * verloren. Dieser Modus zerlegt das Bild stattdessen in überlappende,
+ * quadratische Kacheln auf mehreren Skalen (Bildpyramide), tastet jede Kachel
+ * direkt aus dem Pixelarray auf Modellgröße ab (ohne Zwischenbitmaps),
+ * schreibt alle Kacheln in einen gemeinsamen Batch-Buffer und führt sie
+ * zusammen aus ({@link Classifier#runBatch}).
+ * Die Scores der Kacheln werden pro Klasse per Maximum oder Mittelwert
+ * zu einem Ergebnis zusammengefasst.
+ */
+public class TiledClassifier {
+
+    /** Zusammenfassung der Kachel-Scores pro Klasse */
+    public enum Pooling {
+        /** höchster Score einer Kachel (findet kleine Objekte) */
+        MAX,
+        /** Mittelwert über alle Kacheln (robuster für bildfüllende Motive) */
+        MEAN
+    }
+
+    private final Classifier classifier;
+    private final int imageSize;
+
+    /** Kantenlänge der Kacheln relativ zur kürzeren Bildseite, je Pyramidenstufe */
+    private float[] scales = {1f, 0.5f};
+    /** Überlappung benachbarter Kacheln (0 = keine, 0.5 = halbe Kachel) */
+    private float overlap = 0.25f;
+    private Pooling pooling = Pooling.MAX;
+    private int maxTiles = 16;
+    /** Größere Bilder werden vorab einmalig auf diese Kantenlänge verkleinert */
+    private int maxSourceSize = 1536;
+    private BitmapPool bitmapPool = BitmapPool.getShared();
+
+    /** Wiederverwendete Buffer für die aktuelle Kachelanzahl */
+    private ByteBuffer batchInput;
+    private ByteBuffer batchOutput;
+    private int batchCapacity;
+    private int[] sourcePixels = new int[0];
+
+    private long totalTiles;
+    private long totalInferenceNanos;
+    private long totalNanos;
+
+    /**
+     * @param classifier Classifier, dessen Modell und Vorverarbeitung verwendet werden
+     */
+    public TiledClassifier(Classifier classifier) {
+        this.classifier = classifier;
+        this.imageSize = classifier.getImageSize();
+    }
+
+    /**
+     * Klassifiziert ein Bild über Kacheln.
+     *
+     * @param bitmap Eingabebild (beliebige Größe)
+     * @return zusammengefasstes Top-3-Ergebnis
+     * @throws InferenceException wenn die Inferenz fehlschlägt
+     */
+    public synchronized ClassificationResult classify(Bitmap bitmap) throws InferenceException {
+        Bitmap source = bitmap;
+        int longest = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (longest > maxSourceSize) {
+            float factor = (float) maxSourceSize / longest;
+            source = bitmapPool.getScaled(bitmap,
+                    Math.max(1, Math.round(bitmap.getWidth() * factor)),
+                    Math.max(1, Math.round(bitmap.getHeight() * factor)));
+        }
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (sourcePixels.length < width * height) {
+            sourcePixels = new int[width * height];
+        }
+        source.getPixels(sourcePixels, 0, width, 0, 0, width, height);
+        if (source != bitmap) {
+            bitmapPool.put(source);
+        }
+        return classify(sourcePixels, width, height);
+    }
+
+    /**
+     * Klassifiziert ein Bild in Form eines ARGB-Pixelarrays über Kacheln.
+     *
+     * @param pixels ARGB-Pixel, zeilenweise ohne Lücken
+     * @param width  Bildbreite
+     * @param height Bildhöhe
+     * @return zusammengefasstes Top-3-Ergebnis
+     * @throws InferenceException wenn die Inferenz fehlschlägt
+     */
+    public synchronized ClassificationResult classify(int[] pixels, int width, int height) throws InferenceException {
+        long start = System.nanoTime();
+        List<int[]> tiles = tileGrid(width, height, scales, overlap, maxTiles);
+        ensureCapacity(tiles.size());
+
+        // Alle Kacheln direkt in den Batch-Buffer schreiben, mit
+        // ParallelPreprocessor kachelweise verteilt
+        InputWriter writer = classifier.getInputWriter();
+        int elementsPerTile = imageSize * imageSize * 3;
+        classifier.forEachStripe(tiles.size(), (t, scratch) -> {
+            int[] tile = tiles.get(t);
+            sampleTile(pixels, width, height, tile[0], tile[1], tile[2], scratch, imageSize);
+            writer.write(scratch, 0, scratch.length, batchInput, t * elementsPerTile);
+        });
+
+        long inferenceStart = System.nanoTime();
+        classifier.runBatch(batchInput, batchOutput, tiles.size());
+        long inferenceNanos = System.nanoTime() - inferenceStart;
+
+        // Scores pro Klasse zusammenfassen
+        TensorSpec outputSpec = classifier.getEngine().getOutputSpec();
+        int classes = outputSpec.getElementsPerBatch();
+        float[] pooled = new float[classes];
+        for (int t = 0; t < tiles.size(); t++) {
+            for (int c = 0; c < classes; c++) {
+                float score = outputSpec.readFloat(batchOutput, t * classes + c);
+                if (pooling == Pooling.MAX) {
+                    pooled[c] = Math.max(pooled[c], score);
+                } else {
+                    pooled[c] += score / tiles.size();
+                }
+            }
+        }
+
+        totalTiles += tiles.size();
+        totalInferenceNanos += inferenceNanos;
+        totalNanos += System.nanoTime() - start;
+        return ClassificationResult.fromScores(pooled, 3, inferenceNanos);
+    }
+
+    /**
+     * Bestimmt die Kacheln eines Bildes. Gröbere Stufen kommen zuerst, die
+     * erste Stufe mit Skala 1 deckt also immer das ganze Bild ab.
+     *
+     * @param width    Bildbreite
+     * @param height   Bildhöhe
+     * @param scales   Kantenlänge relativ zur kürzeren Bildseite je Stufe
+     * @param overlap  Überlappung benachbarter Kacheln in [0, 1)
+     * @param maxTiles höchstens so viele Kacheln
+     * @return Kacheln als {x, y, Kantenlänge}
+     */
+    static List<int[]> tileGrid(int width, int height, float[] scales, float overlap, int maxTiles) {
+        List<int[]> tiles = new ArrayList<>();
+        int shorter = Math.min(width, height);
+        for (float scale : scales) {
+            int size = Math.max(1, Math.round(shorter * scale));
+            int step = Math.max(1, Math.round(size * (1 - overlap)));
+            int columns = steps(width, size, step);
+            int rows = steps(height, size, step);
+            for (int row = 0; row < rows; row++) {
+                for (int column = 0; column < columns; column++) {
+                    if (tiles.size() >= maxTiles) {
+                        return tiles;
+                    }
+                    // Kacheln gleichmäßig verteilen, die letzte schließt bündig am Rand ab
+                    int x = columns == 1 ? (width - size) / 2 : Math.round((float) column * (width - size) / (columns - 1));
+                    int y = rows == 1 ? (height - size) / 2 : Math.round((float) row * (height - size) / (rows - 1));
+                    tiles.add(new int[]{x, y, size});
+                }
+            }
+        }
+        return tiles;
+    }
+
+    /** Anzahl Kachelpositionen entlang einer Achse */
+    private static int steps(int length, int size, int step) {
+        if (length <= size) {
+            return 1;
+        }
+        return (length - size + step - 1) / step + 1;
+    }
+
+    /**
+     * Tastet einen quadratischen Bildausschnitt bilinear auf {@code dstSize}×{@code dstSize} ab.
+     *
+     * @param src     ARGB-Quellpixel
+     * @param width   Breite der Quelle
+     * @param height  Höhe der Quelle
+     * @param x0      linke Kante des Ausschnitts
+     * @param y0      obere Kante des Ausschnitts
+     * @param size    Kantenlänge des Ausschnitts
+     * @param dst     Zielpixel ({@code dstSize * dstSize})
+     * @param dstSize Kantenlänge des Ziels
+     */
+    static void sampleTile(int[] src, int width, int height, int x0, int y0, int size, int[] dst, int dstSize) {
+        float step = (float) size / dstSize;
+        for (int j = 0; j < dstSize; j++) {
+            float sy = y0 + (j + 0.5f) * step - 0.5f;
+            int yA = clamp((int) Math.floor(sy), height);
+            int yB = clamp(yA + 1, height);
+            float fy = Math.max(0f, Math.min(1f, sy - yA));
+            int rowA = yA * width;
+            int rowB = yB * width;
+            for (int i = 0; i < dstSize; i++) {
+                float sx = x0 + (i + 0.5f) * step - 0.5f;
+                int xA = clamp((int) Math.floor(sx), width);
+                int xB = clamp(xA + 1, width);
+                float fx = Math.max(0f, Math.min(1f, sx - xA));
+                dst[j * dstSize + i] = blend(src[rowA + xA], src[rowA + xB], src[rowB + xA], src[rowB + xB], fx, fy);
+            }
+        }
+    }
+
+    static int clamp(int value, int length) {
+        return value < 0 ? 0 : (value >= length ? length - 1 : value);
+    }
+
+    /** Bilineare Interpolation der RGB-Kanäle (Alpha wird auf 255 gesetzt) */
+    static int blend(int a, int b, int c, int d, float fx, float fy) {
+        int result = 0xFF000000;
+        for (int shift = 0; shift <= 16; shift += 8) {
+            float top = ((a >> shift) & 0xFF) * (1 - fx) + ((b >> shift) & 0xFF) * fx;
+            float bottom = ((c >> shift) & 0xFF) * (1 - fx) + ((d >> shift) & 0xFF) * fx;
+            result |= ((int) (top * (1 - fy) + bottom * fy + 0.5f)) << shift;
+        }
+        return result;
+    }
+
+    private void ensureCapacity(int tiles) {
+        if (tiles <= batchCapacity) {
+            return;
+        }
+        ByteBuffer[] buffers = classifier.createBatchBuffers(tiles);
+        batchInput = buffers[0];
+        batchOutput = buffers[1];
+        batchCapacity = tiles;
+    }
+
+    /** @param scales Kantenlänge der Kacheln relativ zur kürzeren Bildseite je Pyramidenstufe */
+    public synchronized void setScales(float... scales) {
+        this.scales = scales.clone();
+    }
+
+    /** @param overlap Überlappung benachbarter Kacheln in [0, 1) */
+    public synchronized void setOverlap(float overlap) {
+        if (overlap < 0f || overlap >= 1f) {
+            throw new IllegalArgumentException("overlap muss in [0, 1) liegen");
+        }
+        this.overlap = overlap;
+    }
+
+    /** @param pooling Zusammenfassung der Kachel-Scores */
+    public synchronized void setPooling(Pooling pooling) {
+        this.pooling = pooling;
+    }
+
+    /** @param maxTiles höchstens so viele Kacheln pro Bild */
+    public synchronized void setMaxTiles(int maxTiles) {
+        this.maxTiles = Math.max(1, maxTiles);
+    }
+
+    /** @param maxSourceSize größte Kantenlänge, auf die das Bild vorab verkleinert wird */
+    public synchronized void setMaxSourceSize(int maxSourceSize) {
+        this.maxSourceSize = Math.max(imageSize, maxSourceSize);
+    }
+
+    /** @param bitmapPool Pool für das einmalig verkleinerte Quellbild */
+    public void setBitmapPool(BitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+    }
+
+    /** @return Kacheln pro Sekunde, nur Inferenz */
+    public synchronized double getInferenceTilesPerSecond() {
+        return totalInferenceNanos == 0 ? 0 : totalTiles * 1e9 / totalInferenceNanos;
+    }
+
+    /** @return Kacheln pro Sekunde inkl. Abtastung und Zusammenfassung */
+    public synchronized double getTilesPerSecond() {
+        return totalNanos == 0 ? 0 : totalTiles * 1e9 / totalNanos;
+    }
+
+    /** @return Kurzstatistik für Logs */
+    public synchronized String getStats() {
+        return String.format(Locale.US, "Kacheln: %d, %.1f Kacheln/s (Inferenz %.1f Kacheln/s)",
+                totalTiles, getTilesPerSecond(), getInferenceTilesPerSecond());
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.app3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @class AdaptivePolicyTest
+ * @brief JVM-Tests der {@link AdaptivePolicy} mit simulierten Temperatur- und Akkuzuständen.
+ */
+public class AdaptivePolicyTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    /** Kühl, voller Akku, am Ladegerät, kein Energiesparmodus */
+    private static final DeviceState IDLE = new DeviceState(DeviceState.THERMAL_NONE, 100, true, false);
+
+    private AdaptivePolicy policy;
+
+    @Before
+    public void setUp() {
+        policy = new AdaptivePolicy();
+        policy.setUpgradeHoldMillis(10_000);
+    }
+
+    @Test
+    public void idleDeviceRunsFull() {
+        assertSame(AdaptivePolicy.FULL, policy.evaluate(IDLE, 0));
+        assertSame(AdaptivePolicy.FULL, policy.evaluate(IDLE.withThermalStatus(DeviceState.THERMAL_LIGHT), SECOND));
+    }
+
+    @Test
+    public void thermalStatusSelectsLevel() {
+        assertSame(AdaptivePolicy.REDUCED,
+                policy.evaluate(IDLE.withThermalStatus(DeviceState.THERMAL_MODERATE), 0));
+        assertSame(AdaptivePolicy.THROTTLED,
+                policy.evaluate(IDLE.withThermalStatus(DeviceState.THERMAL_SEVERE), SECOND));
+        assertSame(AdaptivePolicy.MINIMAL,
+                policy.evaluate(IDLE.withThermalStatus(DeviceState.THERMAL_CRITICAL), 2 * SECOND));
+        assertFalse(policy.getCurrent().isGpuAllowed());
+    }
+
+    @Test
+    public void severeHeatJumpsDirectlyAndDisablesGpu() {
+        AdaptivePolicy.Decision decision = policy.evaluate(IDLE.withThermalStatus(DeviceState.THERMAL_SEVERE), 0);
+        assertSame(AdaptivePolicy.THROTTLED, decision);
+        assertFalse(decision.isGpuAllowed());
+        assertSame(AdaptivePolicy.MINIMAL,
+                policy.evaluate(IDLE.withThermalStatus(DeviceState.THERMAL_SHUTDOWN), SECOND));
+    }
+
+    @Test
+    public void batteryThresholdsApplyOnlyWithoutCharger() {
+        policy.setBatteryThresholds(30, 10);
+        assertSame(AdaptivePolicy.FULL, policy.evaluate(IDLE.withBattery(5, true), 0));
+        assertSame(AdaptivePolicy.REDUCED, policy.evaluate(IDLE.withBattery(30, false), SECOND));
+        assertSame(AdaptivePolicy.MINIMAL, policy.evaluate(IDLE.withBattery(10, false), 2 * SECOND));
+    }
+
+    @Test
+    public void powerSaveModeReduces() {
+        assertSame(AdaptivePolicy.REDUCED, policy.evaluate(IDLE.withPowerSaveMode(true), 0));
+    }
+
+    @Test
+    public void worstInputWins() {
+        DeviceState state = IDLE.withThermalStatus(DeviceState.THERMAL_MODERATE).withBattery(3, false);
+        assertSame(AdaptivePolicy.MINIMAL, policy.evaluate(state, 0));
+    }
+
+    @Test
+    public void upgradeWaitsForHoldTime() {
+        policy.evaluate(IDLE.withThermalStatus(DeviceState.THERMAL_MODERATE), 0);
+        assertSame(AdaptivePolicy.REDUCED, policy.evaluate(IDLE, SECOND));
+        assertSame(AdaptivePolicy.REDUCED, policy.evaluate(IDLE, 10 * SECOND));
+        assertSame(AdaptivePolicy.FULL, policy.evaluate(IDLE, 11 * SECOND));
+    }
+
+    @Test
+    public void upgradeClimbsOneLevelPerHoldTime() {
+        policy.evaluate(IDLE.withThermalStatus(DeviceState.THERMAL_CRITICAL), 0);
+        assertSame(AdaptivePolicy.MINIMAL, policy.evaluate(IDLE, SECOND));
+        assertSame(AdaptivePolicy.THROTTLED, policy.evaluate(IDLE, 11 * SECOND));
+        assertSame(AdaptivePolicy.THROTTLED, policy.evaluate(IDLE, 20 * SECOND));
+        assertSame(AdaptivePolicy.REDUCED, policy.evaluate(IDLE, 21 * SECOND));
+        assertSame(AdaptivePolicy.FULL, policy.evaluate(IDLE, 31 * SECOND));
+    }
+
+    @Test
+    public void oscillationAtBoundaryDoesNotUpgrade() {
+        DeviceState hot = IDLE.withThermalStatus(DeviceState.THERMAL_MODERATE);
+        policy.evaluate(hot, 0);
+        for (int i = 1; i <= 60; i++) {
+            DeviceState state = i % 2 == 0 ? hot : IDLE;
+            assertSame("nach " + i + " s", AdaptivePolicy.REDUCED, policy.evaluate(state, i * SECOND));
+        }
+    }
+
+    @Test
+    public void downgradeResetsPendingUpgrade() {
+        policy.evaluate(IDLE.withThermalStatus(DeviceState.THERMAL_SEVERE), 0);
+        policy.evaluate(IDLE, SECOND);
+        assertSame(AdaptivePolicy.MINIMAL,
+                policy.evaluate(IDLE.withThermalStatus(DeviceState.THERMAL_CRITICAL), 5 * SECOND));
+        assertSame(AdaptivePolicy.MINIMAL, policy.evaluate(IDLE, 12 * SECOND));
+        assertSame(AdaptivePolicy.THROTTLED, policy.evaluate(IDLE, 22 * SECOND));
+    }
+
+    @Test
+    public void maxThreadsCoversAllLevels() {
+        assertEquals(AdaptivePolicy.FULL.getThreads(), policy.getMaxThreads());
+    }
+}
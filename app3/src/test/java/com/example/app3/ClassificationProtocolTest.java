@@ -0,0 +1,161 @@
+package com.example.app3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.example.common.InferenceException;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * @class ClassificationProtocolTest
+ * @brief JVM-Tests für Kodierung, Dekodierung und Prüfung des Dienstprotokolls.
+ */
+public class ClassificationProtocolTest {
+
+    /** Legt eine Anfrage mit einfarbigen Bildern an (RGBA). */
+    private static ByteBuffer request(int topK, int[] widths, int[] heights, int rgba) {
+        int[] strides = new int[widths.length];
+        for (int i = 0; i < widths.length; i++) {
+            strides[i] = 4 * widths[i];
+        }
+        ClassificationProtocol.Image[] images = ClassificationProtocol.layout(widths, heights, strides);
+        ByteBuffer region = ByteBuffer.allocate(ClassificationProtocol.regionSize(images));
+        ClassificationProtocol.writeHeader(region, topK, images);
+        for (ClassificationProtocol.Image image : images) {
+            for (int p = 0; p < image.getWidth() * image.getHeight(); p++) {
+                region.putInt(image.getOffset() + 4 * p, rgba);
+            }
+        }
+        return region;
+    }
+
+    private static void assertRejected(ByteBuffer region) {
+        try {
+            ClassificationProtocol.readRequest(region);
+            fail("Anfrage hätte abgelehnt werden müssen");
+        } catch (IllegalArgumentException expected) {
+            // erwartet
+        }
+    }
+
+    @Test
+    public void requestRoundTrip() {
+        ByteBuffer region = request(5, new int[]{30, 7}, new int[]{20, 9}, 0);
+        ClassificationProtocol.Request parsed = ClassificationProtocol.readRequest(region);
+        assertEquals(5, parsed.getTopK());
+        ClassificationProtocol.Image[] images = parsed.getImages();
+        assertEquals(2, images.length);
+        assertEquals(30, images[0].getWidth());
+        assertEquals(9, images[1].getHeight());
+        assertEquals(0, images[0].getOffset() % 64);
+        assertEquals(0, images[1].getOffset() % 64);
+        assertTrue(images[1].getOffset() >= images[0].getOffset() + 30 * 4 * 20);
+    }
+
+    @Test
+    public void samplesPixelsFromRegion() {
+        // R=0x11, G=0x22, B=0x33, A=0xFF in Bytefolge
+        ByteBuffer region = request(1, new int[]{40}, new int[]{10}, 0x112233FF);
+        ClassificationProtocol.Image image = ClassificationProtocol.readRequest(region).getImages()[0];
+        int[] pixels = new int[8 * 8];
+        ClassificationProtocol.samplePixels(region, image, pixels, 8);
+        for (int pixel : pixels) {
+            assertEquals(0xFF112233, pixel);
+        }
+    }
+
+    @Test
+    public void rejectsMalformedRequests() {
+        assertRejected(ByteBuffer.allocate(8));
+
+        ByteBuffer wrongMagic = request(1, new int[]{4}, new int[]{4}, 0);
+        wrongMagic.order(ByteOrder.LITTLE_ENDIAN).putInt(0, 0);
+        assertRejected(wrongMagic);
+
+        ByteBuffer wrongVersion = request(1, new int[]{4}, new int[]{4}, 0);
+        wrongVersion.order(ByteOrder.LITTLE_ENDIAN).putInt(4, ClassificationProtocol.VERSION + 1);
+        assertRejected(wrongVersion);
+
+        ByteBuffer tooManyK = request(1, new int[]{4}, new int[]{4}, 0);
+        tooManyK.order(ByteOrder.LITTLE_ENDIAN).putInt(12, ClassificationProtocol.MAX_TOP_K + 1);
+        assertRejected(tooManyK);
+
+        ByteBuffer noImages = request(1, new int[]{4}, new int[]{4}, 0);
+        noImages.order(ByteOrder.LITTLE_ENDIAN).putInt(8, 0);
+        assertRejected(noImages);
+    }
+
+    @Test
+    public void rejectsImagesOutsideRegion() {
+        int entry = ClassificationProtocol.REQUEST_HEADER_BYTES;
+
+        ByteBuffer offset = request(1, new int[]{4}, new int[]{4}, 0);
+        offset.order(ByteOrder.LITTLE_ENDIAN).putInt(entry + 12, offset.capacity() - 8);
+        assertRejected(offset);
+
+        ByteBuffer height = request(1, new int[]{4}, new int[]{4}, 0);
+        height.order(ByteOrder.LITTLE_ENDIAN).putInt(entry + 4, 1000);
+        assertRejected(height);
+
+        ByteBuffer stride = request(1, new int[]{4}, new int[]{4}, 0);
+        stride.order(ByteOrder.LITTLE_ENDIAN).putInt(entry + 8, 8);
+        assertRejected(stride);
+
+        ByteBuffer format = request(1, new int[]{4}, new int[]{4}, 0);
+        format.order(ByteOrder.LITTLE_ENDIAN).putInt(entry + 16, 99);
+        assertRejected(format);
+
+        ByteBuffer negative = request(1, new int[]{4}, new int[]{4}, 0);
+        negative.order(ByteOrder.LITTLE_ENDIAN).putInt(entry + 12, -64);
+        assertRejected(negative);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void layoutRejectsOversizedEdge() {
+        ClassificationProtocol.layout(new int[]{ClassificationProtocol.MAX_EDGE + 1}, new int[]{1},
+                new int[]{4 * (ClassificationProtocol.MAX_EDGE + 1)});
+    }
+
+    @Test
+    public void resultsRoundTrip() throws InferenceException {
+        ClassificationResult[] results = {
+                new ClassificationResult(new int[]{3, 1, 2}, new float[]{0.7f, 0.2f, 0.1f}, 0),
+                new ClassificationResult(new int[]{9, 8, 7}, new float[]{0.5f, 0.3f, 0.2f}, 0)
+        };
+        byte[] encoded = ClassificationProtocol.encodeResults(results, 2, 12_345_000);
+        ClassificationResult[] decoded = ClassificationProtocol.decodeResults(encoded);
+        assertEquals(2, decoded.length);
+        assertEquals(2, decoded[0].size());
+        assertEquals(3, decoded[0].getLabelIndex(0));
+        assertEquals(0.2f, decoded[0].getScore(1), 0f);
+        assertEquals(8, decoded[1].getLabelIndex(1));
+        assertEquals(12_345_000, decoded[1].getInferenceNanos());
+    }
+
+    @Test
+    public void errorStatusIsReported() {
+        byte[] error = ClassificationProtocol.encodeError(ClassificationProtocol.STATUS_INFERENCE_FAILED);
+        try {
+            ClassificationProtocol.decodeResults(error);
+            fail("Fehlerstatus hätte gemeldet werden müssen");
+        } catch (InferenceException expected) {
+            assertTrue(expected.getMessage().contains(String.valueOf(ClassificationProtocol.STATUS_INFERENCE_FAILED)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTruncatedResults() throws InferenceException {
+        ClassificationResult[] results = {
+                new ClassificationResult(new int[]{1}, new float[]{1f}, 0)
+        };
+        byte[] encoded = ClassificationProtocol.encodeResults(results, 1, 0);
+        byte[] truncated = new byte[encoded.length - 4];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        ClassificationProtocol.decodeResults(truncated);
+    }
+}
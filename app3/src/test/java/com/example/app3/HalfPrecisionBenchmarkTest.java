@@ -0,0 +1,121 @@
+package com.example.app3;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.common.ElementType;
+import com.example.common.InputWriter;
+import com.example.common.TensorSpec;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * @class HalfPrecisionBenchmarkTest
+ * @brief JVM-Tests für den Offline-Vergleich von Float32- und Half-Precision-Ein-/Ausgabe.
+ */
+public class HalfPrecisionBenchmarkTest {
+
+    private static final int SIZE = 8;
+    private static final int CLASSES = 4;
+
+    /**
+     * Lineares Modell: Klasse c ist der Mittelwert des c-ten Eingabeabschnitts.
+     * Zählt die Aufrufe, damit geprüft werden kann, dass nur diese Instanz läuft.
+     */
+    private static final class LinearEngine implements InferenceEngine {
+
+        private final TensorSpec inputSpec;
+        private final TensorSpec outputSpec;
+        private int runs;
+
+        LinearEngine(ElementType type) {
+            inputSpec = TensorSpec.of(type, 1, SIZE, SIZE, 3);
+            outputSpec = TensorSpec.of(type, 1, CLASSES);
+        }
+
+        @Override
+        public TensorSpec getInputSpec() {
+            return inputSpec;
+        }
+
+        @Override
+        public TensorSpec getOutputSpec() {
+            return outputSpec;
+        }
+
+        @Override
+        public void run(ByteBuffer input, ByteBuffer output) {
+            runs++;
+            int elements = inputSpec.getElementCount();
+            int stripe = elements / CLASSES;
+            for (int c = 0; c < CLASSES; c++) {
+                float sum = 0;
+                for (int i = c * stripe; i < (c + 1) * stripe; i++) {
+                    sum += inputSpec.readFloat(input, i);
+                }
+                SimulatedInferenceEngine.putValue(outputSpec, output, c, (sum / stripe + 1) / 2);
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "Linear";
+        }
+
+        @Override
+        public long getNativeBytes() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static List<int[]> images(int count) {
+        Random random = new Random(7);
+        List<int[]> images = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            int[] pixels = new int[SIZE * SIZE];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+            }
+            images.add(pixels);
+        }
+        return images;
+    }
+
+    @Test
+    public void float32ModelIsComparedWithHalfPrecision() throws Exception {
+        LinearEngine engine = new LinearEngine(ElementType.FLOAT32);
+        HalfPrecisionBenchmark.Report report = HalfPrecisionBenchmark.run(engine,
+                InputWriter.Normalization.MINUS_ONE_TO_ONE, images(5), 3);
+
+        HalfPrecisionBenchmark.Variant[] variants = report.getVariants();
+        assertEquals(2, variants.length);
+        assertEquals(ElementType.FLOAT32, variants[0].getType());
+        assertEquals(ElementType.FLOAT16, variants[1].getType());
+        assertEquals(variants[0].getInputBytes() / 2, variants[1].getInputBytes());
+        assertEquals(variants[0].getOutputBytes() / 2, variants[1].getOutputBytes());
+        assertEquals(0, variants[0].getMaxDrift(), 0);
+        assertTrue("Abweichung " + variants[1].getMaxDrift(), variants[1].getMaxDrift() < 1e-2);
+        // beide Varianten laufen auf der übergebenen Instanz, die Datentypen des Modells bleiben
+        assertEquals(2 * 5 * 3, engine.runs);
+        assertEquals(ElementType.FLOAT32, engine.getInputSpec().getType());
+    }
+
+    @Test
+    public void quantizedModelReportsFloat32Only() throws Exception {
+        LinearEngine engine = new LinearEngine(ElementType.UINT8);
+        HalfPrecisionBenchmark.Report report = HalfPrecisionBenchmark.run(engine,
+                InputWriter.Normalization.MINUS_ONE_TO_ONE, images(2), 1);
+
+        assertEquals(1, report.getVariants().length);
+        assertEquals(2, engine.runs);
+    }
+}
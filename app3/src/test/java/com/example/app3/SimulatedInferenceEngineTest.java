@@ -0,0 +1,161 @@
+package com.example.app3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.common.ElementType;
+import com.example.common.TensorSpec;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @class SimulatedInferenceEngineTest
+ * @brief JVM-Tests für die simulierte Engine des Lasttest-Harness.
+ */
+public class SimulatedInferenceEngineTest {
+
+    private static final TensorSpec INPUT = TensorSpec.of(ElementType.FLOAT32, 1, 8, 8, 3);
+    private static final TensorSpec OUTPUT = TensorSpec.of(ElementType.FLOAT32, 1, 10);
+
+    private static SimulatedInferenceEngine.Builder builder() {
+        return new SimulatedInferenceEngine.Builder(INPUT, OUTPUT);
+    }
+
+    private static ByteBuffer input(float value) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(INPUT.getByteSize()).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < INPUT.getByteSize() / 4; i++) {
+            buffer.putFloat(i * 4, value + i);
+        }
+        return buffer;
+    }
+
+    private static float[] run(SimulatedInferenceEngine engine, ByteBuffer input) throws Exception {
+        ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT.getByteSize()).order(ByteOrder.nativeOrder());
+        engine.run(input, output);
+        float[] values = new float[OUTPUT.getElementsPerBatch()];
+        output.asFloatBuffer().get(values);
+        return values;
+    }
+
+    @Test
+    public void fixedLatencyIsAlwaysMean() {
+        SimulatedInferenceEngine engine = builder()
+                .setLatency(SimulatedInferenceEngine.LatencyDistribution.FIXED, 5, 3)
+                .build();
+        for (long n = 0; n < 100; n++) {
+            assertEquals(TimeUnit.MILLISECONDS.toNanos(5), engine.sampleLatency(n));
+        }
+    }
+
+    @Test
+    public void uniformLatencyStaysWithinSpread() {
+        SimulatedInferenceEngine engine = builder()
+                .setLatency(SimulatedInferenceEngine.LatencyDistribution.UNIFORM, 10, 4)
+                .build();
+        long min = TimeUnit.MILLISECONDS.toNanos(6);
+        long max = TimeUnit.MILLISECONDS.toNanos(14);
+        for (long n = 0; n < 1000; n++) {
+            long latency = engine.sampleLatency(n);
+            assertTrue("Latenz " + latency + " außerhalb des Bereichs", latency >= min && latency <= max);
+        }
+    }
+
+    @Test
+    public void latencySequenceDependsOnlyOnSeed() {
+        SimulatedInferenceEngine a = builder()
+                .setLatency(SimulatedInferenceEngine.LatencyDistribution.LOG_NORMAL, 10, 5)
+                .setSeed(42)
+                .build();
+        SimulatedInferenceEngine b = builder()
+                .setLatency(SimulatedInferenceEngine.LatencyDistribution.LOG_NORMAL, 10, 5)
+                .setSeed(42)
+                .build();
+        SimulatedInferenceEngine other = builder()
+                .setLatency(SimulatedInferenceEngine.LatencyDistribution.LOG_NORMAL, 10, 5)
+                .setSeed(43)
+                .build();
+        boolean differs = false;
+        for (long n = 0; n < 100; n++) {
+            assertEquals(a.sampleLatency(n), b.sampleLatency(n));
+            differs |= a.sampleLatency(n) != other.sampleLatency(n);
+        }
+        assertTrue(differs);
+    }
+
+    @Test
+    public void outputDependsOnlyOnSeedAndInput() throws Exception {
+        SimulatedInferenceEngine a = builder()
+                .setLatency(SimulatedInferenceEngine.LatencyDistribution.FIXED, 0, 0)
+                .setSeed(7)
+                .build();
+        SimulatedInferenceEngine b = builder()
+                .setLatency(SimulatedInferenceEngine.LatencyDistribution.FIXED, 0, 0)
+                .setSeed(7)
+                .build();
+
+        float[] first = run(a, input(1f));
+        assertArrayEquals(first, run(a, input(1f)), 0f);
+        assertArrayEquals(first, run(b, input(1f)), 0f);
+        boolean differs = false;
+        for (int i = 2; i < 20; i++) {
+            differs |= argMax(first) != argMax(run(a, input(i * 1000f)));
+        }
+        assertTrue("Verschiedene Eingaben liefern immer dieselbe Klasse", differs);
+
+        float sum = 0f;
+        for (float value : first) {
+            sum += value;
+        }
+        assertEquals(1f, sum, 1e-4f);
+    }
+
+    @Test
+    public void concurrencyIsLimitedToSlots() throws Exception {
+        SimulatedInferenceEngine engine = builder()
+                .setLatency(SimulatedInferenceEngine.LatencyDistribution.FIXED, 5, 0)
+                .setMaxConcurrency(2)
+                .build();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<float[]>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                ByteBuffer in = input(i);
+                results.add(pool.submit(() -> run(engine, in)));
+            }
+            for (Future<float[]> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(32, engine.getRunCount());
+        assertTrue(engine.getPeakConcurrency() <= 2);
+        assertTrue(engine.getAverageLatencyNanos() >= TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue("Ohne Wartezeit wurden die Slots nicht begrenzt", engine.getAverageWaitNanos() > 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroSlots() {
+        builder().setMaxConcurrency(0);
+    }
+
+    private static int argMax(float[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.common;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+
+/**
+ * @class BitmapPool
+ * @brief Größenbasierter Pool für wiederverwendbare Bitmaps.
+ * <p>
+ * Vermeidet den ständigen Strom großer nativer Allokationen beim Dekodieren
+ * ({@link BitmapFactory.Options#inBitmap}), beim Skalieren auf Modellgröße und
+ * beim Drehen von Bildern.
+ * <p>
+ * Aufbau:
+ * - Bitmaps werden nach Allokationsgröße in Zweierpotenz-Buckets einsortiert
+ * - eine Anfrage wird per {@link Bitmap#reconfigure} aus einem Bucket mit
+ *   ausreichend großer Allokation bedient
+ * - die Summe aller gepoolten Bytes ist durch ein Budget begrenzt, darüber
+ *   hinaus werden die am längsten ungenutzten Bitmaps freigegeben
+ * - Treffer, Fehlschläge und Verdrängungen werden gezählt
+ * - als {@link MemoryManager.Component} wird der Pool bei Speicherdruck
+ *   zuerst geleert
+ */
+public class BitmapPool implements MemoryManager.Component {
+
+    /** Anzahl Buckets (Zweierpotenzen bis 2^31) */
+    private static final int BUCKETS = 32;
+
+    private static BitmapPool shared;
+
+    private final ArrayDeque<Bitmap>[] buckets;
+
+    /** Alle gepoolten Bitmaps in Einfügereihenfolge (für LRU-Verdrängung) */
+    private final LinkedHashSet<Bitmap> lru = new LinkedHashSet<>();
+
+    private long maxBytes;
+    private long currentBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejected;
+
+    /**
+     * @param maxBytes maximale Summe der Allokationsgrößen aller gepoolten Bitmaps
+     */
+    @SuppressWarnings("unchecked")
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.buckets = new ArrayDeque[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Gibt den prozessweit geteilten Pool zurück (Budget: 1/8 des maximalen Heaps).
+     *
+     * @return geteilter Pool
+     */
+    public static synchronized BitmapPool getShared() {
+        if (shared == null) {
+            shared = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+        }
+        return shared;
+    }
+
+    /**
+     * Liefert ein veränderbares Bitmap der gewünschten Größe.
+     * Der Inhalt ist bei einem Treffer undefiniert.
+     *
+     * @param width  Breite
+     * @param height Höhe
+     * @param config Pixelformat
+     * @return gepooltes oder neu angelegtes Bitmap
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(width, height, config);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Wie {@link #get}, liefert bei einem Fehlschlag aber {@code null}
+     * statt ein neues Bitmap anzulegen.
+     */
+    private synchronized Bitmap take(int width, int height, Bitmap.Config config) {
+        long required = (long) width * height * bytesPerPixel(config);
+        int bucket = ceilLog2(required);
+
+        // Im Bucket darunter können ebenfalls passende Bitmaps liegen
+        for (int b = Math.max(0, bucket - 1); b <= Math.min(BUCKETS - 1, bucket + 1); b++) {
+            Iterator<Bitmap> it = buckets[b].iterator();
+            while (it.hasNext()) {
+                Bitmap candidate = it.next();
+                if (candidate.getAllocationByteCount() >= required) {
+                    it.remove();
+                    lru.remove(candidate);
+                    currentBytes -= candidate.getAllocationByteCount();
+                    hits++;
+                    candidate.reconfigure(width, height, config);
+                    return candidate;
+                }
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Gibt ein Bitmap an den Pool zurück. Der Aufrufer darf es danach
+     * nicht mehr verwenden.
+     *
+     * @param bitmap nicht mehr benötigtes Bitmap
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || lru.contains(bitmap)) {
+            return;
+        }
+        int size = bitmap.getAllocationByteCount();
+        // Hardware-Bitmaps sind nie veränderbar und fallen ebenfalls hier heraus
+        if (!bitmap.isMutable() || bitmap.getConfig() == null || size > maxBytes) {
+            rejected++;
+            bitmap.recycle();
+            return;
+        }
+        buckets[floorLog2(size)].addLast(bitmap);
+        lru.add(bitmap);
+        currentBytes += size;
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * Skaliert ein Bitmap bilinear in ein gepooltes Bitmap
+     * (Ersatz für {@link Bitmap#createScaledBitmap}).
+     *
+     * @param source Quellbild (bleibt unverändert)
+     * @param width  Zielbreite
+     * @param height Zielhöhe
+     * @return skaliertes Bitmap, nach Gebrauch per {@link #put} zurückgeben
+     */
+    public Bitmap getScaled(Bitmap source, int width, int height) {
+        Bitmap target = get(width, height, Bitmap.Config.ARGB_8888);
+        Matrix matrix = new Matrix();
+        matrix.setScale((float) width / source.getWidth(), (float) height / source.getHeight());
+        draw(source, target, matrix);
+        return target;
+    }
+
+    /**
+     * Dreht ein Bitmap um ein Vielfaches von 90° in ein gepooltes Bitmap
+     * (Ersatz für {@link Bitmap#createBitmap(Bitmap, int, int, int, int, Matrix, boolean)}).
+     *
+     * @param source  Quellbild (bleibt unverändert)
+     * @param degrees 90, 180 oder 270
+     * @return gedrehtes Bitmap
+     */
+    public Bitmap getRotated(Bitmap source, int degrees) {
+        boolean swap = degrees == 90 || degrees == 270;
+        int width = swap ? source.getHeight() : source.getWidth();
+        int height = swap ? source.getWidth() : source.getHeight();
+        Bitmap target = get(width, height, Bitmap.Config.ARGB_8888);
+
+        // Um den Mittelpunkt drehen und in den Zielbereich verschieben
+        Matrix matrix = new Matrix();
+        matrix.postTranslate(-source.getWidth() / 2f, -source.getHeight() / 2f);
+        matrix.postRotate(degrees);
+        matrix.postTranslate(width / 2f, height / 2f);
+        draw(source, target, matrix);
+        return target;
+    }
+
+    /** Zeichnet ohne Blending (SRC), damit alte Pixel gepoolter Bitmaps nicht durchscheinen */
+    private static void draw(Bitmap source, Bitmap target, Matrix matrix) {
+        Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC));
+        new Canvas(target).drawBitmap(source, matrix, paint);
+    }
+
+    /**
+     * Dekodiert ein Bild und verwendet dafür nach Möglichkeit ein gepooltes
+     * Bitmap ({@link BitmapFactory.Options#inBitmap}).
+     *
+     * @param resolver ContentResolver
+     * @param uri      URI des Bildes
+     * @param maxSize  größte erlaubte Kantenlänge (0 = volle Auflösung);
+     *                 verkleinert wird in Zweierpotenzen über {@code inSampleSize}
+     * @return dekodiertes, veränderbares Bitmap
+     * @throws IOException wenn das Bild nicht gelesen werden kann
+     */
+    public Bitmap decode(ContentResolver resolver, Uri uri, int maxSize) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Bild kann nicht dekodiert werden: " + uri);
+        }
+
+        int sampleSize = 1;
+        if (maxSize > 0) {
+            while (Math.max(options.outWidth, options.outHeight) / (sampleSize * 2) >= maxSize) {
+                sampleSize *= 2;
+            }
+        }
+        int width = (options.outWidth + sampleSize - 1) / sampleSize;
+        int height = (options.outHeight + sampleSize - 1) / sampleSize;
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inBitmap = take(width, height, Bitmap.Config.ARGB_8888);
+
+        try (InputStream in = resolver.openInputStream(uri)) {
+            Bitmap decoded = BitmapFactory.decodeStream(in, null, options);
+            if (decoded != null) {
+                return decoded;
+            }
+        } catch (IllegalArgumentException e) {
+            // inBitmap nicht kompatibel (z. B. abweichende Decoder-Größe)
+        }
+
+        // Zweiter Versuch ohne Wiederverwendung
+        put(options.inBitmap);
+        options.inBitmap = null;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            Bitmap decoded = BitmapFactory.decodeStream(in, null, options);
+            if (decoded == null) {
+                throw new IOException("Bild kann nicht dekodiert werden: " + uri);
+            }
+            return decoded;
+        }
+    }
+
+    /**
+     * Gibt gepoolte Bitmaps frei, bis höchstens {@code targetBytes} übrig sind.
+     *
+     * @param targetBytes verbleibende Bytes
+     */
+    public synchronized void trimToSize(long targetBytes) {
+        Iterator<Bitmap> it = lru.iterator();
+        while (currentBytes > targetBytes && it.hasNext()) {
+            Bitmap oldest = it.next();
+            it.remove();
+            int size = oldest.getAllocationByteCount();
+            buckets[floorLog2(size)].remove(oldest);
+            currentBytes -= size;
+            evictions++;
+            oldest.recycle();
+        }
+    }
+
+    /** Gibt alle gepoolten Bitmaps frei. */
+    public void clear() {
+        trimToSize(0);
+    }
+
+    /** @param maxBytes neues Budget; überzählige Bitmaps werden sofort freigegeben */
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    /** @return aktuell gepoolte Bytes */
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    /** @return Budget in Bytes */
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public String getName() {
+        return "BitmapPool";
+    }
+
+    @Override
+    public int getPriority() {
+        return MemoryManager.PRIORITY_CACHE;
+    }
+
+    @Override
+    public long getNativeBytes() {
+        return getCurrentBytes();
+    }
+
+    @Override
+    public long getHeapBytes() {
+        return 0;
+    }
+
+    @Override
+    public void release() {
+        clear();
+    }
+
+    /** @return Anteil der Anfragen, die aus dem Pool bedient wurden */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /** @return Kurzstatistik für Logs */
+    public synchronized String getStats() {
+        return String.format(Locale.US,
+                "BitmapPool: %.1f/%.1f MB, Treffer %d, Fehlschläge %d (Trefferquote %.1f%%), "
+                        + "verdrängt %d, abgelehnt %d",
+                currentBytes / 1e6, maxBytes / 1e6, hits, misses, getHitRate() * 100,
+                evictions, rejected);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        if (config == Bitmap.Config.RGB_565) {
+            return 2;
+        }
+        return 4;
+    }
+
+    private static int floorLog2(long value) {
+        return 63 - Long.numberOfLeadingZeros(Math.max(1, value));
+    }
+
+    private static int ceilLog2(long value) {
+        return value <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(value - 1);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.common;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @class CancellationStats
+ * @brief Statistik verworfener Anfragen (siehe {@link RequestToken}).
+ * <p>
+ * Erfasst je Schritt, wie viele Anfragen dort verworfen wurden, wie viel
+ * Rechenzeit sie bis dahin schon gekostet hatten (verschwendet) und wie viel
+ * sie voraussichtlich noch gekostet hätten (eingespart, geschätzt über die
+ * mittlere Dauer abgeschlossener Anfragen).
+ */
+public class CancellationStats {
+
+    private final Map<String, Long> droppedByStage = new LinkedHashMap<>();
+    private long completed;
+    private long completedNanos;
+    private long cancelled;
+    private long deadlineExceeded;
+    private long wastedNanos;
+    private long reclaimedNanos;
+
+    /**
+     * @param workNanos Rechenzeit der vollständig bearbeiteten Anfrage
+     */
+    public synchronized void recordCompleted(long workNanos) {
+        completed++;
+        completedNanos += workNanos;
+    }
+
+    /**
+     * @param e         Grund und Schritt des Verwerfens
+     * @param workNanos bis dahin angefallene Rechenzeit der Anfrage
+     */
+    public synchronized void recordDropped(RequestCancelledException e, long workNanos) {
+        Long count = droppedByStage.get(e.getStage());
+        droppedByStage.put(e.getStage(), count != null ? count + 1 : 1);
+        if (e.isDeadlineExceeded()) {
+            deadlineExceeded++;
+        } else {
+            cancelled++;
+        }
+        wastedNanos += workNanos;
+        if (completed > 0) {
+            reclaimedNanos += Math.max(0, completedNanos / completed - workNanos);
+        }
+    }
+
+    /** @return Anzahl verworfener Anfragen */
+    public synchronized long getDropped() {
+        return cancelled + deadlineExceeded;
+    }
+
+    /** @return Rechenzeit verworfener Anfragen bis zum Verwerfen in Millisekunden */
+    public synchronized double getWastedMs() {
+        return wastedNanos / 1e6;
+    }
+
+    /** @return geschätzte eingesparte Rechenzeit in Millisekunden */
+    public synchronized double getReclaimedMs() {
+        return reclaimedNanos / 1e6;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US,
+                "Verworfen %d (abgebrochen %d, Frist %d) je Schritt %s, abgeschlossen %d; "
+                        + "verschwendet %.1f ms, eingespart ca. %.1f ms",
+                cancelled + deadlineExceeded, cancelled, deadlineExceeded, droppedByStage,
+                completed, wastedNanos / 1e6, reclaimedNanos / 1e6);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @class Dequantizer
+ * @brief Tabellenbasierte Dequantisierung und Top-K-Auswahl für quantisierte Ausgaben.
+ * <p>
+ * Statt jede der (z. B. 1001) Klassen mit {@code (b & 0xFF) / 255f} umzurechnen,
+ * wird:
+ * - die Rangfolge direkt auf den rohen Bytes bestimmt (die Abbildung
+ *   {@code scale * (q - zeroPoint)} ist für {@code scale > 0} monoton)
+ * - nur für die ausgewählten Top-K Einträge ein Wert aus einer
+ *   vorberechneten Tabelle mit 256 Einträgen gelesen
+ * <p>
+ * Skalierung und Nullpunkt stammen aus der {@link TensorSpec} des Ausgabetensors.
+ * Fehlen Quantisierungsparameter, wird wie bisher {@code 1/255} ohne Nullpunkt verwendet.
+ */
+public final class Dequantizer {
+
+    /** Vorberechnete Werte, Index = Rohbyte {@code & 0xFF} */
+    private final float[] table = new float[256];
+
+    /** {@code true} für INT8, {@code false} für UINT8 */
+    private final boolean signed;
+
+    /**
+     * @param spec Beschreibung des quantisierten Ausgabetensors (UINT8 oder INT8)
+     */
+    public Dequantizer(TensorSpec spec) {
+        if (spec.getType() != ElementType.UINT8 && spec.getType() != ElementType.INT8) {
+            throw new IllegalArgumentException("Kein quantisierter Tensor: " + spec);
+        }
+        this.signed = spec.getType() == ElementType.INT8;
+
+        float scale = spec.isQuantized() ? spec.getScale() : 1f / 255f;
+        int zeroPoint = spec.isQuantized() ? spec.getZeroPoint() : 0;
+        for (int i = 0; i < 256; i++) {
+            int q = signed ? (byte) i : i;
+            table[i] = scale * (q - zeroPoint);
+        }
+    }
+
+    /**
+     * Dequantisiert einen einzelnen Rohwert.
+     *
+     * @param raw quantisierter Wert
+     * @return Wert im Gleitkommabereich des Modells
+     */
+    public float dequantize(byte raw) {
+        return table[raw & 0xFF];
+    }
+
+    /**
+     * Bestimmt die Indizes der K größten Rohwerte, absteigend sortiert.
+     * <p>
+     * Arbeitet direkt auf dem Ausgabe-Buffer (absolute Zugriffe ab Index 0),
+     * ohne Kopie oder Umrechnung der gesamten Ausgabe.
+     *
+     * @param raw     quantisierte Ausgabe
+     * @param count   Anzahl gültiger Elemente
+     * @param indices Ziel für die Indizes; seine Länge bestimmt K
+     * @return Anzahl gefüllter Einträge ({@code min(K, count)})
+     */
+    public int topK(ByteBuffer raw, int count, int[] indices) {
+        int k = Math.min(indices.length, count);
+        if (k <= 0) {
+            return 0;
+        }
+        int filled = 0;
+        for (int i = 0; i < count; i++) {
+            int value = key(raw.get(i));
+            if (filled == k && value <= key(raw.get(indices[k - 1]))) {
+                continue;
+            }
+            // Einfügeposition suchen und kleinere Einträge nach hinten schieben
+            int j = filled < k ? filled++ : k - 1;
+            while (j > 0 && value > key(raw.get(indices[j - 1]))) {
+                indices[j] = indices[j - 1];
+                j--;
+            }
+            indices[j] = i;
+        }
+        return filled;
+    }
+
+    /** Vergleichsschlüssel eines Rohbytes gemäß Vorzeichen des Datentyps */
+    private int key(byte b) {
+        return signed ? b : b & 0xFF;
+    }
+}
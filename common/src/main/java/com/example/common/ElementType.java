@@ -0,0 +1,60 @@
+package com.example.common;
+
+/**
+ * @class ElementType
+ * @brief Datentyp der Elemente eines Modell-Tensors.
+ * <p>
+ * Unabhängig von der jeweiligen Runtime, damit Vorverarbeitung und
+ * Auswertung ohne LiteRT-Klassen (z. B. in JVM-Tests) auskommen.
+ */
+public enum ElementType {
+
+    UINT8(1),
+    INT8(1),
+    FLOAT16(2),
+    FLOAT32(4);
+
+    /** Werte aus {@code tflite::TensorType} */
+    public static final byte TFLITE_FLOAT32 = 0;
+    public static final byte TFLITE_FLOAT16 = 1;
+    public static final byte TFLITE_UINT8 = 3;
+    public static final byte TFLITE_INT8 = 9;
+
+    /** Größe eines Elements in Bytes */
+    private final int byteSize;
+
+    ElementType(int byteSize) {
+        this.byteSize = byteSize;
+    }
+
+    /**
+     * Gibt die Größe eines Elements zurück.
+     *
+     * @return Anzahl Bytes pro Element
+     */
+    public int getByteSize() {
+        return byteSize;
+    }
+
+    /**
+     * Übersetzt den Tensortyp aus dem TFLite-Flatbuffer-Schema.
+     *
+     * @param tfliteType Wert aus {@code tflite::TensorType}
+     * @return passender {@link ElementType}
+     * @throws IllegalArgumentException für nicht unterstützte Typen
+     */
+    public static ElementType fromTfliteType(byte tfliteType) {
+        switch (tfliteType) {
+            case TFLITE_FLOAT32:
+                return FLOAT32;
+            case TFLITE_FLOAT16:
+                return FLOAT16;
+            case TFLITE_UINT8:
+                return UINT8;
+            case TFLITE_INT8:
+                return INT8;
+            default:
+                throw new IllegalArgumentException("Nicht unterstützter Tensortyp: " + tfliteType);
+        }
+    }
+}
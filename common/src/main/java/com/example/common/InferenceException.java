@@ -0,0 +1,19 @@
+package com.example.common;
+
+/**
+ * @class InferenceException
+ * @brief Fehler bei der Ausführung einer Inferenz-Engine ({@code InferenceEngine} der App).
+ * <p>
+ * Kapselt runtime-spezifische Fehler (z. B. {@code LiteRtException}),
+ * damit aufrufende Schichten nicht von der konkreten Runtime abhängen.
+ */
+public class InferenceException extends Exception {
+
+    public InferenceException(String message) {
+        super(message);
+    }
+
+    public InferenceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,355 @@
+package com.example.common;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @class InputWriter
+ * @brief Schreibt ARGB-Pixel in den Eingabetensor eines Modells.
+ * <p>
+ * Für jeden Eingabetyp gibt es eine spezialisierte Implementierung, die
+ * einmalig anhand der {@link TensorSpec} ausgewählt wird
+ * ({@link #forSpec(TensorSpec, Normalization)}). Die Schreibschleifen
+ * enthalten dadurch keine Typ-Verzweigungen pro Pixel und legen keine
+ * Objekte an; Normalisierung und Quantisierung stecken in Tabellen mit
+ * 256 Einträgen pro Kanalwert.
+ * <p>
+ * Unterstützte Eingaben (Layout [N, H, W, 3], RGB):
+ * - UINT8: Rohpixel
+ * - INT8: Rohpixel mit Nullpunkt-Verschiebung um 128 bzw. allgemein über Tabelle
+ * - FLOAT32: {@code (p - mean) / std}
+ * - FLOAT16: wie FLOAT32, als Half-Precision
+ */
+public abstract class InputWriter {
+
+    /**
+     * @class Normalization
+     * @brief Abbildung eines Kanalwerts p in [0, 255] auf {@code (p - mean) / std}.
+     */
+    public static final class Normalization {
+
+        /** Normalisierung auf [-1, 1] (MobileNet) */
+        public static final Normalization MINUS_ONE_TO_ONE = new Normalization(127.5f, 127.5f);
+
+        /** Normalisierung auf [0, 1] */
+        public static final Normalization ZERO_TO_ONE = new Normalization(0f, 255f);
+
+        final float mean;
+        final float std;
+
+        /**
+         * @param mean Mittelwert, der von jedem Kanalwert abgezogen wird
+         * @param std  Standardabweichung, durch die geteilt wird
+         */
+        public Normalization(float mean, float std) {
+            if (std == 0f) {
+                throw new IllegalArgumentException("std darf nicht 0 sein");
+            }
+            this.mean = mean;
+            this.std = std;
+        }
+
+        float apply(int value) {
+            return (value - mean) / std;
+        }
+    }
+
+    /** Datentyp, den dieser Writer erzeugt */
+    private final ElementType type;
+
+    protected InputWriter(ElementType type) {
+        this.type = type;
+    }
+
+    /**
+     * Wählt den passenden Writer für einen Eingabetensor.
+     * <p>
+     * Quantisierte Eingaben ohne {@code normalization} werden als Pixelraum
+     * interpretiert (Konvention quantisierter TFLite-Bildmodelle): UINT8 erhält
+     * die Rohpixel, INT8 die um 128 verschobenen Rohpixel. Mit
+     * {@code normalization} wird {@code q = round(((p - mean) / std) / scale) + zeroPoint}
+     * verwendet; ergibt das genau die Rohpixel bzw. die Verschiebung, wird
+     * trotzdem der direkte Pfad gewählt.
+     *
+     * @param spec          Beschreibung des Eingabetensors
+     * @param normalization Normalisierung der Kanalwerte, bei FLOAT-Eingaben Pflicht
+     * @return spezialisierter Writer
+     */
+    public static InputWriter forSpec(TensorSpec spec, Normalization normalization) {
+        if (spec.getShape().length != 4 || spec.getChannels() != 3) {
+            throw new IllegalArgumentException("Erwartet Eingabe [N, H, W, 3], erhalten: " + spec);
+        }
+
+        switch (spec.getType()) {
+            case FLOAT32:
+                return new Float32Writer(requireNormalization(normalization, spec));
+            case FLOAT16:
+                return new Float16Writer(requireNormalization(normalization, spec));
+            case UINT8:
+            case INT8:
+                if (normalization == null || !spec.isQuantized()) {
+                    return spec.getType() == ElementType.UINT8
+                            ? new Uint8Writer()
+                            : new Int8ShiftWriter();
+                }
+                return forQuantizationTable(spec, quantizationTable(spec, normalization));
+            default:
+                throw new IllegalArgumentException("Nicht unterstützter Eingabetyp: " + spec);
+        }
+    }
+
+    private static Normalization requireNormalization(Normalization normalization, TensorSpec spec) {
+        if (normalization == null) {
+            throw new IllegalArgumentException("Normalisierung erforderlich für " + spec);
+        }
+        return normalization;
+    }
+
+    /** Berechnet den quantisierten Wert für jeden möglichen Kanalwert */
+    private static byte[] quantizationTable(TensorSpec spec, Normalization normalization) {
+        int min = spec.getType() == ElementType.UINT8 ? 0 : -128;
+        byte[] table = new byte[256];
+        for (int p = 0; p < 256; p++) {
+            int q = Math.round(normalization.apply(p) / spec.getScale()) + spec.getZeroPoint();
+            table[p] = (byte) Math.max(min, Math.min(min + 255, q));
+        }
+        return table;
+    }
+
+    /** Erkennt Tabellen, die dem direkten Pfad entsprechen */
+    private static InputWriter forQuantizationTable(TensorSpec spec, byte[] table) {
+        boolean identity = true;
+        boolean shift = true;
+        for (int p = 0; p < 256; p++) {
+            identity &= table[p] == (byte) p;
+            shift &= table[p] == (byte) (p - 128);
+        }
+        if (identity) {
+            return new Uint8Writer(spec.getType());
+        }
+        if (shift) {
+            return new Int8ShiftWriter(spec.getType());
+        }
+        return new QuantizedTableWriter(spec.getType(), table);
+    }
+
+    /**
+     * Schreibt Pixel in den Eingabebuffer.
+     *
+     * @param pixels        ARGB-Pixel (z. B. aus {@code Bitmap.getPixels})
+     * @param pixelOffset   erster zu schreibender Pixel
+     * @param pixelCount    Anzahl Pixel
+     * @param dst           Eingabebuffer in nativer Byte-Reihenfolge
+     * @param elementOffset Ziel-Elementindex (nicht Byte-Index) des ersten Kanals
+     */
+    public abstract void write(int[] pixels, int pixelOffset, int pixelCount,
+                               ByteBuffer dst, int elementOffset);
+
+    /** @return erzeugter Datentyp */
+    public ElementType getType() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+    /** Rohpixel als Uint8 */
+    static final class Uint8Writer extends InputWriter {
+
+        Uint8Writer() {
+            this(ElementType.UINT8);
+        }
+
+        Uint8Writer(ElementType type) {
+            super(type);
+        }
+
+        @Override
+        public void write(int[] pixels, int pixelOffset, int pixelCount, ByteBuffer dst, int elementOffset) {
+            int end = pixelOffset + pixelCount;
+            int out = elementOffset;
+            for (int i = pixelOffset; i < end; i++) {
+                int pixel = pixels[i];
+                dst.put(out, (byte) (pixel >> 16)); // R
+                dst.put(out + 1, (byte) (pixel >> 8)); // G
+                dst.put(out + 2, (byte) pixel);        // B
+                out += 3;
+            }
+        }
+    }
+
+    /** Rohpixel mit Nullpunkt-Verschiebung um 128 ({@code p - 128 == p ^ 0x80} als Byte) */
+    static final class Int8ShiftWriter extends InputWriter {
+
+        Int8ShiftWriter() {
+            this(ElementType.INT8);
+        }
+
+        Int8ShiftWriter(ElementType type) {
+            super(type);
+        }
+
+        @Override
+        public void write(int[] pixels, int pixelOffset, int pixelCount, ByteBuffer dst, int elementOffset) {
+            int end = pixelOffset + pixelCount;
+            int out = elementOffset;
+            for (int i = pixelOffset; i < end; i++) {
+                int pixel = pixels[i] ^ 0x808080;
+                dst.put(out, (byte) (pixel >> 16));
+                dst.put(out + 1, (byte) (pixel >> 8));
+                dst.put(out + 2, (byte) pixel);
+                out += 3;
+            }
+        }
+    }
+
+    /** Beliebige Quantisierung über eine Tabelle */
+    static final class QuantizedTableWriter extends InputWriter {
+
+        private final byte[] table;
+
+        QuantizedTableWriter(ElementType type, byte[] table) {
+            super(type);
+            this.table = table;
+        }
+
+        @Override
+        public void write(int[] pixels, int pixelOffset, int pixelCount, ByteBuffer dst, int elementOffset) {
+            byte[] t = table;
+            int end = pixelOffset + pixelCount;
+            int out = elementOffset;
+            for (int i = pixelOffset; i < end; i++) {
+                int pixel = pixels[i];
+                dst.put(out, t[(pixel >> 16) & 0xFF]);
+                dst.put(out + 1, t[(pixel >> 8) & 0xFF]);
+                dst.put(out + 2, t[pixel & 0xFF]);
+                out += 3;
+            }
+        }
+    }
+
+    /** Float32 mit Normalisierung über eine Tabelle */
+    static final class Float32Writer extends InputWriter {
+
+        private final float[] table = new float[256];
+
+        Float32Writer(Normalization normalization) {
+            super(ElementType.FLOAT32);
+            for (int p = 0; p < 256; p++) {
+                table[p] = normalization.apply(p);
+            }
+        }
+
+        @Override
+        public void write(int[] pixels, int pixelOffset, int pixelCount, ByteBuffer dst, int elementOffset) {
+            float[] t = table;
+            int end = pixelOffset + pixelCount;
+            int out = elementOffset * 4;
+            for (int i = pixelOffset; i < end; i++) {
+                int pixel = pixels[i];
+                dst.putFloat(out, t[(pixel >> 16) & 0xFF]);
+                dst.putFloat(out + 4, t[(pixel >> 8) & 0xFF]);
+                dst.putFloat(out + 8, t[pixel & 0xFF]);
+                out += 12;
+            }
+        }
+    }
+
+    /** Float16 (IEEE 754 half) mit Normalisierung über eine Tabelle */
+    static final class Float16Writer extends InputWriter {
+
+        private final short[] table = new short[256];
+
+        Float16Writer(Normalization normalization) {
+            super(ElementType.FLOAT16);
+            for (int p = 0; p < 256; p++) {
+                table[p] = toHalf(normalization.apply(p));
+            }
+        }
+
+        @Override
+        public void write(int[] pixels, int pixelOffset, int pixelCount, ByteBuffer dst, int elementOffset) {
+            short[] t = table;
+            int end = pixelOffset + pixelCount;
+            int out = elementOffset * 2;
+            for (int i = pixelOffset; i < end; i++) {
+                int pixel = pixels[i];
+                dst.putShort(out, t[(pixel >> 16) & 0xFF]);
+                dst.putShort(out + 2, t[(pixel >> 8) & 0xFF]);
+                dst.putShort(out + 4, t[pixel & 0xFF]);
+                out += 6;
+            }
+        }
+    }
+
+    /**
+     * Wandelt einen Float in IEEE 754 Half-Precision um (Round-to-Nearest-Even).
+     *
+     * @param value Float-Wert
+     * @return Bitmuster des Half-Werts
+     */
+    public static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent == 0xFF) { // Inf / NaN
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        int halfExponent = exponent - 127 + 15;
+        if (halfExponent >= 0x1F) { // Überlauf → Inf
+            return (short) (sign | 0x7C00);
+        }
+        if (halfExponent <= 0) { // subnormal oder 0
+            if (halfExponent < -10) {
+                return (short) sign;
+            }
+            mantissa |= 0x800000;
+            int shift = 14 - halfExponent;
+            int half = mantissa >> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+        int half = (halfExponent << 10) | (mantissa >> 13);
+        int remainder = mantissa & 0x1FFF;
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+            half++; // kann korrekt in den Exponenten überlaufen
+        }
+        return (short) (sign | half);
+    }
+
+    /**
+     * Wandelt IEEE 754 Half-Precision in einen Float um.
+     *
+     * @param half Bitmuster des Half-Werts
+     * @return Float-Wert
+     */
+    public static float fromHalf(short half) {
+        int h = half & 0xFFFF;
+        int sign = (h & 0x8000) << 16;
+        int exponent = (h >>> 10) & 0x1F;
+        int mantissa = h & 0x3FF;
+
+        if (exponent == 0) {
+            if (mantissa == 0) {
+                return Float.intBitsToFloat(sign);
+            }
+            // subnormal normalisieren
+            exponent = 1;
+            while ((mantissa & 0x400) == 0) {
+                mantissa <<= 1;
+                exponent--;
+            }
+            mantissa &= 0x3FF;
+        } else if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.common;
+
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import com.google.ai.edge.litert.Accelerator;
+import com.google.ai.edge.litert.CompiledModel;
+import com.google.ai.edge.litert.Environment;
+import com.google.ai.edge.litert.LiteRtException;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * @class LiteRtEnvironment
+ * @brief Prozessweit geteiltes LiteRT-{@link Environment} für alle
+ * kompilierten Modelle.
+ * <p>
+ * Ohne übergebenes Environment legt jedes {@code CompiledModel.create} eine
+ * eigene Runtime-Umgebung an und initialisiert Accelerator-Registrierung und
+ * GPU-Delegate erneut, auch für die GPU-Prüfung, deren Modell sofort wieder
+ * geschlossen wird. Hier wird das Environment einmalig beim ersten Modell
+ * erzeugt und an alle weiteren Modelle (jedes Modell, jeder Accelerator)
+ * weitergereicht; es bleibt bis zum Prozessende bestehen. Das Ergebnis der
+ * GPU-Prüfung wird je Modell gemerkt.
+ * <p>
+ * Für den Vorher-Nachher-Vergleich wird die Dauer jeder Kompilierung (erste
+ * und folgende je Modell und Accelerator) sowie die Erstellung des
+ * Environments festgehalten ({@link #getStats()}); {@link #measureStartup}
+ * vergleicht die Kompilierung mit eigenem und mit geteiltem Environment direkt.
+ */
+public final class LiteRtEnvironment {
+
+    private static final String TAG = "LiteRtEnvironment";
+
+    private static LiteRtEnvironment shared;
+
+    private Environment environment;
+    private long environmentNanos;
+
+    /** Je "Modell/Accelerator": {Anzahl, Dauer der ersten, Summe aller} Kompilierungen */
+    private final Map<String, long[]> compileStats = new LinkedHashMap<>();
+
+    /** Ergebnis der Prüfung je "Modell/Accelerator" */
+    private final Map<String, Boolean> supported = new HashMap<>();
+
+    private final Tracer tracer = Tracer.getShared();
+
+    private LiteRtEnvironment() {
+    }
+
+    /** @return prozessweit geteilte Instanz */
+    public static synchronized LiteRtEnvironment getShared() {
+        if (shared == null) {
+            shared = new LiteRtEnvironment();
+        }
+        return shared;
+    }
+
+    /**
+     * Liefert das geteilte Environment und erzeugt es beim ersten Aufruf.
+     *
+     * @return Environment für {@code CompiledModel.create}
+     * @throws LiteRtException wenn die Runtime nicht initialisiert werden kann
+     */
+    public synchronized Environment getEnvironment() throws LiteRtException {
+        if (environment == null) {
+            long start = System.nanoTime();
+            try (Tracer.Section section = tracer.section("litert.environment")) {
+                environment = Environment.create();
+            }
+            environmentNanos = System.nanoTime() - start;
+            Log.i(TAG, String.format(Locale.US, "Environment erstellt in %.1f ms", environmentNanos / 1e6));
+        }
+        return environment;
+    }
+
+    /**
+     * Kompiliert ein Modell aus den Assets im geteilten Environment.
+     *
+     * @param assets      AssetManager der App
+     * @param modelFile   Modell-Datei im Assets-Ordner
+     * @param accelerator Gewünschter Accelerator
+     * @return kompiliertes Modell, vom Aufrufer zu schließen
+     * @throws LiteRtException wenn das Modell nicht kompiliert werden kann
+     */
+    public CompiledModel compile(AssetManager assets, String modelFile, Accelerator accelerator)
+            throws LiteRtException {
+        Environment env = getEnvironment();
+        long start = System.nanoTime();
+        CompiledModel model;
+        try (Tracer.Section section = tracer.section("litert.compile")) {
+            model = CompiledModel.create(assets, modelFile, new CompiledModel.Options(accelerator), env);
+        }
+        record(modelFile + "/" + accelerator, System.nanoTime() - start);
+        return model;
+    }
+
+    /**
+     * Kompiliert ein Modell aus dem Dateisystem im geteilten Environment.
+     *
+     * @param modelPath   Modell-Datei
+     * @param accelerator Gewünschter Accelerator
+     * @return kompiliertes Modell, vom Aufrufer zu schließen
+     * @throws LiteRtException wenn das Modell nicht kompiliert werden kann
+     */
+    public CompiledModel compile(File modelPath, Accelerator accelerator) throws LiteRtException {
+        Environment env = getEnvironment();
+        long start = System.nanoTime();
+        CompiledModel model;
+        try (Tracer.Section section = tracer.section("litert.compile")) {
+            model = CompiledModel.create(modelPath.getAbsolutePath(), new CompiledModel.Options(accelerator), env);
+        }
+        record(modelPath.getName() + "/" + accelerator, System.nanoTime() - start);
+        return model;
+    }
+
+    /**
+     * Prüft einmalig je Modell, ob es sich für den Accelerator kompilieren
+     * lässt; spätere Aufrufe liefern das gemerkte Ergebnis.
+     *
+     * @param assets      AssetManager der App
+     * @param modelFile   Modell-Datei im Assets-Ordner
+     * @param accelerator zu prüfender Accelerator, z. B. GPU
+     * @return true wenn das Modell kompiliert werden konnte
+     */
+    public boolean isSupported(AssetManager assets, String modelFile, Accelerator accelerator) {
+        String key = modelFile + "/" + accelerator;
+        synchronized (this) {
+            Boolean known = supported.get(key);
+            if (known != null) {
+                return known;
+            }
+        }
+        boolean result;
+        try {
+            compile(assets, modelFile, accelerator).close();
+            result = true;
+        } catch (Exception e) {
+            result = false;
+        }
+        synchronized (this) {
+            supported.put(key, result);
+        }
+        return result;
+    }
+
+    private synchronized void record(String key, long nanos) {
+        long[] stats = compileStats.get(key);
+        if (stats == null) {
+            stats = new long[]{0, nanos, 0};
+            compileStats.put(key, stats);
+        }
+        stats[0]++;
+        stats[2] += nanos;
+        Log.d(TAG, String.format(Locale.US, "%s kompiliert in %.1f ms (%d. Mal)", key, nanos / 1e6, stats[0]));
+    }
+
+    /**
+     * Vergleicht die Kompilierzeit eines Modells mit eigenem Environment je
+     * Modell (Verhalten ohne diese Klasse) und mit dem geteilten Environment.
+     * Dauert mehrere Kompilierungen lang, daher nicht im UI-Thread aufrufen.
+     *
+     * @param assets      AssetManager der App
+     * @param modelFile   Modell-Datei im Assets-Ordner
+     * @param accelerator Accelerator
+     * @param repetitions Kompilierungen je Variante
+     * @return Bericht für Logs
+     * @throws LiteRtException wenn das Modell nicht kompiliert werden kann
+     */
+    public String measureStartup(AssetManager assets, String modelFile, Accelerator accelerator, int repetitions)
+            throws LiteRtException {
+        long[] own = new long[repetitions];
+        long[] sharedEnv = new long[repetitions];
+        Environment env = getEnvironment();
+        for (int i = 0; i < repetitions; i++) {
+            long start = System.nanoTime();
+            CompiledModel.create(assets, modelFile, new CompiledModel.Options(accelerator), null).close();
+            own[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            CompiledModel.create(assets, modelFile, new CompiledModel.Options(accelerator), env).close();
+            sharedEnv[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(own);
+        Arrays.sort(sharedEnv);
+        return String.format(Locale.US,
+                "Kompilierung %s/%s (Median aus %d): eigenes Environment %.1f ms, geteiltes %.1f ms",
+                modelFile, accelerator, repetitions, own[repetitions / 2] / 1e6, sharedEnv[repetitions / 2] / 1e6);
+    }
+
+    /** @return Erstellung des Environments und Kompilierzeiten je Modell für Logs */
+    public synchronized String getStats() {
+        StringBuilder builder = new StringBuilder(environment == null
+                ? "LiteRT-Environment: noch nicht erstellt"
+                : String.format(Locale.US, "LiteRT-Environment: erstellt in %.1f ms", environmentNanos / 1e6));
+        for (Map.Entry<String, long[]> entry : compileStats.entrySet()) {
+            long[] stats = entry.getValue();
+            builder.append(String.format(Locale.US, "\n  %s: %d×, erste %.1f ms", entry.getKey(), stats[0], stats[1] / 1e6));
+            if (stats[0] > 1) {
+                builder.append(String.format(Locale.US, ", danach Ø %.1f ms",
+                        (stats[2] - stats[1]) / 1e6 / (stats[0] - 1)));
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @class MemoryFootprint
+ * @brief Aufschlüsselung des geschätzten Speicherbedarfs nach Komponenten.
+ * <p>
+ * Jede Komponente wird in drei Arten unterteilt:
+ * - Java-Heap: Arrays und Strings, vom GC verwaltet,
+ * - nativ (dirty): Direct-Buffer, Bitmaps und Speicher der Runtime; belegt
+ *   RAM, bis er freigegeben wird,
+ * - gemappt (clean): dateibasierte Seiten, z. B. die per mmap geladene
+ *   Modelldatei; das System kann sie jederzeit verwerfen und neu einlesen.
+ * <p>
+ * Die Werte werden aus Puffergrößen berechnet und sind Schätzungen; die
+ * tatsächliche Belegung des Prozesses misst {@link MemorySampler}. Beide
+ * nebeneinander zeigen, welcher Anteil des Prozessspeichers erklärt ist.
+ */
+public final class MemoryFootprint {
+
+    /**
+     * Eine Komponente der Aufschlüsselung.
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final long heapBytes;
+        private final long nativeBytes;
+        private final long mappedBytes;
+
+        Entry(String name, long heapBytes, long nativeBytes, long mappedBytes) {
+            this.name = name;
+            this.heapBytes = heapBytes;
+            this.nativeBytes = nativeBytes;
+            this.mappedBytes = mappedBytes;
+        }
+
+        /** @return Name der Komponente, z. B. {@code "Labels"} */
+        public String getName() {
+            return name;
+        }
+
+        /** @return Bytes im Java-Heap */
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+
+        /** @return nativ belegte Bytes (dirty) */
+        public long getNativeBytes() {
+            return nativeBytes;
+        }
+
+        /** @return dateibasiert gemappte Bytes (clean) */
+        public long getMappedBytes() {
+            return mappedBytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-28s Heap %7.2f MB, nativ %7.2f MB, gemappt %7.2f MB",
+                    name, heapBytes / 1e6, nativeBytes / 1e6, mappedBytes / 1e6);
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Fügt eine Komponente hinzu. Komponenten ohne Speicherbedarf werden
+     * übersprungen.
+     *
+     * @param name        Name der Komponente
+     * @param heapBytes   Bytes im Java-Heap
+     * @param nativeBytes nativ belegte Bytes (dirty)
+     * @param mappedBytes dateibasiert gemappte Bytes (clean)
+     * @return diese Aufschlüsselung
+     */
+    public MemoryFootprint add(String name, long heapBytes, long nativeBytes, long mappedBytes) {
+        if (heapBytes != 0 || nativeBytes != 0 || mappedBytes != 0) {
+            entries.add(new Entry(name, heapBytes, nativeBytes, mappedBytes));
+        }
+        return this;
+    }
+
+    /**
+     * Übernimmt alle Komponenten einer anderen Aufschlüsselung.
+     *
+     * @param other z. B. die eines zweiten Klassifikators
+     * @return diese Aufschlüsselung
+     */
+    public MemoryFootprint addAll(MemoryFootprint other) {
+        entries.addAll(other.entries);
+        return this;
+    }
+
+    /** @return Komponenten in der Reihenfolge des Hinzufügens */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /** @return Summe im Java-Heap */
+    public long getHeapBytes() {
+        long sum = 0;
+        for (Entry entry : entries) {
+            sum += entry.heapBytes;
+        }
+        return sum;
+    }
+
+    /** @return Summe nativ belegter Bytes (dirty) */
+    public long getNativeBytes() {
+        long sum = 0;
+        for (Entry entry : entries) {
+            sum += entry.nativeBytes;
+        }
+        return sum;
+    }
+
+    /** @return Summe gemappter Bytes (clean) */
+    public long getMappedBytes() {
+        long sum = 0;
+        for (Entry entry : entries) {
+            sum += entry.mappedBytes;
+        }
+        return sum;
+    }
+
+    /** @return Summe aller Arten */
+    public long getTotalBytes() {
+        return getHeapBytes() + getNativeBytes() + getMappedBytes();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format(Locale.US,
+                "Speicher (geschätzt): %.2f MB gesamt, Heap %.2f MB, nativ %.2f MB, gemappt %.2f MB",
+                getTotalBytes() / 1e6, getHeapBytes() / 1e6, getNativeBytes() / 1e6, getMappedBytes() / 1e6));
+        for (Entry entry : entries) {
+            builder.append("\n  ").append(entry);
+        }
+        return builder.toString();
+    }
+}
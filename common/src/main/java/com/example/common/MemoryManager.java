@@ -0,0 +1,233 @@
+package com.example.common;
+
+import android.content.ComponentCallbacks2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongConsumer;
+
+/**
+ * @class MemoryManager
+ * @brief Erfasst den Speicherbedarf der Klassifikator-Komponenten und gibt sie
+ * bei Speicherdruck gestaffelt frei.
+ * <p>
+ * Jede Komponente (Bitmap-Pool, Ein-/Ausgabebuffer, Modelle) meldet sich mit
+ * einer Priorität an:
+ * - {@link #PRIORITY_CACHE}: Caches und Pools, ohne Kosten neu befüllbar
+ * - {@link #PRIORITY_BUFFERS}: Ein-/Ausgabebuffer und Zwischenspeicher
+ * - {@link #PRIORITY_SECONDARY}: zusätzliche Modellinstanzen (z. B. schnelles
+ *   Kaskadenmodell, zweiter Accelerator)
+ * - {@link #PRIORITY_MODEL}: das Hauptmodell
+ * <p>
+ * {@link #onTrimMemory(int)} bildet die Stufe von
+ * {@link ComponentCallbacks2#onTrimMemory} auf eine höchste Priorität ab und
+ * gibt alle Komponenten bis zu dieser Priorität frei, günstigste zuerst.
+ * Freigegebene Komponenten werden von ihrem Besitzer beim nächsten Gebrauch
+ * transparent neu aufgebaut.
+ * <p>
+ * Die Freigabe eines Modells oder Buffers wartet, bis eine laufende Inferenz
+ * den Classifier freigibt. Aus dem UI-Thread daher
+ * {@link #onTrimMemoryAsync(int, LongConsumer)} verwenden.
+ */
+public class MemoryManager {
+
+    public static final int PRIORITY_CACHE = 0;
+    public static final int PRIORITY_BUFFERS = 1;
+    public static final int PRIORITY_SECONDARY = 2;
+    public static final int PRIORITY_MODEL = 3;
+
+    /** Keine Freigabe für die Stufe */
+    public static final int PRIORITY_NONE = -1;
+
+    /**
+     * Freigebbare Komponente mit Angaben zum Speicherbedarf.
+     */
+    public interface Component {
+
+        /** @return lesbarer Name für Logs */
+        String getName();
+
+        /** @return eine der {@code PRIORITY_*}-Konstanten */
+        int getPriority();
+
+        /** @return aktuell belegter nativer Speicher (Direct-Buffer, Bitmaps, Modell) in Bytes */
+        long getNativeBytes();
+
+        /** @return aktuell belegter Java-Heap in Bytes */
+        long getHeapBytes();
+
+        /**
+         * Gibt den Speicher frei. Die Komponente muss danach weiter benutzbar
+         * bleiben und baut sich beim nächsten Gebrauch selbst neu auf.
+         */
+        void release();
+    }
+
+    private static MemoryManager shared;
+
+    private final List<Component> components = new CopyOnWriteArrayList<>();
+
+    /** Führt Freigaben aus dem UI-Thread nacheinander aus */
+    private final ExecutorService releaser = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MemoryManager");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private long releases;
+    private long releasedBytes;
+    private int lastLevel = -1;
+
+    /** @return prozessweit geteilter Manager */
+    public static synchronized MemoryManager getShared() {
+        if (shared == null) {
+            shared = new MemoryManager();
+        }
+        return shared;
+    }
+
+    /** @param component anzumeldende Komponente (doppelte Anmeldung wird ignoriert) */
+    public void register(Component component) {
+        if (!components.contains(component)) {
+            components.add(component);
+        }
+    }
+
+    /** @param component abzumeldende Komponente */
+    public void unregister(Component component) {
+        components.remove(component);
+    }
+
+    /**
+     * Reagiert auf eine Speicherdruck-Stufe des Systems.
+     *
+     * @param level Stufe aus {@link ComponentCallbacks2#onTrimMemory}
+     * @return freigegebene Bytes (nativ und Heap)
+     */
+    public long onTrimMemory(int level) {
+        synchronized (this) {
+            lastLevel = level;
+        }
+        return releaseUpTo(maxPriorityFor(level));
+    }
+
+    /**
+     * Wie {@link #onTrimMemory(int)}, aber in einem Hintergrundthread, damit
+     * der Aufrufer (z. B. {@code Activity.onTrimMemory}) nicht auf eine
+     * laufende Inferenz wartet.
+     *
+     * @param level Stufe aus {@link ComponentCallbacks2#onTrimMemory}
+     * @param done  erhält die freigegebenen Bytes (im Hintergrundthread) oder {@code null}
+     */
+    public void onTrimMemoryAsync(int level, LongConsumer done) {
+        releaser.execute(() -> {
+            long freed = onTrimMemory(level);
+            if (done != null) {
+                done.accept(freed);
+            }
+        });
+    }
+
+    /**
+     * Bildet eine Trim-Stufe auf die höchste freizugebende Priorität ab.
+     * <p>
+     * Im Vordergrund ({@code RUNNING_*}) bleibt das Hauptmodell immer erhalten;
+     * erst wenn die App im Hintergrund auf der LRU-Liste weit vorne steht,
+     * wird auch das Modell freigegeben.
+     *
+     * @param level Stufe aus {@link ComponentCallbacks2#onTrimMemory}
+     * @return höchste Priorität oder {@link #PRIORITY_NONE}
+     */
+    static int maxPriorityFor(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            return PRIORITY_MODEL;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return PRIORITY_SECONDARY;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return PRIORITY_BUFFERS;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return PRIORITY_SECONDARY;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return PRIORITY_BUFFERS;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return PRIORITY_CACHE;
+        }
+        return PRIORITY_NONE;
+    }
+
+    /**
+     * Gibt alle Komponenten bis einschließlich {@code maxPriority} frei,
+     * in aufsteigender Priorität.
+     *
+     * @param maxPriority höchste freizugebende Priorität
+     * @return freigegebene Bytes (nativ und Heap)
+     */
+    public long releaseUpTo(int maxPriority) {
+        List<Component> ordered = new ArrayList<>(components);
+        Collections.sort(ordered, (a, b) -> Integer.compare(a.getPriority(), b.getPriority()));
+
+        long freed = 0;
+        int count = 0;
+        for (Component component : ordered) {
+            if (component.getPriority() > maxPriority) {
+                break;
+            }
+            long before = component.getNativeBytes() + component.getHeapBytes();
+            component.release();
+            long after = component.getNativeBytes() + component.getHeapBytes();
+            freed += Math.max(0, before - after);
+            count++;
+        }
+        synchronized (this) {
+            releases += count;
+            releasedBytes += freed;
+        }
+        return freed;
+    }
+
+    /** @return nativer Speicher aller angemeldeten Komponenten in Bytes */
+    public long getNativeBytes() {
+        long sum = 0;
+        for (Component component : components) {
+            sum += component.getNativeBytes();
+        }
+        return sum;
+    }
+
+    /** @return Java-Heap aller angemeldeten Komponenten in Bytes */
+    public long getHeapBytes() {
+        long sum = 0;
+        for (Component component : components) {
+            sum += component.getHeapBytes();
+        }
+        return sum;
+    }
+
+    /** @return Aufstellung je Komponente und Freigabestatistik für Logs */
+    public String getStats() {
+        StringBuilder builder = new StringBuilder();
+        synchronized (this) {
+            builder.append(String.format(Locale.US,
+                    "MemoryManager: nativ %.1f MB, Heap %.1f MB, letzte Stufe %d, "
+                            + "Freigaben %d (%.1f MB)",
+                    getNativeBytes() / 1e6, getHeapBytes() / 1e6, lastLevel,
+                    releases, releasedBytes / 1e6));
+        }
+        for (Component component : components) {
+            builder.append(String.format(Locale.US, "\n  [%d] %s: nativ %.1f MB, Heap %.1f MB",
+                    component.getPriority(), component.getName(),
+                    component.getNativeBytes() / 1e6, component.getHeapBytes() / 1e6));
+        }
+        return builder.toString();
+    }
+}
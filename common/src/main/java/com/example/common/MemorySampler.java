@@ -0,0 +1,338 @@
+package com.example.common;
+
+import android.os.Debug;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * @class MemorySampler
+ * @brief Misst den Speicher des Prozesses periodisch und stellt ihn der
+ * geschätzten {@link MemoryFootprint} gegenüber.
+ * <p>
+ * Jeder Messpunkt ({@link Sample}) enthält
+ * - die Schätzung (Heap, nativ, gemappt) der übergebenen Quelle,
+ * - die Messung aus {@link Debug.MemoryInfo}: PSS, private dirty, clean
+ *   (private und shared clean, z. B. gemappte Modelldateien) sowie die
+ *   Kategorien Java-Heap, Native-Heap, Grafik und Code,
+ * - die per malloc belegten Bytes ({@link Debug#getNativeHeapAllocatedSize()}).
+ * <p>
+ * Messpunkte liegen in einem Ringpuffer, werden als Zähler an den
+ * {@link Tracer} gemeldet (erscheinen damit im Chrome-Trace neben den
+ * Latenzen) und lassen sich per {@link #exportCsv(Writer)} exportieren.
+ * <p>
+ * Leckerkennung: {@link #markState(String)} wird nach jedem Zustandswechsel
+ * aufgerufen, z. B. nach dem Wechsel des Accelerators. Kehrt die App später
+ * in einen bereits gemessenen Zustand zurück, sollte der private dirty
+ * Speicher wieder etwa gleich groß sein. Wächst er um mehr als
+ * {@link #LEAK_THRESHOLD_BYTES} stärker als die Schätzung, wird eine Warnung
+ * geloggt. Gemessen wird auf einem eigenen Thread, da
+ * {@link Debug#getMemoryInfo} einige Millisekunden dauert.
+ */
+public final class MemorySampler implements AutoCloseable {
+
+    private static final String TAG = "MemorySampler";
+
+    /** Zuwachs des privaten dirty Speichers, ab dem ein Leck gemeldet wird */
+    public static final long LEAK_THRESHOLD_BYTES = 8L << 20;
+
+    /** Wartezeit nach einem Zustandswechsel, bis alte Ressourcen freigegeben sind */
+    private static final long STATE_DELAY_MS = 1000;
+
+    /**
+     * Ein Messpunkt; alle Größen in Bytes.
+     */
+    public static final class Sample {
+
+        private final long timeMillis;
+        private final String label;
+        private final long estimatedHeap;
+        private final long estimatedNative;
+        private final long estimatedMapped;
+        private final long pss;
+        private final long privateDirty;
+        private final long clean;
+        private final long javaHeap;
+        private final long nativeHeap;
+        private final long graphics;
+        private final long code;
+        private final long nativeAllocated;
+
+        Sample(long timeMillis, String label, MemoryFootprint estimate, Debug.MemoryInfo info,
+               long nativeAllocated) {
+            this.timeMillis = timeMillis;
+            this.label = label;
+            this.estimatedHeap = estimate != null ? estimate.getHeapBytes() : 0;
+            this.estimatedNative = estimate != null ? estimate.getNativeBytes() : 0;
+            this.estimatedMapped = estimate != null ? estimate.getMappedBytes() : 0;
+            this.pss = 1024L * info.getTotalPss();
+            this.privateDirty = 1024L * info.getTotalPrivateDirty();
+            this.clean = 1024L * (info.getTotalPrivateClean() + info.getTotalSharedClean());
+            this.javaHeap = memoryStat(info, "summary.java-heap");
+            this.nativeHeap = memoryStat(info, "summary.native-heap");
+            this.graphics = memoryStat(info, "summary.graphics");
+            this.code = memoryStat(info, "summary.code");
+            this.nativeAllocated = nativeAllocated;
+        }
+
+        /** @return Zeitpunkt ({@link System#currentTimeMillis()}) */
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        /** @return Anlass, z. B. ein Zustand aus {@link #markState}, oder {@code null} */
+        public String getLabel() {
+            return label;
+        }
+
+        /** @return geschätzte Bytes im Java-Heap */
+        public long getEstimatedHeap() {
+            return estimatedHeap;
+        }
+
+        /** @return geschätzte native Bytes (dirty) */
+        public long getEstimatedNative() {
+            return estimatedNative;
+        }
+
+        /** @return geschätzte gemappte Bytes (clean) */
+        public long getEstimatedMapped() {
+            return estimatedMapped;
+        }
+
+        /** @return gemessene Proportional Set Size des Prozesses */
+        public long getPss() {
+            return pss;
+        }
+
+        /** @return gemessener privater dirty Speicher des Prozesses */
+        public long getPrivateDirty() {
+            return privateDirty;
+        }
+
+        /** @return gemessener clean Speicher (privat und geteilt) */
+        public long getClean() {
+            return clean;
+        }
+
+        /** @return Kategorie Java-Heap laut {@link Debug.MemoryInfo#getMemoryStat} */
+        public long getJavaHeap() {
+            return javaHeap;
+        }
+
+        /** @return Kategorie Native-Heap laut {@link Debug.MemoryInfo#getMemoryStat} */
+        public long getNativeHeap() {
+            return nativeHeap;
+        }
+
+        /** @return Kategorie Grafik (GPU-Buffer, Texturen) */
+        public long getGraphics() {
+            return graphics;
+        }
+
+        /** @return Kategorie Code (Bibliotheken, dex) */
+        public long getCode() {
+            return code;
+        }
+
+        /** @return per malloc belegte Bytes */
+        public long getNativeAllocated() {
+            return nativeAllocated;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%sPSS %.1f MB (dirty %.1f, clean %.1f; Java %.1f, nativ %.1f, Grafik %.1f, Code %.1f), "
+                            + "geschätzt: Heap %.1f, nativ %.1f, gemappt %.1f MB",
+                    label != null ? "[" + label + "] " : "",
+                    pss / 1e6, privateDirty / 1e6, clean / 1e6, javaHeap / 1e6, nativeHeap / 1e6,
+                    graphics / 1e6, code / 1e6,
+                    estimatedHeap / 1e6, estimatedNative / 1e6, estimatedMapped / 1e6);
+        }
+
+        /** Kategorie aus {@link Debug.MemoryInfo#getMemoryStat} in Bytes, 0 wenn unbekannt */
+        private static long memoryStat(Debug.MemoryInfo info, String name) {
+            String value = info.getMemoryStat(name);
+            if (value == null) {
+                return 0;
+            }
+            try {
+                return 1024L * Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+
+    private final Supplier<MemoryFootprint> source;
+    private final Tracer tracer;
+    private final int capacity;
+    private final Sample[] samples;
+    /** Anzahl bisher aufgezeichneter Messpunkte (Schreibposition = count % capacity) */
+    private long count;
+
+    /** Erster Messpunkt je Zustand aus {@link #markState} */
+    private final Map<String, Sample> stateBaselines = new HashMap<>();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MemorySampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> periodic;
+
+    /**
+     * @param source   liefert die aktuelle Schätzung; darf {@code null} liefern
+     * @param tracer   nimmt die Messwerte als Zähler auf oder {@code null}
+     * @param capacity Anzahl Messpunkte im Ringpuffer
+     */
+    public MemorySampler(Supplier<MemoryFootprint> source, Tracer tracer, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity muss >= 1 sein");
+        }
+        this.source = source;
+        this.tracer = tracer;
+        this.capacity = capacity;
+        this.samples = new Sample[capacity];
+    }
+
+    /**
+     * Startet die periodische Messung; ein laufender Zeitplan wird ersetzt.
+     *
+     * @param intervalMs Abstand der Messungen in Millisekunden
+     */
+    public synchronized void start(long intervalMs) {
+        stop();
+        periodic = executor.scheduleWithFixedDelay(() -> sample(null), 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Beendet die periodische Messung; {@link #markState} bleibt möglich. */
+    public synchronized void stop() {
+        if (periodic != null) {
+            periodic.cancel(false);
+            periodic = null;
+        }
+    }
+
+    /**
+     * Misst sofort und legt den Messpunkt im Ringpuffer ab. Blockiert einige
+     * Millisekunden, daher nicht im UI-Thread aufrufen.
+     *
+     * @param label Anlass oder {@code null}
+     * @return Messpunkt
+     */
+    public Sample sample(String label) {
+        MemoryFootprint estimate = null;
+        try {
+            estimate = source != null ? source.get() : null;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Schätzung nicht verfügbar: " + e.getMessage());
+        }
+        Debug.MemoryInfo info = new Debug.MemoryInfo();
+        Debug.getMemoryInfo(info);
+        Sample sample = new Sample(System.currentTimeMillis(), label, estimate, info,
+                Debug.getNativeHeapAllocatedSize());
+        synchronized (this) {
+            samples[(int) (count % capacity)] = sample;
+            count++;
+        }
+        if (tracer != null) {
+            tracer.counter("mem.pss_kb", sample.pss >> 10);
+            tracer.counter("mem.private_dirty_kb", sample.privateDirty >> 10);
+            tracer.counter("mem.clean_kb", sample.clean >> 10);
+            tracer.counter("mem.graphics_kb", sample.graphics >> 10);
+            tracer.counter("mem.native_allocated_kb", sample.nativeAllocated >> 10);
+            tracer.counter("mem.estimate.native_kb", sample.estimatedNative >> 10);
+            tracer.counter("mem.estimate.heap_kb", sample.estimatedHeap >> 10);
+            tracer.counter("mem.estimate.mapped_kb", sample.estimatedMapped >> 10);
+        }
+        return sample;
+    }
+
+    /**
+     * Misst nach einem Zustandswechsel im Hintergrund und vergleicht mit dem
+     * ersten Messpunkt desselben Zustands. Vor der Messung wird eine
+     * Garbage Collection angestoßen, damit Direct-Buffer des vorherigen
+     * Zustands nicht als Leck erscheinen.
+     *
+     * @param state Zustand, z. B. {@code "GPU"}
+     */
+    public void markState(String state) {
+        executor.schedule(() -> {
+            System.gc();
+            System.runFinalization();
+            Sample sample = sample(state);
+            Sample baseline;
+            synchronized (this) {
+                baseline = stateBaselines.get(state);
+                if (baseline == null) {
+                    stateBaselines.put(state, sample);
+                }
+            }
+            Log.i(TAG, sample.toString());
+            if (baseline == null) {
+                return;
+            }
+            long measured = sample.privateDirty - baseline.privateDirty;
+            long estimated = (sample.estimatedNative + sample.estimatedHeap)
+                    - (baseline.estimatedNative + baseline.estimatedHeap);
+            if (measured - estimated > LEAK_THRESHOLD_BYTES) {
+                Log.w(TAG, String.format(Locale.US,
+                        "Mögliches Speicherleck: privater dirty Speicher im Zustand %s um %.1f MB gewachsen "
+                                + "(Schätzung %+.1f MB, nativ per malloc %+.1f MB, Grafik %+.1f MB)",
+                        state, measured / 1e6, estimated / 1e6,
+                        (sample.nativeAllocated - baseline.nativeAllocated) / 1e6,
+                        (sample.graphics - baseline.graphics) / 1e6));
+            }
+        }, STATE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** @return Messpunkte im Puffer, älteste zuerst */
+    public synchronized List<Sample> getSamples() {
+        int size = (int) Math.min(count, capacity);
+        List<Sample> result = new ArrayList<>(size);
+        long first = count - size;
+        for (int i = 0; i < size; i++) {
+            result.add(samples[(int) ((first + i) % capacity)]);
+        }
+        return result;
+    }
+
+    /**
+     * Schreibt alle Messpunkte als CSV (Größen in Bytes).
+     *
+     * @param out Ziel
+     * @throws IOException bei Schreibfehlern
+     */
+    public void exportCsv(Writer out) throws IOException {
+        out.write("time_ms,label,pss,private_dirty,clean,java_heap,native_heap,graphics,code,"
+                + "native_allocated,estimated_heap,estimated_native,estimated_mapped\n");
+        for (Sample sample : getSamples()) {
+            out.write(String.format(Locale.US, "%d,%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d\n",
+                    sample.timeMillis, sample.label != null ? sample.label.replace(',', ';') : "",
+                    sample.pss, sample.privateDirty, sample.clean, sample.javaHeap, sample.nativeHeap,
+                    sample.graphics, sample.code, sample.nativeAllocated,
+                    sample.estimatedHeap, sample.estimatedNative, sample.estimatedMapped));
+        }
+        out.flush();
+    }
+
+    /** Beendet den Messthread. */
+    @Override
+    public void close() {
+        stop();
+        executor.shutdownNow();
+    }
+}
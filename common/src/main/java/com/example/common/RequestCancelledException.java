@@ -0,0 +1,32 @@
+package com.example.common;
+
+/**
+ * @class RequestCancelledException
+ * @brief Eine Anfrage wurde abgebrochen oder hat ihre Frist überschritten
+ * und wurde verworfen (siehe {@link RequestToken}).
+ */
+public class RequestCancelledException extends InferenceException {
+
+    private final String stage;
+    private final boolean deadlineExceeded;
+
+    /**
+     * @param stage            Schritt, vor bzw. in dem verworfen wurde
+     * @param deadlineExceeded true = Frist überschritten, false = abgebrochen
+     */
+    public RequestCancelledException(String stage, boolean deadlineExceeded) {
+        super((deadlineExceeded ? "Frist überschritten" : "Abgebrochen") + " (" + stage + ")");
+        this.stage = stage;
+        this.deadlineExceeded = deadlineExceeded;
+    }
+
+    /** @return Schritt, vor bzw. in dem verworfen wurde */
+    public String getStage() {
+        return stage;
+    }
+
+    /** @return true = Frist überschritten, false = abgebrochen */
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.common;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @class RequestToken
+ * @brief Frist und Abbruchsignal einer Klassifikationsanfrage.
+ * <p>
+ * Der {@code Classifier} der App prüft das Token vor jedem Schritt
+ * ({@link #check(String)}) und verwirft abgelaufene oder abgebrochene
+ * Anfragen, bevor weitere Arbeit anfällt. Engines, deren Runtime eine
+ * laufende Inferenz unterbrechen kann, melden sich über
+ * {@link #addCancelListener(Runnable)} für {@link #cancel()} an.
+ * <p>
+ * Typische Verwendung: Beim Auswählen eines neuen Bildes wird das Token der
+ * vorherigen Anfrage abgebrochen, deren Ergebnis würde ohnehin nicht mehr
+ * angezeigt.
+ */
+public final class RequestToken {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /** Frist als {@link System#nanoTime()} oder {@link #NO_DEADLINE} */
+    private final long deadlineNanos;
+
+    private volatile boolean cancelled;
+
+    private final List<Runnable> cancelListeners = new CopyOnWriteArrayList<>();
+
+    private RequestToken(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @param timeoutMillis Frist ab jetzt in Millisekunden
+     * @return Token, das nach der Frist als abgelaufen gilt
+     */
+    public static RequestToken withTimeout(long timeoutMillis) {
+        return new RequestToken(System.nanoTime() + timeoutMillis * 1_000_000L);
+    }
+
+    /** @return Token ohne Frist, nur über {@link #cancel()} abbrechbar */
+    public static RequestToken withoutDeadline() {
+        return new RequestToken(NO_DEADLINE);
+    }
+
+    /**
+     * Bricht die Anfrage ab und benachrichtigt angemeldete Listener
+     * (z. B. eine laufende Inferenz). Mehrfache Aufrufe sind wirkungslos.
+     */
+    public void cancel() {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+        }
+        for (Runnable listener : cancelListeners) {
+            listener.run();
+        }
+    }
+
+    /** @return true nach {@link #cancel()} */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** @return true wenn eine Frist gesetzt ist */
+    public boolean hasDeadline() {
+        return deadlineNanos != NO_DEADLINE;
+    }
+
+    /** @return verbleibende Zeit bis zur Frist in Nanosekunden ({@link Long#MAX_VALUE} ohne Frist) */
+    public long getRemainingNanos() {
+        return hasDeadline() ? deadlineNanos - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    /** @return true wenn die Frist überschritten ist */
+    public boolean isDeadlineExceeded() {
+        return hasDeadline() && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /** @return true wenn die Anfrage abgebrochen oder die Frist überschritten ist */
+    public boolean isExpired() {
+        return cancelled || isDeadlineExceeded();
+    }
+
+    /**
+     * Prüfpunkt vor einem Verarbeitungsschritt.
+     *
+     * @param stage Name des folgenden Schritts, z. B. {@code "preprocess"}
+     * @throws RequestCancelledException wenn die Anfrage verworfen werden soll
+     */
+    public void check(String stage) throws RequestCancelledException {
+        if (cancelled) {
+            throw new RequestCancelledException(stage, false);
+        }
+        if (isDeadlineExceeded()) {
+            throw new RequestCancelledException(stage, true);
+        }
+    }
+
+    /**
+     * Meldet einen Listener für {@link #cancel()} an. Ist die Anfrage bereits
+     * abgebrochen, wird er sofort aufgerufen.
+     *
+     * @param listener Aufruf im Thread von {@link #cancel()}
+     */
+    public void addCancelListener(Runnable listener) {
+        cancelListeners.add(listener);
+        if (cancelled && cancelListeners.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    /** @param listener abzumeldender Listener */
+    public void removeCancelListener(Runnable listener) {
+        cancelListeners.remove(listener);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.common;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * @class TensorSpec
+ * @brief Beschreibung eines Modell-Tensors (Shape, Datentyp, Quantisierung).
+ * <p>
+ * Bildtensoren liegen im Layout [N, H, W, C] vor, Klassifikationsausgaben
+ * als [N, numLabels]. Quantisierte Werte werden über
+ * {@code real = scale * (q - zeroPoint)} in Gleitkommazahlen umgerechnet.
+ */
+public final class TensorSpec {
+
+    private final int[] shape;
+    private final ElementType type;
+    private final float scale;
+    private final int zeroPoint;
+
+    /**
+     * @param shape     Tensor-Shape
+     * @param type      Datentyp der Elemente
+     * @param scale     Quantisierungs-Skalierung (0 bei nicht quantisierten Tensoren)
+     * @param zeroPoint Quantisierungs-Nullpunkt
+     */
+    public TensorSpec(int[] shape, ElementType type, float scale, int zeroPoint) {
+        this.shape = shape.clone();
+        this.type = type;
+        this.scale = scale;
+        this.zeroPoint = zeroPoint;
+    }
+
+    /**
+     * Erzeugt eine Beschreibung für einen nicht quantisierten Tensor.
+     *
+     * @param type  Datentyp
+     * @param shape Tensor-Shape
+     * @return neue {@link TensorSpec}
+     */
+    public static TensorSpec of(ElementType type, int... shape) {
+        return new TensorSpec(shape, type, 0f, 0);
+    }
+
+    /** @return Kopie der Tensor-Shape */
+    public int[] getShape() {
+        return shape.clone();
+    }
+
+    /** @return Datentyp der Elemente */
+    public ElementType getType() {
+        return type;
+    }
+
+    /** @return Quantisierungs-Skalierung */
+    public float getScale() {
+        return scale;
+    }
+
+    /** @return Quantisierungs-Nullpunkt */
+    public int getZeroPoint() {
+        return zeroPoint;
+    }
+
+    /** @return {@code true}, wenn der Tensor gültige Quantisierungsparameter hat */
+    public boolean isQuantized() {
+        return scale != 0f;
+    }
+
+    /** @return Batchgröße (erste Dimension) */
+    public int getBatchSize() {
+        return shape[0];
+    }
+
+    /** @return Höhe eines Bildtensors [N, H, W, C] */
+    public int getHeight() {
+        return shape[1];
+    }
+
+    /** @return Breite eines Bildtensors [N, H, W, C] */
+    public int getWidth() {
+        return shape[2];
+    }
+
+    /** @return Anzahl Kanäle eines Bildtensors [N, H, W, C] */
+    public int getChannels() {
+        return shape[3];
+    }
+
+    /** @return Anzahl Elemente über alle Dimensionen */
+    public int getElementCount() {
+        int count = 1;
+        for (int dim : shape) {
+            count *= dim;
+        }
+        return count;
+    }
+
+    /** @return Anzahl Elemente pro Batch-Eintrag */
+    public int getElementsPerBatch() {
+        return getElementCount() / shape[0];
+    }
+
+    /** @return Größe des Tensors in Bytes */
+    public int getByteSize() {
+        return getElementCount() * type.getByteSize();
+    }
+
+    /**
+     * Gibt dieselbe Beschreibung mit geänderter Batchgröße zurück.
+     *
+     * @param batchSize neue erste Dimension
+     * @return neue {@link TensorSpec}
+     */
+    public TensorSpec withBatchSize(int batchSize) {
+        int[] newShape = shape.clone();
+        newShape[0] = batchSize;
+        return new TensorSpec(newShape, type, scale, zeroPoint);
+    }
+
+    /**
+     * Prüft, ob ein Tensor mit der anderen Beschreibung dieselben Daten
+     * erwartet (gleiche Shape, gleicher Datentyp, gleiche Quantisierung).
+     *
+     * @param other andere Beschreibung
+     * @return true wenn Buffer und Vorverarbeitung austauschbar sind
+     */
+    public boolean isCompatibleWith(TensorSpec other) {
+        return other != null
+                && Arrays.equals(shape, other.shape)
+                && type == other.type
+                && Float.compare(scale, other.scale) == 0
+                && zeroPoint == other.zeroPoint;
+    }
+
+    /**
+     * Liest ein Element eines Tensors mit dieser Beschreibung als Gleitkommazahl
+     * (quantisierte Werte werden umgerechnet).
+     *
+     * @param buffer Tensor-Daten (absoluter Zugriff, native Byte-Reihenfolge)
+     * @param index  Elementindex
+     * @return Wert des Elements
+     */
+    public float readFloat(ByteBuffer buffer, int index) {
+        switch (type) {
+            case FLOAT32:
+                return buffer.getFloat(index * 4);
+            case FLOAT16:
+                return InputWriter.fromHalf(buffer.getShort(index * 2));
+            case UINT8: {
+                int q = buffer.get(index) & 0xFF;
+                return isQuantized() ? scale * (q - zeroPoint) : q / 255f;
+            }
+            case INT8:
+            default: {
+                int q = buffer.get(index);
+                return isQuantized() ? scale * (q - zeroPoint) : (q + 128) / 255f;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + Arrays.toString(shape)
+                + (isQuantized() ? " (scale=" + scale + ", zeroPoint=" + zeroPoint + ")" : "");
+    }
+}
@@ -0,0 +1,405 @@
+package com.example.common;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * @class Tracer
+ * @brief Benannte Trace-Abschnitte für die Inferenz-Pipeline mit
+ * Ringpuffer und Export als Chrome-Trace-JSON.
+ * <p>
+ * Jeder Abschnitt ({@link #section(String)}) wird
+ * - auf dem Gerät zusätzlich als {@link Trace#beginSection} an das System
+ *   gemeldet und erscheint damit in Perfetto bzw. Systrace,
+ * - in einem Ringpuffer mit den letzten {@code capacity} Abschnitten abgelegt.
+ * <p>
+ * Abschnitte werden einer Anfrage ({@link #request(String)}) zugeordnet, z. B.
+ * einem Klick auf "Klassifizieren". Innerhalb eines Threads erben
+ * verschachtelte Abschnitte die Anfrage automatisch; für Arbeit in anderen
+ * Threads (UI-Callback, Hintergrundthread) wird die ID aus
+ * {@link #currentRequest()} mitgegeben.
+ * <p>
+ * Zusätzlich nimmt ein zweiter Ringpuffer Zählerwerte auf
+ * ({@link #counter(String, long)}, z. B. Speicherbelegung), die im Export als
+ * Zählerspuren neben den Abschnitten erscheinen.
+ * <p>
+ * {@link #exportChromeTrace(Writer, int)} schreibt die Abschnitte der letzten
+ * N Anfragen im Chrome-Trace-Format (lesbar mit {@code chrome://tracing} und
+ * {@code ui.perfetto.dev}). Ohne Android-Runtime (JVM-Tests) entfällt nur die
+ * Meldung an das System.
+ * <p>
+ * Verwendung:
+ * <pre>
+ * try (Tracer.Section s = Tracer.getShared().section("preprocess.scale")) {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class Tracer {
+
+    /** Anfrage-ID für Abschnitte außerhalb einer Anfrage */
+    public static final long NO_REQUEST = 0;
+
+    /** Android begrenzt Abschnittsnamen auf 127 Zeichen */
+    private static final int MAX_SYSTEM_NAME_LENGTH = 127;
+
+    /** System-Trace nur auf der Android-Runtime (auf der JVM sind die Methoden Stubs) */
+    private static final boolean SYSTEM_TRACE =
+            "Dalvik".equals(System.getProperty("java.vm.name"));
+
+    private static Tracer shared;
+
+    /** Anfrage des aktuellen Threads */
+    private final ThreadLocal<long[]> currentRequest = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[]{NO_REQUEST};
+        }
+    };
+
+    private final int capacity;
+    private final String[] names;
+    private final long[] requests;
+    private final long[] threadIds;
+    private final long[] startNanos;
+    private final long[] durationNanos;
+    private final boolean[] requestMarkers;
+
+    private final String[] counterNames;
+    private final long[] counterValues;
+    private final long[] counterNanos;
+    /** Anzahl bisher aufgezeichneter Zählerwerte */
+    private long counterCount;
+
+    /** Anzahl bisher aufgezeichneter Abschnitte (Schreibposition = count % capacity) */
+    private long count;
+    private long nextRequest = 1;
+
+    private volatile boolean enabled = true;
+
+    /** Ursprung der Zeitachse im Export */
+    private final long originNanos = System.nanoTime();
+
+    /**
+     * Ein offener Abschnitt; {@link #close()} beendet ihn und muss im selben
+     * Thread aufgerufen werden.
+     */
+    public static final class Section implements AutoCloseable {
+
+        private final Tracer tracer;
+        private final String name;
+        private final long request;
+        private final long previousRequest;
+        private final boolean requestMarker;
+        private final long start;
+        private boolean closed;
+
+        /** Abschnitt ohne Wirkung (Tracer deaktiviert) */
+        private Section() {
+            this.tracer = null;
+            this.name = null;
+            this.request = NO_REQUEST;
+            this.previousRequest = NO_REQUEST;
+            this.requestMarker = false;
+            this.start = 0;
+            this.closed = true;
+        }
+
+        private Section(Tracer tracer, String name, long request, long previousRequest, boolean requestMarker) {
+            this.tracer = tracer;
+            this.name = name;
+            this.request = request;
+            this.previousRequest = previousRequest;
+            this.requestMarker = requestMarker;
+            if (SYSTEM_TRACE) {
+                Trace.beginSection(name.length() > MAX_SYSTEM_NAME_LENGTH
+                        ? name.substring(0, MAX_SYSTEM_NAME_LENGTH)
+                        : name);
+            }
+            this.start = System.nanoTime();
+        }
+
+        /** @return Anfrage, zu der der Abschnitt gehört */
+        public long getRequest() {
+            return request;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            long end = System.nanoTime();
+            if (SYSTEM_TRACE) {
+                Trace.endSection();
+            }
+            if (requestMarker) {
+                tracer.currentRequest.get()[0] = previousRequest;
+            }
+            tracer.record(name, request, Thread.currentThread().getId(), start, end - start, requestMarker);
+        }
+    }
+
+    /** Abschnitt ohne Wirkung bei deaktiviertem Tracer */
+    private static final Section DISABLED = new Section();
+
+    /**
+     * @param capacity Anzahl Abschnitte im Ringpuffer
+     */
+    public Tracer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity muss >= 1 sein");
+        }
+        this.capacity = capacity;
+        this.names = new String[capacity];
+        this.requests = new long[capacity];
+        this.threadIds = new long[capacity];
+        this.startNanos = new long[capacity];
+        this.durationNanos = new long[capacity];
+        this.requestMarkers = new boolean[capacity];
+        this.counterNames = new String[capacity];
+        this.counterValues = new long[capacity];
+        this.counterNanos = new long[capacity];
+    }
+
+    /** @return prozessweit geteilter Tracer (4096 Abschnitte) */
+    public static synchronized Tracer getShared() {
+        if (shared == null) {
+            shared = new Tracer(4096);
+        }
+        return shared;
+    }
+
+    /**
+     * Beginnt eine neue Anfrage. Alle Abschnitte des aktuellen Threads bis
+     * zum Schließen gehören zu ihr.
+     *
+     * @param name Name der Anfrage, z. B. {@code "classify"}
+     * @return offener Abschnitt der gesamten Anfrage
+     */
+    public Section request(String name) {
+        if (!enabled) {
+            return DISABLED;
+        }
+        long id;
+        synchronized (this) {
+            id = nextRequest++;
+        }
+        long[] current = currentRequest.get();
+        long previous = current[0];
+        current[0] = id;
+        return new Section(this, name, id, previous, true);
+    }
+
+    /**
+     * Beginnt einen Abschnitt innerhalb der Anfrage des aktuellen Threads.
+     *
+     * @param name Name, z. B. {@code "preprocess.fill"}
+     * @return offener Abschnitt
+     */
+    public Section section(String name) {
+        if (!enabled) {
+            return DISABLED;
+        }
+        return new Section(this, name, currentRequest.get()[0], NO_REQUEST, false);
+    }
+
+    /**
+     * Beginnt einen Abschnitt für eine Anfrage aus einem anderen Thread.
+     *
+     * @param name    Name, z. B. {@code "ui.callback"}
+     * @param request ID aus {@link #currentRequest()}
+     * @return offener Abschnitt
+     */
+    public Section section(String name, long request) {
+        if (!enabled) {
+            return DISABLED;
+        }
+        return new Section(this, name, request, NO_REQUEST, false);
+    }
+
+    /**
+     * Zeichnet einen Zählerwert auf. Auf dem Gerät ab Android 10 zusätzlich
+     * als {@link Trace#setCounter} an das System gemeldet.
+     *
+     * @param name  Name der Zählerspur, z. B. {@code "mem.pss"}
+     * @param value aktueller Wert
+     */
+    public void counter(String name, long value) {
+        if (!enabled) {
+            return;
+        }
+        if (SYSTEM_TRACE && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.setCounter(name.length() > MAX_SYSTEM_NAME_LENGTH
+                    ? name.substring(0, MAX_SYSTEM_NAME_LENGTH)
+                    : name, value);
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            int slot = (int) (counterCount % capacity);
+            counterNames[slot] = name;
+            counterValues[slot] = value;
+            counterNanos[slot] = now;
+            counterCount++;
+        }
+    }
+
+    /** @return Anfrage des aktuellen Threads oder {@link #NO_REQUEST} */
+    public long currentRequest() {
+        return currentRequest.get()[0];
+    }
+
+    /** @param enabled false = keine Aufzeichnung und keine System-Trace-Abschnitte */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /** @return true wenn aufgezeichnet wird */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private synchronized void record(String name, long request, long threadId,
+                                     long start, long duration, boolean requestMarker) {
+        int slot = (int) (count % capacity);
+        names[slot] = name;
+        requests[slot] = request;
+        threadIds[slot] = threadId;
+        startNanos[slot] = start;
+        durationNanos[slot] = duration;
+        requestMarkers[slot] = requestMarker;
+        count++;
+    }
+
+    /** @return Anzahl Abschnitte im Puffer */
+    public synchronized int size() {
+        return (int) Math.min(count, capacity);
+    }
+
+    /** Leert den Puffer. */
+    public synchronized void clear() {
+        count = 0;
+        counterCount = 0;
+    }
+
+    /**
+     * Schreibt die Abschnitte der letzten {@code lastRequests} Anfragen als
+     * Chrome-Trace-JSON ({@code {"traceEvents": [...]}}, Ereignisse vom Typ
+     * {@code "X"} mit Zeiten in Mikrosekunden). Abschnitte ohne Anfrage werden
+     * mitgeschrieben, wenn sie in den Zeitraum dieser Anfragen fallen; ebenso
+     * Zählerwerte als Ereignisse vom Typ {@code "C"}.
+     *
+     * @param out          Ziel
+     * @param lastRequests Anzahl Anfragen
+     * @throws IOException bei Schreibfehlern
+     */
+    public void exportChromeTrace(Writer out, int lastRequests) throws IOException {
+        String[] n;
+        long[] r;
+        long[] t;
+        long[] s;
+        long[] d;
+        boolean[] m;
+        int size;
+        long newestRequest;
+        String[] cn;
+        long[] cv;
+        long[] cs;
+        // Schnappschuss unter Sperre, Formatierung danach
+        synchronized (this) {
+            size = size();
+            n = new String[size];
+            r = new long[size];
+            t = new long[size];
+            s = new long[size];
+            d = new long[size];
+            m = new boolean[size];
+            long first = count - size;
+            for (int i = 0; i < size; i++) {
+                int slot = (int) ((first + i) % capacity);
+                n[i] = names[slot];
+                r[i] = requests[slot];
+                t[i] = threadIds[slot];
+                s[i] = startNanos[slot];
+                d[i] = durationNanos[slot];
+                m[i] = requestMarkers[slot];
+            }
+            newestRequest = nextRequest - 1;
+
+            int counters = (int) Math.min(counterCount, capacity);
+            cn = new String[counters];
+            cv = new long[counters];
+            cs = new long[counters];
+            long firstCounter = counterCount - counters;
+            for (int i = 0; i < counters; i++) {
+                int slot = (int) ((firstCounter + i) % capacity);
+                cn[i] = counterNames[slot];
+                cv[i] = counterValues[slot];
+                cs[i] = counterNanos[slot];
+            }
+        }
+
+        long oldestRequest = Math.max(1, newestRequest - lastRequests + 1);
+        long windowStart = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (r[i] >= oldestRequest) {
+                windowStart = Math.min(windowStart, s[i]);
+            }
+        }
+
+        out.write("{\"traceEvents\":[");
+        boolean firstEvent = true;
+        for (int i = 0; i < size; i++) {
+            boolean inRequest = r[i] >= oldestRequest;
+            boolean inWindow = r[i] == NO_REQUEST && s[i] >= windowStart;
+            if (!inRequest && !inWindow) {
+                continue;
+            }
+            if (!firstEvent) {
+                out.write(',');
+            }
+            firstEvent = false;
+            out.write(String.format(Locale.US,
+                    "\n{\"name\":\"%s\",\"cat\":\"%s\",\"ph\":\"X\",\"ts\":%.3f,\"dur\":%.3f,"
+                            + "\"pid\":1,\"tid\":%d,\"args\":{\"request\":%d}}",
+                    escape(n[i]), m[i] ? "request" : "section",
+                    (s[i] - originNanos) / 1e3, d[i] / 1e3, t[i], r[i]));
+        }
+        for (int i = 0; i < cn.length; i++) {
+            // Ohne Anfragen im Puffer werden alle Zählerwerte geschrieben
+            if (windowStart != Long.MAX_VALUE && cs[i] < windowStart) {
+                continue;
+            }
+            if (!firstEvent) {
+                out.write(',');
+            }
+            firstEvent = false;
+            out.write(String.format(Locale.US,
+                    "\n{\"name\":\"%s\",\"cat\":\"counter\",\"ph\":\"C\",\"ts\":%.3f,"
+                            + "\"pid\":1,\"args\":{\"value\":%d}}",
+                    escape(cn[i]), (cs[i] - originNanos) / 1e3, cv[i]));
+        }
+        out.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+        out.flush();
+    }
+
+    private static String escape(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
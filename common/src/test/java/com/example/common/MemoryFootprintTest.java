@@ -0,0 +1,35 @@
+package com.example.common;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @class MemoryFootprintTest
+ * @brief JVM-Tests für die Summen der geschätzten Speicheraufschlüsselung.
+ */
+public class MemoryFootprintTest {
+
+    @Test
+    public void sumsPerCategory() {
+        MemoryFootprint footprint = new MemoryFootprint()
+                .add("model", 0, 4_000_000, 14_000_000)
+                .add("buffers", 600_000, 0, 0)
+                .add("empty", 0, 0, 0);
+        assertEquals(2, footprint.getEntries().size());
+        assertEquals(600_000, footprint.getHeapBytes());
+        assertEquals(4_000_000, footprint.getNativeBytes());
+        assertEquals(14_000_000, footprint.getMappedBytes());
+        assertEquals(18_600_000, footprint.getTotalBytes());
+    }
+
+    @Test
+    public void addAllMergesEntries() {
+        MemoryFootprint first = new MemoryFootprint().add("a", 1, 2, 3);
+        MemoryFootprint second = new MemoryFootprint().add("b", 10, 20, 30);
+        first.addAll(second);
+        assertEquals(2, first.getEntries().size());
+        assertEquals(66, first.getTotalBytes());
+        assertEquals("b", first.getEntries().get(1).getName());
+    }
+}
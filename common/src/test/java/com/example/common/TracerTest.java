@@ -0,0 +1,148 @@
+package com.example.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @class TracerTest
+ * @brief JVM-Tests für Abschnitte, Anfrage-IDs, Ringpuffer und Chrome-Trace-Export.
+ */
+public class TracerTest {
+
+    private static String export(Tracer tracer, int lastRequests) throws IOException {
+        StringWriter out = new StringWriter();
+        tracer.exportChromeTrace(out, lastRequests);
+        return out.toString();
+    }
+
+    private static int occurrences(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void sectionsInheritRequestOfThread() {
+        Tracer tracer = new Tracer(16);
+        assertEquals(Tracer.NO_REQUEST, tracer.currentRequest());
+        long request;
+        try (Tracer.Section r = tracer.request("classify")) {
+            request = r.getRequest();
+            assertNotEquals(Tracer.NO_REQUEST, request);
+            assertEquals(request, tracer.currentRequest());
+            try (Tracer.Section s = tracer.section("preprocess")) {
+                assertEquals(request, s.getRequest());
+            }
+        }
+        assertEquals(Tracer.NO_REQUEST, tracer.currentRequest());
+        assertEquals(2, tracer.size());
+    }
+
+    @Test
+    public void nestedRequestsRestorePrevious() {
+        Tracer tracer = new Tracer(16);
+        try (Tracer.Section outer = tracer.request("outer")) {
+            try (Tracer.Section inner = tracer.request("inner")) {
+                assertNotEquals(outer.getRequest(), inner.getRequest());
+                assertEquals(inner.getRequest(), tracer.currentRequest());
+            }
+            assertEquals(outer.getRequest(), tracer.currentRequest());
+        }
+    }
+
+    @Test
+    public void requestIdCanBeHandedToOtherThread() throws Exception {
+        Tracer tracer = new Tracer(16);
+        AtomicLong seen = new AtomicLong(-1);
+        try (Tracer.Section r = tracer.request("classify")) {
+            long request = tracer.currentRequest();
+            Thread worker = new Thread(() -> {
+                try (Tracer.Section s = tracer.section("ui.callback", request)) {
+                    seen.set(s.getRequest());
+                }
+            });
+            worker.start();
+            worker.join();
+            assertEquals(request, seen.get());
+        }
+    }
+
+    @Test
+    public void ringBufferKeepsNewestSections() throws IOException {
+        Tracer tracer = new Tracer(4);
+        for (int i = 0; i < 10; i++) {
+            try (Tracer.Section s = tracer.request("r" + i)) {
+                // leer
+            }
+        }
+        assertEquals(4, tracer.size());
+        String json = export(tracer, 100);
+        assertFalse(json.contains("\"r5\""));
+        for (int i = 6; i < 10; i++) {
+            assertTrue(json.contains("\"r" + i + "\""));
+        }
+        tracer.clear();
+        assertEquals(0, tracer.size());
+    }
+
+    @Test
+    public void closeTwiceRecordsOnce() {
+        Tracer tracer = new Tracer(8);
+        Tracer.Section section = tracer.section("once");
+        section.close();
+        section.close();
+        assertEquals(1, tracer.size());
+    }
+
+    @Test
+    public void disabledTracerRecordsNothing() {
+        Tracer tracer = new Tracer(8);
+        tracer.setEnabled(false);
+        try (Tracer.Section r = tracer.request("classify")) {
+            assertEquals(Tracer.NO_REQUEST, r.getRequest());
+        }
+        tracer.counter("mem.pss_kb", 1);
+        assertEquals(0, tracer.size());
+    }
+
+    @Test
+    public void exportLimitsToLastRequests() throws IOException {
+        Tracer tracer = new Tracer(64);
+        for (int i = 0; i < 5; i++) {
+            try (Tracer.Section r = tracer.request("request" + i)) {
+                try (Tracer.Section s = tracer.section("inference" + i)) {
+                    // leer
+                }
+            }
+        }
+        String json = export(tracer, 2);
+        assertTrue(json.startsWith("{\"traceEvents\":["));
+        assertTrue(json.trim().endsWith("\"displayTimeUnit\":\"ms\"}"));
+        assertEquals(4, occurrences(json, "\"ph\":\"X\""));
+        assertEquals(2, occurrences(json, "\"cat\":\"request\""));
+        assertTrue(json.contains("\"inference4\""));
+        assertFalse(json.contains("\"inference2\""));
+    }
+
+    @Test
+    public void exportContainsCountersAndEscapesNames() throws IOException {
+        Tracer tracer = new Tracer(16);
+        try (Tracer.Section r = tracer.request("say \"hi\"\\")) {
+            tracer.counter("mem.pss_kb", 1234);
+        }
+        String json = export(tracer, 1);
+        assertTrue(json.contains("\"name\":\"say \\\"hi\\\"\\\\\""));
+        assertTrue(json.contains("\"ph\":\"C\""));
+        assertTrue(json.contains("\"args\":{\"value\":1234}"));
+    }
+}
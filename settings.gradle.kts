@@ -20,6 +20,7 @@ dependencyResolutionManagement {
 }
 
 rootProject.name = "SeminarLiteRT"
+include(":common")
 include(":app1")
 include(":app2")
 include(":app3")